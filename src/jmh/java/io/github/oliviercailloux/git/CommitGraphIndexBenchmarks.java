@@ -0,0 +1,92 @@
+package io.github.oliviercailloux.git;
+
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.Graphs;
+import com.google.common.graph.ImmutableGraph;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Ancestry queries on random histories, where each commit has one or (sometimes) two parents among
+ * the previous ones, answered by walking the Guava graph each time or by a
+ * {@link CommitGraphIndex} built once per invocation (the cost of building it included).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommitGraphIndexBenchmarks {
+  private static final int NB_QUERIES = 100;
+
+  @Param({"1000", "10000"})
+  public int nbCommits;
+
+  private ImmutableGraph<Integer> graph;
+  private ImmutableSet<Integer> roots;
+  private int[] queries;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final Random random = new Random(0L);
+    graph = RandomHistories.randomDag(random,
+        ContiguousSet.closedOpen(0, nbCommits).asList());
+    roots = graph.nodes().stream().filter(n -> graph.predecessors(n).isEmpty())
+        .collect(ImmutableSet.toImmutableSet());
+    queries = random.ints(2 * NB_QUERIES, 0, nbCommits).toArray();
+  }
+
+  @Benchmark
+  public CommitGraphIndex<Integer> build() {
+    return CommitGraphIndex.given(graph);
+  }
+
+  @Benchmark
+  public ImmutableSet<Integer> reachableFromRootsGraphs() {
+    return roots.stream().flatMap(r -> Graphs.reachableNodes(graph, r).stream())
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  @Benchmark
+  public ImmutableSet<Integer> reachableFromRootsIndex() {
+    return CommitGraphIndex.given(graph).getReachableBreadthFirst(roots);
+  }
+
+  @Benchmark
+  public void isAncestorGraphs(Blackhole blackhole) {
+    for (int q = 0; q < NB_QUERIES; ++q) {
+      blackhole.consume(Graphs.reachableNodes(graph, queries[2 * q]).contains(queries[2 * q + 1]));
+    }
+  }
+
+  @Benchmark
+  public void isAncestorIndex(Blackhole blackhole) {
+    final CommitGraphIndex<Integer> index = CommitGraphIndex.given(graph);
+    for (int q = 0; q < NB_QUERIES; ++q) {
+      blackhole.consume(index.isAncestor(queries[2 * q], queries[2 * q + 1]));
+    }
+  }
+
+  @Benchmark
+  public void mergeBasesIndex(Blackhole blackhole) {
+    final CommitGraphIndex<Integer> index = CommitGraphIndex.given(graph);
+    for (int q = 0; q < NB_QUERIES; ++q) {
+      blackhole.consume(index.getMergeBases(queries[2 * q], queries[2 * q + 1]));
+    }
+  }
+}
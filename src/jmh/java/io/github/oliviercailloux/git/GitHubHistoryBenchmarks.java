@@ -0,0 +1,76 @@
+package io.github.oliviercailloux.git;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.graph.ImmutableGraph;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Computing consistent push dates of random histories, where each commit has one or (sometimes)
+ * two parents among the previous ones and a push date is known for a fraction of the commits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GitHubHistoryBenchmarks {
+  @Param({"100", "1000", "10000"})
+  public int nbCommits;
+
+  private ImmutableGraph<ObjectId> graph;
+  private ImmutableMap<ObjectId, Instant> authorDates;
+  private ImmutableMap<ObjectId, Instant> commitDates;
+  private ImmutableMap<ObjectId, Instant> pushDates;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(0L);
+    final ImmutableList.Builder<ObjectId> idsBuilder = ImmutableList.builder();
+    for (int i = 0; i < nbCommits; ++i) {
+      idsBuilder.add(ObjectId.fromRaw(new int[] {i, random.nextInt(), 0, 0, 0}));
+    }
+    final ImmutableList<ObjectId> ids = idsBuilder.build();
+    graph = RandomHistories.randomDag(random, ids);
+    final ImmutableMap.Builder<ObjectId, Instant> dates = ImmutableMap.builder();
+    final ImmutableMap.Builder<ObjectId, Instant> pushes = ImmutableMap.builder();
+    final Instant start = Instant.parse("2020-01-01T00:00:00Z");
+    for (int i = 0; i < nbCommits; ++i) {
+      final ObjectId id = ids.get(i);
+      dates.put(id, start.plusSeconds(60L * i));
+      if (random.nextInt(3) == 0) {
+        pushes.put(id, start.plusSeconds(60L * i + random.nextInt(36000)));
+      }
+    }
+    authorDates = dates.build();
+    commitDates = authorDates;
+    pushDates = pushes.build();
+  }
+
+  @Benchmark
+  public ImmutableMap<ObjectId, Instant> gitHubHistory() {
+    return GitHubHistory.create(graph, authorDates, commitDates, pushDates)
+        .getConsistentPushDates();
+  }
+
+  @Benchmark
+  public ImmutableMap<ObjectId, Instant> compactGitHubHistory() {
+    return CompactGitHubHistory.create(graph, authorDates, commitDates, pushDates)
+        .getConsistentPushDates();
+  }
+}
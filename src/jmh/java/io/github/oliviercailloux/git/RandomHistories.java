@@ -0,0 +1,29 @@
+package io.github.oliviercailloux.git;
+
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.ImmutableGraph;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random histories for the benchmarks.
+ */
+class RandomHistories {
+  /**
+   * Returns a graph of the given commits, where each commit has, as parent, one of the five
+   * previous ones, and sometimes (one time out of ten) a second one among the earlier ones.
+   */
+  static <N> ImmutableGraph<N> randomDag(Random random, List<N> commits) {
+    final ImmutableGraph.Builder<N> builder = GraphBuilder.directed().immutable();
+    for (int i = 0; i < commits.size(); ++i) {
+      builder.addNode(commits.get(i));
+      if (i > 0) {
+        builder.putEdge(commits.get(i - 1 - random.nextInt(Math.min(i, 5))), commits.get(i));
+        if (i > 1 && random.nextInt(10) == 0) {
+          builder.putEdge(commits.get(random.nextInt(i - 1)), commits.get(i));
+        }
+      }
+    }
+    return builder.build();
+  }
+}
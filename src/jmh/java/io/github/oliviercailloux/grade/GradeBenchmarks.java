@@ -0,0 +1,83 @@
+package io.github.oliviercailloux.grade;
+
+import com.google.common.collect.ImmutableMap;
+import io.github.oliviercailloux.git.github.model.GitHubUsername;
+import io.github.oliviercailloux.grade.format.CsvGrades;
+import io.github.oliviercailloux.grade.format.HtmlGrades;
+import io.github.oliviercailloux.grade.format.json.JsonSimpleGrade;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building, aggregating and exporting synthetic exams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GradeBenchmarks {
+  @Param({"10", "100", "1000"})
+  public int nbStudents;
+
+  @Param({"5", "50"})
+  public int nbCriteria;
+
+  private WeightingGradeAggregator aggregator;
+  private ImmutableMap<GitHubUsername, MarksTree> marks;
+  private Exam exam;
+  private ImmutableMap<String, Grade> grades;
+
+  @Setup
+  public void setup() {
+    final SyntheticExams generator = SyntheticExams.given(nbCriteria, 3);
+    aggregator = generator.getAggregator();
+    marks = generator.getMarks(nbStudents, 0L);
+    exam = new Exam(aggregator, marks);
+    grades = exam.getUsernames().stream()
+        .collect(ImmutableMap.toImmutableMap(GitHubUsername::getUsername, exam::getGrade));
+  }
+
+  @Benchmark
+  public Exam buildExam() throws AggregatorException {
+    return ExamBuilder.using(aggregator).putAll(marks).freeze();
+  }
+
+  @Benchmark
+  public double aggregate() {
+    double sum = 0d;
+    for (MarksTree tree : marks.values()) {
+      sum += Grade.given(aggregator, tree).mark().getPoints();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public String csv() {
+    return CsvGrades.<GitHubUsername>newInstance(u -> ImmutableMap.of("Name", u.getUsername()), 20d)
+        .gradesToCsv(exam.aggregator(), exam.grades());
+  }
+
+  @Benchmark
+  public void html() throws IOException {
+    HtmlGrades.writeHtml(grades, "Grades", 20d, Writer.nullWriter());
+  }
+
+  @Benchmark
+  public String json() {
+    return JsonSimpleGrade.toJson(exam);
+  }
+}
@@ -0,0 +1,76 @@
+package io.github.oliviercailloux.grade;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableMap;
+import io.github.oliviercailloux.git.github.model.GitHubUsername;
+import java.util.Random;
+
+/**
+ * Generates exams of arbitrary size: each student is graded on the given number of criteria, each
+ * having the given number of sub-criteria, weighted statically, with pseudo-random marks.
+ */
+public class SyntheticExams {
+  public static SyntheticExams given(int nbCriteria, int nbSubCriteria) {
+    return new SyntheticExams(nbCriteria, nbSubCriteria);
+  }
+
+  private final int nbCriteria;
+  private final int nbSubCriteria;
+
+  private SyntheticExams(int nbCriteria, int nbSubCriteria) {
+    checkArgument(nbCriteria >= 1);
+    checkArgument(nbSubCriteria >= 1);
+    this.nbCriteria = nbCriteria;
+    this.nbSubCriteria = nbSubCriteria;
+  }
+
+  private static Criterion criterion(int i) {
+    return Criterion.given("C" + i);
+  }
+
+  private static Criterion subCriterion(int i, int j) {
+    return Criterion.given("C" + i + "." + j);
+  }
+
+  public WeightingGradeAggregator getAggregator() {
+    final ImmutableMap.Builder<Criterion, Double> weights = ImmutableMap.builder();
+    final ImmutableMap.Builder<Criterion, WeightingGradeAggregator> subs = ImmutableMap.builder();
+    for (int i = 1; i <= nbCriteria; ++i) {
+      final ImmutableMap.Builder<Criterion, Double> subWeights = ImmutableMap.builder();
+      for (int j = 1; j <= nbSubCriteria; ++j) {
+        subWeights.put(subCriterion(i, j), (double) j);
+      }
+      weights.put(criterion(i), (double) i);
+      subs.put(criterion(i), WeightingGradeAggregator
+          .weightingStaticAggregator(subWeights.build(), ImmutableMap.of()));
+    }
+    return WeightingGradeAggregator.weightingStaticAggregator(weights.build(), subs.build());
+  }
+
+  public MarksTree getMarks(Random random) {
+    final ImmutableMap.Builder<Criterion, MarksTree> marks = ImmutableMap.builder();
+    for (int i = 1; i <= nbCriteria; ++i) {
+      final ImmutableMap.Builder<Criterion, Mark> subMarks = ImmutableMap.builder();
+      for (int j = 1; j <= nbSubCriteria; ++j) {
+        subMarks.put(subCriterion(i, j),
+            Mark.given(random.nextInt(5) / 4d, "Comment " + random.nextInt(100)));
+      }
+      marks.put(criterion(i), MarksTree.composite(subMarks.build()));
+    }
+    return MarksTree.composite(marks.build());
+  }
+
+  public ImmutableMap<GitHubUsername, MarksTree> getMarks(int nbStudents, long seed) {
+    final Random random = new Random(seed);
+    final ImmutableMap.Builder<GitHubUsername, MarksTree> builder = ImmutableMap.builder();
+    for (int s = 0; s < nbStudents; ++s) {
+      builder.put(GitHubUsername.given("student" + s), getMarks(random));
+    }
+    return builder.build();
+  }
+
+  public Exam getExam(int nbStudents, long seed) {
+    return new Exam(getAggregator(), getMarks(nbStudents, seed));
+  }
+}
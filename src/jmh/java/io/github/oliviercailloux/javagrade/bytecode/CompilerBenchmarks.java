@@ -0,0 +1,75 @@
+package io.github.oliviercailloux.javagrade.bytecode;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.MoreFiles;
+import io.github.classgraph.ClassGraph;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compiling the sample projects of the javagrade tests, with javac and with ECJ, against the class
+ * path of the benchmarks (which contains Guava and this library, as the samples require).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CompilerBenchmarks {
+  @Param({"score/full impl", "score/bad impl", "chess/chess full impl"})
+  public String project;
+
+  private ImmutableList<Path> classPath;
+  private ImmutableSet<Path> sources;
+  private Path destination;
+
+  @Setup
+  public void setup() throws IOException, URISyntaxException {
+    final Path root = Path.of(CompilerBenchmarks.class
+        .getResource("/io/github/oliviercailloux/javagrade/ex/" + project).toURI());
+    try (Stream<Path> paths = Files.walk(root.resolve("src"))) {
+      sources = paths.filter(p -> p.toString().endsWith(".java"))
+          .collect(ImmutableSet.toImmutableSet());
+    }
+    classPath = new ClassGraph().getClasspathFiles().stream().map(File::toPath)
+        .collect(ImmutableList.toImmutableList());
+    destination = Files.createTempDirectory("compiled");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    MoreFiles.deleteRecursively(destination);
+  }
+
+  @Benchmark
+  public ImmutableList<Diagnostic<? extends JavaFileObject>> javac() {
+    return Compiler.compile(classPath, destination, sources);
+  }
+
+  @Benchmark
+  public Compiler.CompilationResult ecj() throws IOException {
+    return Compiler.eclipseCompile(classPath, sources, false, Optional.of(destination));
+  }
+}
@@ -0,0 +1,78 @@
+package io.github.oliviercailloux.javagrade.bytecode;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.MoreFiles;
+import io.github.oliviercailloux.jaris.exceptions.TryCatchAll;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up and invoking code compiled from the sample sources used by the instanciator tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstanciatorBenchmarks {
+  private static final String CLASS_NAME = "io.github.oliviercailloux.bytecode.MyIdentityFunction";
+
+  private Path work;
+  private URLClassLoader loader;
+  private Instanciator instanciator;
+  private Object function;
+
+  @Setup
+  public void setup() throws IOException, URISyntaxException {
+    final Path source = Path.of(InstanciatorBenchmarks.class
+        .getResource("/io/github/oliviercailloux/bytecode/MyIdentityFunction.java").toURI());
+    work = Files.createTempDirectory("instanciator");
+    Compiler.intolerant(ImmutableList.of(), work).compileSrcs(ImmutableList.of(source));
+    loader = new URLClassLoader(new URL[] {work.toUri().toURL()},
+        InstanciatorBenchmarks.class.getClassLoader());
+    instanciator = Instanciator.given(loader);
+    function = instanciator.getInstance(Function.class, "newInstance").orElseThrow();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    loader.close();
+    MoreFiles.deleteRecursively(work);
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Benchmark
+  public Optional<Function> lookUp() {
+    return instanciator.getInstance(Function.class, "newInstance");
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Benchmark
+  public TryCatchAll<Optional<Function>> invokeStatic() {
+    return instanciator.invokeStatic(CLASS_NAME, Function.class, "newInstance", ImmutableList.of());
+  }
+
+  @Benchmark
+  public TryCatchAll<Optional<String>> invoke() {
+    return Instanciator.invoke(function, String.class, "apply", "t");
+  }
+}
@@ -0,0 +1,341 @@
+package io.github.oliviercailloux.git;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Verify.verify;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.Graph;
+import io.github.oliviercailloux.git.filter.GitHistorySimple;
+import io.github.oliviercailloux.gitjfs.GitPathRootShaCached;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of a commit graph (whose edges go from parents to children, as in
+ * {@link GitHistorySimple#graph()}) answering ancestry queries without walking the graph each
+ * time.
+ * <p>
+ * Commits get dense ids in a topological order (parents first, ties broken by the iteration order
+ * of the graph), parents and children are stored as compressed sparse row arrays, and each commit
+ * has a generation number (one for a root, one more than the maximal generation of its parents
+ * otherwise), so that a commit of generation not lower than the one of another commit can’t be
+ * its strict ancestor. The ancestors and descendants of a commit are computed at most once, as
+ * bit sets over the ids; a walk stops at the commits whose set is known already.
+ * </p>
+ * <p>
+ * Instances are safe for use by multiple threads.
+ * </p>
+ *
+ * @param <N> the type of the commits
+ */
+public class CommitGraphIndex<N> {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(CommitGraphIndex.class);
+
+  /**
+   * Weak keys, thus compared by identity, which suffices as graders keep the history they grade.
+   */
+  private static final LoadingCache<GitHistorySimple,
+      CommitGraphIndex<GitPathRootShaCached>> INDICES =
+          CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(h -> given(h.graph())));
+
+  /**
+   * @param graph must be directed and acyclic, with edges from parents to children
+   */
+  public static <N> CommitGraphIndex<N> given(Graph<N> graph) {
+    return new CommitGraphIndex<>(graph);
+  }
+
+  /**
+   * Returns the index of the graph of the given history, built at the first call for that history.
+   */
+  public static CommitGraphIndex<GitPathRootShaCached> of(GitHistorySimple history) {
+    return INDICES.getUnchecked(history);
+  }
+
+  private final ImmutableList<N> nodes;
+  private final ImmutableMap<N, Integer> ids;
+  private final int[] parentsStart;
+  private final int[] parents;
+  private final int[] childrenStart;
+  private final int[] children;
+  private final int[] generations;
+  private final AtomicReferenceArray<BitSet> ancestors;
+  private final AtomicReferenceArray<BitSet> descendants;
+
+  private CommitGraphIndex(Graph<N> graph) {
+    checkArgument(graph.isDirected());
+    final Set<N> graphNodes = graph.nodes();
+    final int n = graphNodes.size();
+
+    final ImmutableMap.Builder<N, Integer> inputIdsBuilder =
+        ImmutableMap.builderWithExpectedSize(n);
+    int i = 0;
+    for (N node : graphNodes) {
+      inputIdsBuilder.put(node, i++);
+    }
+    final ImmutableMap<N, Integer> inputIds = inputIdsBuilder.build();
+    final ImmutableList<N> inputNodes = inputIds.keySet().asList();
+
+    /* Kahn, with a queue, taking roots in the iteration order of the graph. */
+    final int[] remainingParents = new int[n];
+    final int[] order = new int[n];
+    int head = 0;
+    int tail = 0;
+    for (int j = 0; j < n; ++j) {
+      remainingParents[j] = graph.predecessors(inputNodes.get(j)).size();
+      if (remainingParents[j] == 0) {
+        order[tail++] = j;
+      }
+    }
+    while (head != tail) {
+      final int current = order[head++];
+      for (N child : graph.successors(inputNodes.get(current))) {
+        final int c = inputIds.get(child);
+        --remainingParents[c];
+        if (remainingParents[c] == 0) {
+          order[tail++] = c;
+        }
+      }
+    }
+    checkArgument(tail == n, "Not a DAG.");
+
+    final ImmutableList.Builder<N> nodesBuilder = ImmutableList.builderWithExpectedSize(n);
+    final ImmutableMap.Builder<N, Integer> idsBuilder = ImmutableMap.builderWithExpectedSize(n);
+    for (int id = 0; id < n; ++id) {
+      final N node = inputNodes.get(order[id]);
+      nodesBuilder.add(node);
+      idsBuilder.put(node, id);
+    }
+    nodes = nodesBuilder.build();
+    ids = idsBuilder.build();
+
+    parentsStart = new int[n + 1];
+    childrenStart = new int[n + 1];
+    for (int id = 0; id < n; ++id) {
+      parentsStart[id + 1] = parentsStart[id] + graph.predecessors(nodes.get(id)).size();
+      childrenStart[id + 1] = childrenStart[id] + graph.successors(nodes.get(id)).size();
+    }
+    parents = new int[parentsStart[n]];
+    children = new int[childrenStart[n]];
+    generations = new int[n];
+    for (int id = 0; id < n; ++id) {
+      int p = parentsStart[id];
+      int generation = 1;
+      for (N parent : graph.predecessors(nodes.get(id))) {
+        final int parentId = ids.get(parent);
+        verify(parentId < id);
+        parents[p++] = parentId;
+        generation = Math.max(generation, generations[parentId] + 1);
+      }
+      generations[id] = generation;
+      int c = childrenStart[id];
+      for (N child : graph.successors(nodes.get(id))) {
+        children[c++] = ids.get(child);
+      }
+    }
+
+    ancestors = new AtomicReferenceArray<>(n);
+    descendants = new AtomicReferenceArray<>(n);
+  }
+
+  private int getId(N node) {
+    final Integer id = ids.get(node);
+    checkArgument(id != null, node);
+    return id;
+  }
+
+  private ImmutableSet<N> asSet(BitSet bits) {
+    final ImmutableSet.Builder<N> builder =
+        ImmutableSet.builderWithExpectedSize(bits.cardinality());
+    for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+      builder.add(nodes.get(id));
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return the commits, parents first.
+   */
+  public ImmutableList<N> getNodes() {
+    return nodes;
+  }
+
+  public ImmutableSet<N> getParents(N node) {
+    final int id = getId(node);
+    final ImmutableSet.Builder<N> builder = ImmutableSet.builder();
+    for (int p = parentsStart[id]; p < parentsStart[id + 1]; ++p) {
+      builder.add(nodes.get(parents[p]));
+    }
+    return builder.build();
+  }
+
+  public ImmutableSet<N> getChildren(N node) {
+    final int id = getId(node);
+    final ImmutableSet.Builder<N> builder = ImmutableSet.builder();
+    for (int c = childrenStart[id]; c < childrenStart[id + 1]; ++c) {
+      builder.add(nodes.get(children[c]));
+    }
+    return builder.build();
+  }
+
+  public int getGeneration(N node) {
+    return generations[getId(node)];
+  }
+
+  /**
+   * Returns {@code true} iff the first commit is the second one or one of its ancestors (as
+   * <code>git merge-base --is-ancestor</code>).
+   */
+  public boolean isAncestor(N ancestor, N descendant) {
+    final int a = getId(ancestor);
+    final int d = getId(descendant);
+    if (a == d) {
+      return true;
+    }
+    if (generations[a] >= generations[d]) {
+      return false;
+    }
+    final BitSet knownDescendants = descendants.get(a);
+    if (knownDescendants != null) {
+      return knownDescendants.get(d);
+    }
+    return ancestorBits(d).get(a);
+  }
+
+  /**
+   * @return the given commit and its ancestors, parents first.
+   */
+  public ImmutableSet<N> getAncestors(N node) {
+    return asSet(ancestorBits(getId(node)));
+  }
+
+  /**
+   * @return the given commit and its descendants, parents first; the same set as
+   *         {@link com.google.common.graph.Graphs#reachableNodes}.
+   */
+  public ImmutableSet<N> getDescendants(N node) {
+    return asSet(descendantBits(getId(node)));
+  }
+
+  /**
+   * @return the given commits and their descendants, parents first.
+   */
+  public ImmutableSet<N> getReachable(Collection<N> starts) {
+    final BitSet reachable = new BitSet(nodes.size());
+    for (N start : starts) {
+      reachable.or(descendantBits(getId(start)));
+    }
+    return asSet(reachable);
+  }
+
+  /**
+   * Returns the given commits and their descendants in the order of breadth-first traversals from
+   * each start in turn, a commit coming at its first visit: the same sequence as the concatenation
+   * of {@link com.google.common.graph.Graphs#reachableNodes} from each start, duplicates removed.
+   */
+  public ImmutableSet<N> getReachableBreadthFirst(Collection<N> starts) {
+    final BitSet visited = new BitSet(nodes.size());
+    final int[] queue = new int[nodes.size()];
+    final ImmutableSet.Builder<N> builder = ImmutableSet.builder();
+    for (N start : starts) {
+      final int startId = getId(start);
+      if (visited.get(startId)) {
+        continue;
+      }
+      /*
+       * The commits already visited are descendants of a previous start, thus so are their own
+       * descendants: skipping them does not change the order in which the others are visited.
+       */
+      int head = 0;
+      int tail = 0;
+      visited.set(startId);
+      queue[tail++] = startId;
+      while (head != tail) {
+        final int current = queue[head++];
+        builder.add(nodes.get(current));
+        for (int c = childrenStart[current]; c < childrenStart[current + 1]; ++c) {
+          final int child = children[c];
+          if (!visited.get(child)) {
+            visited.set(child);
+            queue[tail++] = child;
+          }
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the best common ancestors of the given commits: the common ancestors that are not
+   * ancestors of another common ancestor (as <code>git merge-base --all</code>).
+   *
+   * @return the merge bases, parents first; empty iff the commits share no ancestor.
+   */
+  public ImmutableSet<N> getMergeBases(N first, N second) {
+    final BitSet common = (BitSet) ancestorBits(getId(first)).clone();
+    common.and(ancestorBits(getId(second)));
+    final BitSet dominated = new BitSet(nodes.size());
+    final BitSet bases = new BitSet(nodes.size());
+    for (int id = common.previousSetBit(nodes.size() - 1); id >= 0;
+        id = common.previousSetBit(id - 1)) {
+      if (!dominated.get(id)) {
+        bases.set(id);
+        dominated.or(ancestorBits(id));
+      }
+    }
+    return asSet(bases);
+  }
+
+  private BitSet ancestorBits(int id) {
+    return closure(id, parentsStart, parents, ancestors);
+  }
+
+  private BitSet descendantBits(int id) {
+    return closure(id, childrenStart, children, descendants);
+  }
+
+  /**
+   * Returns (without copying, thus, it must not be modified) the set of nodes reachable from the
+   * given one following the given edges, including itself, computing and caching it if needed.
+   */
+  private BitSet closure(int id, int[] edgesStart, int[] edges,
+      AtomicReferenceArray<BitSet> cache) {
+    final BitSet known = cache.get(id);
+    if (known != null) {
+      return known;
+    }
+    final BitSet reached = new BitSet(nodes.size());
+    final int[] stack = new int[nodes.size()];
+    int size = 0;
+    reached.set(id);
+    stack[size++] = id;
+    while (size != 0) {
+      final int current = stack[--size];
+      for (int e = edgesStart[current]; e < edgesStart[current + 1]; ++e) {
+        final int next = edges[e];
+        if (reached.get(next)) {
+          continue;
+        }
+        final BitSet nextKnown = cache.get(next);
+        if (nextKnown != null) {
+          reached.or(nextKnown);
+        } else {
+          reached.set(next);
+          stack[size++] = next;
+        }
+      }
+    }
+    cache.compareAndSet(id, null, reached);
+    return cache.get(id);
+  }
+}
@@ -0,0 +1,288 @@
+package io.github.oliviercailloux.git;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Verify.verify;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.graph.Graph;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.ImmutableGraph;
+import io.github.oliviercailloux.git.filter.GitHistory;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * The same information and the same consistent push dates as {@link GitHubHistory}, computed over
+ * dense integer commit ids rather than over maps and graphs of object ids, to keep allocations low
+ * when histories are large or numerous.
+ * <p>
+ * The graph is stored as two compressed sparse row arrays (successors and predecessors of each
+ * commit, in the iteration order of the given graph), dates are stored as epoch nanoseconds (thus
+ * must lie between years 1677 and 2262), and the patch of the push dates is computed in one
+ * linear pass in each direction, visiting commits in the same order as {@link GitHubHistory}, so
+ * that ties are broken identically.
+ * </p>
+ */
+public class CompactGitHubHistory {
+  private static final long UNKNOWN_CEILING = Long.MAX_VALUE;
+  private static final long UNKNOWN_FLOOR = Long.MIN_VALUE;
+
+  /**
+   * @param authorDates must be complete
+   * @param commitDates must be complete
+   * @param pushDates may be incomplete
+   */
+  public static CompactGitHubHistory create(Graph<ObjectId> commits,
+      Map<ObjectId, Instant> authorDates, Map<ObjectId, Instant> commitDates,
+      Map<ObjectId, Instant> pushDates) {
+    return new CompactGitHubHistory(commits, authorDates, commitDates, pushDates);
+  }
+
+  private static long toNanos(Instant instant) {
+    return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L),
+        instant.getNano());
+  }
+
+  private static Instant toInstant(long nanos) {
+    return Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+        Math.floorMod(nanos, 1_000_000_000L));
+  }
+
+  private final ObjectId[] oids;
+  private final ImmutableMap<ObjectId, Integer> ids;
+  private final int[] successorsStart;
+  private final int[] successors;
+  private final int[] predecessorsStart;
+  private final int[] predecessors;
+  private final long[] authorDates;
+  private final long[] commitDates;
+  private final long[] pushDates;
+  private final boolean[] knownPushDates;
+  private final long[] consistentPushDates;
+  /**
+   * For each commit, the commit whose reported push date it has been given, or itself.
+   */
+  private final int[] patch;
+
+  private CompactGitHubHistory(Graph<ObjectId> commits, Map<ObjectId, Instant> authorDates,
+      Map<ObjectId, Instant> commitDates, Map<ObjectId, Instant> pushDates) {
+    final Set<ObjectId> nodes = commits.nodes();
+    final int n = nodes.size();
+    oids = nodes.toArray(new ObjectId[n]);
+    final ImmutableMap.Builder<ObjectId, Integer> idsBuilder =
+        ImmutableMap.builderWithExpectedSize(n);
+    for (int i = 0; i < n; ++i) {
+      idsBuilder.put(oids[i], i);
+    }
+    ids = idsBuilder.build();
+
+    successorsStart = new int[n + 1];
+    predecessorsStart = new int[n + 1];
+    for (int i = 0; i < n; ++i) {
+      successorsStart[i + 1] = successorsStart[i] + commits.successors(oids[i]).size();
+      predecessorsStart[i + 1] = predecessorsStart[i] + commits.predecessors(oids[i]).size();
+    }
+    successors = new int[successorsStart[n]];
+    predecessors = new int[predecessorsStart[n]];
+    for (int i = 0; i < n; ++i) {
+      int s = successorsStart[i];
+      for (ObjectId successor : commits.successors(oids[i])) {
+        successors[s++] = ids.get(successor);
+      }
+      int p = predecessorsStart[i];
+      for (ObjectId predecessor : commits.predecessors(oids[i])) {
+        predecessors[p++] = ids.get(predecessor);
+      }
+    }
+
+    this.authorDates = new long[n];
+    this.commitDates = new long[n];
+    this.pushDates = new long[n];
+    knownPushDates = new boolean[n];
+    for (int i = 0; i < n; ++i) {
+      final Instant author = authorDates.get(oids[i]);
+      final Instant commit = commitDates.get(oids[i]);
+      checkArgument(author != null && commit != null, oids[i]);
+      this.authorDates[i] = toNanos(author);
+      this.commitDates[i] = toNanos(commit);
+      final Instant push = pushDates.get(oids[i]);
+      knownPushDates[i] = push != null;
+      this.pushDates[i] = push == null ? UNKNOWN_CEILING : toNanos(push);
+    }
+
+    patch = new int[n];
+    final long[] ceilings = Arrays.copyOf(this.pushDates, n);
+    lower(successorsStart, successors, predecessorsStart, predecessors, ceilings, patch, false);
+
+    final long[] floors = new long[n];
+    for (int i = 0; i < n; ++i) {
+      floors[i] = knownPushDates[i] ? ceilings[i] : UNKNOWN_FLOOR;
+    }
+    final int[] unknownsPatch = new int[n];
+    lower(predecessorsStart, predecessors, successorsStart, successors, floors, unknownsPatch,
+        true);
+    for (int i = 0; i < n; ++i) {
+      verify(unknownsPatch[i] == i || !knownPushDates[i]);
+    }
+    consistentPushDates = floors;
+  }
+
+  /**
+   * Starting with nodes with no successor, lowers (or, if reversed, raises) in place the value of
+   * each node to the “smallest” value among its descendants, visiting the nodes in the same order
+   * as {@link GitHubHistory}.
+   *
+   * @param originators filled with, for each node, the descendant (including itself) whose value
+   *        it has been given.
+   */
+  private static void lower(int[] successorsStart, int[] successors, int[] predecessorsStart,
+      int[] predecessors, long[] values, int[] originators, boolean reversed) {
+    final int n = values.length;
+    final int[] remainingVisits = new int[n];
+    final int[] queue = new int[n];
+    int head = 0;
+    int tail = 0;
+    Arrays.fill(originators, -1);
+    for (int i = 0; i < n; ++i) {
+      remainingVisits[i] = successorsStart[i + 1] - successorsStart[i];
+      if (remainingVisits[i] == 0) {
+        queue[tail++] = i;
+        originators[i] = i;
+      }
+    }
+    verify(n == 0 || tail != 0);
+
+    while (head != tail) {
+      final int successor = queue[head++];
+      final long successorValue = values[successor];
+      for (int p = predecessorsStart[successor]; p < predecessorsStart[successor + 1]; ++p) {
+        final int predecessor = predecessors[p];
+        final boolean change = reversed ? successorValue > values[predecessor]
+            : successorValue < values[predecessor];
+        if (change) {
+          values[predecessor] = successorValue;
+          originators[predecessor] = originators[successor];
+        }
+        --remainingVisits[predecessor];
+        if (remainingVisits[predecessor] == 0) {
+          queue[tail++] = predecessor;
+          if (originators[predecessor] == -1) {
+            originators[predecessor] = predecessor;
+          }
+        }
+      }
+    }
+    verify(tail == n, "Not a DAG.");
+  }
+
+  private int getId(ObjectId oid) {
+    final Integer id = ids.get(oid);
+    checkArgument(id != null, oid);
+    return id;
+  }
+
+  private ImmutableMap<ObjectId, Instant> asMap(long[] dates, boolean[] filter) {
+    final ImmutableMap.Builder<ObjectId, Instant> builder =
+        ImmutableMap.builderWithExpectedSize(oids.length);
+    for (int i = 0; i < oids.length; ++i) {
+      if (filter == null || filter[i]) {
+        builder.put(oids[i], toInstant(dates[i]));
+      }
+    }
+    return builder.build();
+  }
+
+  public ImmutableGraph<ObjectId> getGraph() {
+    final ImmutableGraph.Builder<ObjectId> builder =
+        GraphBuilder.directed().expectedNodeCount(oids.length).<ObjectId>immutable();
+    for (int i = 0; i < oids.length; ++i) {
+      builder.addNode(oids[i]);
+      for (int s = successorsStart[i]; s < successorsStart[i + 1]; ++s) {
+        builder.putEdge(oids[i], oids[successors[s]]);
+      }
+    }
+    return builder.build();
+  }
+
+  public Instant getAuthorDate(ObjectId oid) {
+    return toInstant(authorDates[getId(oid)]);
+  }
+
+  public Instant getCommitDate(ObjectId oid) {
+    return toInstant(commitDates[getId(oid)]);
+  }
+
+  /**
+   * @return the push date reported for the given commit, if any.
+   */
+  public Optional<Instant> getPushDate(ObjectId oid) {
+    final int id = getId(oid);
+    return knownPushDates[id] ? Optional.of(toInstant(pushDates[id])) : Optional.empty();
+  }
+
+  /**
+   * @see GitHubHistory#getConsistentPushHistory()
+   */
+  public Instant getConsistentPushDate(ObjectId oid) {
+    return getConsistentPushDate(getId(oid));
+  }
+
+  private Instant getConsistentPushDate(int id) {
+    final long date = consistentPushDates[id];
+    return date == UNKNOWN_FLOOR ? Instant.MIN : toInstant(date);
+  }
+
+  public ImmutableMap<ObjectId, Instant> getAuthorDates() {
+    return asMap(authorDates, null);
+  }
+
+  public ImmutableMap<ObjectId, Instant> getCommitDates() {
+    return asMap(commitDates, null);
+  }
+
+  public ImmutableMap<ObjectId, Instant> getPushDates() {
+    return asMap(pushDates, knownPushDates);
+  }
+
+  /**
+   * @return the consistent push date of every commit (equal to {@link Instant#MIN} for those that
+   *         have no reported push date and no ancestor with a reported push date).
+   */
+  public ImmutableMap<ObjectId, Instant> getConsistentPushDates() {
+    final ImmutableMap.Builder<ObjectId, Instant> builder =
+        ImmutableMap.builderWithExpectedSize(oids.length);
+    for (int i = 0; i < oids.length; ++i) {
+      builder.put(oids[i], getConsistentPushDate(i));
+    }
+    return builder.build();
+  }
+
+  public GitHistory getAuthorHistory() {
+    return GitHistory.create(getGraph(), getAuthorDates());
+  }
+
+  public GitHistory getCommitterHistory() {
+    return GitHistory.create(getGraph(), getCommitDates());
+  }
+
+  public GitHistory getConsistentPushHistory() {
+    return GitHistory.create(getGraph(), getConsistentPushDates());
+  }
+
+  /**
+   * @see GitHubHistory#getPatchedPushCommits()
+   */
+  public ImmutableGraph<ObjectId> getPatchedPushCommits() {
+    final ImmutableGraph.Builder<ObjectId> builder = GraphBuilder.directed().immutable();
+    for (int i = 0; i < oids.length; ++i) {
+      if (knownPushDates[i] && patch[i] != i) {
+        builder.putEdge(oids[i], oids[patch[i]]);
+      }
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,205 @@
+package io.github.oliviercailloux.git;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import com.google.common.base.VerifyException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.github.oliviercailloux.jaris.exceptions.Try;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LsRemoteCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists the branches and tags of remote repositories without fetching any object (as
+ * <code>git ls-remote</code> does), for many repositories concurrently, remembering the answers.
+ * <p>
+ * Successful probes are cached by URI until {@link #invalidate(String)} or
+ * {@link #invalidateAll()}; failed ones are not.
+ * </p>
+ */
+public class RemoteRefsProbe {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(RemoteRefsProbe.class);
+
+  /**
+   * The tips of the branches and tags of a remote repository, by short name (such as
+   * <code>main</code> or <code>v1.0</code>). Annotated tags are peeled to the commit they point
+   * to, when the remote tells.
+   */
+  public static record RemoteRefs(ImmutableMap<String, ObjectId> branches,
+      ImmutableMap<String, ObjectId> tags) {
+    public static RemoteRefs given(Collection<Ref> refs) {
+      final ImmutableMap.Builder<String, ObjectId> branches = ImmutableMap.builder();
+      final ImmutableMap.Builder<String, ObjectId> tags = ImmutableMap.builder();
+      for (Ref ref : refs) {
+        final String name = ref.getName();
+        if (ref.isSymbolic() || ref.getObjectId() == null) {
+          continue;
+        }
+        if (name.startsWith(Constants.R_HEADS)) {
+          branches.put(name.substring(Constants.R_HEADS.length()), ref.getObjectId());
+        } else if (name.startsWith(Constants.R_TAGS)) {
+          final ObjectId peeled = ref.getPeeledObjectId();
+          tags.put(name.substring(Constants.R_TAGS.length()),
+              peeled == null ? ref.getObjectId() : peeled);
+        }
+      }
+      return new RemoteRefs(branches.buildKeepingLast(), tags.buildKeepingLast());
+    }
+
+    public RemoteRefs {
+      checkNotNull(branches);
+      checkNotNull(tags);
+    }
+
+    public boolean hasBranch(String name) {
+      return branches.containsKey(name);
+    }
+
+    /**
+     * Branch names on some remotes do not have a consistent case (students create
+     * <code>End</code> instead of <code>end</code>).
+     */
+    public boolean hasBranchIgnoringCase(String name) {
+      return branches.keySet().stream().anyMatch(b -> b.equalsIgnoreCase(name));
+    }
+
+    public Optional<ObjectId> getBranchTip(String name) {
+      return Optional.ofNullable(branches.get(name));
+    }
+
+    public boolean hasTag(String name) {
+      return tags.containsKey(name);
+    }
+
+    public Optional<ObjectId> getTagTip(String name) {
+      return Optional.ofNullable(tags.get(name));
+    }
+  }
+
+  public static RemoteRefsProbe create() {
+    return new RemoteRefsProbe();
+  }
+
+  private int parallelism;
+  private Duration timeout;
+  private Optional<CredentialsProvider> credentials;
+  private final Map<String, RemoteRefs> cache;
+
+  private RemoteRefsProbe() {
+    parallelism = 8;
+    timeout = Duration.ofSeconds(30);
+    credentials = Optional.empty();
+    cache = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Sets the maximal number of remotes probed simultaneously, default 8.
+   */
+  public RemoteRefsProbe setParallelism(int parallelism) {
+    checkArgument(parallelism >= 1);
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Sets the time-out of the connection to each remote, default 30 seconds (rounded to seconds).
+   */
+  public RemoteRefsProbe setTimeout(Duration timeout) {
+    checkArgument(timeout.getSeconds() >= 1);
+    this.timeout = timeout;
+    return this;
+  }
+
+  public RemoteRefsProbe setCredentials(Optional<CredentialsProvider> credentials) {
+    this.credentials = checkNotNull(credentials);
+    return this;
+  }
+
+  /**
+   * Returns the refs of the given remote, from the cache if it has been probed successfully
+   * already.
+   */
+  public RemoteRefs getRefs(String uri) throws GitAPIException {
+    final RemoteRefs known = cache.get(uri);
+    if (known != null) {
+      return known;
+    }
+    final LsRemoteCommand command = Git.lsRemoteRepository().setRemote(uri).setHeads(true)
+        .setTags(true).setTimeout(Math.toIntExact(timeout.getSeconds()));
+    credentials.ifPresent(command::setCredentialsProvider);
+    final RemoteRefs refs = RemoteRefs.given(command.callAsMap().values());
+    LOGGER.debug("Refs of {}: {}.", uri, refs);
+    cache.put(uri, refs);
+    return refs;
+  }
+
+  /**
+   * Probes the given remotes concurrently (in at most the number of threads set by
+   * {@link #setParallelism(int)}).
+   *
+   * @return the outcome of each probe, in the order of the given remotes.
+   */
+  public ImmutableMap<String, Try<RemoteRefs, GitAPIException>> getRefs(Collection<String> uris) {
+    final ImmutableList<String> distinct = ImmutableSet.copyOf(uris).asList();
+    final ImmutableList<Callable<Try<RemoteRefs, GitAPIException>>> probes =
+        distinct.stream().map(u -> (Callable<Try<RemoteRefs, GitAPIException>>) () -> probe(u))
+            .collect(ImmutableList.toImmutableList());
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, distinct.size())));
+    final ImmutableMap.Builder<String, Try<RemoteRefs, GitAPIException>> results =
+        ImmutableMap.builder();
+    try {
+      final List<Future<Try<RemoteRefs, GitAPIException>>> futures = executor.invokeAll(probes);
+      for (int i = 0; i < distinct.size(); ++i) {
+        results.put(distinct.get(i), futures.get(i).get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new VerifyException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+    return results.build();
+  }
+
+  private Try<RemoteRefs, GitAPIException> probe(String uri) {
+    final Try<RemoteRefs, GitAPIException> result = Try.get(() -> getRefs(uri));
+    if (!result.isSuccess()) {
+      LOGGER.warn("Could not list refs of {}.", uri);
+    }
+    return result;
+  }
+
+  public void invalidate(String uri) {
+    cache.remove(uri);
+  }
+
+  public void invalidateAll() {
+    cache.clear();
+  }
+}
@@ -0,0 +1,262 @@
+package io.github.oliviercailloux.git.fixtures;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import io.github.oliviercailloux.git.common.GitUri;
+import io.github.oliviercailloux.git.github.model.RepositoryCoordinates;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.client.ClientResponseContext;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Where the grading pipeline obtains its external inputs: GitHub API responses, repositories, and
+ * input files such as <code>usernames.json</code>.
+ * <p>
+ * {@link #live() Live}, the pipeline queries GitHub and clones from it. {@link #recordingTo(Path)
+ * Recording}, it does the same, but also stores what it obtains in a directory:
+ * <code>http</code> holds the responses to the REST and GraphQL queries, keyed by request,
+ * <code>repositories/owner/name.git</code> a bare copy of each repository cloned, and
+ * <code>inputs</code> the input files read. {@link #replayingFrom(Path) Replaying}, it obtains all
+ * this from such a directory, without network: API queries go to a local server that answers
+ * with the recorded responses, and clones use <code>file://</code> remotes. Enable
+ * {@link io.github.oliviercailloux.grade.metrics.Metrics} to time each stage of a replayed run.
+ * </p>
+ * <p>
+ * The pipeline uses {@link #current()}, which is live unless set otherwise.
+ * </p>
+ */
+public class Fixtures implements AutoCloseable {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(Fixtures.class);
+
+  public static enum Mode {
+    LIVE, RECORDING, REPLAYING;
+  }
+
+  private static class RecordingFilter implements ClientResponseFilter {
+    private final HttpRecords records;
+
+    private RecordingFilter(HttpRecords records) {
+      this.records = checkNotNull(records);
+    }
+
+    @Override
+    public void filter(ClientRequestContext request, ClientResponseContext response)
+        throws IOException {
+      final byte[] body =
+          response.hasEntity() ? response.getEntityStream().readAllBytes() : new byte[0];
+      response.setEntityStream(new ByteArrayInputStream(body));
+      final String key =
+          HttpRecords.key(request.getMethod(), request.getUri(), request.getEntity());
+      records.write(key, request.getMethod(), request.getUri(), response.getStatus(),
+          response.getHeaders(), body);
+    }
+  }
+
+  private static class ReplayingFilter implements ClientRequestFilter {
+    private final URI base;
+
+    private ReplayingFilter(URI base) {
+      this.base = checkNotNull(base);
+    }
+
+    @Override
+    public void filter(ClientRequestContext request) {
+      final URI original = request.getUri();
+      request.getHeaders().putSingle(ReplayServer.KEY_HEADER,
+          HttpRecords.key(request.getMethod(), original, request.getEntity()));
+      final String query = original.getRawQuery() == null ? "" : "?" + original.getRawQuery();
+      request.setUri(URI.create(base + original.getRawPath() + query));
+    }
+  }
+
+  private static final Fixtures LIVE = new Fixtures(Mode.LIVE, null, null);
+
+  private static volatile Fixtures current = LIVE;
+
+  public static Fixtures live() {
+    return LIVE;
+  }
+
+  public static Fixtures recordingTo(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    return new Fixtures(Mode.RECORDING, directory, null);
+  }
+
+  /**
+   * Records the responses that the given origin provides instead of GitHub, as for generating
+   * fixtures: the origin is a request filter that aborts each request with a response.
+   */
+  public static Fixtures recordingTo(Path directory, ClientRequestFilter origin)
+      throws IOException {
+    Files.createDirectories(directory);
+    return new Fixtures(Mode.RECORDING, directory, checkNotNull(origin));
+  }
+
+  /**
+   * Starts a local server that replays the responses recorded in the given directory, until
+   * closed.
+   */
+  public static Fixtures replayingFrom(Path directory) throws IOException {
+    checkState(Files.isDirectory(directory), directory);
+    final Fixtures fixtures = new Fixtures(Mode.REPLAYING, directory, null);
+    fixtures.server = ReplayServer.serving(fixtures.records);
+    return fixtures;
+  }
+
+  public static Fixtures current() {
+    return current;
+  }
+
+  /**
+   * Sets the fixtures the pipeline uses. When these do not query GitHub, also provides a
+   * placeholder GitHub token (as the property <code>token_github_projects_review</code>) if none is
+   * set in the environment or as a property, as the API clients require one.
+   */
+  public static void setCurrent(Fixtures fixtures) {
+    current = checkNotNull(fixtures);
+    final boolean offline = fixtures.mode == Mode.REPLAYING || fixtures.origin != null;
+    if (offline && System.getenv("token_github_projects_review") == null
+        && System.getProperty("token_github_projects_review") == null) {
+      System.setProperty("token_github_projects_review", "replayed");
+    }
+  }
+
+  private final Mode mode;
+  /**
+   * {@code null} iff live.
+   */
+  private final Path directory;
+  private final HttpRecords records;
+  /**
+   * Answers instead of GitHub, if not {@code null}.
+   */
+  private final ClientRequestFilter origin;
+  /**
+   * Not {@code null} iff replaying.
+   */
+  private ReplayServer server;
+
+  private Fixtures(Mode mode, Path directory, ClientRequestFilter origin) {
+    this.mode = checkNotNull(mode);
+    this.directory = directory;
+    this.origin = origin;
+    records = directory == null ? null : HttpRecords.in(directory.resolve("http"));
+    server = null;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * @throws IllegalStateException iff live
+   */
+  public Path getDirectory() {
+    checkState(mode != Mode.LIVE);
+    return directory;
+  }
+
+  /**
+   * Registers on the given client what it takes to record or replay its exchanges, if anything.
+   */
+  public void configure(Client client) {
+    switch (mode) {
+      case LIVE -> {
+        /* Nothing to register. */
+      }
+      case RECORDING -> {
+        if (origin != null) {
+          client.register(origin);
+        }
+        client.register(new RecordingFilter(records));
+      }
+      case REPLAYING -> client.register(new ReplayingFilter(server.getBase()));
+      default -> throw new AssertionError(mode);
+    }
+  }
+
+  /**
+   * Reads the given input file; or, when replaying, the recorded file with the same name.
+   */
+  public String readInput(Path path) throws IOException {
+    final Path recorded =
+        mode == Mode.LIVE ? null : getRecordedInput(path.getFileName().toString());
+    if (mode == Mode.REPLAYING) {
+      return Files.readString(recorded);
+    }
+    final String content = Files.readString(path);
+    if (mode == Mode.RECORDING) {
+      Files.createDirectories(recorded.getParent());
+      Files.writeString(recorded, content);
+    }
+    return content;
+  }
+
+  /**
+   * Returns the URI to clone the given repository from: GitHub, or the recorded copy when
+   * replaying.
+   */
+  public GitUri getRemote(RepositoryCoordinates coordinates) {
+    if (mode == Mode.REPLAYING) {
+      return GitUri.fromUri(getRecordedRepository(coordinates).toUri());
+    }
+    return coordinates.asGitUri();
+  }
+
+  /**
+   * When recording, stores a bare copy of the given repository, cloned from the given coordinates,
+   * replacing any previous copy. Otherwise, does nothing.
+   */
+  public void recordRepository(RepositoryCoordinates coordinates, Repository cloned)
+      throws IOException {
+    if (mode != Mode.RECORDING) {
+      return;
+    }
+    final Path copy = getRecordedRepository(coordinates);
+    if (Files.exists(copy)) {
+      MoreFiles.deleteRecursively(copy, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+    Files.createDirectories(copy.getParent());
+    try (Git git = Git.cloneRepository().setURI(cloned.getDirectory().toURI().toString())
+        .setDirectory(copy.toFile()).setBare(true).setCloneAllBranches(true).call()) {
+      LOGGER.debug("Recorded {} to {}.", coordinates, copy);
+    } catch (GitAPIException e) {
+      throw new IOException(e);
+    }
+  }
+
+  Path getRecordedInput(String fileName) {
+    return directory.resolve("inputs").resolve(fileName);
+  }
+
+  Path getRecordedRepository(RepositoryCoordinates coordinates) {
+    return directory.resolve("repositories").resolve(coordinates.getOwner())
+        .resolve(coordinates.getRepositoryName() + ".git");
+  }
+
+  /**
+   * Stops the replay server, if any.
+   */
+  @Override
+  public void close() {
+    if (server != null) {
+      server.close();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package io.github.oliviercailloux.git.fixtures;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The HTTP responses recorded in a directory, each one under the key of the request that obtained
+ * it: its description in <code>key.json</code>, its body in <code>key.body</code>.
+ */
+class HttpRecords {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(HttpRecords.class);
+
+  /**
+   * Headers that describe the transfer rather than the response, thus not recorded.
+   */
+  private static final ImmutableSet<String> TRANSFER_HEADERS = ImmutableSet.of("connection",
+      "content-encoding", "content-length", "keep-alive", "transfer-encoding");
+
+  static record RecordedResponse(int status, ImmutableListMultimap<String, String> headers,
+      byte[] body) {
+    RecordedResponse {
+      checkNotNull(headers);
+      checkNotNull(body);
+    }
+  }
+
+  /**
+   * Returns the key identifying a request, the same in recording and in replaying runs.
+   *
+   * @param entity the request entity, {@code null} if none; identified by its string form
+   */
+  static String key(String method, URI uri, Object entity) {
+    final String request = method + " " + uri + "\n" + (entity == null ? "" : entity.toString());
+    return Hashing.sha256().hashString(request, StandardCharsets.UTF_8).toString();
+  }
+
+  static HttpRecords in(Path directory) {
+    return new HttpRecords(directory);
+  }
+
+  private final Path directory;
+
+  private HttpRecords(Path directory) {
+    this.directory = checkNotNull(directory);
+  }
+
+  void write(String key, String method, URI uri, int status,
+      Map<String, ? extends List<String>> headers, byte[] body) throws IOException {
+    checkArgument(!key.isEmpty());
+    final JsonObjectBuilder headersJson = Json.createObjectBuilder();
+    for (String name : headers.keySet()) {
+      if (!TRANSFER_HEADERS.contains(name.toLowerCase())) {
+        final JsonArrayBuilder values = Json.createArrayBuilder();
+        headers.get(name).forEach(values::add);
+        headersJson.add(name, values);
+      }
+    }
+    final JsonObject json = Json.createObjectBuilder().add("method", method)
+        .add("uri", uri.toString()).add("status", status).add("headers", headersJson).build();
+    Files.createDirectories(directory);
+    Files.write(directory.resolve(key + ".body"), body);
+    Files.writeString(directory.resolve(key + ".json"), json.toString());
+  }
+
+  Optional<RecordedResponse> read(String key) throws IOException {
+    final Path description = directory.resolve(key + ".json");
+    if (!Files.exists(description)) {
+      return Optional.empty();
+    }
+    final JsonObject json;
+    try (JsonReader reader = Json.createReader(new StringReader(Files.readString(description)))) {
+      json = reader.readObject();
+    }
+    final ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+    final JsonObject headersJson = json.getJsonObject("headers");
+    for (String name : headersJson.keySet()) {
+      headersJson.getJsonArray(name).getValuesAs(JsonString.class)
+          .forEach(v -> headers.put(name, v.getString()));
+    }
+    return Optional.of(new RecordedResponse(json.getInt("status"), headers.build(),
+        Files.readAllBytes(directory.resolve(key + ".body"))));
+  }
+}
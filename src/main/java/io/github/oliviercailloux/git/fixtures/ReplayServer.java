@@ -0,0 +1,95 @@
+package io.github.oliviercailloux.git.fixtures;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.oliviercailloux.git.fixtures.HttpRecords.RecordedResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local HTTP server that answers each request with the recorded response designated by its
+ * {@link #KEY_HEADER} header, or with a 404 status if there is none.
+ */
+class ReplayServer implements AutoCloseable {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReplayServer.class);
+
+  static final String KEY_HEADER = "X-Fixture-Key";
+
+  /**
+   * Starts serving, on the loopback interface and an ephemeral port.
+   */
+  static ReplayServer serving(HttpRecords records) throws IOException {
+    final ReplayServer replayServer = new ReplayServer(records);
+    replayServer.server.start();
+    LOGGER.debug("Replaying at {}.", replayServer.getBase());
+    return replayServer;
+  }
+
+  private final HttpRecords records;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  private ReplayServer(HttpRecords records) throws IOException {
+    this.records = checkNotNull(records);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+  }
+
+  /**
+   * @return the URI of the server, with an empty path.
+   */
+  URI getBase() {
+    final InetSocketAddress address = server.getAddress();
+    return URI.create(
+        "http://" + address.getAddress().getHostAddress() + ":" + address.getPort());
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      exchange.getRequestBody().readAllBytes();
+      final String key = exchange.getRequestHeaders().getFirst(KEY_HEADER);
+      final Optional<RecordedResponse> recorded =
+          key == null ? Optional.empty() : records.read(key);
+      if (recorded.isEmpty()) {
+        LOGGER.warn("No recorded response to {} {}.", exchange.getRequestMethod(),
+            exchange.getRequestURI());
+        final byte[] message = ("No recorded response to " + exchange.getRequestMethod() + " "
+            + exchange.getRequestURI() + ".").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(404, message.length);
+        exchange.getResponseBody().write(message);
+        return;
+      }
+      final RecordedResponse response = recorded.get();
+      response.headers().asMap()
+          .forEach((n, v) -> exchange.getResponseHeaders().put(n, ImmutableList.copyOf(v)));
+      final byte[] body = response.body();
+      exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(body);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -15,6 +15,7 @@ import com.google.common.graph.Graph;
 import com.google.common.graph.Graphs;
 import com.google.common.io.Resources;
 import io.github.oliviercailloux.git.GitHubHistory;
+import io.github.oliviercailloux.git.fixtures.Fixtures;
 import io.github.oliviercailloux.git.github.model.GitHubRealToken;
 import io.github.oliviercailloux.git.github.model.RepositoryCoordinates;
 import io.github.oliviercailloux.git.github.model.graphql.PushedDatesAnswer;
@@ -81,6 +82,7 @@ public class GitHubFetcherQL implements AutoCloseable {
     rateReset = null;
     client = ClientBuilder.newBuilder().connectTimeout(100, TimeUnit.SECONDS)
         .readTimeout(120, TimeUnit.SECONDS).build();
+    Fixtures.current().configure(client);
     // client = ClientBuilder.newClient();
     jsonBuilderFactory = Json.createBuilderFactory(null);
   }
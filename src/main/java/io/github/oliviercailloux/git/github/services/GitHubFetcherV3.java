@@ -11,6 +11,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.MoreCollectors;
+import io.github.oliviercailloux.git.fixtures.Fixtures;
 import io.github.oliviercailloux.git.github.model.GitHubToken;
 import io.github.oliviercailloux.git.github.model.RepositoryCoordinates;
 import io.github.oliviercailloux.git.github.model.RepositoryCoordinatesWithPrefix;
@@ -141,6 +142,7 @@ public class GitHubFetcherV3 implements AutoCloseable {
     rateLimit = "";
     rateReset = Instant.EPOCH;
     client = ClientBuilder.newClient();
+    Fixtures.current().configure(client);
     this.token = requireNonNull(token);
   }
 
@@ -6,7 +6,9 @@ import static com.google.common.base.Verify.verify;
 
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.github.oliviercailloux.git.filter.GitHistorySimple;
+import io.github.oliviercailloux.git.fixtures.Fixtures;
 import io.github.oliviercailloux.git.github.model.GitHubUsername;
 import io.github.oliviercailloux.grade.DeadlineGrader.LinearPenalizer;
 import io.github.oliviercailloux.grade.comm.StudentOnGitHub;
@@ -14,21 +16,25 @@ import io.github.oliviercailloux.grade.comm.json.JsonStudents;
 import io.github.oliviercailloux.grade.format.CsvGrades;
 import io.github.oliviercailloux.grade.format.HtmlGrades;
 import io.github.oliviercailloux.grade.format.json.JsonSimpleGrade;
+import io.github.oliviercailloux.grade.metrics.Metrics;
+import io.github.oliviercailloux.grade.metrics.MetricsReport;
+import io.github.oliviercailloux.grade.metrics.Stage;
 import io.github.oliviercailloux.jaris.collections.CollectionUtils;
 import io.github.oliviercailloux.jaris.throwing.TFunction;
 import io.github.oliviercailloux.jaris.throwing.TOptional;
 import io.github.oliviercailloux.jaris.throwing.TSupplier;
-import io.github.oliviercailloux.xml.XmlUtils;
+import io.github.oliviercailloux.utils.FileIndex;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.LinkedHashMap;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -92,9 +98,25 @@ public class BatchGitHistoryGrader<X extends Exception> {
 
   private Function<GitHubUsername, ImmutableMap<String, String>> effectiveIdentityFunction;
 
+  private Executor validationExecutor;
+
   private BatchGitHistoryGrader(TSupplier<GitFileSystemWithHistoryFetcher, X> fetcherFactory) {
     this.fetcherFactory = checkNotNull(fetcherFactory);
     effectiveIdentityFunction = null;
+    validationExecutor = MoreExecutors.directExecutor();
+  }
+
+  /**
+   * Sets the executor used to check the marks of each student against the aggregator, while the
+   * next students are being graded. By default, checks happen on the grading thread.
+   * <p>
+   * A rejected student does not stop the grading of the others: the rejections are logged, the
+   * files written contain the accepted students, and an {@link AggregatorException} is thrown
+   * once all students are graded.
+   * </p>
+   */
+  public void setValidationExecutor(Executor validationExecutor) {
+    this.validationExecutor = checkNotNull(validationExecutor);
   }
 
   public void setIdentityFunction(
@@ -109,7 +131,7 @@ public class BatchGitHistoryGrader<X extends Exception> {
 
     LOGGER.debug("Reading usernames.");
     final JsonStudents studentsReader =
-        JsonStudents.from(Files.readString(Path.of("usernames.json")));
+        JsonStudents.from(Fixtures.current().readInput(Path.of("usernames.json")));
     final ImmutableBiMap<GitHubUsername, StudentOnGitHub> students =
         studentsReader.getStudentsByGitHubUsername();
 
@@ -180,28 +202,46 @@ public class BatchGitHistoryGrader<X extends Exception> {
       TOptional<Path> outWithoutExtensionOpt, String docTitle) throws X, Y, IOException {
     final GradeAggregator whole = ext.getAggregator();
 
-    final LinkedHashMap<GitHubUsername, MarksTree> builder = new LinkedHashMap<>();
+    final Metrics metrics = Metrics.current();
+    final ExamBuilder builder = ExamBuilder.using(whole, validationExecutor);
     try (GitFileSystemWithHistoryFetcher fetcher = fetcherFactory.get()) {
 
       for (GitHubUsername author : fetcher.getAuthors()) {
-        final GitHistorySimple history = fetcher.goToFs(author);
-        final MarksTree byTimeGrade = ext.grade(author, history);
-        builder.put(author, byTimeGrade);
-        try {
-          Grade.given(whole, byTimeGrade);
-        } catch (AggregatorException e) {
-          // Files.writeString(Path.of("Marks.json"), JsonSimpleGrade.toJson(byTimeGrade));
-          // Files.writeString(Path.of("Aggregator.json"), JsonSimpleGrade.toJson(whole));
-          LOGGER.info("Failed aggregating at {}, obtained {} which fails with {}.", author,
-              byTimeGrade, whole);
-          throw e;
+        try (Metrics.Scope scope = metrics.forStudent(author.getUsername());
+            FileIndex.Scope files = FileIndex.share()) {
+          final GitHistorySimple history = fetcher.goToFs(author);
+          final MarksTree byTimeGrade;
+          try (Metrics.Timer timer = metrics.time(Stage.GRADING)) {
+            byTimeGrade = ext.grade(author, history);
+          }
+          builder.put(author, byTimeGrade);
+          metrics.increment("students");
+
+          if (outWithoutExtensionOpt.isPresent()) {
+            /* Writes the students checked so far, without waiting for the others. */
+            try (Metrics.Timer timer = metrics.time(Stage.OUTPUT)) {
+              write(builder.getAcceptedSoFar(), outWithoutExtensionOpt.orElseThrow(), docTitle);
+            }
+          }
         }
+      }
+    }
 
-        outWithoutExtensionOpt
-            .ifPresent(o -> write(new Exam(whole, ImmutableMap.copyOf(builder)), o, docTitle));
+    final ImmutableMap<GitHubUsername, AggregatorException> errors = builder.getErrors();
+    for (GitHubUsername author : errors.keySet()) {
+      LOGGER.info("Failed aggregating at {}, obtained {} which fails with {}: {}.", author,
+          builder.getMarksTree(author), whole, errors.get(author).getMessage());
+    }
+    if (outWithoutExtensionOpt.isPresent()) {
+      final Path out = outWithoutExtensionOpt.orElseThrow();
+      try (Metrics.Timer timer = metrics.time(Stage.OUTPUT)) {
+        write(builder.getAccepted(), out, docTitle);
+      }
+      if (metrics.isEnabled()) {
+        MetricsReport.write(metrics, out.resolveSibling(out.getFileName() + "-metrics"));
       }
     }
-    return new Exam(whole, ImmutableMap.copyOf(builder));
+    return builder.freeze();
   }
 
   public <Y extends Exception> Exam getAndWriteGrades(GitFsGrader<Y> grader, double userGradeWeight,
@@ -249,8 +289,9 @@ public class BatchGitHistoryGrader<X extends Exception> {
 
     final ImmutableMap<String, Grade> grades = exam.getUsernames().stream()
         .collect(ImmutableMap.toImmutableMap(GitHubUsername::getUsername, exam::getGrade));
-    final String html = XmlUtils.asString(HtmlGrades.asHtml(grades, docTitle, 20d));
-    Files.writeString(
-        outWithoutExtension.resolveSibling(outWithoutExtension.getFileName() + ".html"), html);
+    try (Writer html = Files.newBufferedWriter(
+        outWithoutExtension.resolveSibling(outWithoutExtension.getFileName() + ".html"))) {
+      HtmlGrades.writeHtml(grades, docTitle, 20d, html);
+    }
   }
 }
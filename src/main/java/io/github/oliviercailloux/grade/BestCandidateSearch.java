@@ -0,0 +1,163 @@
+package io.github.oliviercailloux.grade;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import com.google.common.base.VerifyException;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.github.oliviercailloux.jaris.throwing.TFunction;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Searches for a candidate maximizing a score, scoring up to a given number of candidates
+ * concurrently.
+ * <p>
+ * The result is the one of a sequential scan of the candidates in the given order: the first one
+ * whose score is at least the best possible one, if any; otherwise, the first one among those with
+ * the maximal score. Thus, the order of the candidates (for example, newest first) decides among
+ * ties and how early the search may stop. Similarly, a failure to score a candidate is thrown iff
+ * the sequential scan would have reached that candidate.
+ * </p>
+ * <p>
+ * As soon as a candidate obtains the best possible score, the candidates after it that have not
+ * started yet are abandoned. Those being scored are left to finish, and their scores ignored, as
+ * interrupting them could close channels that other threads share (such as the ones JGit reads
+ * pack files with). With a parallelism greater than one, the scorer must thus be safe to use
+ * concurrently. It runs in threads created for each search, which inherit the inheritable thread
+ * locals of the caller, such as its {@link io.github.oliviercailloux.grade.utils.LogCapture}.
+ * </p>
+ */
+public class BestCandidateSearch {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(BestCandidateSearch.class);
+
+  private static final BestCandidateSearch SEQUENTIAL = new BestCandidateSearch(1);
+
+  public static BestCandidateSearch sequential() {
+    return SEQUENTIAL;
+  }
+
+  public static BestCandidateSearch withParallelism(int parallelism) {
+    checkArgument(parallelism >= 1);
+    return new BestCandidateSearch(parallelism);
+  }
+
+  private final int parallelism;
+
+  private BestCandidateSearch(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Returns the maximal number of candidates scored simultaneously.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @return empty iff there is no candidate.
+   */
+  public <C, S extends Comparable<S>> Optional<C> getMaximizing(List<C> candidates,
+      TFunction<? super C, S, IOException> scorer, S bestPossible) throws IOException {
+    checkNotNull(scorer);
+    checkNotNull(bestPossible);
+    if (parallelism == 1 || candidates.size() <= 1) {
+      final Scan<C, S> scan = new Scan<>(bestPossible);
+      for (C candidate : candidates) {
+        if (scan.consider(candidate, scorer.apply(candidate))) {
+          break;
+        }
+      }
+      return scan.getBest();
+    }
+
+    final int nbCandidates = candidates.size();
+    /* The smallest index of a candidate that obtained the best possible score so far. */
+    final AtomicInteger stop = new AtomicInteger(nbCandidates);
+    final List<FutureTask<S>> tasks = new ArrayList<>(nbCandidates);
+    for (int i = 0; i < nbCandidates; ++i) {
+      final int index = i;
+      final C candidate = candidates.get(i);
+      tasks.add(new FutureTask<>(() -> {
+        final S score = scorer.apply(candidate);
+        if (score != null && score.compareTo(bestPossible) >= 0) {
+          final int previousStop = stop.getAndAccumulate(index, Math::min);
+          for (int j = index + 1; j < previousStop; ++j) {
+            tasks.get(j).cancel(false);
+          }
+        }
+        return score;
+      }));
+    }
+
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(parallelism, nbCandidates));
+    try {
+      tasks.forEach(executor::execute);
+      /*
+       * A task gets cancelled only after an earlier candidate obtained the best possible score,
+       * thus only after the point where this scan stops.
+       */
+      final Scan<C, S> scan = new Scan<>(bestPossible);
+      for (int i = 0; i < nbCandidates; ++i) {
+        if (scan.consider(candidates.get(i), tasks.get(i).get())) {
+          break;
+        }
+      }
+      return scan.getBest();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new VerifyException(e);
+    } finally {
+      tasks.forEach(t -> t.cancel(false));
+      executor.shutdown();
+      Uninterruptibles.awaitTerminationUninterruptibly(executor);
+    }
+  }
+
+  private static class Scan<C, S extends Comparable<S>> {
+    private final S bestPossible;
+    private C bestCandidate;
+    private S bestScore;
+
+    private Scan(S bestPossible) {
+      this.bestPossible = bestPossible;
+      bestCandidate = null;
+      bestScore = null;
+    }
+
+    /**
+     * @return {@code true} iff the scan should stop.
+     */
+    private boolean consider(C candidate, S score) {
+      checkArgument(score != null);
+      if (bestScore == null || bestScore.compareTo(score) < 0) {
+        bestScore = score;
+        bestCandidate = candidate;
+      }
+      LOGGER.debug("Considering {}, obtained score {}, current best {}.", candidate, score,
+          bestScore);
+      return bestScore.compareTo(bestPossible) >= 0;
+    }
+
+    private Optional<C> getBest() {
+      return Optional.ofNullable(bestCandidate);
+    }
+  }
+}
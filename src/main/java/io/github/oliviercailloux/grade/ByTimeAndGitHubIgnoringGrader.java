@@ -1,6 +1,7 @@
 package io.github.oliviercailloux.grade;
 
 import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import io.github.oliviercailloux.git.filter.GitHistorySimple;
@@ -86,14 +87,14 @@ public class ByTimeAndGitHubIgnoringGrader<X extends Exception> implements Grade
     final ImmutableSortedSet<Instant> tsFromTimer =
         ByTimeGrader.getTimestamps(beforeCommitByGitHub, deadline.toInstant(), Instant.MAX);
     LOGGER.debug("Tses from timer: {}.", tsFromTimer);
-    final ImmutableSet<GitHistorySimple> cappeds =
+    final ImmutableList<CapTimeline.Capped> cappeds =
         ByTimeGrader.getCapped(beforeCommitByGitHub, deadline.toInstant(), Instant.MAX);
     // final GitFileSystemHistory cappedOnly = Iterables.getOnlyElement(cappeds);
     // verify(cappedOnly.getLeaves().equals(noSuccs));
     final ImmutableSet.Builder<SubMarksTree> cappedBuilder = ImmutableSet.builder();
-    for (GitHistorySimple capped : cappeds) {
-      final MarksTree cappedGrade = delegate.grade(author, capped);
-      final Instant i = ByTimeGrader.cappedAt(capped);
+    for (CapTimeline.Capped capped : cappeds) {
+      final MarksTree cappedGrade = delegate.grade(author, capped.asHistory());
+      final Instant i = capped.getCappedAt().orElseThrow();
       final String cappingAt = cappeds.size() == 1 ? "No capping"
           : ("Capping at " + i.atZone(deadline.getZone()).toString());
       final String comment = cappingAt + commentGeneralCapped;
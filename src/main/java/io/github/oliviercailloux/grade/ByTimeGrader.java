@@ -4,12 +4,12 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Verify.verify;
 
 import com.google.common.collect.ImmutableBiMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Maps;
 import com.google.common.graph.Graph;
-import io.github.oliviercailloux.git.filter.GitFilteringFs;
 import io.github.oliviercailloux.git.filter.GitHistorySimple;
 import io.github.oliviercailloux.git.github.model.GitHubUsername;
 import io.github.oliviercailloux.gitjfs.Commit;
@@ -302,23 +302,19 @@ public class ByTimeGrader<X extends Exception> implements Grader<X> {
     return consideredTimestamps;
   }
 
-  public static ImmutableSet<GitHistorySimple> getCapped(GitHistorySimple history, Instant deadline,
-      Instant max) {
-    return getTimestamps(history, deadline, max).stream().map(c -> cap(history, c))
-        .collect(ImmutableSet.toImmutableSet());
-  }
-
-  private static GitHistorySimple cap(GitHistorySimple history, Instant cap) {
-    try {
-      final GitFilteringFs filteredFs =
-          GitFilteringFs.filter(history.fs(), c -> !history.getTimestamp(c.id()).isAfter(cap));
-      final GitHistorySimple filtered =
-          GitHistorySimple.create(filteredFs, history.getTimestamps());
-      final Instant last = ByTimeGrader.cappedAt(filtered);
-      verify(!last.isAfter(cap));
-      return filtered;
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
+  /**
+   * Returns the history capped at each of the timestamps given by
+   * {@link #getTimestamps(GitHistorySimple, Instant, Instant)}, obtained incrementally from a
+   * {@link CapTimeline}. Each capped history is filtered from the given one only when asked for.
+   */
+  public static ImmutableList<CapTimeline.Capped> getCapped(GitHistorySimple history,
+      Instant deadline, Instant max) {
+    final ImmutableSortedSet<Instant> caps = getTimestamps(history, deadline, max);
+    final ImmutableList<CapTimeline.Capped> cappeds = CapTimeline.given(history).cap(caps);
+    for (CapTimeline.Capped capped : cappeds) {
+      final Instant last = capped.getCappedAt().orElseThrow();
+      verify(!last.isAfter(capped.getCap()));
     }
+    return cappeds;
   }
 }
@@ -0,0 +1,230 @@
+package io.github.oliviercailloux.grade;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Verify.verify;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.graph.Graph;
+import io.github.oliviercailloux.git.filter.GitFilteringFs;
+import io.github.oliviercailloux.git.filter.GitHistorySimple;
+import io.github.oliviercailloux.gitjfs.GitPathRootShaCached;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.function.Supplier;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The commits of a history sorted once by timestamp, from which the history capped at successive
+ * instants is obtained incrementally.
+ * <p>
+ * The commits visible with a given cap (those whose timestamp is not after the cap) form a prefix
+ * of the sorted commits, thus, a capped view only records the length of its prefix. The maximal
+ * visible commits (those having no visible descendant) are maintained as the cap advances, each
+ * commit being marked as having a visible descendant at most once. Ties are visible together.
+ * The history corresponding to a view is built only when asked, and is identical to filtering the
+ * whole history by timestamp.
+ * </p>
+ */
+public class CapTimeline {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(CapTimeline.class);
+
+  public static CapTimeline given(GitHistorySimple history) {
+    return new CapTimeline(history);
+  }
+
+  /**
+   * The history capped at some instant.
+   */
+  public class Capped {
+    private final Instant cap;
+    private final int count;
+    private final ImmutableSet<ObjectId> maximal;
+    private final Supplier<GitHistorySimple> history;
+
+    private Capped(Instant cap, int count, ImmutableSet<ObjectId> maximal) {
+      this.cap = checkNotNull(cap);
+      this.count = count;
+      this.maximal = checkNotNull(maximal);
+      this.history = Suppliers.memoize(this::filter);
+    }
+
+    public Instant getCap() {
+      return cap;
+    }
+
+    public boolean isVisible(ObjectId commit) {
+      final Integer rank = ranks.get(commit);
+      if (rank == null) {
+        return !whole.getTimestamp(commit).isAfter(cap);
+      }
+      return rank < count;
+    }
+
+    /**
+     * @return the visible commits, by increasing timestamps.
+     */
+    public ImmutableList<ObjectId> getVisible() {
+      return sorted.subList(0, count);
+    }
+
+    /**
+     * @return the visible commits that have no visible descendant.
+     */
+    public ImmutableSet<ObjectId> getMaximal() {
+      return maximal;
+    }
+
+    /**
+     * @return the latest timestamp of the maximal visible commits, equivalently, of the leaves of
+     *         the capped history, if any commit is visible.
+     */
+    public Optional<Instant> getCappedAt() {
+      return maximal.stream().map(whole::getTimestamp).max(Comparator.naturalOrder());
+    }
+
+    /**
+     * @return the capped history, filtered from the whole one at the first call.
+     */
+    public GitHistorySimple asHistory() {
+      return history.get();
+    }
+
+    private GitHistorySimple filter() {
+      try {
+        final GitFilteringFs filteredFs =
+            GitFilteringFs.filter(whole.fs(), c -> isVisible(c.id()));
+        return GitHistorySimple.create(filteredFs, whole.getTimestamps());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private final GitHistorySimple whole;
+  private final ImmutableList<ObjectId> sorted;
+  private final Instant[] timestamps;
+  private final ImmutableMap<ObjectId, Integer> ranks;
+  /**
+   * By rank, the ranks of the parents.
+   */
+  private final int[][] parents;
+
+  private int count;
+  private final boolean[] covered;
+  private final Set<ObjectId> maximal;
+
+  private CapTimeline(GitHistorySimple history) {
+    this.whole = checkNotNull(history);
+    final Graph<GitPathRootShaCached> graph = history.graph();
+    sorted = graph.nodes().stream().map(n -> n.getCommit().id())
+        .sorted(Comparator.comparing((ObjectId o) -> history.getTimestamp(o)))
+        .collect(ImmutableList.toImmutableList());
+    final int n = sorted.size();
+    timestamps = sorted.stream().map(history::getTimestamp).toArray(Instant[]::new);
+    final ImmutableMap.Builder<ObjectId, Integer> ranksBuilder =
+        ImmutableMap.builderWithExpectedSize(n);
+    for (int i = 0; i < n; ++i) {
+      ranksBuilder.put(sorted.get(i), i);
+    }
+    ranks = ranksBuilder.build();
+    parents = new int[n][];
+    for (GitPathRootShaCached node : graph.nodes()) {
+      parents[ranks.get(node.getCommit().id())] = graph.predecessors(node).stream()
+          .mapToInt(p -> ranks.get(p.getCommit().id())).toArray();
+    }
+    covered = new boolean[n];
+    maximal = new LinkedHashSet<>();
+    count = 0;
+  }
+
+  /**
+   * @return the distinct timestamps of the commits, in increasing order.
+   */
+  public ImmutableSortedSet<Instant> getTimestamps() {
+    return ImmutableSortedSet.copyOf(Arrays.asList(timestamps));
+  }
+
+  /**
+   * Returns the history capped at the given instant. Asking for caps in increasing order costs,
+   * in total, a time linear in the size of the history (plus the size of the maximal sets).
+   */
+  public synchronized Capped cap(Instant cap) {
+    final int target = countNotAfter(cap);
+    if (target < count) {
+      reset();
+    }
+    while (count < target) {
+      add(count);
+      ++count;
+    }
+    return new Capped(cap, count, ImmutableSet.copyOf(maximal));
+  }
+
+  /**
+   * @return the history capped at each of the given instants, in the order of the given set.
+   */
+  public ImmutableList<Capped> cap(SortedSet<Instant> caps) {
+    return caps.stream().map(this::cap).collect(ImmutableList.toImmutableList());
+  }
+
+  private int countNotAfter(Instant cap) {
+    int low = 0;
+    int high = timestamps.length;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (timestamps[middle].isAfter(cap)) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  private void reset() {
+    count = 0;
+    Arrays.fill(covered, false);
+    maximal.clear();
+  }
+
+  private void add(int rank) {
+    if (!covered[rank]) {
+      maximal.add(sorted.get(rank));
+    }
+    final Deque<Integer> toCover = new ArrayDeque<>();
+    for (int parent : parents[rank]) {
+      toCover.add(parent);
+    }
+    while (!toCover.isEmpty()) {
+      final int ancestor = toCover.remove();
+      if (covered[ancestor]) {
+        /* Its ancestors are covered already. */
+        continue;
+      }
+      covered[ancestor] = true;
+      if (ancestor < count) {
+        final boolean removed = maximal.remove(sorted.get(ancestor));
+        verify(removed);
+      }
+      for (int parent : parents[ancestor]) {
+        toCover.add(parent);
+      }
+    }
+  }
+}
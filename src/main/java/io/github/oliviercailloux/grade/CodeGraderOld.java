@@ -12,6 +12,7 @@ import io.github.oliviercailloux.javagrade.JavaGradeUtils;
 import io.github.oliviercailloux.javagrade.bytecode.Compiler;
 import io.github.oliviercailloux.javagrade.bytecode.Compiler.CompilationResult;
 import io.github.oliviercailloux.javagrade.bytecode.Instanciator;
+import io.github.oliviercailloux.javagrade.bytecode.SourceScanner;
 import io.github.oliviercailloux.utils.Utils;
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -97,9 +98,7 @@ public interface CodeGraderOld<X extends Exception> extends PathGrader<X> {
       LOGGER.debug("No java files at {}.", srcDir);
       projectGrade = Mark.zero("No java files found");
     } else {
-      final int nbSuppressed = (int) CheckedStream.<Path, IOException>wrapping(javaPaths.stream())
-          .map(p -> Files.readString(p))
-          .flatMap(s -> Pattern.compile("@SuppressWarnings").matcher(s).results()).count();
+      final int nbSuppressed = SourceScanner.countSuppressWarnings(javaPaths);
 
       final int nbWarningsTot = eclipseResult.countWarnings() + nbSuppressed;
       final MarksTree codeGrade = JavaGradeUtils.markSecurely(compiledDir, this::gradeCode);
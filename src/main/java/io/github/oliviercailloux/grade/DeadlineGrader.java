@@ -24,6 +24,7 @@ import io.github.oliviercailloux.javagrade.JavaGradeUtils;
 import io.github.oliviercailloux.javagrade.bytecode.Compiler;
 import io.github.oliviercailloux.javagrade.bytecode.Compiler.CompilationResult;
 import io.github.oliviercailloux.javagrade.bytecode.Instanciator;
+import io.github.oliviercailloux.javagrade.bytecode.SourceScanner;
 import io.github.oliviercailloux.javagrade.testers.JavaMarkHelper;
 import io.github.oliviercailloux.utils.Utils;
 import java.io.IOException;
@@ -184,9 +185,7 @@ public class DeadlineGrader {
         LOGGER.debug("No java files at {}.", srcDir);
         projectGrade = Mark.zero("No java files found");
       } else {
-        final int nbSuppressed = (int) CheckedStream.<Path, IOException>wrapping(javaPaths.stream())
-            .map(p -> Files.readString(p))
-            .flatMap(s -> Pattern.compile("@SuppressWarnings").matcher(s).results()).count();
+        final int nbSuppressed = SourceScanner.countSuppressWarnings(javaPaths);
 
         final int nbWarningsTot = eclipseResult.countWarnings() + nbSuppressed;
         final boolean hasWarnings = nbWarningsTot > 0;
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static io.github.oliviercailloux.jaris.exceptions.Unchecker.IO_UNCHECKER;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -78,9 +79,9 @@ public class DoubleGrader implements Grader<IOException> {
         .map(t -> "; ignored commits after " + t.atZone(zone).toString() + ", sent by GitHub")
         .orElse("");
 
-    final ImmutableSet<GitHistorySimple> cappedsOriginal =
+    final ImmutableList<CapTimeline.Capped> cappedsOriginal =
         ByTimeGrader.getCapped(beforeCommitByGitHub, deadlineO, capO);
-    final ImmutableSet<GitHistorySimple> cappedsSecond =
+    final ImmutableList<CapTimeline.Capped> cappedsSecond =
         ByTimeGrader.getCapped(beforeCommitByGitHub, deadlineS, Instant.MAX);
 
     /*
@@ -94,7 +95,7 @@ public class DoubleGrader implements Grader<IOException> {
      */
     final Set<Cappings> allCappings = Sets.newLinkedHashSet();
     final ImmutableSet.Builder<SubMarksTree> cappedBuilder = ImmutableSet.builder();
-    for (GitHistorySimple cappedO : cappedsOriginal) {
+    for (CapTimeline.Capped cappedO : cappedsOriginal) {
       /*
        * Need to consider also the identical “second chance”, which may give more points (if others
        * have diffs, then only this one will have the original grade minus the penalty). Otherwise
@@ -102,21 +103,21 @@ public class DoubleGrader implements Grader<IOException> {
        *
        * Improvement: consider summing the latenesses.
        */
-      final ImmutableSet.Builder<GitHistorySimple> cappedOAndS = ImmutableSet.builder();
+      final ImmutableList.Builder<CapTimeline.Capped> cappedOAndS = ImmutableList.builder();
       cappedOAndS.add(cappedO);
       cappedOAndS.addAll(cappedsSecond);
-      for (GitHistorySimple cappedS : cappedOAndS.build()) {
-        final MarksTree old = gO.grade(author, cappedO);
-        final MarksTree second = gS.grade(author, cappedS);
-        final GitPathRootSha lastO = ByTimeGrader.last(cappedO);
-        final GitPathRootSha lastS = ByTimeGrader.last(cappedS);
-        final Instant cappedIO = ByTimeGrader.cappedAt(cappedO);
-        final Instant cappedIS = ByTimeGrader.cappedAt(cappedS);
+      for (CapTimeline.Capped cappedS : cappedOAndS.build()) {
+        final Instant cappedIO = cappedO.getCappedAt().orElseThrow();
+        final Instant cappedIS = cappedS.getCappedAt().orElseThrow();
         final Cappings cappings = new Cappings(cappedIO, cappedIS);
         if (allCappings.contains(cappings)) {
           LOGGER.debug("Be there, done that already: {}.", cappings);
           continue;
         }
+        final MarksTree old = gO.grade(author, cappedO.asHistory());
+        final MarksTree second = gS.grade(author, cappedS.asHistory());
+        final GitPathRootSha lastO = ByTimeGrader.last(cappedO.asHistory());
+        final GitPathRootSha lastS = ByTimeGrader.last(cappedS.asHistory());
         verify(!cappedIO.isAfter(capO), cappedIO.toString());
         final ImmutableSet<Path> javasOld =
             Files.find(lastO, Integer.MAX_VALUE, (p, a) -> matches(p))
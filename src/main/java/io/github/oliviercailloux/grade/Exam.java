@@ -1,9 +1,17 @@
 package io.github.oliviercailloux.grade;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.github.oliviercailloux.git.github.model.GitHubUsername;
+import jakarta.json.bind.annotation.JsonbCreator;
+import jakarta.json.bind.annotation.JsonbProperty;
 import jakarta.json.bind.annotation.JsonbPropertyOrder;
+import jakarta.json.bind.annotation.JsonbTransient;
+import java.util.Objects;
 
 /**
  * TODO a student may have an overriding mark, example, student was absent but submitted anyway, we
@@ -13,12 +21,52 @@ import jakarta.json.bind.annotation.JsonbPropertyOrder;
  * aggregation procedure, it seems? (In the sense of being the same exam.)
  */
 @JsonbPropertyOrder({"aggregator", "grades"})
-public record Exam (GradeAggregator aggregator, ImmutableMap<GitHubUsername, MarksTree> grades) {
-  public Exam(GradeAggregator aggregator, ImmutableMap<GitHubUsername, MarksTree> grades) {
-    this.aggregator = aggregator;
-    this.grades = grades;
-    /* Just to check that it doesn’t throw. */
-    getUsernames().stream().forEach(this::getGrade);
+public final class Exam {
+  /**
+   * Builds an exam from grades already obtained by aggregating the given marks with the given
+   * aggregator, thus without aggregating them again.
+   *
+   * @param checkedGrades the grade of each student, obtained from the given aggregator and marks.
+   */
+  static Exam given(GradeAggregator aggregator, ImmutableMap<GitHubUsername, MarksTree> grades,
+      ImmutableMap<GitHubUsername, Grade> checkedGrades) {
+    checkArgument(checkedGrades.keySet().equals(grades.keySet()));
+    return new Exam(aggregator, grades, checkedGrades);
+  }
+
+  private static ImmutableMap<GitHubUsername, Grade> aggregate(GradeAggregator aggregator,
+      ImmutableMap<GitHubUsername, MarksTree> grades) {
+    return grades.keySet().stream().collect(
+        ImmutableMap.toImmutableMap(u -> u, u -> Grade.given(aggregator, grades.get(u))));
+  }
+
+  private final GradeAggregator aggregator;
+  private final ImmutableMap<GitHubUsername, MarksTree> grades;
+  @JsonbTransient
+  private final ImmutableMap<GitHubUsername, Grade> aggregated;
+
+  /**
+   * @throws AggregatorException iff the aggregator rejects the marks of some student.
+   */
+  @JsonbCreator
+  public Exam(@JsonbProperty("aggregator") GradeAggregator aggregator,
+      @JsonbProperty("grades") ImmutableMap<GitHubUsername, MarksTree> grades) {
+    this(aggregator, grades, aggregate(aggregator, grades));
+  }
+
+  private Exam(GradeAggregator aggregator, ImmutableMap<GitHubUsername, MarksTree> grades,
+      ImmutableMap<GitHubUsername, Grade> aggregated) {
+    this.aggregator = checkNotNull(aggregator);
+    this.grades = checkNotNull(grades);
+    this.aggregated = checkNotNull(aggregated);
+  }
+
+  public GradeAggregator aggregator() {
+    return aggregator;
+  }
+
+  public ImmutableMap<GitHubUsername, MarksTree> grades() {
+    return grades;
   }
 
   public ImmutableSet<GitHubUsername> getUsernames() {
@@ -26,6 +74,27 @@ public record Exam (GradeAggregator aggregator, ImmutableMap<GitHubUsername, Mar
   }
 
   public Grade getGrade(GitHubUsername username) {
-    return Grade.given(aggregator, grades.get(username));
+    checkArgument(aggregated.containsKey(username), username);
+    return aggregated.get(username);
+  }
+
+  @Override
+  public boolean equals(Object o2) {
+    if (!(o2 instanceof Exam)) {
+      return false;
+    }
+    final Exam t2 = (Exam) o2;
+    return aggregator.equals(t2.aggregator) && grades.equals(t2.grades);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(aggregator, grades);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("aggregator", aggregator).add("grades", grades)
+        .toString();
   }
 }
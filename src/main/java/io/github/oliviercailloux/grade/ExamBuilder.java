@@ -0,0 +1,221 @@
+package io.github.oliviercailloux.grade;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.github.oliviercailloux.git.github.model.GitHubUsername;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds an {@link Exam} incrementally, checking each marks tree against the aggregator exactly
+ * once, as soon as it is added, on the configured executor.
+ * <p>
+ * The grade obtained when checking is kept, so that it can be queried without being computed
+ * again. A marks tree that the aggregator rejects does not prevent the other ones from being
+ * checked: the errors are collected per student, and reported by {@link #getErrors()}.
+ * </p>
+ * <p>
+ * This object is thread-safe.
+ * </p>
+ */
+public class ExamBuilder {
+  private record Outcome (Optional<Grade> grade, Optional<AggregatorException> error) {
+  }
+
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExamBuilder.class);
+
+  /**
+   * Returns a builder that checks the marks trees on the calling thread.
+   */
+  public static ExamBuilder using(GradeAggregator aggregator) {
+    return new ExamBuilder(aggregator, MoreExecutors.directExecutor());
+  }
+
+  public static ExamBuilder using(GradeAggregator aggregator, Executor executor) {
+    return new ExamBuilder(aggregator, executor);
+  }
+
+  private final GradeAggregator aggregator;
+  private final Executor executor;
+  private final Map<GitHubUsername, MarksTree> marks;
+  private final Map<GitHubUsername, CompletableFuture<Grade>> grades;
+
+  private ExamBuilder(GradeAggregator aggregator, Executor executor) {
+    this.aggregator = checkNotNull(aggregator);
+    this.executor = checkNotNull(executor);
+    marks = new LinkedHashMap<>();
+    grades = new LinkedHashMap<>();
+  }
+
+  public GradeAggregator getAggregator() {
+    return aggregator;
+  }
+
+  /**
+   * Adds the given marks of the given student and starts checking them against the aggregator.
+   *
+   * @throws IllegalArgumentException iff the given student has already been added.
+   */
+  public synchronized ExamBuilder put(GitHubUsername username, MarksTree marksTree) {
+    checkNotNull(username);
+    checkNotNull(marksTree);
+    checkArgument(!marks.containsKey(username), "Already added: " + username);
+    marks.put(username, marksTree);
+    grades.put(username,
+        CompletableFuture.supplyAsync(() -> Grade.given(aggregator, marksTree), executor));
+    return this;
+  }
+
+  public synchronized ExamBuilder putAll(Map<GitHubUsername, ? extends MarksTree> marksTrees) {
+    marksTrees.forEach(this::put);
+    return this;
+  }
+
+  /**
+   * Returns the marks of the given student, as added.
+   *
+   * @throws NoSuchElementException iff the given student has not been added.
+   */
+  public synchronized MarksTree getMarksTree(GitHubUsername username)
+      throws NoSuchElementException {
+    return Optional.ofNullable(marks.get(username))
+        .orElseThrow(() -> new NoSuchElementException(username.getUsername()));
+  }
+
+  /**
+   * Waits for the check of the marks of the given student, if necessary, and returns the resulting
+   * grade, or an empty optional if the aggregator rejected the marks.
+   *
+   * @throws NoSuchElementException iff the given student has not been added.
+   */
+  public Optional<Grade> getGrade(GitHubUsername username) throws NoSuchElementException {
+    final CompletableFuture<Grade> grade;
+    synchronized (this) {
+      grade = Optional.ofNullable(grades.get(username))
+          .orElseThrow(() -> new NoSuchElementException(username.getUsername()));
+    }
+    return outcome(grade).grade();
+  }
+
+  /**
+   * Waits for all the checks and returns the grades of the students whose marks are accepted by
+   * the aggregator, in the order in which they were added.
+   */
+  public ImmutableMap<GitHubUsername, Grade> getGrades() {
+    final ImmutableMap<GitHubUsername, Outcome> outcomes = getOutcomes();
+    return outcomes.keySet().stream().filter(u -> outcomes.get(u).grade().isPresent())
+        .collect(ImmutableMap.toImmutableMap(u -> u, u -> outcomes.get(u).grade().orElseThrow()));
+  }
+
+  /**
+   * Waits for all the checks and returns, for each student whose marks are rejected by the
+   * aggregator, the reason for the rejection.
+   */
+  public ImmutableMap<GitHubUsername, AggregatorException> getErrors() {
+    final ImmutableMap<GitHubUsername, Outcome> outcomes = getOutcomes();
+    return outcomes.keySet().stream().filter(u -> outcomes.get(u).error().isPresent())
+        .collect(ImmutableMap.toImmutableMap(u -> u, u -> outcomes.get(u).error().orElseThrow()));
+  }
+
+  /**
+   * Waits for all the checks and returns the exam containing all the marks added so far, with the
+   * grades obtained when checking them.
+   *
+   * @throws AggregatorException iff the aggregator rejects the marks of some student; the
+   *         exception is caused by the first rejection and has the other ones as suppressed
+   *         exceptions.
+   */
+  public Exam freeze() throws AggregatorException {
+    final ImmutableMap<GitHubUsername, MarksTree> marksCopy;
+    final ImmutableMap<GitHubUsername, CompletableFuture<Grade>> gradesCopy;
+    synchronized (this) {
+      marksCopy = ImmutableMap.copyOf(marks);
+      gradesCopy = ImmutableMap.copyOf(grades);
+    }
+    final ImmutableMap<GitHubUsername, Outcome> outcomes = getOutcomes(gradesCopy);
+    final ImmutableMap<GitHubUsername, AggregatorException> errors =
+        outcomes.keySet().stream().filter(u -> outcomes.get(u).error().isPresent()).collect(
+            ImmutableMap.toImmutableMap(u -> u, u -> outcomes.get(u).error().orElseThrow()));
+    if (!errors.isEmpty()) {
+      final AggregatorException first = errors.values().iterator().next();
+      final AggregatorException exc =
+          new AggregatorException("Rejected marks for " + errors.keySet() + ".", first);
+      errors.values().stream().skip(1).forEach(exc::addSuppressed);
+      throw exc;
+    }
+    return Exam.given(aggregator, marksCopy, ImmutableMap.copyOf(
+        Maps.transformValues(outcomes, o -> o.grade().orElseThrow())));
+  }
+
+  /**
+   * Waits for all the checks and returns the exam containing the marks of the students accepted by
+   * the aggregator, in the order in which they were added. Never fails because of a rejection.
+   */
+  public Exam getAccepted() {
+    final ImmutableMap<GitHubUsername, MarksTree> marksCopy;
+    synchronized (this) {
+      marksCopy = ImmutableMap.copyOf(marks);
+    }
+    final ImmutableMap<GitHubUsername, Grade> accepted = getGrades();
+    return Exam.given(aggregator,
+        ImmutableMap.copyOf(Maps.filterKeys(marksCopy, accepted::containsKey)), accepted);
+  }
+
+  /**
+   * Returns, without waiting, the exam containing the marks of the students whose check has
+   * already succeeded, in the order in which they were added.
+   */
+  public Exam getAcceptedSoFar() {
+    final ImmutableMap<GitHubUsername, MarksTree> marksCopy;
+    final ImmutableMap<GitHubUsername, CompletableFuture<Grade>> gradesCopy;
+    synchronized (this) {
+      marksCopy = ImmutableMap.copyOf(marks);
+      gradesCopy = ImmutableMap.copyOf(grades);
+    }
+    final ImmutableMap<GitHubUsername, Grade> accepted = gradesCopy.keySet().stream()
+        .filter(u -> gradesCopy.get(u).isDone() && !gradesCopy.get(u).isCompletedExceptionally())
+        .collect(ImmutableMap.toImmutableMap(u -> u, u -> gradesCopy.get(u).join()));
+    return Exam.given(aggregator,
+        ImmutableMap.copyOf(Maps.filterKeys(marksCopy, accepted::containsKey)), accepted);
+  }
+
+  private ImmutableMap<GitHubUsername, Outcome> getOutcomes() {
+    final ImmutableMap<GitHubUsername, CompletableFuture<Grade>> gradesCopy;
+    synchronized (this) {
+      gradesCopy = ImmutableMap.copyOf(grades);
+    }
+    return getOutcomes(gradesCopy);
+  }
+
+  private static ImmutableMap<GitHubUsername, Outcome>
+      getOutcomes(ImmutableMap<GitHubUsername, CompletableFuture<Grade>> grades) {
+    return grades.keySet().stream()
+        .collect(ImmutableMap.toImmutableMap(u -> u, u -> outcome(grades.get(u))));
+  }
+
+  private static Outcome outcome(CompletableFuture<Grade> grade) {
+    try {
+      return new Outcome(Optional.of(grade.join()), Optional.empty());
+    } catch (CompletionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof AggregatorException a) {
+        return new Outcome(Optional.empty(), Optional.of(a));
+      }
+      Throwables.throwIfUnchecked(cause);
+      throw e;
+    }
+  }
+}
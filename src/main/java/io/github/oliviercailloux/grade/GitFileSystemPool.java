@@ -0,0 +1,130 @@
+package io.github.oliviercailloux.grade;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import io.github.oliviercailloux.gitjfs.GitFileSystem;
+import io.github.oliviercailloux.gitjfs.GitFileSystemProvider;
+import io.github.oliviercailloux.gitjfs.GitPathRootShaCached;
+import io.github.oliviercailloux.jaris.throwing.TFunction;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Git file systems over the commits of a repository, that threads borrow, so that code reading
+ * these commits may run concurrently, whereas a Git file system reads through a reader that is not
+ * meant to be shared among threads.
+ * <p>
+ * Each file system of the pool reads through a bare repository of its own, in a temporary
+ * directory, that holds no object but refers to the objects of the given repository as alternates.
+ * Thus, nothing is copied, and the provider sees distinct repositories. The pool opens as many file
+ * systems as threads use it simultaneously, and closes them when closed.
+ * </p>
+ * <p>
+ * {@link #current()} returns the pool last opened by the calling thread (or by a thread that
+ * created it), until closed.
+ * </p>
+ */
+public class GitFileSystemPool implements AutoCloseable {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(GitFileSystemPool.class);
+
+  private static final InheritableThreadLocal<GitFileSystemPool> CURRENT =
+      new InheritableThreadLocal<>();
+
+  private static record Reader (Path gitDir, FileRepository repository, GitFileSystem fs) {
+  }
+
+  /**
+   * Returns a pool over the given repository, that is current until closed.
+   */
+  public static GitFileSystemPool share(FileRepository repository) {
+    return new GitFileSystemPool(repository);
+  }
+
+  public static Optional<GitFileSystemPool> current() {
+    return Optional.ofNullable(CURRENT.get());
+  }
+
+  private final Path objects;
+  private final GitFileSystemPool previous;
+  private final Queue<Reader> idle;
+  private final List<Reader> opened;
+  private volatile boolean closed;
+
+  private GitFileSystemPool(FileRepository repository) {
+    objects = repository.getObjectsDirectory().toPath().toAbsolutePath();
+    previous = CURRENT.get();
+    idle = new ConcurrentLinkedQueue<>();
+    opened = new ArrayList<>();
+    closed = false;
+    CURRENT.set(this);
+  }
+
+  /**
+   * Applies the given function to the given commit, as read by a file system of this pool that the
+   * calling thread has for itself during the call.
+   */
+  public <T> T apply(GitPathRootShaCached commit,
+      TFunction<? super GitPathRootShaCached, T, IOException> function) throws IOException {
+    checkNotNull(commit);
+    checkState(!closed);
+    final Reader polled = idle.poll();
+    final Reader reader = polled == null ? open() : polled;
+    try {
+      return function.apply(reader.fs().getPathRoot(commit.getCommit().id()).toShaCached());
+    } finally {
+      idle.add(reader);
+    }
+  }
+
+  private Reader open() throws IOException {
+    final Path gitDir = Files.createTempDirectory("pooled");
+    final FileRepository repository = (FileRepository) new FileRepositoryBuilder()
+        .setGitDir(gitDir.toFile()).setBare().build();
+    repository.create(true);
+    final Path info = Files.createDirectories(gitDir.resolve("objects").resolve("info"));
+    Files.writeString(info.resolve("alternates"), objects + "\n");
+    final GitFileSystem fs =
+        GitFileSystemProvider.instance().newFileSystemFromFileRepository(repository);
+    final Reader reader = new Reader(gitDir, repository, fs);
+    synchronized (opened) {
+      opened.add(reader);
+    }
+    LOGGER.debug("Opened file system {} over {}.", gitDir, objects);
+    return reader;
+  }
+
+  /**
+   * Closes the file systems of this pool, which must not be in use any more, and deletes their
+   * repositories.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    CURRENT.set(previous);
+    final ImmutableList<Reader> toClose;
+    synchronized (opened) {
+      toClose = ImmutableList.copyOf(opened);
+      opened.clear();
+    }
+    for (Reader reader : toClose) {
+      reader.fs().close();
+      reader.repository().close();
+      MoreFiles.deleteRecursively(reader.gitDir(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+}
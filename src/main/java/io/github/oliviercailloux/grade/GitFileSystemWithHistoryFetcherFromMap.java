@@ -7,12 +7,15 @@ import com.google.common.collect.ImmutableSet;
 import io.github.oliviercailloux.git.GitHubHistory;
 import io.github.oliviercailloux.git.factory.GitCloner;
 import io.github.oliviercailloux.git.filter.GitHistorySimple;
+import io.github.oliviercailloux.git.fixtures.Fixtures;
 import io.github.oliviercailloux.git.github.model.GitHubToken;
 import io.github.oliviercailloux.git.github.model.GitHubUsername;
 import io.github.oliviercailloux.git.github.model.RepositoryCoordinates;
 import io.github.oliviercailloux.git.github.services.GitHubFetcherQL;
 import io.github.oliviercailloux.gitjfs.GitFileSystem;
 import io.github.oliviercailloux.gitjfs.GitFileSystemProvider;
+import io.github.oliviercailloux.grade.metrics.Metrics;
+import io.github.oliviercailloux.grade.metrics.Stage;
 import io.github.oliviercailloux.utils.Utils;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -66,16 +69,26 @@ public class GitFileSystemWithHistoryFetcherFromMap implements GitFileSystemWith
 
     final Path dir = Utils.getTempDirectory().resolve(coordinates.getRepositoryName());
 
-    lastRepository = cloner.download(coordinates.asGitUri(), dir);
+    final Fixtures fixtures = Fixtures.current();
+    final Metrics metrics = Metrics.current();
+    try (Metrics.Timer timer = metrics.time(Stage.CLONE)) {
+      lastRepository = cloner.download(fixtures.getRemote(coordinates), dir);
+    }
+    fixtures.recordRepository(coordinates, lastRepository);
 
     lastGitFs = GitFileSystemProvider.instance().newFileSystemFromRepository(lastRepository);
 
-    final GitHubHistory gitHubHistory = fetcherQl.getReversedGitHubHistory(coordinates);
-    if (useCommitDates) {
-      lastHistory = GitHistorySimple.usingCommitterDates(lastGitFs);
-      LOGGER.info("Last history: {}.", lastHistory);
-    } else {
-      lastHistory = GitHistorySimple.create(lastGitFs, gitHubHistory.getConsistentPushDates());
+    final GitHubHistory gitHubHistory;
+    try (Metrics.Timer timer = metrics.time(Stage.GITHUB_API)) {
+      gitHubHistory = fetcherQl.getReversedGitHubHistory(coordinates);
+    }
+    try (Metrics.Timer timer = metrics.time(Stage.HISTORY)) {
+      if (useCommitDates) {
+        lastHistory = GitHistorySimple.usingCommitterDates(lastGitFs);
+        LOGGER.info("Last history: {}.", lastHistory);
+      } else {
+        lastHistory = GitHistorySimple.create(lastGitFs, gitHubHistory.getConsistentPushDates());
+      }
     }
 
     return lastHistory;
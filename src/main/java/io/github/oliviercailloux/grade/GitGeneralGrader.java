@@ -10,6 +10,7 @@ import io.github.oliviercailloux.git.GitHubHistory;
 import io.github.oliviercailloux.git.factory.GitCloner;
 import io.github.oliviercailloux.git.filter.GitHistory;
 import io.github.oliviercailloux.git.filter.GitHistorySimple;
+import io.github.oliviercailloux.git.fixtures.Fixtures;
 import io.github.oliviercailloux.git.github.model.GitHubToken;
 import io.github.oliviercailloux.git.github.model.GitHubUsername;
 import io.github.oliviercailloux.git.github.model.RepositoryCoordinatesWithPrefix;
@@ -19,8 +20,11 @@ import io.github.oliviercailloux.gitjfs.GitFileSystemProvider;
 import io.github.oliviercailloux.gitjfs.GitPathRoot;
 import io.github.oliviercailloux.gitjfs.GitPathRootShaCached;
 import io.github.oliviercailloux.grade.format.json.JsonGrade;
+import io.github.oliviercailloux.grade.metrics.Metrics;
+import io.github.oliviercailloux.grade.metrics.Stage;
 import io.github.oliviercailloux.javagrade.testers.JavaMarkHelper;
 import io.github.oliviercailloux.json.JsonbUtils;
+import io.github.oliviercailloux.utils.FileIndex;
 import io.github.oliviercailloux.utils.Utils;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -92,14 +96,21 @@ public class GitGeneralGrader {
   }
 
   public void grade() throws IOException {
+    final Metrics metrics = Metrics.current();
     final ImmutableMap.Builder<String, IGrade> builder = ImmutableMap.builder();
     for (RepositoryCoordinatesWithPrefix repository : repositories) {
       final String username = repository.getUsername();
-      final IGrade grade = grade(repository);
-      builder.put(username, grade);
+      try (Metrics.Scope scope = metrics.forStudent(username);
+          FileIndex.Scope files = FileIndex.share()) {
+        final IGrade grade = grade(repository);
+        builder.put(username, grade);
+        metrics.increment("students");
+      }
     }
     final ImmutableMap<String, IGrade> grades = builder.build();
-    Files.writeString(out, JsonbUtils.toJsonObject(grades, JsonGrade.asAdapter()).toString());
+    try (Metrics.Timer timer = metrics.time(Stage.OUTPUT)) {
+      Files.writeString(out, JsonbUtils.toJsonObject(grades, JsonGrade.asAdapter()).toString());
+    }
     // Files.writeString(Path.of("grades.html"), XmlUtils.asString(HtmlGrades.asHtmlGrades(grades,
     // "Grades", 20d)));
     // final ImmutableSet<String> unames = grades.keySet();
@@ -112,13 +123,23 @@ public class GitGeneralGrader {
 
   IGrade grade(RepositoryCoordinatesWithPrefix coordinates) throws IOException {
     final Path dir = Utils.getTempDirectory().resolve(coordinates.getRepositoryName());
-    try (FileRepository repository = getFileRepo(coordinates, dir);
+    final Metrics metrics = Metrics.current();
+    final FileRepository fileRepository;
+    try (Metrics.Timer timer = metrics.time(Stage.CLONE)) {
+      fileRepository = getFileRepo(coordinates, dir);
+    }
+    if (!fromDir) {
+      Fixtures.current().recordRepository(coordinates, fileRepository);
+    }
+    try (FileRepository repository = fileRepository;
         GitFileSystem gitFs =
-            GitFileSystemProvider.instance().newFileSystemFromRepository(repository)) {
+            GitFileSystemProvider.instance().newFileSystemFromRepository(repository);
+        GitFileSystemPool pool = GitFileSystemPool.share(repository)) {
       final GitHistory pushHistory;
       {
         final GitHubHistory gitHubHistory;
-        try (GitHubFetcherQL fetcher = GitHubFetcherQL.using(GitHubToken.getRealInstance())) {
+        try (GitHubFetcherQL fetcher = GitHubFetcherQL.using(GitHubToken.getRealInstance());
+            Metrics.Timer timer = metrics.time(Stage.GITHUB_API)) {
           gitHubHistory = fetcher.getReversedGitHubHistory(coordinates);
         }
         if (!gitHubHistory.getPatchedPushCommits().nodes().isEmpty()) {
@@ -130,7 +151,10 @@ public class GitGeneralGrader {
         LOGGER.debug("Push history: {}.", pushHistory);
       }
 
-      final GitHistorySimple history = GitHistorySimple.create(gitFs, pushHistory.getTimestamps());
+      final GitHistorySimple history;
+      try (Metrics.Timer timer = metrics.time(Stage.HISTORY)) {
+        history = GitHistorySimple.create(gitFs, pushHistory.getTimestamps());
+      }
       final GitWork work = GitWork.given(GitHubUsername.given(coordinates.getUsername()), history);
       return grade(work);
     }
@@ -141,7 +165,7 @@ public class GitGeneralGrader {
     if (fromDir) {
       return (FileRepository) new FileRepositoryBuilder().setWorkTree(dir.toFile()).build();
     }
-    return GitCloner.create().download(coordinates.asGitUri(), dir);
+    return GitCloner.create().download(Fixtures.current().getRemote(coordinates), dir);
   }
 
   IGrade grade(GitWork work) throws IOException {
@@ -160,7 +184,10 @@ public class GitGeneralGrader {
 
     final GitHistorySimple filteredHistory =
         manual.filteredCommits(c -> !excludedAuthors.contains(c.authorName()));
-    final IGrade grade = deadlineGrader.grade(GitWork.given(work.getAuthor(), filteredHistory));
+    final IGrade grade;
+    try (Metrics.Timer timer = Metrics.current().time(Stage.GRADING)) {
+      grade = deadlineGrader.grade(GitWork.given(work.getAuthor(), filteredHistory));
+    }
     final String spaceBefore = grade.getComment().isEmpty() ? "" : " ";
     final String added = excludedByGitHub.isEmpty() ? ""
         : spaceBefore + "(Ignored commits by GitHub: " + excludedByGitHub.stream()
@@ -3,6 +3,7 @@ package io.github.oliviercailloux.grade;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
@@ -109,37 +110,40 @@ public class GradeUtils {
   public static IGrade getBestGrade(Set<GitPathRootShaCached> paths,
       TFunction<Optional<GitPathRootShaCached>, IGrade, IOException> grader, double bestPossible)
       throws IOException {
-    final TFunction<Optional<GitPathRootShaCached>, Double, IOException> scorer =
-        r -> grader.apply(r).getPoints();
-    final Optional<GitPathRootShaCached> best =
-        getCommitMaximizing(paths, r -> scorer.apply(Optional.of(r)), bestPossible);
+    return getBestGrade(ImmutableList.copyOf(paths), grader, bestPossible,
+        BestCandidateSearch.sequential());
+  }
+
+  /**
+   * Returns the grade of the first of the given paths, in the given order, that obtains the best
+   * possible points, if any; otherwise, of the first one that obtains the maximal points; or the
+   * grade of an absent path if there is none.
+   * <p>
+   * As grading sometimes takes a lot of time (e.g. 3 seconds to grade "eclipse-compile" because it
+   * requires a find all, currently very slow), it is important to stop early if possible, and
+   * worth grading several paths concurrently. In the "Eclipse" case, the full search would require
+   * typically checking 6 commits, 3 seconds each.
+   * </p>
+   *
+   * @param search with a parallelism greater than one, the grader must be safe to use concurrently
+   * @see #newestFirst(Set)
+   */
+  public static IGrade getBestGrade(List<GitPathRootShaCached> orderedPaths,
+      TFunction<Optional<GitPathRootShaCached>, IGrade, IOException> grader, double bestPossible,
+      BestCandidateSearch search) throws IOException {
+    final Optional<GitPathRootShaCached> best = search.getMaximizing(orderedPaths,
+        r -> grader.apply(Optional.of(r)).getPoints(), bestPossible);
     return grader.apply(best);
   }
 
-  private static <FO extends Comparable<FO>> Optional<GitPathRootShaCached> getCommitMaximizing(
-      Set<GitPathRootShaCached> paths, TFunction<GitPathRootShaCached, FO, IOException> scorer,
-      FO bestPossible) throws IOException {
-    /**
-     * As grading sometimes takes a lot of time (e.g. 3 seconds to grade "eclipse-compile" because
-     * it requires a find all, currently very slow), it is important to stop early if possible. In
-     * the "Eclipse" case, the full search would require typically checking 6 commits, 3 seconds
-     * each.
-     */
-    GitPathRootShaCached bestInput = null;
-    FO bestScore = null;
-    for (GitPathRootShaCached r : (Iterable<GitPathRootShaCached>) paths.stream()::iterator) {
-      final FO score = scorer.apply(r);
-      checkArgument(score != null);
-      if (bestScore == null || bestScore.compareTo(score) < 0) {
-        bestScore = score;
-        bestInput = r;
-      }
-      LOGGER.debug("Considering {}, obtained score {}, current best {}.", r, score, bestScore);
-      if (bestScore.equals(bestPossible)) {
-        break;
-      }
-    }
-    return Optional.ofNullable(bestInput);
+  /**
+   * Returns the given paths, the most recently committed first (ties broken by commit id).
+   */
+  public static ImmutableList<GitPathRootShaCached> newestFirst(Set<GitPathRootShaCached> paths) {
+    final Comparator<GitPathRootShaCached> byDate =
+        Comparator.comparing(p -> p.getCommit().committerDate().toInstant());
+    return ImmutableList.sortedCopyOf(
+        byDate.reversed().thenComparing(p -> p.getCommit().id()), paths);
   }
 
   public static ImmutableSet<GitPathRootRef> getRefsTo(Set<GitPathRootRef> refs,
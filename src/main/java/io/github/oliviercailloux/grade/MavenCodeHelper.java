@@ -5,12 +5,13 @@ import static com.google.common.base.Verify.verify;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.github.oliviercailloux.jaris.collections.CollectionUtils;
-import io.github.oliviercailloux.jaris.exceptions.CheckedStream;
 import io.github.oliviercailloux.jaris.io.PathUtils;
 import io.github.oliviercailloux.javagrade.JavaGradeUtils;
 import io.github.oliviercailloux.javagrade.bytecode.Compiler.CompilationResult;
 import io.github.oliviercailloux.javagrade.bytecode.Compiler.CompilationResultExt;
 import io.github.oliviercailloux.javagrade.bytecode.MyCompiler;
+import io.github.oliviercailloux.javagrade.bytecode.SourceScanner;
+import io.github.oliviercailloux.utils.FileIndex;
 import io.github.oliviercailloux.utils.Utils;
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -61,9 +62,7 @@ public class MavenCodeHelper<X extends Exception> {
           .eclipseCompileUsingOurClasspath(javaPaths, compiledDir);
       final Pattern pathPattern = Pattern.compile("/tmp/sources[0-9]*/");
       final String eclipseStr = pathPattern.matcher(eclipseResult.err).replaceAll("/…/");
-      final int nbSuppressed = (int) CheckedStream.<Path, IOException>wrapping(javaPaths.stream())
-          .map(p -> Files.readString(p))
-          .flatMap(s -> Pattern.compile("@SuppressWarnings").matcher(s).results()).count();
+      final int nbSuppressed = SourceScanner.countSuppressWarnings(javaPaths);
       final CompilationResultExt transformedResult =
           io.github.oliviercailloux.javagrade.bytecode.Compiler.CompilationResultExt.given(
               eclipseResult.compiled, eclipseResult.out, eclipseStr, nbSuppressed, compiledDir,
@@ -149,14 +148,12 @@ public class MavenCodeHelper<X extends Exception> {
   }
 
   public static ImmutableSet<Path> possibleDirs(Path projectPath) throws IOException {
-    final ImmutableSet<Path> poms =
-        PathUtils.getMatchingChildren(projectPath, p -> p.endsWith("pom.xml"));
+    final FileIndex files = FileIndex.of(projectPath);
+    final ImmutableSet<Path> poms = files.getPathsMatching(p -> p.endsWith("pom.xml"));
     LOGGER.debug("Poms: {}.", poms);
-    final ImmutableSet<Path> pomsWithJava;
-    pomsWithJava = CheckedStream.<Path, IOException>wrapping(poms.stream())
-        .filter(p -> !PathUtils
-            .getMatchingChildren(p, s -> String.valueOf(s.getFileName()).endsWith(".java"))
-            .isEmpty())
+    final ImmutableSet<Path> pomsWithJava = poms.stream()
+        .filter(p -> files.getPathsUnder(p).stream()
+            .anyMatch(s -> String.valueOf(s.getFileName()).endsWith(".java")))
         .collect(ImmutableSet.toImmutableSet());
     LOGGER.debug("Poms with java: {}.", pomsWithJava);
     final ImmutableSet<Path> possibleDirs;
@@ -1,15 +1,22 @@
 package io.github.oliviercailloux.grade.comm;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static io.github.oliviercailloux.email.UncheckedMessagingException.MESSAGING_UNCHECKER;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.common.base.VerifyException;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MoreCollectors;
+import com.google.common.math.IntMath;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.github.oliviercailloux.email.EmailAddressAndPersonal;
 import io.github.oliviercailloux.email.ImapSearchPredicate;
 import io.github.oliviercailloux.email.UncheckedMessagingException;
@@ -19,24 +26,41 @@ import jakarta.mail.Folder;
 import jakarta.mail.Message;
 import jakarta.mail.Message.RecipientType;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
 import jakarta.mail.NoSuchProviderException;
 import jakarta.mail.Part;
 import jakarta.mail.Session;
 import jakarta.mail.Store;
 import jakarta.mail.Transport;
+import jakarta.mail.UIDFolder;
 import jakarta.mail.URLName;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
 import jakarta.mail.internet.MimeMultipart;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.math.RoundingMode;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
 import java.util.stream.StreamSupport;
 import org.eclipse.angus.mail.imap.IMAPFolder;
 import org.slf4j.Logger;
@@ -135,6 +159,9 @@ public class Emailer implements AutoCloseable {
   private Transport transport;
   private Folder saveInto;
 
+  private int bulkFetchChunkSize;
+  private int bulkFetchConnections;
+
   private Emailer() {
     store = null;
     openReadFolders = Maps.newLinkedHashMap();
@@ -142,6 +169,8 @@ public class Emailer implements AutoCloseable {
     transportSession = null;
     transport = null;
     saveInto = null;
+    bulkFetchChunkSize = 100;
+    bulkFetchConnections = 4;
   }
 
   public void connectToStore(Session session, String username, String password) {
@@ -292,6 +321,7 @@ public class Emailer implements AutoCloseable {
     fp.add(FetchProfile.Item.SIZE);
     fp.add(IMAPFolder.FetchProfileItem.HEADERS);
     fp.add(IMAPFolder.FetchProfileItem.INTERNALDATE);
+    fp.add(UIDFolder.FetchProfileItem.UID);
     if (whole) {
       fp.add(IMAPFolder.FetchProfileItem.MESSAGE);
     }
@@ -303,12 +333,163 @@ public class Emailer implements AutoCloseable {
     }
   }
 
+  /**
+   * Sets how {@link #fetchAttachments} proceeds.
+   *
+   * @param chunkSize the number of messages whose structure is fetched in a single command.
+   * @param connections the number of folder instances, thus of IMAP connections, used
+   *        concurrently.
+   */
+  public void setBulkFetch(int chunkSize, int connections) {
+    checkArgument(chunkSize >= 1);
+    checkArgument(connections >= 1);
+    bulkFetchChunkSize = chunkSize;
+    bulkFetchConnections = connections;
+  }
+
+  /**
+   * Fetches, from the given folder, the attachment with the given file name and MIME type of each
+   * given message, and parses it.
+   * <p>
+   * The messages are split into chunks. Each chunk is handled by one of several instances of the
+   * folder, each using its own connection: the envelopes and body structures of the messages of
+   * the chunk are fetched in a single command, then only the body part containing the attachment,
+   * if any, is downloaded (using partial fetches if enabled in the session, which is the default).
+   * Each attachment is parsed on the given executor as soon as it is downloaded, while other
+   * downloads proceed.
+   * </p>
+   *
+   * @param folderName the name of a folder supporting UIDs.
+   * @param uids the UIDs of the messages in the folder.
+   * @param mimeType the MIME type of the attachment, such as {@code text/json}.
+   * @param parsingExecutor the executor used to run the parser.
+   * @return for each given UID, the parsed attachment, or an empty optional if the folder has no
+   *         such message or the message has no such attachment.
+   * @see #setBulkFetch(int, int)
+   */
+  public <T> ImmutableMap<Long, Optional<T>> fetchAttachments(String folderName, Set<Long> uids,
+      String fileName, String mimeType, Function<String, T> parser, Executor parsingExecutor) {
+    checkState(store != null);
+    checkNotNull(fileName);
+    checkNotNull(mimeType);
+    checkNotNull(parser);
+    checkNotNull(parsingExecutor);
+
+    final ImmutableList<Long> sortedUids = ImmutableList.sortedCopyOf(uids);
+    final int connections =
+        Math.min(bulkFetchConnections, IntMath.divide(sortedUids.size(), bulkFetchChunkSize,
+            RoundingMode.CEILING));
+    final BlockingQueue<Folder> folders = new LinkedBlockingQueue<>();
+    final ExecutorService fetchingExecutor = Executors.newFixedThreadPool(Math.max(connections, 1));
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    try {
+      for (int i = 0; i < connections; ++i) {
+        @SuppressWarnings("resource")
+        final Folder folder = MESSAGING_UNCHECKER.getUsing(() -> store.getFolder(folderName));
+        MESSAGING_UNCHECKER.call(() -> folder.open(Folder.READ_ONLY));
+        folders.add(folder);
+      }
+      final ImmutableList<
+          CompletableFuture<ImmutableMap<Long, CompletableFuture<Optional<T>>>>> chunks =
+              Lists.partition(sortedUids, bulkFetchChunkSize).stream()
+                  .map(chunk -> CompletableFuture.supplyAsync(
+                      () -> fetchAttachments(folders, chunk, fileName, mimeType, parser,
+                          parsingExecutor),
+                      fetchingExecutor))
+                  .collect(ImmutableList.toImmutableList());
+      final ImmutableMap<Long, CompletableFuture<Optional<T>>> futures = chunks.stream()
+          .map(CompletableFuture::join).flatMap(m -> m.entrySet().stream())
+          .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+      final ImmutableMap<Long, Optional<T>> parsed = sortedUids.stream().collect(
+          ImmutableMap.toImmutableMap(u -> u, u -> futures.get(u).join()));
+      LOGGER.info("Fetched {} attachments from {} messages in {} using {} connections.",
+          parsed.values().stream().filter(Optional::isPresent).count(), parsed.size(), stopwatch,
+          connections);
+      return parsed;
+    } catch (CompletionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    } finally {
+      fetchingExecutor.shutdownNow();
+      for (Folder folder : folders) {
+        MESSAGING_UNCHECKER.call(() -> folder.close());
+      }
+    }
+  }
+
+  private <T> ImmutableMap<Long, CompletableFuture<Optional<T>>> fetchAttachments(
+      BlockingQueue<Folder> folders, List<Long> uids, String fileName, String mimeType,
+      Function<String, T> parser, Executor parsingExecutor) {
+    final Folder folder = Uninterruptibles.takeUninterruptibly(folders);
+    try {
+      final UIDFolder uidFolder = (UIDFolder) folder;
+      final Message[] messages = MESSAGING_UNCHECKER
+          .getUsing(() -> uidFolder.getMessagesByUID(Longs.toArray(uids)));
+      final Message[] existing =
+          Arrays.stream(messages).filter(Objects::nonNull).toArray(Message[]::new);
+      final FetchProfile fp = new FetchProfile();
+      fp.add(FetchProfile.Item.ENVELOPE);
+      fp.add(FetchProfile.Item.CONTENT_INFO);
+      fp.add(UIDFolder.FetchProfileItem.UID);
+      MESSAGING_UNCHECKER.call(() -> folder.fetch(existing, fp));
+
+      final ImmutableMap.Builder<Long, CompletableFuture<Optional<T>>> builder =
+          ImmutableMap.builder();
+      for (int i = 0; i < uids.size(); ++i) {
+        final Message message = messages[i];
+        final Optional<String> content = message == null ? Optional.empty()
+            : getAttachment(message, fileName, mimeType).map(Emailer::getContent);
+        builder.put(uids.get(i),
+            CompletableFuture.supplyAsync(() -> content.map(parser), parsingExecutor));
+      }
+      return builder.build();
+    } finally {
+      folders.add(folder);
+    }
+  }
+
+  private static Optional<Part> getAttachment(Part part, String fileName, String mimeType) {
+    try {
+      if (part.isMimeType("multipart/*")) {
+        final Multipart multipart = (Multipart) part.getContent();
+        for (int i = 0; i < multipart.getCount(); ++i) {
+          final Optional<Part> found =
+              getAttachment(multipart.getBodyPart(i), fileName, mimeType);
+          if (found.isPresent()) {
+            return found;
+          }
+        }
+        return Optional.empty();
+      }
+      return fileName.equals(part.getFileName()) && part.isMimeType(mimeType) ? Optional.of(part)
+          : Optional.empty();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (MessagingException e) {
+      throw new UncheckedMessagingException(e);
+    }
+  }
+
+  private static String getContent(Part part) {
+    try (InputStream input = part.getInputStream()) {
+      return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (MessagingException e) {
+      throw new UncheckedMessagingException(e);
+    }
+  }
+
   private MimeMessage getMessage(Email email, InternetAddress fromAddress) {
     checkNotNull(transportSession);
+    return getMessage(transportSession, email, fromAddress);
+  }
+
+  static MimeMessage getMessage(Session session, Email email, InternetAddress fromAddress) {
     final String subject = email.getSubject();
     final String textContent = XmlUtils.asString(email.getDocument());
     final String utf8 = StandardCharsets.UTF_8.name();
-    final MimeMessage message = new MimeMessage(transportSession);
+    final MimeMessage message = new MimeMessage(session);
     try {
       message.setFrom(fromAddress);
       message.setSubject(subject, utf8);
@@ -5,6 +5,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static io.github.oliviercailloux.email.UncheckedMessagingException.MESSAGING_UNCHECKER;
 
+import com.google.common.collect.BoundType;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -20,6 +21,7 @@ import io.github.oliviercailloux.email.EmailAddress;
 import io.github.oliviercailloux.email.EmailAddressAndPersonal;
 import io.github.oliviercailloux.email.ImapSearchPredicate;
 import io.github.oliviercailloux.grade.Grade;
+import io.github.oliviercailloux.grade.comm.MailIndex.IndexedMail;
 import io.github.oliviercailloux.grade.format.HtmlGrades;
 import io.github.oliviercailloux.grade.format.json.JsonSimpleGrade;
 import jakarta.mail.Address;
@@ -27,6 +29,7 @@ import jakarta.mail.Folder;
 import jakarta.mail.Message;
 import jakarta.mail.Message.RecipientType;
 import jakarta.mail.MessagingException;
+import jakarta.mail.UIDFolder;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
@@ -36,10 +39,13 @@ import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,13 +94,17 @@ public class GradesInEmails implements AutoCloseable {
   private Folder folder;
 
   private ImmutableSet<EmailAddress> recipientsFilter;
+  private ImmutableSet<EmailAddress> sendersFilter;
   private Range<Instant> sentFilter;
+  private MailIndex index;
 
   private GradesInEmails() {
     emailer = Emailer.instance();
     folder = null;
     recipientsFilter = null;
+    sendersFilter = null;
     sentFilter = null;
+    index = null;
   }
 
   public Emailer getEmailer() {
@@ -125,13 +135,34 @@ public class GradesInEmails implements AutoCloseable {
     sentFilter = filter;
   }
 
-  Optional<Grade> toGrade(Message source) {
-    return getGradeMessage(source).map(GradeMessage::getGrade);
+  /**
+   * @param senders {@code null} for no filter
+   */
+  public void filterSenders(Set<EmailAddress> senders) {
+    sendersFilter = senders == null ? null : ImmutableSet.copyOf(senders);
   }
 
-  private Optional<GradeMessage> getGradeMessage(Message source) {
+  public Optional<MailIndex> getIndex() {
+    return Optional.ofNullable(index);
+  }
+
+  /**
+   * Sets the index to use, or {@code null} to search the folder on the server each time. When
+   * using an index, each query first synchronizes the index with the folder, thereby fetching only
+   * the messages that are new since the last synchronization, then filters the indexed messages
+   * locally, instead of searching the folder with a possibly widened search term and fetching
+   * every matching message.
+   */
+  public void setIndex(MailIndex index) {
+    this.index = index;
+  }
+
+  /**
+   * @return the content of the grade attachment of the given message, if it has one.
+   */
+  private static Optional<String> getGradeContent(Message source) {
     try {
-      LOGGER.debug("Getting GradeMessage from message {}, content type: {}.",
+      LOGGER.debug("Getting grade content from message {}, content type: {}.",
           source.getMessageNumber(), source.getContentType());
       if (!(source instanceof MimeMessage)) {
         return Optional.empty();
@@ -146,8 +177,7 @@ public class GradesInEmails implements AutoCloseable {
           .filter(MESSAGING_UNCHECKER.wrapPredicate(p -> p.isMimeType("text/" + MIME_SUBTYPE)))
           .filter(MESSAGING_UNCHECKER.wrapPredicate(p -> p.getFileName().equals(FILE_NAME)))
           .collect(MoreCollectors.toOptional());
-      final Optional<Grade> grade = matchingPart.map(this::getGrade);
-      return grade.map(g -> GradeMessage.given(g, source));
+      return matchingPart.map(GradesInEmails::getContent);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     } catch (MessagingException e) {
@@ -155,22 +185,31 @@ public class GradesInEmails implements AutoCloseable {
     }
   }
 
-  private Grade getGrade(MimeBodyPart part) {
-    final Grade grade;
+  private static String getContent(MimeBodyPart part) {
     try (InputStreamReader reader =
         new InputStreamReader(part.getInputStream(), StandardCharsets.UTF_8)) {
-      final String content = CharStreams.toString(reader);
-      grade = JsonSimpleGrade.asGrade(content);
+      return CharStreams.toString(reader);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     } catch (MessagingException e) {
       throw new IllegalStateException(e);
     }
-    return grade;
+  }
+
+  Optional<Grade> toGrade(Message source) {
+    return getGradeMessage(source).map(GradeMessage::getGrade);
+  }
+
+  private Optional<GradeMessage> getGradeMessage(Message source) {
+    return getGradeContent(source).map(JsonSimpleGrade::asGrade)
+        .map(g -> GradeMessage.given(g, source));
   }
 
   private String getGradeSubject(Message message) {
-    final String subject = MESSAGING_UNCHECKER.getUsing(message::getSubject);
+    return getGradeSubject(MESSAGING_UNCHECKER.getUsing(message::getSubject));
+  }
+
+  private String getGradeSubject(String subject) {
     verify(subject.startsWith("Grade "), subject);
     final String gradeSubject = subject.substring(6);
     return gradeSubject;
@@ -191,6 +230,28 @@ public class GradesInEmails implements AutoCloseable {
     return Iterables.getOnlyElement(intersection);
   }
 
+  /**
+   * @param recipients {@code null} for no filter.
+   */
+  private EmailAddress getUniqueRecipientAmong(IndexedMail mail, Set<EmailAddress> recipients) {
+    final ImmutableSet<EmailAddress> intersection =
+        (recipients == null ? mail.getTo().stream().map(EmailAddress::given)
+            : recipients.stream().filter(mail::isSentTo)).collect(ImmutableSet.toImmutableSet());
+    verify(!intersection.isEmpty(), mail.getTo().toString());
+    checkState(intersection.size() <= 1);
+    return Iterables.getOnlyElement(intersection);
+  }
+
+  private boolean isSentByFilteredSender(Message message) {
+    if (sendersFilter == null) {
+      return true;
+    }
+    final ImmutableSet<Address> seen = Optional
+        .ofNullable(MESSAGING_UNCHECKER.getUsing(message::getFrom)).map(ImmutableSet::copyOf)
+        .orElse(ImmutableSet.of());
+    return sendersFilter.stream().anyMatch(s -> seen.contains(s.asInternetAddress()));
+  }
+
   /**
    * @param recipients {@code null} for no filter.
    */
@@ -223,7 +284,8 @@ public class GradesInEmails implements AutoCloseable {
      * it.
      */
     final ImmutableSet<Message> matching = matchingWidened.stream()
-        .filter(matchesAddress.getPredicate()).filter(m -> MESSAGING_UNCHECKER
+        .filter(matchesAddress.getPredicate()).filter(this::isSentByFilteredSender)
+        .filter(m -> MESSAGING_UNCHECKER
             .getUsing(() -> m.getSubject()).toLowerCase().startsWith(subjectStartsWith))
         .collect(ImmutableSet.toImmutableSet());
     LOGGER.debug("Got all '{}' matching messages ({}).", subjectStartsWith, matching.size());
@@ -254,6 +316,9 @@ public class GradesInEmails implements AutoCloseable {
    */
   private ImmutableTable<EmailAddress, String, Grade>
       getLastGradesToInternal(Set<EmailAddress> recipients, String subjectPattern) {
+    if (index != null) {
+      return getLastGradesFromIndex(recipients, subjectPattern);
+    }
     final ImmutableSet<Message> matching = getMessagesTo(recipients, subjectPattern);
     /*
      * First, reduce the number of messages to fetch (which takes about 30 seconds for 500
@@ -267,14 +332,68 @@ public class GradesInEmails implements AutoCloseable {
                 m -> getGradeSubject(m), m -> m,
                 (m1, m2) -> Stream.of(m1, m2).max(comparing).get()));
 
-    emailer.fetchMessages(folder, ImmutableSet.copyOf(messages.values()));
-
-    final Table<EmailAddress, String, Optional<Grade>> gradesOpt =
-        Tables.transformValues(messages, this::toGrade);
+    final Table<EmailAddress, String, Optional<Grade>> gradesOpt;
+    if (folder instanceof UIDFolder uidFolder) {
+      final ImmutableMap<Message, Long> uids = ImmutableSet.copyOf(messages.values()).stream()
+          .collect(ImmutableMap.toImmutableMap(m -> m,
+              m -> MESSAGING_UNCHECKER.getUsing(() -> uidFolder.getUID(m))));
+      final ImmutableMap<Long, Optional<Grade>> fetched =
+          emailer.fetchAttachments(folder.getFullName(), ImmutableSet.copyOf(uids.values()),
+              FILE_NAME, "text/" + MIME_SUBTYPE, JsonSimpleGrade::asGrade,
+              ForkJoinPool.commonPool());
+      gradesOpt = Tables.transformValues(messages, m -> fetched.get(uids.get(m)));
+    } else {
+      emailer.fetchMessages(folder, ImmutableSet.copyOf(messages.values()));
+      gradesOpt = Tables.transformValues(messages, this::toGrade);
+    }
     return gradesOpt.cellSet().stream().filter(c -> c.getValue().isPresent()).collect(ImmutableTable
         .toImmutableTable(c -> c.getRowKey(), c -> c.getColumnKey(), o -> o.getValue().get()));
   }
 
+  /**
+   * Tells whether the given sent date is within the given range, comparing days (in the default
+   * time zone) rather than instants, as the IMAP search on sent dates does, so that the index
+   * selects the same mails as the server search.
+   */
+  private static boolean isSentWithinByDay(Range<Instant> filter, Instant sent) {
+    final ZoneId zone = ZoneId.systemDefault();
+    final LocalDate day = LocalDate.ofInstant(sent, zone);
+    if (filter.hasLowerBound()) {
+      final int comparison = day.compareTo(LocalDate.ofInstant(filter.lowerEndpoint(), zone));
+      if (comparison < 0 || (comparison == 0 && filter.lowerBoundType() == BoundType.OPEN)) {
+        return false;
+      }
+    }
+    if (filter.hasUpperBound()) {
+      final int comparison = day.compareTo(LocalDate.ofInstant(filter.upperEndpoint(), zone));
+      if (comparison > 0 || (comparison == 0 && filter.upperBoundType() == BoundType.OPEN)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param recipients {@code null} for no filter.
+   */
+  private ImmutableTable<EmailAddress, String, Grade>
+      getLastGradesFromIndex(Set<EmailAddress> recipients, String subjectPattern) {
+    index.sync(emailer, folder);
+    final ImmutableTable<EmailAddress, String, IndexedMail> mails = index.getMails().stream()
+        .filter(m -> m.getSubject().toLowerCase().startsWith(subjectPattern))
+        .filter(m -> recipients == null || recipients.stream().anyMatch(m::isSentTo))
+        .filter(m -> sendersFilter == null || sendersFilter.stream().anyMatch(m::isSentBy))
+        .filter(m -> sentFilter == null || isSentWithinByDay(sentFilter, m.getSent()))
+        .collect(ImmutableTable.toImmutableTable(m -> getUniqueRecipientAmong(m, recipients),
+            m -> getGradeSubject(m.getSubject()), m -> m,
+            (m1, m2) -> Stream.of(m1, m2).max(Comparator.comparing(IndexedMail::getSent)).get()));
+    LOGGER.debug("Got all '{}' matching messages from the index ({}).", subjectPattern,
+        mails.size());
+    return mails.cellSet().stream().filter(c -> c.getValue().getGradeContent().isPresent())
+        .collect(ImmutableTable.toImmutableTable(c -> c.getRowKey(), c -> c.getColumnKey(),
+            c -> JsonSimpleGrade.asGrade(c.getValue().getGradeContent().get())));
+  }
+
   public Optional<Grade> getLastGradeTo(EmailAddress recipient, String prefix) {
     checkArgument(recipientsFilter == null || recipientsFilter.contains(recipient));
     return Optional.ofNullable(
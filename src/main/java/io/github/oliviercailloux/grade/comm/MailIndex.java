@@ -0,0 +1,326 @@
+package io.github.oliviercailloux.grade.comm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.github.oliviercailloux.email.UncheckedMessagingException.MESSAGING_UNCHECKER;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.github.oliviercailloux.email.EmailAddress;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.mail.Address;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.Message.RecipientType;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.InternetAddress;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local copy of the headers of the messages of an IMAP folder and of their grade attachments, if
+ * any, so that the folder can be queried without searching it on the server.
+ * <p>
+ * Messages are identified by their UID, which is valid as long as the UIDVALIDITY of the folder
+ * does not change. Synchronizing fetches only the messages with a UID greater than the greatest
+ * one already known, and starts over if the UIDVALIDITY changed. Messages deleted from the folder
+ * are not removed from the index.
+ * </p>
+ * <p>
+ * An index can be persisted to a JSON file and read back in a later run.
+ * </p>
+ */
+public class MailIndex {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(MailIndex.class);
+
+  public static class IndexedMail {
+    public static IndexedMail given(long uid, Instant sent, Set<String> from, Set<String> to,
+        String subject, Optional<String> gradeContent) {
+      return new IndexedMail(uid, sent, from, to, subject, gradeContent);
+    }
+
+    private final long uid;
+    private final Instant sent;
+    private final ImmutableSet<String> from;
+    private final ImmutableSet<String> to;
+    private final String subject;
+    private final Optional<String> gradeContent;
+
+    private IndexedMail(long uid, Instant sent, Set<String> from, Set<String> to, String subject,
+        Optional<String> gradeContent) {
+      checkArgument(uid >= 1);
+      this.uid = uid;
+      this.sent = checkNotNull(sent);
+      this.from = ImmutableSet.copyOf(from);
+      this.to = ImmutableSet.copyOf(to);
+      this.subject = checkNotNull(subject);
+      this.gradeContent = checkNotNull(gradeContent);
+    }
+
+    public long getUid() {
+      return uid;
+    }
+
+    /**
+     * @return the sent date, or, if the message has none, its received date, or, if it has none,
+     *         the epoch.
+     */
+    public Instant getSent() {
+      return sent;
+    }
+
+    /**
+     * @return the addresses (as found in the message, thus, not necessarily valid) of the senders.
+     */
+    public ImmutableSet<String> getFrom() {
+      return from;
+    }
+
+    /**
+     * @return the addresses (as found in the message, thus, not necessarily valid) of the TO
+     *         recipients.
+     */
+    public ImmutableSet<String> getTo() {
+      return to;
+    }
+
+    /**
+     * Compares addresses ignoring case, as {@link InternetAddress#equals(Object)} does.
+     */
+    public boolean isSentBy(EmailAddress sender) {
+      return from.stream().anyMatch(a -> a.equalsIgnoreCase(sender.getAddress()));
+    }
+
+    /**
+     * Compares addresses ignoring case, as {@link InternetAddress#equals(Object)} does.
+     */
+    public boolean isSentTo(EmailAddress recipient) {
+      return to.stream().anyMatch(a -> a.equalsIgnoreCase(recipient.getAddress()));
+    }
+
+    public String getSubject() {
+      return subject;
+    }
+
+    /**
+     * @return the content of the grade attachment, if this message has one.
+     * @see GradesInEmails#FILE_NAME
+     */
+    public Optional<String> getGradeContent() {
+      return gradeContent;
+    }
+
+    @Override
+    public boolean equals(Object o2) {
+      if (!(o2 instanceof IndexedMail)) {
+        return false;
+      }
+      final IndexedMail t2 = (IndexedMail) o2;
+      return uid == t2.uid && sent.equals(t2.sent) && from.equals(t2.from) && to.equals(t2.to)
+          && subject.equals(t2.subject) && gradeContent.equals(t2.gradeContent);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(uid, sent, from, to, subject, gradeContent);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("uid", uid).add("sent", sent).add("to", to)
+          .add("subject", subject).add("has grade", gradeContent.isPresent()).toString();
+    }
+  }
+
+  /**
+   * The UIDVALIDITY of an index that has never been synchronized: a folder never has it.
+   */
+  private static final long NO_UID_VALIDITY = -1L;
+
+  public static MailIndex empty() {
+    return new MailIndex();
+  }
+
+  /**
+   * @return the index read from the given file, or an empty index if the file does not exist.
+   */
+  public static MailIndex readFrom(Path source) throws IOException {
+    final MailIndex index = new MailIndex();
+    if (!Files.exists(source)) {
+      return index;
+    }
+    final JsonObject json;
+    try (JsonReader reader = Json.createReader(new StringReader(Files.readString(source)))) {
+      json = reader.readObject();
+    }
+    index.uidValidity = json.getJsonNumber("uidValidity").longValue();
+    index.lastUid = json.getJsonNumber("lastUid").longValue();
+    for (JsonObject mailJson : json.getJsonArray("mails").getValuesAs(JsonObject.class)) {
+      final IndexedMail mail = IndexedMail.given(mailJson.getJsonNumber("uid").longValue(),
+          Instant.parse(mailJson.getString("sent")), asStrings(mailJson, "from"),
+          asStrings(mailJson, "to"), mailJson.getString("subject"),
+          Optional.ofNullable(mailJson.getString("grade", null)));
+      index.mails.put(mail.getUid(), mail);
+    }
+    return index;
+  }
+
+  private static ImmutableSet<String> asStrings(JsonObject json, String key) {
+    return json.getJsonArray(key).getValuesAs(JsonString.class).stream()
+        .map(JsonString::getString).collect(ImmutableSet.toImmutableSet());
+  }
+
+  private static ImmutableSet<String> asStrings(Address[] addresses) {
+    if (addresses == null) {
+      return ImmutableSet.of();
+    }
+    return Arrays.stream(addresses).map(
+        a -> a instanceof InternetAddress internet ? internet.getAddress() : a.toString())
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  private static Instant getSent(Message message) {
+    final Date sent = MESSAGING_UNCHECKER.getUsing(message::getSentDate);
+    final Date date = sent == null ? MESSAGING_UNCHECKER.getUsing(message::getReceivedDate) : sent;
+    return date == null ? Instant.EPOCH : date.toInstant();
+  }
+
+  private long uidValidity;
+  private long lastUid;
+  private final SortedMap<Long, IndexedMail> mails;
+
+  private MailIndex() {
+    uidValidity = NO_UID_VALIDITY;
+    lastUid = 0L;
+    mails = new TreeMap<>();
+  }
+
+  public long getUidValidity() {
+    return uidValidity;
+  }
+
+  /**
+   * @return the greatest UID seen so far, or zero if none.
+   */
+  public long getLastUid() {
+    return lastUid;
+  }
+
+  /**
+   * @return the indexed messages, by increasing UID.
+   */
+  public ImmutableList<IndexedMail> getMails() {
+    return ImmutableList.copyOf(mails.values());
+  }
+
+  /**
+   * Fetches the headers of the messages of the given folder that are not yet in this index, and
+   * the grade attachment of those among them whose subject starts with “Grade ” (ignoring case).
+   *
+   * @param folder must be open, and support UIDs.
+   * @return the messages added by this synchronization.
+   */
+  public ImmutableList<IndexedMail> sync(Emailer emailer, Folder folder) {
+    checkArgument(folder.isOpen());
+    checkArgument(folder instanceof UIDFolder);
+    final UIDFolder uidFolder = (UIDFolder) folder;
+
+    final long validity = MESSAGING_UNCHECKER.getUsing(uidFolder::getUIDValidity);
+    if (validity != uidValidity) {
+      if (uidValidity != NO_UID_VALIDITY) {
+        LOGGER.info("UIDVALIDITY changed from {} to {}, dropping {} indexed messages.",
+            uidValidity, validity, mails.size());
+      }
+      uidValidity = validity;
+      lastUid = 0L;
+      mails.clear();
+    }
+
+    /*
+     * The range n:* always contains the message with the greatest UID, even if it is lower than n,
+     * hence the filtering on the UID.
+     */
+    final ImmutableSet<Message> candidates = Arrays
+        .stream(MESSAGING_UNCHECKER
+            .getUsing(() -> uidFolder.getMessagesByUID(lastUid + 1, UIDFolder.MAXUID)))
+        .filter(Objects::nonNull).collect(ImmutableSet.toImmutableSet());
+    emailer.fetchHeaders(folder, candidates);
+    final long knownUid = lastUid;
+    final ImmutableSet<Message> newMessages = candidates.stream()
+        .filter(m -> MESSAGING_UNCHECKER.getUsing(() -> uidFolder.getUID(m)) > knownUid)
+        .collect(ImmutableSet.toImmutableSet());
+    final ImmutableSet<Message> gradeMessages = newMessages.stream()
+        .filter(m -> Optional.ofNullable(MESSAGING_UNCHECKER.getUsing(m::getSubject))
+            .map(s -> s.toLowerCase().startsWith("grade ")).orElse(false))
+        .collect(ImmutableSet.toImmutableSet());
+    final ImmutableSet<Long> gradeUids = gradeMessages.stream()
+        .map(m -> MESSAGING_UNCHECKER.getUsing(() -> uidFolder.getUID(m)))
+        .collect(ImmutableSet.toImmutableSet());
+    final ImmutableMap<Long, Optional<String>> gradeContents =
+        emailer.fetchAttachments(folder.getFullName(), gradeUids, GradesInEmails.FILE_NAME,
+            "text/" + GradesInEmails.MIME_SUBTYPE, c -> c, MoreExecutors.directExecutor());
+
+    final ImmutableList.Builder<IndexedMail> addedBuilder = ImmutableList.builder();
+    for (Message message : newMessages) {
+      final long uid = MESSAGING_UNCHECKER.getUsing(() -> uidFolder.getUID(message));
+      final Optional<String> gradeContent = gradeContents.getOrDefault(uid, Optional.empty());
+      final IndexedMail mail = IndexedMail.given(uid, getSent(message),
+          asStrings(MESSAGING_UNCHECKER.getUsing(message::getFrom)),
+          asStrings(MESSAGING_UNCHECKER.getUsing(() -> message.getRecipients(RecipientType.TO))),
+          Optional.ofNullable(MESSAGING_UNCHECKER.getUsing(message::getSubject)).orElse(""),
+          gradeContent);
+      mails.put(uid, mail);
+      lastUid = Math.max(lastUid, uid);
+      addedBuilder.add(mail);
+    }
+    final ImmutableList<IndexedMail> added = addedBuilder.build();
+    LOGGER.info("Indexed {} new messages ({} with a grade subject), last UID {}.", added.size(),
+        gradeMessages.size(), lastUid);
+    return added;
+  }
+
+  /**
+   * Writes this index to the given file, replacing it if it exists, through a temporary file in
+   * the same folder, so that an interrupted write leaves the previous index intact.
+   */
+  public void writeTo(Path destination) throws IOException {
+    final JsonArrayBuilder mailsJson = Json.createArrayBuilder();
+    for (IndexedMail mail : mails.values()) {
+      final JsonObjectBuilder mailJson = Json.createObjectBuilder().add("uid", mail.getUid())
+          .add("sent", mail.getSent().toString())
+          .add("from", Json.createArrayBuilder(mail.getFrom()))
+          .add("to", Json.createArrayBuilder(mail.getTo())).add("subject", mail.getSubject());
+      mail.getGradeContent().ifPresent(c -> mailJson.add("grade", c));
+      mailsJson.add(mailJson);
+    }
+    final JsonObject json = Json.createObjectBuilder().add("uidValidity", uidValidity)
+        .add("lastUid", lastUid).add("mails", mailsJson).build();
+
+    final Path absolute = destination.toAbsolutePath();
+    final Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+    Files.writeString(temporary, json.toString());
+    Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
@@ -0,0 +1,408 @@
+package io.github.oliviercailloux.grade.comm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.github.oliviercailloux.email.UncheckedMessagingException.MESSAGING_UNCHECKER;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.math.Stats;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.github.oliviercailloux.email.EmailAddressAndPersonal;
+import io.github.oliviercailloux.xml.XmlUtils;
+import jakarta.mail.Address;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.NoSuchProviderException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends emails concurrently over a pool of authenticated transports, retrying each message with
+ * exponential backoff, through a durable outbox.
+ * <p>
+ * Emails are first written to the <em>pending</em> folder of the outbox, under an identifier
+ * deduced from their content (recipient, subject, document and attached file), then sent, then
+ * moved to the <em>sent</em> folder. Enqueuing an email that is already pending or sent has no
+ * effect. Thus, if a run crashes, a new instance using the same outbox resumes sending the pending
+ * messages, without sending again those that were sent. (A message accepted by the server just
+ * before a crash, and not yet moved, is sent again; it then bears the same Message-ID.) A message
+ * that is sent but fails to move is copied to the sent folder instead, and thus not sent again.
+ * </p>
+ * <p>
+ * Enqueuing a new email replaces the messages pending for the same recipient, which are thus
+ * never sent, so that outdated versions of a grade do not accumulate.
+ * </p>
+ * <p>
+ * Messages that still fail after the last attempt, or that cannot be read, stay pending, so that a
+ * later call can retry them. Such failures are reported per message and do not stop the others.
+ * </p>
+ */
+public class MailSender {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(MailSender.class);
+
+  private static final String EXTENSION = ".eml";
+
+  public static class SendReport {
+    private final ImmutableMap<String, Duration> sent;
+    private final ImmutableMap<String, MessagingException> failed;
+    private final Duration elapsed;
+
+    private SendReport(ImmutableMap<String, Duration> sent,
+        ImmutableMap<String, MessagingException> failed, Duration elapsed) {
+      this.sent = checkNotNull(sent);
+      this.failed = checkNotNull(failed);
+      this.elapsed = checkNotNull(elapsed);
+    }
+
+    /**
+     * @return the identifiers of the messages sent, associated to the time taken to send them
+     *         (during the successful attempt).
+     */
+    public ImmutableMap<String, Duration> getSent() {
+      return sent;
+    }
+
+    /**
+     * @return the identifiers of the messages that could not be sent, associated to the last
+     *         error.
+     */
+    public ImmutableMap<String, MessagingException> getFailed() {
+      return failed;
+    }
+
+    public Duration getElapsed() {
+      return elapsed;
+    }
+
+    /**
+     * @return the number of messages sent per second.
+     */
+    public double getThroughput() {
+      final long millis = Math.max(elapsed.toMillis(), 1L);
+      return sent.size() * 1000d / millis;
+    }
+
+    /**
+     * @return the statistics of the sending latencies, in milliseconds, if some message has been
+     *         sent.
+     */
+    public Optional<Stats> getLatencies() {
+      if (sent.isEmpty()) {
+        return Optional.empty();
+      }
+      return Optional.of(Stats.of(sent.values().stream().mapToLong(Duration::toMillis).toArray()));
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("Sent", sent.size()).add("Failed", failed.size())
+          .add("Elapsed", elapsed).add("Throughput (/s)", getThroughput())
+          .add("Mean latency (ms)", getLatencies().map(Stats::mean))
+          .add("Max latency (ms)", getLatencies().map(Stats::max)).toString();
+    }
+  }
+
+  private record Outcome (String id, Optional<Duration> latency,
+      Optional<MessagingException> error) {
+  }
+
+  /**
+   * @param session the session to obtain transports from.
+   * @param outbox a folder, created if necessary, where messages are kept until sent.
+   */
+  public static MailSender using(Session session, String username, String password, Path outbox)
+      throws IOException {
+    return new MailSender(session, username, password, outbox);
+  }
+
+  static String getId(Email email) {
+    final String file = email.hasFile()
+        ? email.getFileName() + "\n" + email.getFileSubtype() + "\n" + email.getFileContent()
+        : "";
+    final String content = email.getTo().getAddress().getAddress() + "\n" + email.getSubject()
+        + "\n" + XmlUtils.asString(email.getDocument()) + "\n" + file;
+    return Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+  }
+
+  private final Session session;
+  private final String username;
+  private final String password;
+  private final Path pending;
+  private final Path sent;
+  private int concurrency;
+  private int maxAttempts;
+  private Duration initialBackoff;
+  private Folder saveInto;
+
+  private MailSender(Session session, String username, String password, Path outbox)
+      throws IOException {
+    this.session = checkNotNull(session);
+    this.username = checkNotNull(username);
+    this.password = checkNotNull(password);
+    pending = outbox.resolve("pending");
+    sent = outbox.resolve("sent");
+    Files.createDirectories(pending);
+    Files.createDirectories(sent);
+    concurrency = 4;
+    maxAttempts = 3;
+    initialBackoff = Duration.ofSeconds(1);
+    saveInto = null;
+  }
+
+  /**
+   * @param concurrency the number of transports used concurrently.
+   */
+  public void setConcurrency(int concurrency) {
+    checkArgument(concurrency >= 1);
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * @param maxAttempts the number of attempts to send a given message, at least one.
+   * @param initialBackoff the time to wait before the second attempt; the time is doubled for each
+   *        further attempt.
+   */
+  public void setRetries(int maxAttempts, Duration initialBackoff) {
+    checkArgument(maxAttempts >= 1);
+    checkArgument(!initialBackoff.isNegative());
+    this.maxAttempts = maxAttempts;
+    this.initialBackoff = initialBackoff;
+  }
+
+  /**
+   * @param folder {@code null} to not save the messages sent; otherwise, an open folder into which
+   *        a copy of each message is appended once sent.
+   */
+  public void saveInto(Folder folder) {
+    checkArgument(folder == null || folder.isOpen());
+    saveInto = folder;
+  }
+
+  /**
+   * Writes the given emails to the outbox, except those that are already pending or sent, and
+   * removes the pending messages to their recipients that are not among the given emails.
+   *
+   * @return the identifiers of the emails written.
+   */
+  public ImmutableSet<String> enqueue(Collection<Email> emails, EmailAddressAndPersonal from)
+      throws IOException {
+    final ImmutableMap<String, Email> byId = emails.stream()
+        .collect(ImmutableMap.toImmutableMap(MailSender::getId, e -> e, (e1, e2) -> e1));
+    final ImmutableSet<String> recipients = emails.stream()
+        .map(e -> e.getTo().getAddress().getAddress()).collect(ImmutableSet.toImmutableSet());
+    for (String id : getPending()) {
+      if (!byId.containsKey(id) && recipients.contains(getRecipient(id))) {
+        LOGGER.info("Replacing pending {}.", id);
+        Files.delete(pending.resolve(id + EXTENSION));
+      }
+    }
+
+    final ImmutableSet.Builder<String> enqueued = ImmutableSet.builder();
+    for (String id : byId.keySet()) {
+      final Email email = byId.get(id);
+      if (Files.exists(pending.resolve(id + EXTENSION))
+          || Files.exists(sent.resolve(id + EXTENSION))) {
+        LOGGER.debug("Skipping {}, already in the outbox.", id);
+        continue;
+      }
+      final MimeMessage message = Emailer.getMessage(session, email, from.asInternetAddress());
+      MESSAGING_UNCHECKER.call(() -> message.setHeader("Message-ID", "<" + id + "@jgradlib>"));
+      final Path temporary = pending.resolve(id + ".tmp");
+      try (OutputStream output = Files.newOutputStream(temporary)) {
+        message.writeTo(output);
+      } catch (MessagingException e) {
+        throw new IllegalStateException(e);
+      }
+      Files.move(temporary, pending.resolve(id + EXTENSION), StandardCopyOption.ATOMIC_MOVE);
+      enqueued.add(id);
+    }
+    return enqueued.build();
+  }
+
+  private String getRecipient(String id) throws IOException {
+    try (InputStream input = Files.newInputStream(pending.resolve(id + EXTENSION))) {
+      final MimeMessage message = new MimeMessage(session, input);
+      final Address[] recipients = message.getRecipients(Message.RecipientType.TO);
+      checkState(recipients != null && recipients.length == 1, id);
+      return ((InternetAddress) recipients[0]).getAddress();
+    } catch (MessagingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return the identifiers of the messages in the pending folder that are not also in the sent
+   *         folder.
+   */
+  public ImmutableSet<String> getPending() throws IOException {
+    return ImmutableSet.copyOf(Sets.difference(getIds(pending), getIds(sent)));
+  }
+
+  public ImmutableSet<String> getSent() throws IOException {
+    return getIds(sent);
+  }
+
+  private static ImmutableSet<String> getIds(Path folder) throws IOException {
+    try (Stream<Path> files = Files.list(folder)) {
+      return files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(EXTENSION))
+          .map(n -> n.substring(0, n.length() - EXTENSION.length())).sorted()
+          .collect(ImmutableSet.toImmutableSet());
+    }
+  }
+
+  /**
+   * Enqueues the given emails, then sends all the pending ones.
+   */
+  public SendReport send(Collection<Email> emails, EmailAddressAndPersonal from)
+      throws IOException {
+    enqueue(emails, from);
+    return sendPending();
+  }
+
+  /**
+   * Sends all the pending messages, possibly including some enqueued by an earlier run.
+   */
+  public SendReport sendPending() throws IOException {
+    final ImmutableSet<String> ids = getPending();
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final int poolSize = Math.max(Math.min(concurrency, ids.size()), 1);
+    final BlockingQueue<Transport> transports = new LinkedBlockingQueue<>();
+    for (int i = 0; i < poolSize; ++i) {
+      try {
+        transports.add(session.getTransport());
+      } catch (NoSuchProviderException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+    final ImmutableList<Outcome> outcomes;
+    try {
+      final ImmutableList<CompletableFuture<Outcome>> futures = ids.stream()
+          .map(id -> CompletableFuture.supplyAsync(() -> send(id, transports), executor))
+          .collect(ImmutableList.toImmutableList());
+      outcomes = futures.stream().map(CompletableFuture::join)
+          .collect(ImmutableList.toImmutableList());
+    } finally {
+      executor.shutdownNow();
+      for (Transport transport : transports) {
+        if (transport.isConnected()) {
+          MESSAGING_UNCHECKER.call(() -> transport.close());
+        }
+      }
+    }
+    final SendReport report = new SendReport(
+        outcomes.stream().filter(o -> o.latency().isPresent())
+            .collect(ImmutableMap.toImmutableMap(Outcome::id, o -> o.latency().get())),
+        outcomes.stream().filter(o -> o.error().isPresent())
+            .collect(ImmutableMap.toImmutableMap(Outcome::id, o -> o.error().get())),
+        stopwatch.elapsed());
+    LOGGER.info("Sent pending messages: {}.", report);
+    return report;
+  }
+
+  private Outcome send(String id, BlockingQueue<Transport> transports) {
+    final MimeMessage message;
+    try (InputStream input = Files.newInputStream(pending.resolve(id + EXTENSION))) {
+      message = new MimeMessage(session, input);
+    } catch (IOException e) {
+      LOGGER.warn("Failed reading {}.", id, e);
+      return new Outcome(id, Optional.empty(),
+          Optional.of(new MessagingException("Failed reading " + id + ".", e)));
+    } catch (MessagingException e) {
+      LOGGER.warn("Failed reading {}.", id, e);
+      return new Outcome(id, Optional.empty(), Optional.of(e));
+    }
+
+    MessagingException lastError = null;
+    for (int attempt = 1; attempt <= maxAttempts; ++attempt) {
+      if (attempt >= 2) {
+        final Duration backoff = initialBackoff.multipliedBy(1L << (attempt - 2));
+        LOGGER.info("Retrying {} in {} (attempt {}).", id, backoff, attempt);
+        Uninterruptibles.sleepUninterruptibly(backoff);
+      }
+      final Transport transport = Uninterruptibles.takeUninterruptibly(transports);
+      try {
+        if (!transport.isConnected()) {
+          transport.connect(username, password);
+        }
+        final Stopwatch latency = Stopwatch.createStarted();
+        transport.sendMessage(message, message.getAllRecipients());
+        latency.stop();
+        markSent(id, message);
+        return new Outcome(id, Optional.of(latency.elapsed()), Optional.empty());
+      } catch (MessagingException e) {
+        LOGGER.warn("Failed sending {} (attempt {}).", id, attempt, e);
+        lastError = e;
+        try {
+          transport.close();
+        } catch (MessagingException closing) {
+          LOGGER.debug("Failed closing transport.", closing);
+        }
+      } finally {
+        transports.add(transport);
+      }
+    }
+    checkState(lastError != null);
+    return new Outcome(id, Optional.empty(), Optional.of(lastError));
+  }
+
+  /**
+   * Records the given message as sent. Failures are only logged: the message has been sent, thus
+   * must neither count as failed nor be attempted again.
+   */
+  private void markSent(String id, MimeMessage message) {
+    final Path pendingFile = pending.resolve(id + EXTENSION);
+    final Path sentFile = sent.resolve(id + EXTENSION);
+    try {
+      Files.move(pendingFile, sentFile, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOGGER.error("Sent {} but failed moving it to {}.", id, sent, e);
+      /* A copy in the sent folder suffices for later runs to consider it as sent. */
+      try {
+        Files.copy(pendingFile, sentFile, StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException copying) {
+        LOGGER.error("Failed recording {} as sent, remove it from {} to not send it again.", id,
+            pending, copying);
+      }
+    }
+    if (saveInto != null) {
+      synchronized (saveInto) {
+        try {
+          saveInto.appendMessages(new Message[] {message});
+        } catch (MessagingException e) {
+          /* The message has been sent: it must neither count as failed nor stop the others. */
+          LOGGER.warn("Sent {} but failed saving it into {}.", id, saveInto.getFullName(), e);
+        }
+      }
+    }
+  }
+}
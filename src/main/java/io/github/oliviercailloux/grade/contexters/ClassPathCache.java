@@ -0,0 +1,223 @@
+package io.github.oliviercailloux.grade.contexters;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Dependency class paths, keyed by a digest of the parts of a POM that determine its dependencies
+ * (parent, properties, profiles, repositories, dependency management and dependencies), so that
+ * projects declaring the same dependencies share their class path.
+ * <p>
+ * The digest is computed on a normalized form of these parts: white space and comments are
+ * ignored, the order of children is ignored except in lists of dependencies and of repositories
+ * (as the order of dependencies determines the order of the class path), and default values of
+ * the type, scope and optional elements of dependencies are omitted.
+ * </p>
+ * <p>
+ * POMs whose dependencies depend on the directory of the project (through a system path or the
+ * base directory) have no key, as their class path cannot be shared.
+ * </p>
+ */
+public class ClassPathCache {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClassPathCache.class);
+
+  private static final ImmutableSet<String> SECTIONS = ImmutableSet.of("parent", "properties",
+      "profiles", "repositories", "dependencyManagement", "dependencies");
+
+  private static final ImmutableSet<String> ORDERED =
+      ImmutableSet.of("dependencies", "repositories");
+
+  private static final ImmutableMap<String, String> DEPENDENCY_DEFAULTS =
+      ImmutableMap.of("type", "jar", "scope", "compile", "optional", "false");
+
+  private static final ImmutableSet<String> DIRECTORY_DEPENDENT =
+      ImmutableSet.of("${basedir}", "${project.basedir}", "${pom.basedir}", "systemPath=");
+
+  private static final String EXTENSION = ".classpath";
+
+  /**
+   * Returns a cache that keeps class paths in memory only.
+   */
+  public static ClassPathCache inMemory() {
+    return new ClassPathCache(Optional.empty());
+  }
+
+  /**
+   * Returns a cache that keeps class paths in the given directory (created if necessary), one file
+   * per key, so that they persist across runs.
+   */
+  public static ClassPathCache storedIn(Path directory) {
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new ClassPathCache(Optional.of(directory));
+  }
+
+  /**
+   * @return the key of the given POM, or an empty optional iff it cannot be read as XML (including
+   *         when it declares a document type) or its dependencies depend on its directory.
+   */
+  public static Optional<String> getKey(Path pom) {
+    final Document document;
+    try (InputStream input = Files.newInputStream(pom)) {
+      final DocumentBuilderFactory factory = DocumentBuilderFactory.newDefaultInstance();
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+      factory.setXIncludeAware(false);
+      factory.setExpandEntityReferences(false);
+      factory.setIgnoringComments(true);
+      final DocumentBuilder builder = factory.newDocumentBuilder();
+      builder.setErrorHandler(new DefaultHandler());
+      document = builder.parse(input);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (ParserConfigurationException e) {
+      throw new IllegalStateException(e);
+    } catch (SAXException e) {
+      LOGGER.info("Unreadable POM {}: {}.", pom, e.getMessage());
+      return Optional.empty();
+    }
+    final Element project = document.getDocumentElement();
+    final StringBuilder normalized = new StringBuilder();
+    for (Element child : getChildren(project)) {
+      if (SECTIONS.contains(child.getTagName())) {
+        normalized.append(normalize(child));
+      }
+    }
+    if (DIRECTORY_DEPENDENT.stream().anyMatch(d -> normalized.indexOf(d) >= 0)) {
+      LOGGER.debug("Not sharing the class path of {}, which depends on its directory.", pom);
+      return Optional.empty();
+    }
+    if (normalized.indexOf("${project.") >= 0 || normalized.indexOf("${pom.") >= 0) {
+      for (Element child : getChildren(project)) {
+        if (ImmutableSet.of("groupId", "artifactId", "version").contains(child.getTagName())) {
+          normalized.append(normalize(child));
+        }
+      }
+    }
+    return Optional.of(Hashing.sha256().hashString(normalized, StandardCharsets.UTF_8).toString());
+  }
+
+  private static ImmutableList<Element> getChildren(Element element) {
+    final ImmutableList.Builder<Element> builder = ImmutableList.builder();
+    final NodeList nodes = element.getChildNodes();
+    for (int i = 0; i < nodes.getLength(); ++i) {
+      final Node node = nodes.item(i);
+      if (node instanceof Element child) {
+        builder.add(child);
+      }
+    }
+    return builder.build();
+  }
+
+  private static String normalize(Element element) {
+    final ImmutableList<Element> children = getChildren(element);
+    if (children.isEmpty()) {
+      return element.getTagName() + "=" + element.getTextContent().strip() + ";";
+    }
+    final List<String> normalizedChildren = new ArrayList<>();
+    for (Element child : children) {
+      final boolean isDefault = element.getTagName().equals("dependency")
+          && getChildren(child).isEmpty() && child.getTextContent().strip()
+              .equals(DEPENDENCY_DEFAULTS.get(child.getTagName()));
+      if (!isDefault) {
+        normalizedChildren.add(normalize(child));
+      }
+    }
+    if (!ORDERED.contains(element.getTagName())) {
+      normalizedChildren.sort(Comparator.naturalOrder());
+    }
+    return element.getTagName() + "{" + String.join("", normalizedChildren) + "}";
+  }
+
+  private final Optional<Path> directory;
+  private final Map<String, ImmutableList<Path>> classPaths;
+
+  private ClassPathCache(Optional<Path> directory) {
+    this.directory = checkNotNull(directory);
+    classPaths = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the class path associated to the given key, if known and if all its entries still
+   * exist.
+   */
+  public Optional<ImmutableList<Path>> get(String key) {
+    final ImmutableList<Path> known = classPaths.get(key);
+    final Optional<ImmutableList<Path>> classPath;
+    if (known != null) {
+      classPath = Optional.of(known);
+    } else {
+      classPath = read(key);
+      classPath.ifPresent(c -> classPaths.put(key, c));
+    }
+    if (classPath.isPresent() && !classPath.get().stream().allMatch(Files::exists)) {
+      LOGGER.info("Ignoring stale class path for {}.", key);
+      classPaths.remove(key);
+      return Optional.empty();
+    }
+    return classPath;
+  }
+
+  public void put(String key, List<Path> classPath) {
+    final ImmutableList<Path> copy = ImmutableList.copyOf(classPath);
+    classPaths.put(key, copy);
+    if (directory.isPresent()) {
+      final Path target = directory.get().resolve(key + EXTENSION);
+      try {
+        final Path temporary = Files.createTempFile(directory.get(), key, ".tmp");
+        Files.write(temporary, copy.stream().map(Path::toString).toList());
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private Optional<ImmutableList<Path>> read(String key) {
+    if (directory.isEmpty()) {
+      return Optional.empty();
+    }
+    final Path source = directory.get().resolve(key + EXTENSION);
+    if (!Files.exists(source)) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(Files.readAllLines(source).stream().map(source.getFileSystem()::getPath)
+          .collect(ImmutableList.toImmutableList()));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,348 @@
+package io.github.oliviercailloux.grade.contexters;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.LauncherSession;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Compiles and tests a simple Maven project within this JVM, with the layout and output folders
+ * that Maven would use, given the dependency class path of the project.
+ * <p>
+ * A project is simple if it is a single-module jar project that uses only plugins whose effect is
+ * reproduced here (or irrelevant to compiling and testing). Tests are run with the JUnit Platform
+ * launcher of this JVM, in a class loader that loads the project classes and dependencies first,
+ * except for JUnit (and its own dependencies), which are shared with this JVM so that its engines
+ * recognize the tests.
+ * </p>
+ */
+class EmbeddedBuild {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedBuild.class);
+
+  private static final ImmutableSet<String> HARMLESS_PLUGINS =
+      ImmutableSet.of("maven-compiler-plugin", "maven-surefire-plugin", "maven-resources-plugin",
+          "maven-jar-plugin", "maven-install-plugin", "maven-deploy-plugin", "maven-site-plugin",
+          "maven-javadoc-plugin", "maven-source-plugin", "maven-clean-plugin");
+
+  private static final ImmutableList<String> SHARED_PACKAGES =
+      ImmutableList.of("org.junit.", "org.opentest4j.", "org.apiguardian.");
+
+  static record Result (boolean success, String output) {
+  }
+
+  /**
+   * @return an embedded build of the given project, iff it is simple.
+   */
+  static Optional<EmbeddedBuild> given(Path pom) {
+    if (!Files.isRegularFile(pom)) {
+      return Optional.empty();
+    }
+    final Document document;
+    try (InputStream input = Files.newInputStream(pom)) {
+      final DocumentBuilderFactory factory = DocumentBuilderFactory.newDefaultInstance();
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+      factory.setXIncludeAware(false);
+      factory.setExpandEntityReferences(false);
+      factory.setIgnoringComments(true);
+      final DocumentBuilder builder = factory.newDocumentBuilder();
+      builder.setErrorHandler(new DefaultHandler());
+      document = builder.parse(input);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (ParserConfigurationException e) {
+      throw new IllegalStateException(e);
+    } catch (SAXException e) {
+      return Optional.empty();
+    }
+    final Element project = document.getDocumentElement();
+    final String packaging =
+        getChild(project, "packaging").map(EmbeddedBuild::getText).orElse("jar");
+    if (!packaging.equals("jar") || getChild(project, "modules").isPresent()
+        || getChild(project, "profiles").isPresent()) {
+      return Optional.empty();
+    }
+    final Optional<Element> build = getChild(project, "build");
+    final ImmutableList<Element> plugins =
+        build.flatMap(b -> getChild(b, "plugins")).map(EmbeddedBuild::getChildren)
+            .orElse(ImmutableList.of());
+    final boolean allHarmless = plugins.stream().allMatch(p -> getChild(p, "artifactId")
+        .map(EmbeddedBuild::getText).filter(HARMLESS_PLUGINS::contains).isPresent());
+    final boolean defaultLayout = build.stream().flatMap(b -> getChildren(b).stream())
+        .map(Element::getTagName)
+        .noneMatch(n -> n.endsWith("Directory") || n.equals("resources")
+            || n.equals("testResources"));
+    if (!allHarmless || !defaultLayout) {
+      LOGGER.debug("Not a simple project: {}.", pom);
+      return Optional.empty();
+    }
+
+    final Optional<Element> properties = getChild(project, "properties");
+    final Optional<String> release = properties
+        .flatMap(p -> getChild(p, "maven.compiler.release")
+            .or(() -> getChild(p, "maven.compiler.source")))
+        .map(EmbeddedBuild::getText).filter(r -> r.matches("(1\\.)?\\d+"))
+        .map(r -> r.replaceFirst("^1\\.", ""));
+    return Optional.of(new EmbeddedBuild(pom.toAbsolutePath().getParent(), release));
+  }
+
+  private static ImmutableList<Element> getChildren(Element element) {
+    final ImmutableList.Builder<Element> builder = ImmutableList.builder();
+    final NodeList nodes = element.getChildNodes();
+    for (int i = 0; i < nodes.getLength(); ++i) {
+      final Node node = nodes.item(i);
+      if (node instanceof Element child) {
+        builder.add(child);
+      }
+    }
+    return builder.build();
+  }
+
+  private static Optional<Element> getChild(Element element, String name) {
+    return getChildren(element).stream().filter(e -> e.getTagName().equals(name)).findFirst();
+  }
+
+  private static String getText(Element element) {
+    return element.getTextContent().strip();
+  }
+
+  private final Path root;
+  private final Optional<String> release;
+
+  private EmbeddedBuild(Path root, Optional<String> release) {
+    this.root = checkNotNull(root);
+    this.release = checkNotNull(release);
+  }
+
+  private Path getClasses() {
+    return root.resolve("target/classes");
+  }
+
+  private Path getTestClasses() {
+    return root.resolve("target/test-classes");
+  }
+
+  Result compile(List<Path> classPath) {
+    final StringBuilder output = new StringBuilder();
+    final boolean compiled = compile(classPath, root.resolve("src/main/java"),
+        root.resolve("src/main/resources"), getClasses(), output);
+    return new Result(compiled, output.toString());
+  }
+
+  /**
+   * Compiles the main and test classes, then runs the tests, if compilation succeeded.
+   */
+  Result test(List<Path> classPath) {
+    final StringBuilder output = new StringBuilder();
+    final boolean compiled = compile(classPath, root.resolve("src/main/java"),
+        root.resolve("src/main/resources"), getClasses(), output);
+    if (!compiled) {
+      return new Result(false, output.toString());
+    }
+    final ImmutableList<Path> testClassPath = ImmutableList.<Path>builder().add(getClasses())
+        .addAll(classPath).build();
+    final boolean testsCompiled = compile(testClassPath, root.resolve("src/test/java"),
+        root.resolve("src/test/resources"), getTestClasses(), output);
+    if (!testsCompiled) {
+      return new Result(false, output.toString());
+    }
+
+    final TestExecutionSummary summary = runTests(
+        ImmutableList.<Path>builder().add(getTestClasses()).addAll(testClassPath).build());
+    final long failed = summary.getTotalFailureCount();
+    /* As Surefire, counts failed assertions as failures and other exceptions as errors. */
+    final long assertionFailures = summary.getFailures().stream()
+        .filter(f -> f.getException() instanceof AssertionError).count();
+    output.append(String.format(Locale.ROOT,
+        "[INFO] Tests run: %d, Failures: %d, Errors: %d, Skipped: %d%n",
+        summary.getTestsStartedCount(), assertionFailures, failed - assertionFailures,
+        summary.getTestsSkippedCount()));
+    if (failed != 0) {
+      final StringWriter failures = new StringWriter();
+      summary.printFailuresTo(new PrintWriter(failures), 20);
+      output.append("[ERROR] There are test failures.\n").append(failures);
+    }
+    return new Result(failed == 0, output.toString());
+  }
+
+  private boolean compile(List<Path> classPath, Path sourceFolder, Path resourcesFolder,
+      Path destination, StringBuilder output) {
+    final ImmutableList<Path> sources;
+    try {
+      MoreFiles.deleteRecursively(destination, RecursiveDeleteOption.ALLOW_INSECURE);
+    } catch (IOException e) {
+      if (Files.exists(destination)) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    try {
+      Files.createDirectories(destination);
+      copyResources(resourcesFolder, destination);
+      if (!Files.isDirectory(sourceFolder)) {
+        return true;
+      }
+      try (Stream<Path> found = Files.walk(sourceFolder)) {
+        sources = found.filter(p -> p.toString().endsWith(".java")).filter(Files::isRegularFile)
+            .collect(ImmutableList.toImmutableList());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (sources.isEmpty()) {
+      return true;
+    }
+
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    final ImmutableList.Builder<String> options = ImmutableList.builder();
+    release.ifPresent(r -> options.add("--release", r));
+    options.add("-encoding", "UTF-8");
+    final boolean compiled;
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, Locale.ROOT, null)) {
+      fileManager.setLocationFromPaths(StandardLocation.ANNOTATION_PROCESSOR_PATH,
+          ImmutableList.of());
+      fileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, classPath);
+      fileManager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT,
+          ImmutableList.of(destination));
+      final StringWriter compilerOutput = new StringWriter();
+      compiled = compiler.getTask(compilerOutput, fileManager, diagnostics, options.build(), null,
+          fileManager.getJavaFileObjectsFromPaths(sources)).call();
+      output.append(compilerOutput);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (IllegalArgumentException e) {
+      /* Invalid option, such as an unsupported release. */
+      output.append("[ERROR] ").append(e.getMessage()).append('\n');
+      return false;
+    }
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      final String level = diagnostic.getKind() == Diagnostic.Kind.ERROR ? "ERROR" : "WARNING";
+      final String location = diagnostic.getSource() == null ? ""
+          : Path.of(diagnostic.getSource().toUri()) + ":[" + diagnostic.getLineNumber() + ","
+              + diagnostic.getColumnNumber() + "] ";
+      output.append("[").append(level).append("] ").append(location)
+          .append(diagnostic.getMessage(Locale.ROOT)).append('\n');
+    }
+    output.append(compiled ? "[INFO] Compiled " : "[ERROR] Failed compiling ")
+        .append(sources.size()).append(" source files to ").append(destination).append('\n');
+    return compiled;
+  }
+
+  private static void copyResources(Path resourcesFolder, Path destination) throws IOException {
+    if (!Files.isDirectory(resourcesFolder)) {
+      return;
+    }
+    try (Stream<Path> found = Files.walk(resourcesFolder)) {
+      for (Path resource : (Iterable<Path>) found.filter(Files::isRegularFile)::iterator) {
+        final Path target = destination.resolve(resourcesFolder.relativize(resource).toString());
+        Files.createDirectories(target.getParent());
+        Files.copy(resource, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
+
+  private TestExecutionSummary runTests(List<Path> classPath) {
+    final URL[] urls = classPath.stream().map(p -> {
+      try {
+        return p.toUri().toURL();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }).toArray(URL[]::new);
+    final Thread thread = Thread.currentThread();
+    final ClassLoader previous = thread.getContextClassLoader();
+    try (URLClassLoader loader = new ProjectClassLoader(urls, getClass().getClassLoader())) {
+      thread.setContextClassLoader(loader);
+      final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+          .selectors(DiscoverySelectors.selectClasspathRoots(ImmutableSet.of(getTestClasses())))
+          .build();
+      final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+      try (LauncherSession session = LauncherFactory.openSession()) {
+        final Launcher launcher = session.getLauncher();
+        launcher.execute(request, listener);
+      }
+      return listener.getSummary();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      thread.setContextClassLoader(previous);
+    }
+  }
+
+  /**
+   * Loads classes from its own class path first, except those of the shared packages.
+   */
+  private static class ProjectClassLoader extends URLClassLoader {
+    static {
+      registerAsParallelCapable();
+    }
+
+    public ProjectClassLoader(URL[] urls, ClassLoader parent) {
+      super(urls, parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (name.startsWith("java.") || SHARED_PACKAGES.stream().anyMatch(name::startsWith)) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> c = findLoadedClass(name);
+        if (c == null) {
+          try {
+            c = findClass(name);
+          } catch (ClassNotFoundException e) {
+            c = super.loadClass(name, false);
+          }
+        }
+        if (resolve) {
+          resolveClass(c);
+        }
+        return c;
+      }
+    }
+  }
+}
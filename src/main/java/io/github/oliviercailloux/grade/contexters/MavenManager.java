@@ -7,12 +7,23 @@ import static com.google.common.base.Verify.verify;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 import io.github.oliviercailloux.grade.GradingException;
+import io.github.oliviercailloux.grade.metrics.Metrics;
+import io.github.oliviercailloux.grade.metrics.Stage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.maven.shared.invoker.DefaultInvocationRequest;
@@ -32,20 +43,204 @@ public class MavenManager {
   private String output;
   private static final String ANSI_ESCAPE_CODES_REG_EXP = "\u001B\\[[;\\d]*[ -/]*[@-~]";
   private Path lastPom;
+  private Path localRepository;
+  private Path mavenHome;
+  private boolean offline;
+  private Optional<ClassPathCache> classPathCache;
+  private boolean embedded;
 
+  /**
+   * Uses the local repository in the user home and the Maven home given by the
+   * {@code maven.home} system property or the {@code MAVEN_HOME} environment variable, defaulting
+   * to {@code /usr/share/maven}.
+   */
   public MavenManager() {
     output = null;
+    localRepository = Path.of(System.getProperty("user.home"), ".m2", "repository");
+    final String home = Optional.ofNullable(System.getProperty("maven.home"))
+        .or(() -> Optional.ofNullable(System.getenv("MAVEN_HOME"))).orElse("/usr/share/maven");
+    mavenHome = Path.of(home);
+    offline = false;
+    classPathCache = Optional.empty();
+    embedded = false;
+  }
+
+  public MavenManager setLocalRepository(Path localRepository) {
+    this.localRepository = checkNotNull(localRepository);
+    return this;
+  }
+
+  public MavenManager setMavenHome(Path mavenHome) {
+    this.mavenHome = checkNotNull(mavenHome);
+    return this;
+  }
+
+  /**
+   * @param offline whether Maven must work with the local repository only.
+   */
+  public MavenManager setOffline(boolean offline) {
+    this.offline = offline;
+    return this;
+  }
+
+  /**
+   * @param cache used by {@link #getClassPath(Path)} to skip Maven when a project with the same
+   *        dependencies has already been resolved.
+   */
+  public MavenManager setClassPathCache(ClassPathCache cache) {
+    this.classPathCache = Optional.of(cache);
+    return this;
+  }
+
+  /**
+   * @param embedded whether to compile and test simple projects within this JVM (using the
+   *        dependency class path, thus, preferably, a class path cache) rather than by invoking
+   *        Maven; projects that are not simple are built by invoking Maven anyway.
+   */
+  public MavenManager setEmbedded(boolean embedded) {
+    this.embedded = embedded;
+    return this;
+  }
+
+  private MavenManager copyConfiguration() {
+    final MavenManager copy = new MavenManager();
+    copy.localRepository = localRepository;
+    copy.mavenHome = mavenHome;
+    copy.offline = offline;
+    copy.classPathCache = classPathCache;
+    copy.embedded = embedded;
+    return copy;
   }
 
   public boolean compile(Path pom) throws GradingException {
-    return command(pom, "compile");
+    final Optional<EmbeddedBuild> build = getEmbeddedBuild(pom);
+    if (build.isPresent()) {
+      final Optional<ImmutableList<Path>> classPath = getClassPathIfResolved(pom);
+      if (classPath.isEmpty()) {
+        return false;
+      }
+      try (Metrics.Timer timer = Metrics.current().time(Stage.COMPILATION)) {
+        return embedded(pom, build.get().compile(classPath.get()));
+      }
+    }
+    try (Metrics.Timer timer = Metrics.current().time(Stage.COMPILATION)) {
+      return command(pom, "compile");
+    }
   }
 
   public boolean test(Path pom) throws GradingException {
-    return command(pom, "test");
+    final Optional<EmbeddedBuild> build = getEmbeddedBuild(pom);
+    if (build.isPresent()) {
+      final Optional<ImmutableList<Path>> classPath = getClassPathIfResolved(pom);
+      if (classPath.isEmpty()) {
+        return false;
+      }
+      try (Metrics.Timer timer = Metrics.current().time(Stage.TEST_EXECUTION)) {
+        return embedded(pom, build.get().test(classPath.get()));
+      }
+    }
+    try (Metrics.Timer timer = Metrics.current().time(Stage.TEST_EXECUTION)) {
+      return command(pom, "test");
+    }
   }
 
+  private Optional<EmbeddedBuild> getEmbeddedBuild(Path pom) {
+    if (!embedded) {
+      return Optional.empty();
+    }
+    final Optional<EmbeddedBuild> build = EmbeddedBuild.given(pom);
+    if (build.isEmpty()) {
+      LOGGER.info("Not a simple project, invoking Maven for {}.", pom);
+    }
+    return build;
+  }
+
+  private boolean embedded(Path pom, EmbeddedBuild.Result result) {
+    lastPom = pom;
+    output = result.output();
+    LOGGER.debug("Embedded build output: {}.", output);
+    return result.success();
+  }
+
+  /**
+   * @return the dependency class path of the given project, or an empty optional iff its
+   *         resolution failed, in which case the output is the one of Maven.
+   */
+  private Optional<ImmutableList<Path>> getClassPathIfResolved(Path pom)
+      throws GradingException {
+    try {
+      return Optional.of(getClassPath(pom));
+    } catch (IllegalArgumentException e) {
+      LOGGER.info("Could not resolve class path of {}.", pom);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Returns the dependency class path of the given project, from the cache if one is set and
+   * knows its dependencies (in which case Maven is not invoked and the output is not updated).
+   */
   public ImmutableList<Path> getClassPath(Path pom) throws GradingException {
+    final Optional<String> key = classPathCache.flatMap(c -> ClassPathCache.getKey(pom));
+    final Optional<ImmutableList<Path>> cached =
+        key.flatMap(k -> classPathCache.orElseThrow().get(k));
+    if (cached.isPresent()) {
+      LOGGER.debug("Class path of {} found in cache.", pom);
+      Metrics.current().recordHit("class path");
+      return cached.get();
+    }
+    if (key.isPresent()) {
+      Metrics.current().recordMiss("class path");
+    }
+    final ImmutableList<Path> classPath = resolveClassPath(pom);
+    key.ifPresent(k -> classPathCache.orElseThrow().put(k, classPath));
+    return classPath;
+  }
+
+  /**
+   * Resolves, in parallel, the class paths of the given projects that the cache does not know
+   * yet, invoking Maven only once per distinct set of dependencies.
+   *
+   * @return the class path of each project whose resolution succeeded (failures are logged).
+   */
+  public ImmutableMap<Path, ImmutableList<Path>> prewarm(Collection<Path> poms, int parallelism) {
+    checkState(classPathCache.isPresent());
+    checkArgument(parallelism >= 1);
+    final ImmutableListMultimap<String, Path> byKey = poms.stream().collect(
+        ImmutableListMultimap.toImmutableListMultimap(
+            p -> ClassPathCache.getKey(p).orElse(p.toAbsolutePath().toString()), p -> p));
+    LOGGER.info("Resolving {} projects with {} distinct dependency sets.", poms.size(),
+        byKey.keySet().size());
+
+    final Map<Path, ImmutableList<Path>> resolved = new ConcurrentHashMap<>();
+    final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try {
+      for (Collection<Path> group : byKey.asMap().values()) {
+        executor.execute(() -> {
+          final Path representative = group.iterator().next();
+          try {
+            final ImmutableList<Path> classPath =
+                copyConfiguration().getClassPath(representative);
+            group.forEach(p -> resolved.put(p, classPath));
+          } catch (GradingException | IllegalArgumentException e) {
+            LOGGER.warn("Could not resolve class path of {}.", representative, e);
+          }
+        });
+      }
+      executor.shutdown();
+      final boolean terminated = executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      verify(terminated);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+    return poms.stream().distinct().filter(resolved::containsKey)
+        .collect(ImmutableMap.toImmutableMap(p -> p, resolved::get));
+  }
+
+  private ImmutableList<Path> resolveClassPath(Path pom) throws GradingException {
     final boolean succeeded =
         command(pom, "org.apache.maven.plugins:maven-dependency-plugin:3.1.2:build-classpath");
     checkArgument(succeeded);
@@ -70,14 +265,16 @@ public class MavenManager {
     request.setOutputHandler(new PrintStreamHandler(new PrintStream(baos), true));
     request.setPomFile(pom.toFile());
     request.setGoals(ImmutableList.of(goal));
+    request.setBatchMode(true);
+    request.setOffline(offline);
     // if (!enableTests) {
     // final Properties properties = new Properties();
     // properties.setProperty("skipTests", "true");
     // request.setProperties(properties);
     // }
     Invoker invoker = new DefaultInvoker();
-    invoker.setLocalRepositoryDirectory(Path.of("/home/olivier/.m2/repository").toFile());
-    invoker.setMavenHome(Path.of("/usr/share/maven").toFile());
+    invoker.setLocalRepositoryDirectory(localRepository.toFile());
+    invoker.setMavenHome(mavenHome.toFile());
     final InvocationResult result;
     try {
       result = invoker.execute(request);
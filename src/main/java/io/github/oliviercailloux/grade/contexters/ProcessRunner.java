@@ -1,18 +1,132 @@
 package io.github.oliviercailloux.grade.contexters;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.base.MoreObjects;
-import com.google.common.io.CharStreams;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Runs a process, draining its standard output and error streams concurrently while it runs, so
+ * that a process writing a lot never blocks on a full pipe.
+ * <p>
+ * The text kept from each stream is capped; beyond the cap, the stream is still read but its
+ * content is dropped, and a truncation marker is appended to what has been kept. Lines can also be
+ * streamed to listeners as they are read (lines longer than the cap are truncated). When the
+ * process exceeds the wall-clock time limit or the CPU-time limit, it is killed together with all
+ * its descendants.
+ * </p>
+ */
 public class ProcessRunner {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProcessRunner.class);
+
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+
+  /**
+   * The time given to the streams to be closed, once the process has ended.
+   */
+  private static final Duration DRAIN_GRACE = Duration.ofSeconds(5);
+
+  public static enum Limit {
+    WALL_CLOCK, CPU_TIME
+  }
+
+  /**
+   * Runs the given command with a wall-clock time limit of twenty seconds and the default caps.
+   */
   public static ProcessOutput run(File workingDirectory, List<String> toRun) {
+    return newInstance().execute(workingDirectory, toRun);
+  }
+
+  public static ProcessRunner newInstance() {
+    return new ProcessRunner();
+  }
+
+  private Duration timeout;
+  private Optional<Duration> cpuTimeLimit;
+  private int outputCap;
+  private Consumer<String> outputListener;
+  private Consumer<String> errorListener;
+
+  private ProcessRunner() {
+    timeout = Duration.ofSeconds(20);
+    cpuTimeLimit = Optional.empty();
+    outputCap = 16 * 1024 * 1024;
+    outputListener = l -> {
+    };
+    errorListener = l -> {
+    };
+  }
+
+  public ProcessRunner setTimeout(Duration wallClockLimit) {
+    checkArgument(wallClockLimit.compareTo(Duration.ZERO) > 0);
+    timeout = wallClockLimit;
+    return this;
+  }
+
+  /**
+   * @param limit the total CPU time allowed to the process and its descendants (measured only for
+   *        those that are alive when measured, thus, approximately), or an empty optional for no
+   *        limit (the default).
+   */
+  public ProcessRunner setCpuTimeLimit(Optional<Duration> limit) {
+    limit.ifPresent(l -> checkArgument(l.compareTo(Duration.ZERO) > 0));
+    cpuTimeLimit = checkNotNull(limit);
+    return this;
+  }
+
+  /**
+   * @param maxChars the maximal number of characters kept from each stream.
+   */
+  public ProcessRunner setOutputCap(int maxChars) {
+    checkArgument(maxChars >= 0);
+    outputCap = maxChars;
+    return this;
+  }
+
+  /**
+   * @param listener receives each line of the standard output as soon as it is read, on a thread
+   *        dedicated to reading that stream.
+   */
+  public ProcessRunner setOutputListener(Consumer<String> listener) {
+    outputListener = checkNotNull(listener);
+    return this;
+  }
+
+  /**
+   * @param listener receives each line of the standard error as soon as it is read, on a thread
+   *        dedicated to reading that stream.
+   */
+  public ProcessRunner setErrorListener(Consumer<String> listener) {
+    errorListener = checkNotNull(listener);
+    return this;
+  }
+
+  public ProcessOutput execute(File workingDirectory, List<String> toRun) {
     final ProcessBuilder builder = new ProcessBuilder();
     builder.directory(workingDirectory);
     builder.command(toRun);
@@ -21,49 +135,268 @@ public class ProcessRunner {
     try {
       process = builder.start();
       process.getOutputStream().close();
-      process.waitFor(20, TimeUnit.SECONDS);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
+    }
+
+    final ExecutorService drainers = Executors
+        .newFixedThreadPool(2, new ThreadFactoryBuilder().setDaemon(true).build());
+    try {
+      final Kept keptOutput = new Kept(outputCap);
+      final Kept keptError = new Kept(outputCap);
+      final CompletableFuture<Drained> output = CompletableFuture.supplyAsync(
+          () -> drain(process.getInputStream(), keptOutput, outputCap, outputListener), drainers);
+      final CompletableFuture<Drained> error = CompletableFuture.supplyAsync(
+          () -> drain(process.getErrorStream(), keptError, outputCap, errorListener), drainers);
+
+      final Optional<Limit> exceeded = await(process);
+      if (exceeded.isPresent()) {
+        LOGGER.info("Killing {} and its descendants: exceeded {}.", toRun, exceeded.get());
+        killTree(process.toHandle());
+      }
+      final int exitCode = waitForUninterruptibly(process);
+
+      final Drained drainedOutput = get(output, keptOutput, process.getInputStream());
+      final Drained drainedError = get(error, keptError, process.getErrorStream());
+      return new ProcessOutput(drainedOutput.text(), drainedError.text(), exitCode, exceeded,
+          drainedOutput.truncated(), drainedError.truncated());
+    } finally {
+      drainers.shutdownNow();
+    }
+  }
+
+  private Optional<Limit> await(Process process) {
+    final Instant deadline = Instant.now().plus(timeout);
+    try {
+      while (!process.waitFor(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS)) {
+        if (Instant.now().isAfter(deadline)) {
+          return Optional.of(Limit.WALL_CLOCK);
+        }
+        if (cpuTimeLimit.isPresent()
+            && getCpuDuration(process.toHandle()).compareTo(cpuTimeLimit.get()) > 0) {
+          return Optional.of(Limit.CPU_TIME);
+        }
+      }
+    } catch (InterruptedException e) {
+      killTree(process.toHandle());
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+    return Optional.empty();
+  }
+
+  private static Duration getCpuDuration(ProcessHandle process) {
+    return Stream.concat(Stream.of(process), process.descendants())
+        .map(p -> p.info().totalCpuDuration().orElse(Duration.ZERO))
+        .reduce(Duration.ZERO, Duration::plus);
+  }
+
+  private static void killTree(ProcessHandle process) {
+    /* Descendants are listed first, as they may be re-parented once their parent dies. */
+    final ImmutableList<ProcessHandle> descendants =
+        process.descendants().collect(ImmutableList.toImmutableList());
+    process.destroyForcibly();
+    descendants.forEach(ProcessHandle::destroyForcibly);
+  }
+
+  private static int waitForUninterruptibly(Process process) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return process.waitFor();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Obtains the drained content, closing the stream first if it stays open for too long after the
+   * end of the process (which may happen if some process outside of the killed tree inherited it).
+   * If the drainer is still blocked once the stream has been closed (closing may itself block
+   * while a read is pending), it is abandoned, and what it has kept so far is returned, ending with
+   * a truncation marker.
+   */
+  private static Drained get(CompletableFuture<Drained> drained, Kept kept, InputStream stream) {
+    try {
+      try {
+        return drained.get(DRAIN_GRACE.toMillis(), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        LOGGER.warn("Stream still open after the process ended, closing it.");
+        final Thread closer = new Thread(() -> close(stream), "Closer");
+        closer.setDaemon(true);
+        closer.start();
+        try {
+          return drained.get(DRAIN_GRACE.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException stillOpen) {
+          LOGGER.warn("Stream still not drained after closing it, abandoning it.");
+          drained.cancel(true);
+          return kept.getAbandoned();
+        }
+      }
+    } catch (ExecutionException | CompletionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException unchecked) {
+        throw unchecked;
+      }
+      throw new IllegalStateException(cause);
     } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
       throw new IllegalStateException(e);
     }
-    final InputStream inputStream = process.getInputStream();
-    final InputStream errorStream = process.getErrorStream();
-    final String output;
-    final String error;
+  }
+
+  private static void close(InputStream stream) {
     try {
-      try (InputStreamReader r = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-          InputStreamReader rError = new InputStreamReader(errorStream, StandardCharsets.UTF_8)) {
-        output = CharStreams.toString(r);
-        error = CharStreams.toString(rError);
+      stream.close();
+    } catch (IOException e) {
+      LOGGER.warn("Could not close the stream.", e);
+    }
+  }
+
+  private record Drained (String text, boolean truncated) {
+  }
+
+  /**
+   * The text kept from a stream, up to a cap, shared between the drainer and the thread that waits
+   * for it, so that the latter may obtain the text kept so far even if the drainer never returns.
+   */
+  private static class Kept {
+    private final int cap;
+    private final StringBuilder text;
+    private long dropped;
+
+    public Kept(int cap) {
+      this.cap = cap;
+      text = new StringBuilder();
+      dropped = 0L;
+    }
+
+    public synchronized void append(char[] buffer, int read) {
+      final int keptNow = Math.min(read, cap - text.length());
+      text.append(buffer, 0, keptNow);
+      dropped += read - keptNow;
+    }
+
+    public synchronized Drained get() {
+      if (dropped == 0L) {
+        return new Drained(text.toString(), false);
+      }
+      return new Drained(text + getTruncationMarker(dropped), true);
+    }
+
+    public synchronized Drained getAbandoned() {
+      final String marker = dropped == 0L ? "" : getTruncationMarker(dropped);
+      return new Drained(text + marker + "[... truncated: stream abandoned]", true);
+    }
+  }
+
+  private static Drained drain(InputStream stream, Kept kept, int cap,
+      Consumer<String> lineListener) {
+    final StringBuilder line = new StringBuilder();
+    long droppedFromLine = 0L;
+    final char[] buffer = new char[8192];
+    try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+      int read = reader.read(buffer);
+      while (read != -1) {
+        kept.append(buffer, read);
+        for (int i = 0; i < read; ++i) {
+          final char c = buffer[i];
+          if (c == '\n') {
+            lineListener.accept(asLine(line, droppedFromLine));
+            line.setLength(0);
+            droppedFromLine = 0L;
+          } else if (line.length() < cap) {
+            line.append(c);
+          } else {
+            ++droppedFromLine;
+          }
+        }
+        read = reader.read(buffer);
       }
     } catch (IOException e) {
-      throw new UncheckedIOException(e);
+      /* The stream has been closed because the process did not close it in time. */
+      LOGGER.debug("Stopped reading.", e);
     }
+    if (line.length() > 0 || droppedFromLine > 0L) {
+      lineListener.accept(asLine(line, droppedFromLine));
+    }
+    return kept.get();
+  }
 
-    return new ProcessOutput(output, error);
+  private static String asLine(StringBuilder line, long dropped) {
+    final int end =
+        line.length() > 0 && line.charAt(line.length() - 1) == '\r' ? line.length() - 1
+            : line.length();
+    final String content = line.substring(0, end);
+    return dropped == 0L ? content : content + getTruncationMarker(dropped);
+  }
+
+  private static String getTruncationMarker(long dropped) {
+    return "[... truncated " + dropped + " characters]";
   }
 
   public static class ProcessOutput {
     private String output;
     private String error;
+    private final int exitCode;
+    private final Optional<Limit> exceededLimit;
+    private final boolean outputTruncated;
+    private final boolean errorTruncated;
 
-    ProcessOutput(String output, String error) {
+    ProcessOutput(String output, String error, int exitCode, Optional<Limit> exceededLimit,
+        boolean outputTruncated, boolean errorTruncated) {
       this.output = output;
       this.error = error;
+      this.exitCode = exitCode;
+      this.exceededLimit = exceededLimit;
+      this.outputTruncated = outputTruncated;
+      this.errorTruncated = errorTruncated;
     }
 
+    /**
+     * @return the standard output, ending with a truncation marker iff it has been truncated.
+     */
     public String getOutput() {
       return output;
     }
 
+    /**
+     * @return the standard error, ending with a truncation marker iff it has been truncated.
+     */
     public String getError() {
       return error;
     }
 
+    public int getExitCode() {
+      return exitCode;
+    }
+
+    /**
+     * @return the limit that the process exceeded, which caused it to be killed, if any.
+     */
+    public Optional<Limit> getExceededLimit() {
+      return exceededLimit;
+    }
+
+    public boolean isOutputTruncated() {
+      return outputTruncated;
+    }
+
+    public boolean isErrorTruncated() {
+      return errorTruncated;
+    }
+
     @Override
     public String toString() {
-      return MoreObjects.toStringHelper(this).add("output", output).add("error", error).toString();
+      return MoreObjects.toStringHelper(this).add("output", output).add("error", error)
+          .add("exit code", exitCode).add("exceeded", exceededLimit).toString();
     }
   }
 }
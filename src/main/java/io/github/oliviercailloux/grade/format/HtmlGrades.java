@@ -4,14 +4,18 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Verify.verify;
 
+import com.google.common.base.Throwables;
 import com.google.common.base.VerifyException;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.MoreCollectors;
 import com.google.common.math.Stats;
+import io.github.oliviercailloux.git.github.model.GitHubUsername;
 import io.github.oliviercailloux.grade.AbsoluteAggregator;
 import io.github.oliviercailloux.grade.CriteriaWeighter;
 import io.github.oliviercailloux.grade.Criterion;
+import io.github.oliviercailloux.grade.Exam;
 import io.github.oliviercailloux.grade.Grade;
 import io.github.oliviercailloux.grade.Mark;
 import io.github.oliviercailloux.grade.MarkAggregator;
@@ -22,17 +26,30 @@ import io.github.oliviercailloux.grade.OwaWeighter;
 import io.github.oliviercailloux.grade.ParametricWeighter;
 import io.github.oliviercailloux.grade.StaticWeighter;
 import io.github.oliviercailloux.grade.SubGrade;
+import io.github.oliviercailloux.jaris.throwing.TConsumer;
 import io.github.oliviercailloux.xml.HtmlDocument;
+import io.github.oliviercailloux.xml.HtmlWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.NumberFormat;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
 
 public class HtmlGrades {
+  private record DenominatedSubGrade (SubGrade subGrade, double denominator) {
+  }
+
   private static final double DEFAULT_DENOMINATOR = 20d;
 
   private static final NumberFormat FORMATTER = NumberFormat.getNumberInstance(Locale.ENGLISH);
@@ -80,12 +97,67 @@ public class HtmlGrades {
     return document.getDocument();
   }
 
+  /**
+   * Writes the same markup as {@link #asHtml(Map, String, double)}, without building a document in
+   * memory. Does not close the destination.
+   */
+  public static void writeHtml(Map<String, ? extends Grade> grades, String generalTitle,
+      double denominator, Writer destination) throws IOException {
+    final HtmlWriter writer = HtmlWriter.writingTo(destination);
+    writer.startDocument(generalTitle);
+    writer.writeTitle1(generalTitle);
+
+    for (String key : grades.keySet()) {
+      final Grade grade = grades.get(key);
+      writer.writeTitle2(key);
+      writeDescription(new SubGrade(Criterion.given("Grade"), grade), writer, denominator);
+    }
+
+    writer.endDocument();
+  }
+
   private static DocumentFragment getDescription(SubGrade critGrade, HtmlDocument document,
       double denominator) {
     checkNotNull(critGrade);
     checkNotNull(document);
     final DocumentFragment fragment = document.getDocument().createDocumentFragment();
 
+    fragment.appendChild(document.createParagraph(getSummary(critGrade, denominator)));
+
+    if (!critGrade.grade().toMarksTree().isMark()) {
+      final Element ul = document.createXhtmlElement("ul");
+      fragment.appendChild(ul);
+      for (DenominatedSubGrade child : getChildren(critGrade.grade(), denominator)) {
+        final DocumentFragment description =
+            getDescription(child.subGrade(), document, child.denominator());
+        final Element li = document.createXhtmlElement("li");
+        li.appendChild(description);
+
+        ul.appendChild(li);
+      }
+    }
+    return fragment;
+  }
+
+  private static void writeDescription(SubGrade critGrade, HtmlWriter writer, double denominator)
+      throws IOException {
+    checkNotNull(critGrade);
+    checkNotNull(writer);
+
+    writer.writeParagraph(getSummary(critGrade, denominator));
+
+    if (!critGrade.grade().toMarksTree().isMark()) {
+      writer.startElement("ul");
+      for (DenominatedSubGrade child : getChildren(critGrade.grade(), denominator)) {
+        writer.startElement("li");
+        writeDescription(child.subGrade(), writer, child.denominator());
+        writer.endElement();
+      }
+      writer.endElement();
+    }
+  }
+
+  private static String getSummary(SubGrade critGrade, double denominator) {
     final Criterion criterion = critGrade.criterion();
     final Grade grade = critGrade.grade();
 
@@ -136,74 +208,54 @@ public class HtmlGrades {
       }
     }
     final String explanationSeparator = explanation.isEmpty() ? "" : ": ";
-    final String criterionSumary =
-        criterion.getName() + " — " + explanation + explanationSeparator + pointsText;
-    fragment.appendChild(document.createParagraph(criterionSumary));
+    return criterion.getName() + " — " + explanation + explanationSeparator + pointsText;
+  }
 
-    if (!isMark) {
-      final Element ul = document.createXhtmlElement("ul");
-      fragment.appendChild(ul);
-      final MarkAggregator aggregator = grade.getMarkAggregator();
-      if (aggregator instanceof ParametricWeighter) {
-        final ParametricWeighter a = (ParametricWeighter) aggregator;
-        final Optional<Criterion> unknown = unknown(grade);
-        {
-          final Criterion subCriterion = a.multipliedCriterion();
-          final Grade subGradeAsGrade = grade.getGrade(subCriterion);
-          final SubGrade subGrade = new SubGrade(subCriterion, subGradeAsGrade);
-          final DocumentFragment description = getDescription(subGrade, document, denominator);
-          final Element li = document.createXhtmlElement("li");
-          li.appendChild(description);
-
-          ul.appendChild(li);
-        }
-        {
-          final Criterion subCriterion = a.weightingCriterion();
-          final Grade subGradeAsGrade = grade.getGrade(subCriterion);
-          checkArgument(subGradeAsGrade.toMarksTree().isMark());
-          final SubGrade subGrade = new SubGrade(subCriterion, subGradeAsGrade);
-          final DocumentFragment description = getDescription(subGrade, document, 100d);
-          final Element li = document.createXhtmlElement("li");
-          li.appendChild(description);
-
-          ul.appendChild(li);
-        }
-        if (unknown.isPresent()) {
-          final Criterion subCriterion = unknown.orElseThrow();
-          final Grade subGradeAsGrade = grade.getGrade(subCriterion);
-          final SubGrade subGrade = new SubGrade(subCriterion, subGradeAsGrade);
-          final DocumentFragment description = getDescription(subGrade, document, denominator);
-          final Element li = document.createXhtmlElement("li");
-          li.appendChild(description);
-
-          ul.appendChild(li);
-        }
-      } else if (aggregator instanceof CriteriaWeighter || aggregator instanceof OwaAggregator) {
-        for (Criterion subCriterion : grade.toMarksTree().getCriteria()) {
-          final Grade subGradeAsGrade = grade.getGrade(subCriterion);
-          final SubGrade subGrade = new SubGrade(subCriterion, subGradeAsGrade);
-          final double subWeight = grade.getWeight(subCriterion);
-          final DocumentFragment description =
-              getDescription(subGrade, document, denominator * subWeight);
-          final Element li = document.createXhtmlElement("li");
-          li.appendChild(description);
-
-          ul.appendChild(li);
-        }
-      } else if (aggregator instanceof OwaWeighter) {
-        for (Criterion subCriterion : grade.toMarksTree().getCriteria()) {
-          final DocumentFragment description = getDescription(
-              new SubGrade(subCriterion, grade.getGrade(subCriterion)), document, denominator);
-          final Element li = document.createXhtmlElement("li");
-          li.appendChild(description);
-
-          ul.appendChild(li);
-        }
-      } else {
-        throw new VerifyException();
+  /**
+   * Returns the sub-grades to describe below the given (non mark) grade, in order, each with the
+   * denominator to use for its description.
+   */
+  private static ImmutableList<DenominatedSubGrade> getChildren(Grade grade, double denominator) {
+    final ImmutableList.Builder<DenominatedSubGrade> children = ImmutableList.builder();
+    final MarkAggregator aggregator = grade.getMarkAggregator();
+    if (aggregator instanceof ParametricWeighter) {
+      final ParametricWeighter a = (ParametricWeighter) aggregator;
+      final Optional<Criterion> unknown = unknown(grade);
+      {
+        final Criterion subCriterion = a.multipliedCriterion();
+        final Grade subGradeAsGrade = grade.getGrade(subCriterion);
+        final SubGrade subGrade = new SubGrade(subCriterion, subGradeAsGrade);
+        children.add(new DenominatedSubGrade(subGrade, denominator));
+      }
+      {
+        final Criterion subCriterion = a.weightingCriterion();
+        final Grade subGradeAsGrade = grade.getGrade(subCriterion);
+        checkArgument(subGradeAsGrade.toMarksTree().isMark());
+        final SubGrade subGrade = new SubGrade(subCriterion, subGradeAsGrade);
+        children.add(new DenominatedSubGrade(subGrade, 100d));
+      }
+      if (unknown.isPresent()) {
+        final Criterion subCriterion = unknown.orElseThrow();
+        final Grade subGradeAsGrade = grade.getGrade(subCriterion);
+        final SubGrade subGrade = new SubGrade(subCriterion, subGradeAsGrade);
+        children.add(new DenominatedSubGrade(subGrade, denominator));
       }
+    } else if (aggregator instanceof CriteriaWeighter || aggregator instanceof OwaAggregator) {
+      for (Criterion subCriterion : grade.toMarksTree().getCriteria()) {
+        final Grade subGradeAsGrade = grade.getGrade(subCriterion);
+        final SubGrade subGrade = new SubGrade(subCriterion, subGradeAsGrade);
+        final double subWeight = grade.getWeight(subCriterion);
+        children.add(new DenominatedSubGrade(subGrade, denominator * subWeight));
+      }
+    } else if (aggregator instanceof OwaWeighter) {
+      for (Criterion subCriterion : grade.toMarksTree().getCriteria()) {
+        children.add(new DenominatedSubGrade(
+            new SubGrade(subCriterion, grade.getGrade(subCriterion)), denominator));
+      }
+    } else {
+      throw new VerifyException();
     }
-    return fragment;
+    return children.build();
   }
 
   private static Optional<Criterion> unknown(Grade grade) {
@@ -298,6 +350,87 @@ public class HtmlGrades {
     return document.getDocument();
   }
 
+  /**
+   * Writes the same markup as {@link #asHtmlDoc(Grade)}, without building a document in memory.
+   * Does not close the destination.
+   */
+  public void writeHtmlDoc(Grade grade, Writer destination) throws IOException {
+    final HtmlWriter writer = HtmlWriter.writingTo(destination);
+    writer.startDocument(title);
+
+    final String introText = "Hi! This is an automated e-mail containing your grade: " + title;
+    writer.writeParagraph(introText);
+
+    writeDescription(new SubGrade(Criterion.given("Grade"), grade), writer, denominator);
+
+    if (quantiles.containsKey(1) && quantiles.containsKey(2) && quantiles.containsKey(3)
+        && stats != null) {
+      writer.startElement("p");
+      writer.writeAnchor(URI.create("https://en.wikipedia.org/wiki/Quartile"), "Quartiles");
+      final String quartilesString = ": [" + format(quantiles.get(1)) + " | "
+          + format(quantiles.get(2)) + " | " + format(quantiles.get(3)) + "].";
+      writer.writeText(quartilesString);
+      writer.writeText(" Mean: " + format(stats.mean()));
+      if (stats.count() >= 2) {
+        writer.writeText("; ");
+        writer.writeAnchor(URI.create(
+            "https://en.wikipedia.org/wiki/Standard_deviation#Corrected_sample_standard_deviation"),
+            "sd");
+        writer.writeText(": " + format(stats.sampleStandardDeviation()));
+      }
+      writer.writeText(".");
+      writer.endElement();
+    }
+    writer.endDocument();
+  }
+
+  /**
+   * Writes, into the given folder, one page per student of the given exam, as
+   * {@link #writeHtmlDoc(Grade, Writer)} does, named after their username, and an index page
+   * {@code index.html} containing all the grades, as {@link #writeHtml(Map, String, double, Writer)}
+   * does, using the title and denominator of this instance. The pages are written concurrently
+   * using the given executor; this method returns once they are all written.
+   *
+   * @throws IOException if writing any page fails.
+   */
+  public void writePages(Exam exam, Path folder, Executor executor) throws IOException {
+    checkNotNull(exam);
+    checkNotNull(folder);
+    checkNotNull(executor);
+
+    final ImmutableList.Builder<CompletableFuture<Void>> writingsBuilder = ImmutableList.builder();
+    for (GitHubUsername username : exam.getUsernames()) {
+      writingsBuilder.add(CompletableFuture.runAsync(() -> writePage(
+          folder.resolve(username.getUsername() + ".html"),
+          w -> writeHtmlDoc(exam.getGrade(username), w)), executor));
+    }
+    writingsBuilder.add(CompletableFuture.runAsync(() -> writePage(folder.resolve("index.html"),
+        w -> writeHtml(exam.getUsernames().stream()
+            .collect(ImmutableMap.toImmutableMap(GitHubUsername::getUsername, exam::getGrade)),
+            title, denominator, w)),
+        executor));
+    final ImmutableList<CompletableFuture<Void>> writings = writingsBuilder.build();
+
+    try {
+      CompletableFuture.allOf(writings.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException u) {
+        throw u.getCause();
+      }
+      Throwables.throwIfUnchecked(cause);
+      throw new VerifyException(cause);
+    }
+  }
+
+  private static void writePage(Path page, TConsumer<Writer, IOException> pageWriter) {
+    try (Writer destination = Files.newBufferedWriter(page)) {
+      pageWriter.accept(destination);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   private String format(double pointsNormalized) {
     return FORMATTER.format(pointsNormalized * denominator);
   }
@@ -0,0 +1,92 @@
+package io.github.oliviercailloux.grade.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative values, counting values in buckets whose bounds are
+ * powers of two, so that recording is cheap and memory is constant, at the price of quantiles
+ * being known only up to a factor of two.
+ */
+public class Histogram {
+  public static Histogram create() {
+    return new Histogram();
+  }
+
+  /**
+   * Bucket 0 contains zero, bucket i &gt; 0 contains the values in [2^(i-1), 2^i).
+   */
+  private final AtomicLongArray buckets;
+  private final LongAdder count;
+  private final LongAdder sum;
+  private final LongAccumulator min;
+  private final LongAccumulator max;
+
+  private Histogram() {
+    buckets = new AtomicLongArray(Long.SIZE);
+    count = new LongAdder();
+    sum = new LongAdder();
+    min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    max = new LongAccumulator(Math::max, 0L);
+  }
+
+  public void record(long value) {
+    checkArgument(value >= 0L);
+    buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+    count.increment();
+    sum.add(value);
+    min.accumulate(value);
+    max.accumulate(value);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /**
+   * @return zero if nothing has been recorded.
+   */
+  public long getMin() {
+    return getCount() == 0L ? 0L : min.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    final long c = getCount();
+    return c == 0L ? 0d : getSum() / (double) c;
+  }
+
+  /**
+   * Returns an upper bound of the given quantile, at most twice the true value, or zero if nothing
+   * has been recorded.
+   *
+   * @param quantile in [0, 1]
+   */
+  public long getQuantile(double quantile) {
+    checkArgument(0d <= quantile && quantile <= 1d);
+    final long c = getCount();
+    if (c == 0L) {
+      return 0L;
+    }
+    final long rank = Math.max(1L, (long) Math.ceil(quantile * c));
+    long seen = 0L;
+    for (int i = 0; i < buckets.length(); ++i) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        final long upper = i == 0 ? 0L : (i == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1L);
+        return Math.min(upper, getMax());
+      }
+    }
+    return getMax();
+  }
+}
@@ -0,0 +1,250 @@
+package io.github.oliviercailloux.grade.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Maps;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timings and counters of a grading batch, kept in memory and reported by {@link MetricsReport}.
+ * <p>
+ * Durations are recorded per {@link Stage}, both in a histogram over all students and summed per
+ * student, the student being the one of the innermost {@link #forStudent(String) scope} open on
+ * the recording thread (if any). Counters, histograms of arbitrary values and cache hits and
+ * misses are recorded by name.
+ * </p>
+ * <p>
+ * The pipeline records into {@link #current()}, which is {@link #disabled() disabled} unless set
+ * otherwise. When disabled, all methods return immediately, without reading the clock or
+ * allocating.
+ * </p>
+ */
+public class Metrics {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+  /**
+   * Records a duration when closed. Should be closed exactly once, by the thread that opened it.
+   */
+  public interface Timer extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  /**
+   * Attributes the durations recorded by the thread that opened it to a student, until closed.
+   */
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  public static record CacheStats(long hits, long misses) {
+    /**
+     * @return the fraction of hits among the accesses, or zero if there was none.
+     */
+    public double hitRate() {
+      final long accesses = hits + misses;
+      return accesses == 0L ? 0d : hits / (double) accesses;
+    }
+  }
+
+  private static class CacheCounts {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+  }
+
+  private static final Timer NO_TIMER = () -> {
+  };
+
+  private static final Scope NO_SCOPE = () -> {
+  };
+
+  private static final Metrics DISABLED = new Metrics(false);
+
+  private static volatile Metrics current = DISABLED;
+
+  /**
+   * Returns metrics that record nothing.
+   */
+  public static Metrics disabled() {
+    return DISABLED;
+  }
+
+  public static Metrics create() {
+    return new Metrics(true);
+  }
+
+  /**
+   * Returns the metrics that the pipeline records into.
+   */
+  public static Metrics current() {
+    return current;
+  }
+
+  public static void setCurrent(Metrics metrics) {
+    current = checkNotNull(metrics);
+  }
+
+  private final boolean enabled;
+  private final long start;
+  private final ThreadLocal<String> student;
+  private final ImmutableMap<Stage, Histogram> stageHistograms;
+  /**
+   * By student, the nanoseconds spent in each stage, indexed by ordinal.
+   */
+  private final Map<String, LongAdder[]> studentNanos;
+  private final Map<String, LongAdder> counters;
+  private final Map<String, Histogram> histograms;
+  private final Map<String, CacheCounts> caches;
+
+  private Metrics(boolean enabled) {
+    this.enabled = enabled;
+    start = System.nanoTime();
+    student = new ThreadLocal<>();
+    stageHistograms = Maps.immutableEnumMap(
+        Maps.toMap(Arrays.asList(Stage.values()), s -> Histogram.create()));
+    studentNanos = new ConcurrentHashMap<>();
+    counters = new ConcurrentHashMap<>();
+    histograms = new ConcurrentHashMap<>();
+    caches = new ConcurrentHashMap<>();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts timing the given stage; the returned timer records the duration when closed.
+   */
+  public Timer time(Stage stage) {
+    if (!enabled) {
+      return NO_TIMER;
+    }
+    checkNotNull(stage);
+    final String timedStudent = student.get();
+    final long started = System.nanoTime();
+    return () -> record(stage, timedStudent, System.nanoTime() - started);
+  }
+
+  private void record(Stage stage, String timedStudent, long nanos) {
+    stageHistograms.get(stage).record(nanos);
+    if (timedStudent != null) {
+      final LongAdder[] byStage = studentNanos.computeIfAbsent(timedStudent, s -> {
+        final LongAdder[] adders = new LongAdder[Stage.values().length];
+        Arrays.setAll(adders, i -> new LongAdder());
+        return adders;
+      });
+      byStage[stage.ordinal()].add(nanos);
+    }
+  }
+
+  /**
+   * Attributes the durations recorded by this thread to the given student, until the returned
+   * scope is closed, at which point the previous student (if any) is restored.
+   */
+  public Scope forStudent(String studentName) {
+    if (!enabled) {
+      return NO_SCOPE;
+    }
+    checkNotNull(studentName);
+    final String previous = student.get();
+    student.set(studentName);
+    return () -> {
+      if (previous == null) {
+        student.remove();
+      } else {
+        student.set(previous);
+      }
+    };
+  }
+
+  public void increment(String counter) {
+    add(counter, 1L);
+  }
+
+  public void add(String counter, long delta) {
+    if (!enabled) {
+      return;
+    }
+    counters.computeIfAbsent(counter, c -> new LongAdder()).add(delta);
+  }
+
+  /**
+   * Records a value in the histogram of the given name.
+   *
+   * @param value non-negative
+   */
+  public void record(String histogram, long value) {
+    if (!enabled) {
+      return;
+    }
+    histograms.computeIfAbsent(histogram, h -> Histogram.create()).record(value);
+  }
+
+  public void recordHit(String cache) {
+    if (!enabled) {
+      return;
+    }
+    caches.computeIfAbsent(cache, c -> new CacheCounts()).hits.increment();
+  }
+
+  public void recordMiss(String cache) {
+    if (!enabled) {
+      return;
+    }
+    caches.computeIfAbsent(cache, c -> new CacheCounts()).misses.increment();
+  }
+
+  /**
+   * @return the time elapsed since these metrics have been created.
+   */
+  public Duration getElapsed() {
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+
+  /**
+   * @return the durations, in nanoseconds, of each stage, over all students.
+   */
+  public ImmutableMap<Stage, Histogram> getStageHistograms() {
+    return stageHistograms;
+  }
+
+  /**
+   * @return by student and stage, the total duration spent (absent when zero).
+   */
+  public ImmutableTable<String, Stage, Duration> getStudentDurations() {
+    final ImmutableTable.Builder<String, Stage, Duration> builder = ImmutableTable.builder();
+    for (Map.Entry<String, LongAdder[]> entry : studentNanos.entrySet()) {
+      for (Stage stage : Stage.values()) {
+        final long nanos = entry.getValue()[stage.ordinal()].sum();
+        if (nanos != 0L) {
+          builder.put(entry.getKey(), stage, Duration.ofNanos(nanos));
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  public ImmutableMap<String, Long> getCounters() {
+    return counters.entrySet().stream()
+        .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, e -> e.getValue().sum()));
+  }
+
+  public ImmutableMap<String, Histogram> getHistograms() {
+    return ImmutableMap.copyOf(histograms);
+  }
+
+  public ImmutableMap<String, CacheStats> getCacheStats() {
+    return caches.entrySet().stream().collect(ImmutableMap.toImmutableMap(Map.Entry::getKey,
+        e -> new CacheStats(e.getValue().hits.sum(), e.getValue().misses.sum())));
+  }
+}
@@ -0,0 +1,172 @@
+package io.github.oliviercailloux.grade.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.univocity.parsers.csv.CsvWriter;
+import com.univocity.parsers.csv.CsvWriterSettings;
+import io.github.oliviercailloux.grade.metrics.Metrics.CacheStats;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes {@link Metrics} as JSON (everything), as CSV (the durations per student and stage, in
+ * milliseconds), or as a one-line summary, possibly printed periodically while a batch runs.
+ */
+public class MetricsReport {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(MetricsReport.class);
+
+  /**
+   * Stops printing when closed.
+   */
+  public interface LiveSummary extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6d;
+  }
+
+  private static JsonObject toJson(Histogram histogram, boolean nanos) {
+    final double factor = nanos ? 1e-6d : 1d;
+    final String suffix = nanos ? "Ms" : "";
+    return Json.createObjectBuilder().add("count", histogram.getCount())
+        .add("total" + suffix, histogram.getSum() * factor)
+        .add("mean" + suffix, histogram.getMean() * factor)
+        .add("min" + suffix, histogram.getMin() * factor)
+        .add("p50" + suffix, histogram.getQuantile(0.5d) * factor)
+        .add("p90" + suffix, histogram.getQuantile(0.9d) * factor)
+        .add("p99" + suffix, histogram.getQuantile(0.99d) * factor)
+        .add("max" + suffix, histogram.getMax() * factor).build();
+  }
+
+  public static JsonObject toJson(Metrics metrics) {
+    final JsonObjectBuilder stages = Json.createObjectBuilder();
+    for (Map.Entry<Stage, Histogram> entry : metrics.getStageHistograms().entrySet()) {
+      if (entry.getValue().getCount() != 0L) {
+        stages.add(entry.getKey().toString(), toJson(entry.getValue(), true));
+      }
+    }
+
+    final ImmutableTable<String, Stage, Duration> durations = metrics.getStudentDurations();
+    final JsonObjectBuilder students = Json.createObjectBuilder();
+    for (String student : ImmutableSortedSet.copyOf(durations.rowKeySet())) {
+      final JsonObjectBuilder byStage = Json.createObjectBuilder();
+      durations.row(student).forEach((s, d) -> byStage.add(s.toString(), toMillis(d.toNanos())));
+      students.add(student, byStage);
+    }
+
+    final JsonObjectBuilder counters = Json.createObjectBuilder();
+    metrics.getCounters().forEach(counters::add);
+
+    final JsonObjectBuilder histograms = Json.createObjectBuilder();
+    metrics.getHistograms().forEach((n, h) -> histograms.add(n, toJson(h, false)));
+
+    final JsonObjectBuilder caches = Json.createObjectBuilder();
+    metrics.getCacheStats().forEach((n, c) -> caches.add(n, Json.createObjectBuilder()
+        .add("hits", c.hits()).add("misses", c.misses()).add("hitRate", c.hitRate())));
+
+    return Json.createObjectBuilder().add("elapsedMs", toMillis(metrics.getElapsed().toNanos()))
+        .add("stages", stages).add("students", students).add("counters", counters)
+        .add("histograms", histograms).add("caches", caches).build();
+  }
+
+  /**
+   * @return one row per student, one column per stage.
+   */
+  public static String toCsv(Metrics metrics) {
+    final ImmutableTable<String, Stage, Duration> durations = metrics.getStudentDurations();
+    final StringWriter stringWriter = new StringWriter();
+    final CsvWriter writer = new CsvWriter(stringWriter, new CsvWriterSettings());
+    final List<String> headers = new ArrayList<>();
+    headers.add("Student");
+    for (Stage stage : Stage.values()) {
+      headers.add(stage + " (ms)");
+    }
+    writer.writeHeaders(headers);
+    for (String student : ImmutableSortedSet.copyOf(durations.rowKeySet())) {
+      final List<Object> row = new ArrayList<>();
+      row.add(student);
+      for (Stage stage : Stage.values()) {
+        final Duration duration = durations.get(student, stage);
+        row.add(duration == null ? 0L : duration.toMillis());
+      }
+      writer.writeRow(row);
+    }
+    writer.close();
+    return stringWriter.toString();
+  }
+
+  /**
+   * @return for example, “Elapsed 12.3 s; CLONE: 4 in 3.2 s; caches: class path 75%”.
+   */
+  public static String toSummary(Metrics metrics) {
+    final List<String> parts = new ArrayList<>();
+    parts.add(String.format(Locale.ENGLISH, "Elapsed %.1f s",
+        toMillis(metrics.getElapsed().toNanos()) / 1e3d));
+    for (Map.Entry<Stage, Histogram> entry : metrics.getStageHistograms().entrySet()) {
+      final Histogram histogram = entry.getValue();
+      if (histogram.getCount() != 0L) {
+        parts.add(String.format(Locale.ENGLISH, "%s: %d in %.1f s", entry.getKey(),
+            histogram.getCount(), toMillis(histogram.getSum()) / 1e3d));
+      }
+    }
+    final Map<String, CacheStats> caches = metrics.getCacheStats();
+    if (!caches.isEmpty()) {
+      parts.add("caches: " + caches.entrySet().stream()
+          .map(e -> String.format(Locale.ENGLISH, "%s %.0f%%", e.getKey(),
+              e.getValue().hitRate() * 100d))
+          .collect(Collectors.joining(", ")));
+    }
+    return String.join("; ", parts);
+  }
+
+  /**
+   * Writes the JSON and CSV reports to the given path with extensions .json and .csv.
+   */
+  public static void write(Metrics metrics, Path outWithoutExtension) throws IOException {
+    Files.writeString(
+        outWithoutExtension.resolveSibling(outWithoutExtension.getFileName() + ".json"),
+        toJson(metrics).toString());
+    Files.writeString(
+        outWithoutExtension.resolveSibling(outWithoutExtension.getFileName() + ".csv"),
+        toCsv(metrics));
+  }
+
+  /**
+   * Prints the summary of the given metrics to the given stream every period, from a daemon
+   * thread, until the returned object is closed.
+   */
+  public static LiveSummary startLiveSummary(Metrics metrics, Duration period, PrintStream out) {
+    checkNotNull(metrics);
+    checkArgument(!period.isNegative() && !period.isZero());
+    checkNotNull(out);
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("metrics-summary").build());
+    executor.scheduleAtFixedRate(() -> out.println(toSummary(metrics)), period.toNanos(),
+        period.toNanos(), TimeUnit.NANOSECONDS);
+    return executor::shutdownNow;
+  }
+}
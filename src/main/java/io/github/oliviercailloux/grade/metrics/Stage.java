@@ -0,0 +1,22 @@
+package io.github.oliviercailloux.grade.metrics;
+
+/**
+ * The stages of the grading pipeline whose durations are recorded by {@link Metrics}. Stages may
+ * nest (compiling happens while grading, for example), in which case the time spent in the inner
+ * stage also counts in the outer one.
+ */
+public enum Stage {
+  /** Cloning or fetching a repository. */
+  CLONE,
+  /** Querying GitHub for push dates. */
+  GITHUB_API,
+  /** Building the history of a repository from its commits and dates. */
+  HISTORY,
+  COMPILATION,
+  CLASS_LOADING,
+  TEST_EXECUTION,
+  /** Grading a student, given its history. */
+  GRADING,
+  /** Writing grades. */
+  OUTPUT
+}
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.graph.EndpointPair;
 import com.google.common.graph.Graph;
@@ -12,11 +13,14 @@ import com.google.common.graph.ImmutableGraph;
 import io.github.oliviercailloux.grade.Criterion;
 import io.github.oliviercailloux.grade.IGrade.CriteriaPath;
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 public class GradeStructure {
 
@@ -87,6 +91,26 @@ public class GradeStructure {
 
   private final ImmutableGraph<CriteriaPath> graph;
 
+  /**
+   * The nodes of the graph, in the iteration order of the graph; the id of a node is its index in
+   * this list.
+   */
+  private final ImmutableList<CriteriaPath> nodes;
+  private final ImmutableMap<CriteriaPath, Integer> ids;
+  /**
+   * The ids of the children of each node, in the iteration order of the successors in the graph.
+   */
+  private final int[][] children;
+  private final ImmutableList<ImmutableSet<CriteriaPath>> successorPaths;
+  private final ImmutableList<ImmutableSet<Criterion>> successorCriteria;
+  private final ImmutableSet<CriteriaPath> leaves;
+  private final int hashCode;
+  /**
+   * The sub-structures rooted at each node, computed on demand. As structures are immutable,
+   * concurrent computations of the same entry are harmless.
+   */
+  private final GradeStructure[] subStructures;
+
   private GradeStructure(Graph<CriteriaPath> graph) {
     this.graph = ImmutableGraph.copyOf(graph);
     checkArgument(graph.nodes().contains(CriteriaPath.ROOT));
@@ -94,22 +118,51 @@ public class GradeStructure {
         .allMatch(p -> graph.successors(p).stream().allMatch(s -> s.withoutTail().equals(p))));
     checkArgument(graph.nodes().stream().allMatch(p -> p.equals(CriteriaPath.ROOT)
         || graph.predecessors(p).equals(ImmutableSet.of(p.withoutTail()))));
+
+    nodes = ImmutableList.copyOf(this.graph.nodes());
+    final ImmutableMap.Builder<CriteriaPath, Integer> idsBuilder = ImmutableMap.builder();
+    for (int id = 0; id < nodes.size(); ++id) {
+      idsBuilder.put(nodes.get(id), id);
+    }
+    ids = idsBuilder.build();
+    children = new int[nodes.size()][];
+    final ImmutableList.Builder<ImmutableSet<CriteriaPath>> successorPathsBuilder =
+        ImmutableList.builder();
+    final ImmutableList.Builder<ImmutableSet<Criterion>> successorCriteriaBuilder =
+        ImmutableList.builder();
+    final ImmutableSet.Builder<CriteriaPath> leavesBuilder = ImmutableSet.builder();
+    for (int id = 0; id < nodes.size(); ++id) {
+      final CriteriaPath path = nodes.get(id);
+      final ImmutableSet<CriteriaPath> successors =
+          ImmutableSet.copyOf(this.graph.successors(path));
+      children[id] = successors.stream().mapToInt(ids::get).toArray();
+      successorPathsBuilder.add(successors);
+      successorCriteriaBuilder.add(successors.stream().map(CriteriaPath::getTail)
+          .collect(ImmutableSet.toImmutableSet()));
+      if (successors.isEmpty()) {
+        leavesBuilder.add(path);
+      }
+    }
+    successorPaths = successorPathsBuilder.build();
+    successorCriteria = successorCriteriaBuilder.build();
+    leaves = leavesBuilder.build();
+    hashCode = Objects.hash(this.graph);
+    subStructures = new GradeStructure[nodes.size()];
   }
 
   public ImmutableSet<CriteriaPath> getPaths() {
-    return ImmutableSet.copyOf(graph.nodes());
+    return ImmutableSet.copyOf(nodes);
   }
 
   public ImmutableSet<CriteriaPath> getLeaves() {
-    return graph.nodes().stream().filter(p -> graph.successors(p).isEmpty())
-        .collect(ImmutableSet.toImmutableSet());
+    return leaves;
   }
 
   /**
    * @return all paths in this graph that have the given path as prefix
    */
   public ImmutableSet<CriteriaPath> getSuccessorPaths(CriteriaPath path) {
-    return ImmutableSet.copyOf(graph.successors(path));
+    return successorPaths.get(getId(path));
   }
 
   /**
@@ -126,8 +179,7 @@ public class GradeStructure {
    * @return all criteria such that path + c in sucessorpath(path)
    */
   public ImmutableSet<Criterion> getSuccessorCriteria(CriteriaPath path) {
-    return graph.successors(path).stream().map(p -> p.getTail())
-        .collect(ImmutableSet.toImmutableSet());
+    return successorCriteria.get(getId(path));
   }
 
   public GradeStructure getStructure(Criterion child) {
@@ -135,27 +187,67 @@ public class GradeStructure {
   }
 
   public GradeStructure getStructure(CriteriaPath path) {
-    return given(graph.nodes().stream().filter(p -> p.startsWith(path))
+    final Integer id = ids.get(path);
+    if (id == null) {
+      return given(ImmutableSet.of());
+    }
+    final GradeStructure known = subStructures[id];
+    if (known != null) {
+      return known;
+    }
+    /*
+     * Visits the sub-tree only, then sorts it by id so that the paths are given in the iteration
+     * order of the graph, as filtering the nodes of the graph would, thereby obtaining the same
+     * structure with the same iteration orders.
+     */
+    final int[] subTree = getSubTree(id);
+    Arrays.sort(subTree);
+    final GradeStructure structure = given(Arrays.stream(subTree).mapToObj(nodes::get)
         .map(p -> CriteriaPath.from(p.subList(path.size(), p.size())))
         .collect(ImmutableSet.toImmutableSet()));
+    subStructures[id] = structure;
+    return structure;
   }
 
   public ImmutableGraph<CriteriaPath> asGraph() {
     return graph;
   }
 
+  private int getId(CriteriaPath path) {
+    final Integer id = ids.get(path);
+    checkArgument(id != null, "Node " + path + " is not an element of this structure.");
+    return id;
+  }
+
+  private int[] getSubTree(int id) {
+    final IntStream.Builder builder = IntStream.builder();
+    final Deque<Integer> toVisit = new ArrayDeque<>();
+    toVisit.push(id);
+    while (!toVisit.isEmpty()) {
+      final int current = toVisit.pop();
+      builder.add(current);
+      for (int child : children[current]) {
+        toVisit.push(child);
+      }
+    }
+    return builder.build().toArray();
+  }
+
   @Override
   public boolean equals(Object o2) {
     if (!(o2 instanceof GradeStructure)) {
       return false;
     }
     final GradeStructure t2 = (GradeStructure) o2;
-    return graph.equals(t2.graph);
+    if (this == t2) {
+      return true;
+    }
+    return hashCode == t2.hashCode && nodes.size() == t2.nodes.size() && graph.equals(t2.graph);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(graph);
+    return hashCode;
   }
 
   @Override
@@ -3,13 +3,18 @@ package io.github.oliviercailloux.grade.utils;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.graph.ImmutableGraph;
 import com.google.common.math.DoubleMath;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
 import io.github.oliviercailloux.grade.Criterion;
 import io.github.oliviercailloux.grade.IGrade;
 import io.github.oliviercailloux.grade.IGrade.CriteriaPath;
@@ -19,9 +24,14 @@ import io.github.oliviercailloux.grade.old.GradeStructure;
 import io.github.oliviercailloux.grade.old.Mark;
 import io.github.oliviercailloux.utils.Utils;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,8 +39,133 @@ public class Compressor {
   @SuppressWarnings("unused")
   private static final Logger LOGGER = LoggerFactory.getLogger(Compressor.class);
 
+  /**
+   * The tree of a grade, indexed once for all. Nodes are numbered in depth-first pre-order (which
+   * is also the iteration order of the paths of {@link IGrade#toTree()}), so that the descendants
+   * of node {@code i} are exactly the nodes {@code i + 1} to {@code ends[i] − 1}. The root is node
+   * {@code 0}.
+   */
+  private static class GradeIndex {
+    private final ImmutableList<CriteriaPath> paths;
+    private final ImmutableList<IGrade> grades;
+    private final int[] parents;
+    private final double[] localWeights;
+    private final int[] ends;
+    private final ImmutableList<ImmutableMap<Criterion, Integer>> children;
+    private final BitSet leaves;
+
+    public GradeIndex(IGrade grade) {
+      final List<CriteriaPath> pathsBuilder = new ArrayList<>();
+      final List<IGrade> gradesBuilder = new ArrayList<>();
+      final List<Integer> parentsBuilder = new ArrayList<>();
+      final List<Double> localWeightsBuilder = new ArrayList<>();
+      final List<Integer> endsBuilder = new ArrayList<>();
+      final List<ImmutableMap<Criterion, Integer>> childrenBuilder = new ArrayList<>();
+      add(grade, CriteriaPath.ROOT, -1, 1d, pathsBuilder, gradesBuilder, parentsBuilder,
+          localWeightsBuilder, endsBuilder, childrenBuilder);
+      paths = ImmutableList.copyOf(pathsBuilder);
+      grades = ImmutableList.copyOf(gradesBuilder);
+      parents = Ints.toArray(parentsBuilder);
+      localWeights = Doubles.toArray(localWeightsBuilder);
+      ends = Ints.toArray(endsBuilder);
+      children = ImmutableList.copyOf(childrenBuilder);
+      leaves = new BitSet(paths.size());
+      for (int node = 0; node < paths.size(); ++node) {
+        if (children.get(node).isEmpty()) {
+          leaves.set(node);
+        }
+      }
+    }
+
+    private static int add(IGrade grade, CriteriaPath path, int parent, double localWeight,
+        List<CriteriaPath> paths, List<IGrade> grades, List<Integer> parents,
+        List<Double> localWeights, List<Integer> ends,
+        List<ImmutableMap<Criterion, Integer>> children) {
+      final int node = paths.size();
+      paths.add(path);
+      grades.add(grade);
+      parents.add(parent);
+      localWeights.add(localWeight);
+      ends.add(-1);
+      children.add(null);
+      final ImmutableMap.Builder<Criterion, Integer> childrenBuilder = ImmutableMap.builder();
+      for (Criterion criterion : grade.getSubGrades().keySet()) {
+        final int child = add(grade.getSubGrades().get(criterion), path.withSuffix(criterion),
+            node, grade.getWeights().get(criterion), paths, grades, parents, localWeights, ends,
+            children);
+        childrenBuilder.put(criterion, child);
+      }
+      children.set(node, childrenBuilder.build());
+      ends.set(node, paths.size());
+      return node;
+    }
+
+    public CriteriaPath getPath(int node) {
+      return paths.get(node);
+    }
+
+    public Collection<CriteriaPath> getPaths(Collection<Integer> nodes) {
+      return Collections2.transform(nodes, paths::get);
+    }
+
+    public ImmutableSet<Criterion> getSuccessorCriteria(int node) {
+      return children.get(node).keySet();
+    }
+
+    public int getChild(int node, Criterion criterion) {
+      return children.get(node).get(criterion);
+    }
+
+    /**
+     * @return the leaves among the given node and its descendants, in pre-order
+     */
+    public Stream<Integer> getLeaves(int node) {
+      return leaves.get(node, ends[node]).stream().map(i -> node + i).boxed();
+    }
+
+    /**
+     * Equivalent to {@link IGrade#getWeightedMark(CriteriaPath)} on the indexed grade, with the
+     * weights multiplied in the same order, thus with exactly the same result.
+     */
+    public WeightedMark getWeightedMark(int node) {
+      double weight = 1d;
+      for (int current = node; current != 0; current = parents[current]) {
+        final double local = localWeights[current];
+        weight = local == 0d ? local : local * weight;
+      }
+      return WeightedMark.given((Mark) grades.get(node), weight);
+    }
+  }
+
+  /**
+   * A model and, recursively, its sub-structures, computed once per model instance (rather than
+   * once per compressed grade). Does not refer to the model it is computed from, so that it does
+   * not prevent the model from being collected from the cache.
+   */
+  private static class ModelNode {
+    private final String description;
+    private final ImmutableSet<Criterion> criteria;
+    private final ImmutableMap<Criterion, ModelNode> children;
+
+    public ModelNode(GradeStructure structure) {
+      description = structure.toString();
+      criteria = structure.getSuccessorCriteria(CriteriaPath.ROOT);
+      children = criteria.stream().collect(
+          ImmutableMap.toImmutableMap(c -> c, c -> new ModelNode(structure.getStructure(c))));
+    }
+  }
+
+  /**
+   * Weak keys, thus compared by identity: two equal models may iterate over their criteria in
+   * different orders, which may change the compression result.
+   */
+  private static final LoadingCache<GradeStructure, ModelNode> MODELS =
+      CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(ModelNode::new));
+
   public static IGrade compress(IGrade grade, GradeStructure model) {
-    final WeightedGrade compressed = compress(ImmutableSet.of(CriteriaPath.ROOT), grade, model);
+    final GradeIndex tree = new GradeIndex(grade);
+    final WeightedGrade compressed =
+        compress(ImmutableSet.of(0), tree, MODELS.getUnchecked(model));
     verify(DoubleMath.fuzzyEquals(compressed.getWeight(), 1d, 1e-6d));
     final IGrade compressedGrade = compressed.getGrade();
     verify(DoubleMath.fuzzyEquals(compressedGrade.getPoints(), grade.getPoints(), 1e-6d));
@@ -40,10 +175,11 @@ public class Compressor {
     return compressedGrade;
   }
 
-  private static WeightedGrade compress(Set<CriteriaPath> originalPaths, IGrade grade,
-      GradeStructure model) {
-    LOGGER.debug("Compressing from {} targetting {}.", originalPaths, model);
-    checkArgument(!originalPaths.isEmpty());
+  private static WeightedGrade compress(ImmutableSet<Integer> originalNodes, GradeIndex tree,
+      ModelNode model) {
+    LOGGER.debug("Compressing from {} targetting {}.", tree.getPaths(originalNodes),
+        model.description);
+    checkArgument(!originalNodes.isEmpty());
     /**
      * It would be cleaner to build a tree of grades: at model path [a], a grade [x/a/blah,
      * x/a/blih, y/a/stuff, …]; given such a grade and a model (the part following [a]), return for
@@ -51,41 +187,34 @@ public class Compressor {
      * sub-model-branches, we’re done for that branch (compress to a mark). Thus, suffices to return
      * one WeightedGrade for each model branch.
      */
-    final ImmutableSet<Criterion> nextLevel = model.getSuccessorCriteria(CriteriaPath.ROOT);
-    final GradeStructure tree = grade.toTree();
-    final ImmutableSet<CriteriaPath> allPaths = tree.getPaths();
-    checkArgument(originalPaths.stream().allMatch(allPaths::contains), originalPaths.stream()
-        .filter(p -> !allPaths.contains(p)).collect(ImmutableSet.toImmutableSet()));
-    final ImmutableGraph<CriteriaPath> graph = tree.asGraph();
-
-    final ImmutableSet<CriteriaPath> paths;
+    final ImmutableSet<Criterion> nextLevel = model.criteria;
+
+    final ImmutableSet<Integer> nodes;
     if (nextLevel.isEmpty()) {
-      paths = ImmutableSet.of();
+      nodes = ImmutableSet.of();
     } else {
-      paths = findPaths(nextLevel, originalPaths, tree);
+      nodes = findPaths(nextLevel, originalNodes, tree);
     }
 
-    final ImmutableSet<Criterion> nextCriteria =
-        paths.stream().map(p -> tree.getSuccessorCriteria(p)).distinct()
-            .collect(Utils.singleOrEmpty()).orElse(ImmutableSet.of());
+    final ImmutableSet<Criterion> nextCriteria = nodes.stream().map(tree::getSuccessorCriteria)
+        .distinct().collect(Utils.singleOrEmpty()).orElse(ImmutableSet.of());
     LOGGER.debug("Registering next criteria: {}.", nextCriteria);
     verify(nextLevel.containsAll(nextCriteria));
 
     final WeightedGrade compressed;
     if (nextCriteria.isEmpty()) {
-      final ImmutableSet<CriteriaPath> leaves = originalPaths.stream()
-          .flatMap(p -> graph.nodes().stream()
-              .filter(p2 -> p2.startsWith(p) && graph.successors(p2).isEmpty()))
+      final ImmutableSet<Integer> leaves = originalNodes.stream().flatMap(tree::getLeaves)
           .collect(ImmutableSet.toImmutableSet());
       verify(!leaves.isEmpty());
-      compressed = compressMarks(Maps.toMap(leaves, l -> grade.getWeightedMark(l)));
+      compressed = compressMarks(leaves.stream()
+          .collect(ImmutableMap.toImmutableMap(tree::getPath, tree::getWeightedMark)));
     } else {
       final ImmutableMap.Builder<Criterion, WeightedGrade> builder = ImmutableMap.builder();
       for (Criterion criterion : nextCriteria) {
-        final GradeStructure sub = model.getStructure(criterion);
-        final Set<CriteriaPath> subPaths =
-            paths.stream().map(p -> p.withSuffix(criterion)).collect(ImmutableSet.toImmutableSet());
-        final WeightedGrade subGrade = compress(subPaths, grade, sub);
+        final ModelNode sub = model.children.get(criterion);
+        final ImmutableSet<Integer> subNodes = nodes.stream()
+            .map(n -> tree.getChild(n, criterion)).collect(ImmutableSet.toImmutableSet());
+        final WeightedGrade subGrade = compress(subNodes, tree, sub);
         builder.put(criterion, subGrade);
       }
       final ImmutableMap<Criterion, WeightedGrade> subGrades = builder.build();
@@ -93,8 +222,9 @@ public class Compressor {
       compressed = WeightedGrade.given(subGrades);
     }
 
-    if (compressed.getGrade().getSubGrades().isEmpty() && model.getPaths().size() >= 2) {
-      LOGGER.debug("Failed compressing at: {}, {}.", originalPaths, model);
+    if (compressed.getGrade().getSubGrades().isEmpty() && !model.criteria.isEmpty()) {
+      LOGGER.debug("Failed compressing at: {}, {}.", tree.getPaths(originalNodes),
+          model.description);
     }
     return compressed;
   }
@@ -126,18 +256,18 @@ public class Compressor {
     return WeightedMark.given(mark, weight);
   }
 
-  private static ImmutableSet<CriteriaPath> findPaths(Set<Criterion> nodes,
-      Set<CriteriaPath> startingPaths, GradeStructure tree) {
-    checkArgument(!startingPaths.isEmpty());
+  private static ImmutableSet<Integer> findPaths(Set<Criterion> nodes,
+      Set<Integer> startingNodes, GradeIndex tree) {
+    checkArgument(!startingNodes.isEmpty());
 
     final Set<Set<Criterion>> nodeSets = Sets.powerSet(nodes);
     final Iterable<Set<Criterion>> wholeFirst = Iterables.concat(ImmutableSet.of(nodes), nodeSets);
-    ImmutableSet<CriteriaPath> result = null;
+    ImmutableSet<Integer> result = null;
     for (Set<Criterion> nodeSubset : wholeFirst) {
       if (nodeSubset.isEmpty()) {
         continue;
       }
-      final ImmutableSet<CriteriaPath> found = findConformingPaths(nodeSubset, startingPaths, tree);
+      final ImmutableSet<Integer> found = findConformingPaths(nodeSubset, startingNodes, tree);
       if (!found.isEmpty()) {
         result = found;
         break;
@@ -146,41 +276,42 @@ public class Compressor {
     if (result == null) {
       result = ImmutableSet.of();
     }
-    LOGGER.debug("Searching for {} starting from {} among {}, found {}.", nodes, startingPaths,
-        tree, result);
+    LOGGER.debug("Searching for {} starting from {}, found {}.", nodes,
+        tree.getPaths(startingNodes), tree.getPaths(result));
     return result;
   }
 
   /**
    * @param nodes the criteria that must be children of all paths, non empty
-   * @param startingPath the starting path in the tree
-   * @param tree containing the paths among which to search
-   * @return a set of paths that cover a pruned version of the tree, such that all paths end with
-   *         the given set of nodes; an empty set iff such a cover does not exist
+   * @param startingNode the starting node in the tree
+   * @param tree containing the nodes among which to search
+   * @return a set of nodes that cover a pruned version of the tree, such that all nodes have the
+   *         given set of criteria as children; an empty set iff such a cover does not exist
    */
-  private static ImmutableSet<CriteriaPath> findConformingPaths(Set<Criterion> nodes,
-      CriteriaPath startingPath, GradeStructure tree) {
+  private static ImmutableSet<Integer> findConformingPaths(Set<Criterion> nodes, int startingNode,
+      GradeIndex tree) {
     checkArgument(!nodes.isEmpty());
-    final ArrayDeque<CriteriaPath> toCheck = new ArrayDeque<>();
-    toCheck.add(startingPath);
-    final ImmutableSet.Builder<CriteriaPath> builder = ImmutableSet.builder();
+    final ArrayDeque<Integer> toCheck = new ArrayDeque<>();
+    toCheck.add(startingNode);
+    final ImmutableSet.Builder<Integer> builder = ImmutableSet.builder();
     boolean failed = false;
     do {
-      final CriteriaPath current = toCheck.pop();
+      final int current = toCheck.pop();
       final ImmutableSet<Criterion> succ = tree.getSuccessorCriteria(current);
       if (succ.isEmpty()) {
         failed = true;
         break;
       }
-      final ImmutableSet<Criterion> toVisit;
+      final Set<Criterion> toVisit;
       if (succ.containsAll(nodes)) {
         builder.add(current);
-        toVisit = Sets.difference(succ, nodes).immutableCopy();
+        toVisit = Sets.difference(succ, nodes);
       } else {
         toVisit = succ;
       }
-      toCheck
-          .addAll(toVisit.stream().map(current::withSuffix).collect(ImmutableSet.toImmutableSet()));
+      for (Criterion criterion : toVisit) {
+        toCheck.add(tree.getChild(current, criterion));
+      }
     } while (!toCheck.isEmpty());
 
     if (failed) {
@@ -189,11 +320,11 @@ public class Compressor {
     return builder.build();
   }
 
-  private static ImmutableSet<CriteriaPath> findConformingPaths(Set<Criterion> nodes,
-      Set<CriteriaPath> startingPaths, GradeStructure tree) {
-    final ImmutableSet.Builder<CriteriaPath> builder = ImmutableSet.builder();
-    for (CriteriaPath startingPath : startingPaths) {
-      final ImmutableSet<CriteriaPath> found = findConformingPaths(nodes, startingPath, tree);
+  private static ImmutableSet<Integer> findConformingPaths(Set<Criterion> nodes,
+      Set<Integer> startingNodes, GradeIndex tree) {
+    final ImmutableSet.Builder<Integer> builder = ImmutableSet.builder();
+    for (int startingNode : startingNodes) {
+      final ImmutableSet<Integer> found = findConformingPaths(nodes, startingNode, tree);
       if (found.isEmpty()) {
         return ImmutableSet.of();
       }
@@ -0,0 +1,257 @@
+package io.github.oliviercailloux.grade.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import com.google.common.collect.ImmutableList;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Captures the log events that a grading context emits, independently of other contexts that
+ * capture concurrently.
+ * <p>
+ * A capture applies to the thread that opens it and to the threads this thread creates while it
+ * is open; tasks submitted to threads that already exist (as in a pool) can be attached to it with
+ * {@link #wrap(Callable)}. Among the events logged by these threads, the capture keeps those of
+ * the given logger (or its descendants) at the given level or above, the most recent ones up to
+ * its capacity. A redirecting capture furthermore prevents these events from reaching the usual
+ * appenders.
+ * </p>
+ * <p>
+ * Events are intercepted by a logback turbo filter installed once for all, which, for threads not
+ * capturing, costs one thread-local look-up per logging call.
+ * </p>
+ */
+public class LogCapture implements AutoCloseable {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(LogCapture.class);
+
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  /**
+   * A captured event.
+   *
+   * @param throwable the throwable logged with the message, if any
+   */
+  public static record LogEvent(Instant timestamp, String threadName, String loggerName,
+      Level level, String message, Optional<Throwable> throwable) {
+    public LogEvent {
+      checkNotNull(timestamp);
+      checkNotNull(threadName);
+      checkNotNull(loggerName);
+      checkNotNull(level);
+      checkNotNull(message);
+      checkNotNull(throwable);
+    }
+  }
+
+  private static final InheritableThreadLocal<LogCapture> CURRENT = new InheritableThreadLocal<>();
+
+  private static class CapturingFilter extends TurboFilter {
+    @Override
+    public FilterReply decide(Marker marker, ch.qos.logback.classic.Logger logger, Level level,
+        String format, Object[] params, Throwable t) {
+      final LogCapture capture = CURRENT.get();
+      if (capture == null || capture.closed || !capture.accepts(logger.getName(), level)) {
+        return FilterReply.NEUTRAL;
+      }
+      if (format == null && params == null && t == null) {
+        /* Asked whether the level is enabled: yes, so that the event reaches us. */
+        return FilterReply.ACCEPT;
+      }
+      final FormattingTuple formatted = MessageFormatter.arrayFormat(format, params);
+      final Throwable throwable = t == null ? formatted.getThrowable() : t;
+      capture.add(new LogEvent(Instant.now(), Thread.currentThread().getName(), logger.getName(),
+          level, String.valueOf(formatted.getMessage()), Optional.ofNullable(throwable)));
+      return capture.redirecting ? FilterReply.DENY : FilterReply.NEUTRAL;
+    }
+  }
+
+  private static boolean installed = false;
+
+  private static synchronized void install() {
+    if (!installed) {
+      final LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+      final CapturingFilter filter = new CapturingFilter();
+      filter.setContext(context);
+      filter.setName(LogCapture.class.getName());
+      filter.start();
+      context.addTurboFilter(filter);
+      installed = true;
+    }
+  }
+
+  /**
+   * Opens a capture of the events of the given logger and its descendants, at any level, keeping
+   * the latest {@link #DEFAULT_CAPACITY} ones, and letting them reach the usual appenders.
+   */
+  public static LogCapture capturing(String loggerName) {
+    return capturing(loggerName, Level.ALL, DEFAULT_CAPACITY);
+  }
+
+  public static LogCapture capturing(String loggerName, Level minLevel, int capacity) {
+    return open(loggerName, minLevel, capacity, false);
+  }
+
+  /**
+   * Opens a capture of the events of the given logger and its descendants, at any level, keeping
+   * the latest {@link #DEFAULT_CAPACITY} ones, and preventing them from reaching the usual
+   * appenders.
+   */
+  public static LogCapture redirecting(String loggerName) {
+    return redirecting(loggerName, Level.ALL, DEFAULT_CAPACITY);
+  }
+
+  public static LogCapture redirecting(String loggerName, Level minLevel, int capacity) {
+    return open(loggerName, minLevel, capacity, true);
+  }
+
+  private static LogCapture open(String loggerName, Level minLevel, int capacity,
+      boolean redirecting) {
+    install();
+    final LogCapture capture = new LogCapture(loggerName, minLevel, capacity, redirecting);
+    capture.previous = CURRENT.get();
+    CURRENT.set(capture);
+    return capture;
+  }
+
+  private final String loggerName;
+  private final Level minLevel;
+  private final boolean redirecting;
+  /**
+   * A ring: the latest event is at index (nbEvents - 1) modulo the capacity. Guarded by this.
+   */
+  private final LogEvent[] events;
+  private long nbEvents;
+  private LogCapture previous;
+  private volatile boolean closed;
+
+  private LogCapture(String loggerName, Level minLevel, int capacity, boolean redirecting) {
+    this.loggerName = checkNotNull(loggerName);
+    this.minLevel = checkNotNull(minLevel);
+    checkArgument(capacity >= 1);
+    this.redirecting = redirecting;
+    events = new LogEvent[capacity];
+    nbEvents = 0;
+    previous = null;
+    closed = false;
+  }
+
+  private boolean accepts(String name, Level level) {
+    final boolean nameMatches = loggerName.equals(Logger.ROOT_LOGGER_NAME)
+        || name.equals(loggerName) || name.startsWith(loggerName + ".");
+    return nameMatches && level.isGreaterOrEqual(minLevel);
+  }
+
+  private synchronized void add(LogEvent event) {
+    events[(int) (nbEvents % events.length)] = event;
+    ++nbEvents;
+  }
+
+  /**
+   * Returns a task that runs the given one within this capture, whatever the thread that runs it.
+   */
+  public <T> Callable<T> wrap(Callable<T> task) {
+    checkNotNull(task);
+    return () -> {
+      final LogCapture before = CURRENT.get();
+      CURRENT.set(this);
+      try {
+        return task.call();
+      } finally {
+        CURRENT.set(before);
+      }
+    };
+  }
+
+  /**
+   * Returns a task that runs the given one within this capture, whatever the thread that runs it.
+   */
+  public Runnable wrap(Runnable task) {
+    checkNotNull(task);
+    return () -> {
+      final LogCapture before = CURRENT.get();
+      CURRENT.set(this);
+      try {
+        task.run();
+      } finally {
+        CURRENT.set(before);
+      }
+    };
+  }
+
+  /**
+   * @return the number of events captured so far, including the ones no more kept.
+   */
+  public synchronized long getNbEvents() {
+    return nbEvents;
+  }
+
+  /**
+   * @return the number of events captured but no more kept, because more recent ones exceeded the
+   *         capacity.
+   */
+  public synchronized long getNbDropped() {
+    return Math.max(0, nbEvents - events.length);
+  }
+
+  /**
+   * @return the number of kept events matching the given predicate.
+   */
+  public synchronized int count(Predicate<? super LogEvent> predicate) {
+    int count = 0;
+    final long first = nbEvents - Math.min(nbEvents, events.length);
+    for (long i = first; i < nbEvents; ++i) {
+      if (predicate.test(events[(int) (i % events.length)])) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  public boolean anyMatch(Predicate<? super LogEvent> predicate) {
+    return count(predicate) > 0;
+  }
+
+  /**
+   * @return a copy of the kept events, oldest first.
+   */
+  public synchronized ImmutableList<LogEvent> getEvents() {
+    final ImmutableList.Builder<LogEvent> builder = ImmutableList.builder();
+    final long first = nbEvents - Math.min(nbEvents, events.length);
+    for (long i = first; i < nbEvents; ++i) {
+      builder.add(events[(int) (i % events.length)]);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Stops capturing; the events captured remain available.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (CURRENT.get() == this) {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+}
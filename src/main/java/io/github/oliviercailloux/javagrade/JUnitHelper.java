@@ -11,6 +11,8 @@ import io.github.oliviercailloux.contained.SimpleInstanciator;
 import io.github.oliviercailloux.grade.Criterion;
 import io.github.oliviercailloux.grade.Mark;
 import io.github.oliviercailloux.grade.MarksTree;
+import io.github.oliviercailloux.grade.metrics.Metrics;
+import io.github.oliviercailloux.grade.metrics.Stage;
 import io.github.oliviercailloux.javagrade.bytecode.Instanciator;
 import java.util.List;
 import java.util.Set;
@@ -60,7 +62,9 @@ public class JUnitHelper {
       verify(!childChildren.isEmpty());
       ImmutableSet<String> testNames = childChildren.stream().map(TestIdentifier::getDisplayName).collect(ImmutableSet.toImmutableSet());
       
-      launcher.execute(testPlan);
+      try (Metrics.Timer timer = Metrics.current().time(Stage.TEST_EXECUTION)) {
+        launcher.execute(testPlan);
+      }
       TestExecutionSummary summary = listener.getSummary();
       verify(summary.getTestsFoundCount() == 2);
       verify(summary.getTestsStartedCount() == 2);
@@ -18,6 +18,8 @@ import com.google.common.io.Resources;
 import io.github.classgraph.ClassGraph;
 import io.github.classgraph.Resource;
 import io.github.classgraph.ScanResult;
+import io.github.oliviercailloux.grade.metrics.Metrics;
+import io.github.oliviercailloux.grade.metrics.Stage;
 import io.github.oliviercailloux.jaris.exceptions.CheckedStream;
 import io.github.oliviercailloux.utils.Utils;
 import java.io.File;
@@ -149,8 +151,10 @@ public class Compiler {
       final Iterable<? extends JavaFileObject> srcToCompileObjs =
           fileManager.getJavaFileObjectsFromPaths(sources);
       final StringWriter compilationOutputReceiver = new StringWriter();
-      compiled = compiler.getTask(compilationOutputReceiver, fileManager, diagnosticCollector,
-          ImmutableList.of(), null, srcToCompileObjs).call();
+      try (Metrics.Timer timer = Metrics.current().time(Stage.COMPILATION)) {
+        compiled = compiler.getTask(compilationOutputReceiver, fileManager, diagnosticCollector,
+            ImmutableList.of(), null, srcToCompileObjs).call();
+      }
       final String compilationOutput = compilationOutputReceiver.toString();
       if (!compilationOutput.isEmpty()) {
         throw new UnsupportedOperationException();
@@ -281,8 +285,11 @@ public class Compiler {
     }
     final ImmutableList<String> args = builder.build();
 
-    final boolean compiled = BatchCompiler.compile(args.toArray(new String[args.size()]),
-        new PrintWriter(out), new PrintWriter(err), null);
+    final boolean compiled;
+    try (Metrics.Timer timer = Metrics.current().time(Stage.COMPILATION)) {
+      compiled = BatchCompiler.compile(args.toArray(new String[args.size()]),
+          new PrintWriter(out), new PrintWriter(err), null);
+    }
 
     LOGGER.debug("Compiled with output: {}, error: {}.", out, err);
 
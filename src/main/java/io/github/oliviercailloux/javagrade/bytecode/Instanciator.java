@@ -18,6 +18,8 @@ import io.github.classgraph.ClassInfoList;
 import io.github.classgraph.MethodInfo;
 import io.github.classgraph.MethodInfoList;
 import io.github.classgraph.ScanResult;
+import io.github.oliviercailloux.grade.metrics.Metrics;
+import io.github.oliviercailloux.grade.metrics.Stage;
 import io.github.oliviercailloux.jaris.exceptions.Try;
 import io.github.oliviercailloux.jaris.exceptions.TryCatchAll;
 import io.github.oliviercailloux.jaris.throwing.TOptional;
@@ -238,7 +240,9 @@ public class Instanciator {
       LOGGER.debug("Implementing: {}.", implementingClasses.size());
       final Optional<ClassInfo> infoOpt = implementingClasses.directOnly().getStandardClasses()
           .stream().collect(MoreCollectors.toOptional());
-      classOpt = infoOpt.map(ClassInfo::loadClass);
+      try (Metrics.Timer timer = Metrics.current().time(Stage.CLASS_LOADING)) {
+        classOpt = infoOpt.map(ClassInfo::loadClass);
+      }
       if (infoOpt.isPresent() && !infoOpt.get().isPublic()) {
         LOGGER.debug("Class {} is not public, problem might follow.", infoOpt);
       }
@@ -312,7 +316,7 @@ public class Instanciator {
     checkNotNull(args);
 
     final Class<?> clz;
-    try {
+    try (Metrics.Timer timer = Metrics.current().time(Stage.CLASS_LOADING)) {
       clz = Class.forName(className, true, loader);
     } catch (ClassNotFoundException | ExceptionInInitializerError e) {
       return TryCatchAll.failure(e);
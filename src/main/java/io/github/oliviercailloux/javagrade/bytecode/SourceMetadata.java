@@ -0,0 +1,323 @@
+package io.github.oliviercailloux.javagrade.bytecode;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * What graders need to know about a Java source file without compiling it: its package, the types
+ * it declares at top level, its imports and the annotations it uses.
+ * <p>
+ * Obtained by {@link #parse(String)} in a single lexical pass, which skips comments, string and
+ * character literals, and only looks for declarations outside of braces.
+ * </p>
+ */
+public class SourceMetadata {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(SourceMetadata.class);
+
+  public static SourceMetadata given(String packageName, ImmutableList<String> topLevelTypes,
+      ImmutableSet<String> imports, ImmutableSet<String> staticImports,
+      ImmutableMultiset<String> annotations) {
+    return new SourceMetadata(packageName, topLevelTypes, imports, staticImports, annotations);
+  }
+
+  public static SourceMetadata parse(String content) {
+    return new Lexer(content).lex();
+  }
+
+  /**
+   * Reads tokens of the source, tracking the nesting of braces and parentheses, and interprets the
+   * keywords that introduce the facts we are interested in.
+   */
+  private static class Lexer {
+    private final String content;
+    private int position;
+    private int braces;
+    private int parentheses;
+    private String packageName;
+    private final ImmutableList.Builder<String> topLevelTypes;
+    private final ImmutableSet.Builder<String> imports;
+    private final ImmutableSet.Builder<String> staticImports;
+    private final ImmutableMultiset.Builder<String> annotations;
+
+    private Lexer(String content) {
+      this.content = checkNotNull(content);
+      position = 0;
+      braces = 0;
+      parentheses = 0;
+      packageName = "";
+      topLevelTypes = ImmutableList.builder();
+      imports = ImmutableSet.builder();
+      staticImports = ImmutableSet.builder();
+      annotations = ImmutableMultiset.builder();
+    }
+
+    private SourceMetadata lex() {
+      boolean afterDot = false;
+      while (skipBlanks()) {
+        final char c = content.charAt(position);
+        if (Character.isJavaIdentifierStart(c)) {
+          final String identifier = readIdentifier();
+          final boolean topLevel = braces == 0 && parentheses == 0 && !afterDot;
+          if (topLevel) {
+            declaration(identifier);
+          }
+          afterDot = false;
+          continue;
+        }
+        afterDot = c == '.';
+        ++position;
+        switch (c) {
+          case '{' -> ++braces;
+          case '}' -> braces = Math.max(0, braces - 1);
+          case '(' -> ++parentheses;
+          case ')' -> parentheses = Math.max(0, parentheses - 1);
+          case '"' -> skipString();
+          case '\'' -> skipQuoted('\'');
+          case '@' -> annotation();
+          default -> {
+            /* Operators, separators and literals carry nothing of interest. */
+          }
+        }
+      }
+      return new SourceMetadata(packageName, topLevelTypes.build(), imports.build(),
+          staticImports.build(), annotations.build());
+    }
+
+    private void declaration(String keyword) {
+      switch (keyword) {
+        case "package" -> packageName = readQualifiedName();
+        case "import" -> {
+          skipBlanks();
+          final int start = position;
+          final String first = readIdentifierOrEmpty();
+          if (first.equals("static")) {
+            staticImports.add(readQualifiedName());
+          } else {
+            position = start;
+            imports.add(readQualifiedName());
+          }
+        }
+        case "class", "interface", "enum" -> topLevelTypes.add(readNextIdentifier());
+        case "record" -> {
+          /* A contextual keyword: a record declaration is followed by a name. */
+          final String name = readNextIdentifier();
+          if (!name.isEmpty()) {
+            topLevelTypes.add(name);
+          }
+        }
+        default -> {
+          /* Modifiers, type names and so on. */
+        }
+      }
+    }
+
+    private void annotation() {
+      final String name = readQualifiedName();
+      if (name.equals("interface")) {
+        if (braces == 0 && parentheses == 0) {
+          topLevelTypes.add(readNextIdentifier());
+        }
+      } else if (!name.isEmpty()) {
+        annotations.add(name.substring(name.lastIndexOf('.') + 1));
+      }
+    }
+
+    /**
+     * @return {@code false} iff the end of the content has been reached.
+     */
+    private boolean skipBlanks() {
+      while (position < content.length()) {
+        final char c = content.charAt(position);
+        if (Character.isWhitespace(c)) {
+          ++position;
+        } else if (content.startsWith("//", position)) {
+          final int end = content.indexOf('\n', position);
+          position = end == -1 ? content.length() : end + 1;
+        } else if (content.startsWith("/*", position)) {
+          final int end = content.indexOf("*/", position + 2);
+          position = end == -1 ? content.length() : end + 2;
+        } else {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Skips a string literal or a text block, whose opening quote has been read.
+     */
+    private void skipString() {
+      if (content.startsWith("\"\"", position)) {
+        position += 2;
+        while (position < content.length() && !content.startsWith("\"\"\"", position)) {
+          position += content.charAt(position) == '\\' ? 2 : 1;
+        }
+        position = Math.min(content.length(), position + 3);
+      } else {
+        skipQuoted('"');
+      }
+    }
+
+    /**
+     * Skips a literal whose opening quote has been read, up to its closing quote or the end of the
+     * line, whichever comes first.
+     */
+    private void skipQuoted(char quote) {
+      while (position < content.length()) {
+        final char c = content.charAt(position);
+        if (c == '\\') {
+          position += 2;
+          continue;
+        }
+        ++position;
+        if (c == quote || c == '\n') {
+          return;
+        }
+      }
+    }
+
+    private String readIdentifier() {
+      final int start = position;
+      ++position;
+      while (position < content.length()
+          && Character.isJavaIdentifierPart(content.charAt(position))) {
+        ++position;
+      }
+      return content.substring(start, position);
+    }
+
+    private String readIdentifierOrEmpty() {
+      if (position < content.length()
+          && Character.isJavaIdentifierStart(content.charAt(position))) {
+        return readIdentifier();
+      }
+      return "";
+    }
+
+    private String readNextIdentifier() {
+      skipBlanks();
+      return readIdentifierOrEmpty();
+    }
+
+    /**
+     * Reads dot-separated identifiers (possibly ending with a star), skipping blanks in between.
+     */
+    private String readQualifiedName() {
+      final StringBuilder name = new StringBuilder();
+      while (true) {
+        skipBlanks();
+        if (position < content.length() && content.charAt(position) == '*') {
+          ++position;
+          name.append('*');
+          return name.toString();
+        }
+        final String identifier = readIdentifierOrEmpty();
+        name.append(identifier);
+        if (identifier.isEmpty()) {
+          return name.toString();
+        }
+        final int afterIdentifier = position;
+        skipBlanks();
+        if (position < content.length() && content.charAt(position) == '.') {
+          ++position;
+          name.append('.');
+        } else {
+          position = afterIdentifier;
+          return name.toString();
+        }
+      }
+    }
+  }
+
+  private final String packageName;
+  private final ImmutableList<String> topLevelTypes;
+  private final ImmutableSet<String> imports;
+  private final ImmutableSet<String> staticImports;
+  private final ImmutableMultiset<String> annotations;
+
+  private SourceMetadata(String packageName, ImmutableList<String> topLevelTypes,
+      ImmutableSet<String> imports, ImmutableSet<String> staticImports,
+      ImmutableMultiset<String> annotations) {
+    this.packageName = checkNotNull(packageName);
+    this.topLevelTypes = checkNotNull(topLevelTypes);
+    this.imports = checkNotNull(imports);
+    this.staticImports = checkNotNull(staticImports);
+    this.annotations = checkNotNull(annotations);
+  }
+
+  /**
+   * @return the declared package, or the empty string if none.
+   */
+  public String getPackageName() {
+    return packageName;
+  }
+
+  /**
+   * @return the simple names of the classes, interfaces, enums, records and annotation types
+   *         declared at top level, in order of declaration.
+   */
+  public ImmutableList<String> getTopLevelTypes() {
+    return topLevelTypes;
+  }
+
+  /**
+   * @return the names imported by non-static imports, as written, for example,
+   *         <code>java.util.List</code> or <code>java.util.*</code>.
+   */
+  public ImmutableSet<String> getImports() {
+    return imports;
+  }
+
+  /**
+   * @return the names imported by static imports, as written.
+   */
+  public ImmutableSet<String> getStaticImports() {
+    return staticImports;
+  }
+
+  /**
+   * @return the simple names of the annotations used anywhere in the code (not in comments or
+   *         literals), with their number of occurrences.
+   */
+  public ImmutableMultiset<String> getAnnotations() {
+    return annotations;
+  }
+
+  /**
+   * @param simpleName for example, <code>SuppressWarnings</code>
+   */
+  public int getNbAnnotations(String simpleName) {
+    return annotations.count(simpleName);
+  }
+
+  @Override
+  public boolean equals(Object o2) {
+    if (!(o2 instanceof SourceMetadata)) {
+      return false;
+    }
+    final SourceMetadata t2 = (SourceMetadata) o2;
+    return packageName.equals(t2.packageName) && topLevelTypes.equals(t2.topLevelTypes)
+        && imports.equals(t2.imports) && staticImports.equals(t2.staticImports)
+        && annotations.equals(t2.annotations);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(packageName, topLevelTypes, imports, staticImports, annotations);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("Package", packageName)
+        .add("Types", topLevelTypes).add("Imports", imports).add("Static imports", staticImports)
+        .add("Annotations", annotations).toString();
+  }
+}
@@ -1,31 +1,53 @@
 package io.github.oliviercailloux.javagrade.bytecode;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.base.Verify.verify;
 import static io.github.oliviercailloux.jaris.exceptions.Unchecker.IO_UNCHECKER;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
+import io.github.oliviercailloux.gitjfs.GitPath;
+import io.github.oliviercailloux.utils.FileIndex;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Finds the Java sources under a directory and tells what they declare.
+ * <p>
+ * The metadata of a source is cached by the Git blob id of its content: the id stored in its tree
+ * entry, if the source comes from a Git file system; otherwise, the id computed as Git does. Thus,
+ * a source left unchanged from one commit to the next (or copied across students) is lexed only
+ * once.
+ * </p>
+ * <p>
+ * The package is the one that the source declares, wherever the declaration is, in particular
+ * after a leading license or other comment. (The package used to be found only when declared on
+ * the first line, so that such sources were considered to be in the default package.)
+ * </p>
+ */
 public class SourceScanner {
-  private static final Pattern PACKAGE_PATTERN =
-      Pattern.compile("^\\h*package\\h+(?<packageName>[^\\h]*)\\h*;");
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(SourceScanner.class);
+
+  private static final Cache<ObjectId, SourceMetadata> METADATA =
+      CacheBuilder.newBuilder().maximumSize(100_000).build();
 
   public static ImmutableSet<SourceClass> scan(Path start) {
     checkNotNull(start);
-    final ImmutableSet<Path> javaPaths;
-    try (Stream<Path> found = IO_UNCHECKER.getUsing(() -> Files.find(start, Integer.MAX_VALUE, (p,
-        a) -> p.getFileName() == null ? false : p.getFileName().toString().endsWith(".java")))) {
-      verify(found != null);
-      assert found != null;
-      javaPaths = found.collect(ImmutableSet.toImmutableSet());
-    }
+    final ImmutableSet<Path> javaPaths = IO_UNCHECKER.getUsing(() -> FileIndex.of(start))
+        .getPathsWhere(f -> f.name().endsWith(".java"));
     return javaPaths.stream().map(SourceScanner::asSourceClass)
         .collect(ImmutableSet.toImmutableSet());
   }
@@ -33,28 +55,81 @@ public class SourceScanner {
   public static SourceClass asSourceClass(Path sourcePath) {
     final String shortClassNameFromFileName =
         sourcePath.getFileName().toString().replace(".java", "");
-    // String content = JavaGradeUtils.read(sourcePath);
-    String content;
+    final SourceMetadata metadata;
     try {
-      content = Files.readString(sourcePath);
+      metadata = getMetadata(sourcePath);
     } catch (IOException e) {
       throw new IllegalStateException(e);
     }
-    final Matcher matcher = PACKAGE_PATTERN.matcher(content);
-    final boolean found = matcher.find();
-    final String packageName = found ? matcher.group("packageName") : "";
-    checkArgument(!matcher.find());
-    return new SourceClass(sourcePath, packageName, shortClassNameFromFileName);
+    return new SourceClass(sourcePath, metadata, shortClassNameFromFileName);
+  }
+
+  /**
+   * Returns the metadata of the given source, lexing it only if no source with the same content has
+   * been seen.
+   *
+   * @throws CharacterCodingException if the source is not valid UTF-8 (as
+   *         {@link Files#readString(Path)} would)
+   */
+  public static SourceMetadata getMetadata(Path sourcePath) throws IOException {
+    final Optional<ObjectId> storedId = getStoredId(sourcePath);
+    final Optional<SourceMetadata> knownFromStored = storedId.map(METADATA::getIfPresent);
+    if (knownFromStored.isPresent()) {
+      return knownFromStored.get();
+    }
+    final byte[] content = Files.readAllBytes(sourcePath);
+    final ObjectId blobId;
+    if (storedId.isPresent()) {
+      blobId = storedId.get();
+    } else {
+      try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+        blobId = formatter.idFor(Constants.OBJ_BLOB, content);
+      }
+      final SourceMetadata known = METADATA.getIfPresent(blobId);
+      if (known != null) {
+        return known;
+      }
+    }
+    final String decoded = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT).decode(ByteBuffer.wrap(content))
+        .toString();
+    final SourceMetadata metadata = SourceMetadata.parse(decoded);
+    METADATA.put(blobId, metadata);
+    return metadata;
+  }
+
+  /**
+   * @return the id of the blob of the given source, as stored in its tree entry, if it comes from a
+   *         Git file system (which gives that id as file key).
+   */
+  private static Optional<ObjectId> getStoredId(Path sourcePath) throws IOException {
+    if (!(sourcePath instanceof GitPath)) {
+      return Optional.empty();
+    }
+    final Object key = Files.readAttributes(sourcePath, BasicFileAttributes.class).fileKey();
+    return key instanceof ObjectId id ? Optional.of(id) : Optional.empty();
+  }
+
+  /**
+   * @return the number of <code>SuppressWarnings</code> annotations in the given sources.
+   */
+  public static int countSuppressWarnings(Iterable<Path> sourcePaths) throws IOException {
+    int count = 0;
+    for (Path sourcePath : sourcePaths) {
+      count += getMetadata(sourcePath).getNbAnnotations("SuppressWarnings");
+    }
+    return count;
   }
 
   public static class SourceClass {
     private Path path;
-    private String packageName;
+    private SourceMetadata metadata;
     private String shortClassName;
 
-    SourceClass(Path path, String packageName, String shortClassName) {
+    SourceClass(Path path, SourceMetadata metadata, String shortClassName) {
       this.path = checkNotNull(path);
-      this.packageName = checkNotNull(packageName);
+      this.metadata = checkNotNull(metadata);
       this.shortClassName = checkNotNull(shortClassName);
     }
 
@@ -62,8 +137,12 @@ public class SourceScanner {
       return path;
     }
 
+    public SourceMetadata getMetadata() {
+      return metadata;
+    }
+
     public String getPackageName() {
-      return packageName;
+      return metadata.getPackageName();
     }
 
     public String getShortClassName() {
@@ -71,6 +150,7 @@ public class SourceScanner {
     }
 
     public String getFullClassName() {
+      final String packageName = getPackageName();
       final String separator = packageName.equals("") ? "" : ".";
       return packageName + separator + shortClassName;
     }
@@ -4,21 +4,23 @@ import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.jimfs.Configuration;
 import com.google.common.jimfs.Jimfs;
 import com.google.common.primitives.Booleans;
+import com.google.common.util.concurrent.Futures;
 import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ClassInfo;
 import io.github.classgraph.ClassInfoList;
 import io.github.classgraph.ScanResult;
 import io.github.oliviercailloux.grade.GradingException;
 import io.github.oliviercailloux.grade.old.Mark;
-import io.github.oliviercailloux.javagrade.testers.JavaMarkHelper;
+import io.github.oliviercailloux.javagrade.exextractor.ExtractionHarness.ExtractionRun;
+import io.github.oliviercailloux.javagrade.exextractor.ExtractionHarness.StripperSetup;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -28,11 +30,12 @@ import java.net.URLClassLoader;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import org.apache.pdfbox.cos.COSArray;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,169 +50,128 @@ public class ExExtractorGrader {
 
   Path mavenAbsoluteRoot;
 
-  Mark writeMark() {
-    final Optional<SimpleExtractor> inst = newInstance();
-    if (!inst.isPresent()) {
-      return Mark.zero("Could not instanciate SimpleExtractor implementation.");
-    }
-    final SimpleExtractor instance = inst.get();
-    LOGGER.info("Instantiated: {}.", instance.getClass().getName());
+  /**
+   * The maximal duration of an extraction.
+   */
+  private static final Duration TIME_LIMIT = Duration.ofSeconds(20);
 
-    final boolean testWhite;
-    final boolean testNull;
-    final boolean testNoSpuriousClose;
-    final boolean testSimple;
-    final boolean testThrows;
-    final boolean testClosesOwn;
-    final boolean testRestoredDefault;
-    final boolean testExplicitStripper;
-    final StringBuilder commentBuilder = new StringBuilder();
+  /**
+   * The number of bytes an extraction may allocate in total, beyond which it is stopped and fails.
+   */
+  private static final long ALLOCATION_BUDGET = 2L * 1024 * 1024 * 1024;
 
-    try (InputStream input = getClass().getResourceAsStream("White.pdf")) {
-      assert input != null;
-      @SuppressWarnings("resource")
-      final MyStringWriter output = new MyStringWriter();
-      Throwable thrown = null;
-      try {
-        instance.writeText(input, output);
-      } catch (Throwable t) {
-        thrown = t;
-      }
-      final String obtained = output.toString();
-      testWhite = obtained.equals("") && thrown == null;
-      testNoSpuriousClose = !output.hasBeenClosed();
-      commentBuilder.append("White: ");
-      if (testWhite) {
-        commentBuilder.append("Ok");
-      } else if (thrown != null) {
-        commentBuilder.append("KO – thrown " + thrown.toString());
-      } else {
-        commentBuilder.append(String.format("KO – obtained '%s'", obtained));
-      }
-      commentBuilder.append("\nDoes not close writer: ");
-      if (testNoSpuriousClose) {
-        commentBuilder.append("Ok");
-      } else {
-        commentBuilder.append("KO – writer has been closed.");
-      }
-    } catch (IOException e) {
-      throw new GradingException(e);
-    }
+  private static final ImmutableList<StripperSetup> HE_SETUPS =
+      ImmutableList.of(StripperSetup.DEFAULT, StripperSetup.THROWING, StripperSetup.RESET,
+          StripperSetup.EXPLICIT);
+
+  Mark writeMark() {
+    final ExtractionCorpus corpus;
     try {
-      final StringWriter output = new StringWriter();
-      final InputStream input = null;
-      instance.writeText(input, output);
-      final String obtained = output.toString();
-      testNull = obtained.equals("");
-      commentBuilder.append("\nNull input: ");
-      if (testNull) {
-        commentBuilder.append("Ok");
-      } else {
-        commentBuilder.append(String.format("KO – obtained '%s'", obtained));
-      }
+      corpus = ExtractionCorpus.standard();
     } catch (IOException e) {
       throw new GradingException(e);
     }
-    try (InputStream input = getClass().getResourceAsStream("Hé.pdf")) {
-      final StringWriter output = new StringWriter();
-      Throwable thrown = null;
-      try {
-        instance.writeText(input, output);
-      } catch (Throwable t) {
-        thrown = t;
-      }
-      final String obtained = output.toString();
-      testSimple = obtained.equals("Hé ̸=\n");
-      commentBuilder.append("\nHé: ");
-      if (testSimple) {
-        commentBuilder.append("Ok");
-      } else if (thrown != null) {
-        commentBuilder.append("KO – thrown " + thrown.toString());
-      } else {
-        commentBuilder.append(String.format("KO – obtained '%s'", obtained));
-      }
-    } catch (IOException e) {
-      throw new GradingException(e);
+    final ImmutableList<String> generated = corpus.getGeneratedNames();
+    final ImmutableList<SimpleExtractor> instances = newInstances(2 + HE_SETUPS.size()
+        + generated.size());
+    if (instances.isEmpty()) {
+      return Mark.zero("Could not instanciate SimpleExtractor implementation.");
     }
-    try (InputStream input = getClass().getResourceAsStream("Hé.pdf")) {
-      final StringWriter output = new StringWriter();
-      instance.setStripper(throwingStripper());
-      boolean thrown = false;
-      final int openBefore = JavaMarkHelper.getOpenFileDescriptorCount();
-      try {
-        instance.writeText(input, output);
-      } catch (IOException e) {
-        assert e.getMessage().equals("Ad-hoc exception");
-        thrown = true;
-      }
-      final int openAfter = JavaMarkHelper.getOpenFileDescriptorCount();
-      final String obtained = output.toString();
-      if (!thrown && !obtained.toString().isEmpty()) {
-        throw new GradingException(
-            String.format("Did not throw, but yet obtained text: '%s'.", obtained));
-      }
-      testThrows = thrown;
-      commentBuilder.append("\nThrows: ");
-      if (testThrows) {
-        commentBuilder.append("Ok");
-      } else {
-        commentBuilder.append(String.format("KO – obtained '%s'", obtained));
+    LOGGER.info("Instantiated: {}.", instances.get(0).getClass().getName());
+
+    final ExtractionRun white;
+    final ExtractionRun nullInput;
+    final ImmutableMap<StripperSetup, ExtractionRun> he;
+    final ImmutableList<ExtractionRun> references;
+    final ImmutableList<ExtractionRun> obtained;
+    try (ExtractionHarness harness = ExtractionHarness.create(TIME_LIMIT, ALLOCATION_BUDGET)) {
+      final Iterator<SimpleExtractor> nextInstance = instances.iterator();
+      final Future<ExtractionRun> whiteFuture =
+          harness.submit("White.pdf", Optional.of(corpus.getDocument("White.pdf")),
+              nextInstance.next(), StripperSetup.DEFAULT);
+      final Future<ExtractionRun> nullFuture =
+          harness.submit("null", Optional.empty(), nextInstance.next(), StripperSetup.DEFAULT);
+      final ImmutableMap.Builder<StripperSetup, Future<ExtractionRun>> heFutures =
+          ImmutableMap.builder();
+      for (StripperSetup setup : HE_SETUPS) {
+        heFutures.put(setup, harness.submit("Hé.pdf", Optional.of(corpus.getDocument("Hé.pdf")),
+            nextInstance.next(), setup));
       }
-      testClosesOwn = (openAfter == openBefore);
-      commentBuilder.append("\nCloses own streams: ");
-      if (testClosesOwn) {
-        commentBuilder.append("Ok");
-      } else {
-        commentBuilder.append("KO");
+      final ImmutableList.Builder<Future<ExtractionRun>> referenceFutures = ImmutableList.builder();
+      final ImmutableList.Builder<Future<ExtractionRun>> obtainedFutures = ImmutableList.builder();
+      for (String name : generated) {
+        referenceFutures.add(harness.submitReference(name, corpus.getDocument(name)));
+        obtainedFutures.add(harness.submit(name, Optional.of(corpus.getDocument(name)),
+            nextInstance.next(), StripperSetup.DEFAULT));
       }
-    } catch (IOException e) {
-      throw new GradingException(e);
+
+      white = Futures.getUnchecked(whiteFuture);
+      nullInput = Futures.getUnchecked(nullFuture);
+      he = ImmutableMap.copyOf(Maps.transformValues(heFutures.build(), Futures::getUnchecked));
+      references = referenceFutures.build().stream().map(Futures::getUnchecked)
+          .collect(ImmutableList.toImmutableList());
+      obtained = obtainedFutures.build().stream().map(Futures::getUnchecked)
+          .collect(ImmutableList.toImmutableList());
     }
-    try (InputStream input = getClass().getResourceAsStream("Hé.pdf")) {
-      final StringWriter output = new StringWriter();
-      instance.setStripper(null);
-      Throwable thrown = null;
-      try {
-        instance.writeText(input, output);
-      } catch (Throwable t) {
-        thrown = t;
-      }
-      final String obtained = output.toString();
-      testRestoredDefault = obtained.equals("Hé ̸=\n");
-      commentBuilder.append("\nRestored default: ");
-      if (testRestoredDefault) {
-        commentBuilder.append("Ok");
-      } else if (thrown != null) {
-        commentBuilder.append("KO – thrown " + thrown.toString());
-      } else {
-        commentBuilder.append(String.format("KO – obtained '%s'", obtained));
-      }
-    } catch (IOException e) {
-      throw new GradingException(e);
+
+    final StringBuilder commentBuilder = new StringBuilder();
+
+    final boolean testWhite = white.completed() && white.text().equals("");
+    final boolean testNoSpuriousClose = !white.closedOutput();
+    commentBuilder.append("White: ");
+    commentBuilder.append(describe(white, testWhite));
+    commentBuilder.append("\nDoes not close writer: ");
+    if (testNoSpuriousClose) {
+      commentBuilder.append("Ok");
+    } else {
+      commentBuilder.append("KO – writer has been closed.");
     }
-    try (InputStream input = getClass().getResourceAsStream("Hé.pdf")) {
-      final StringWriter output = new StringWriter();
-      instance.setStripper(new PDFTextStripper());
-      Throwable thrown = null;
-      try {
-        instance.writeText(input, output);
-      } catch (Throwable t) {
-        thrown = t;
-      }
-      final String obtained = output.toString();
-      testExplicitStripper = obtained.equals("Hé ̸=\n");
-      commentBuilder.append("\nExplicit stripper: ");
-      if (testExplicitStripper) {
-        commentBuilder.append("Ok");
-      } else if (thrown != null) {
-        commentBuilder.append("KO – thrown " + thrown.toString());
-      } else {
-        commentBuilder.append(String.format("KO – obtained '%s'", obtained));
-      }
-    } catch (IOException e) {
-      throw new GradingException(e);
+
+    final boolean testNull = nullInput.completed() && nullInput.text().equals("");
+    commentBuilder.append("\nNull input: ");
+    commentBuilder.append(describe(nullInput, testNull));
+
+    final ExtractionRun simple = he.get(StripperSetup.DEFAULT);
+    final boolean testSimple = simple.completed() && simple.text().equals("Hé ̸=\n");
+    commentBuilder.append("\nHé: ");
+    commentBuilder.append(describe(simple, testSimple));
+
+    final ExtractionRun throwing = he.get(StripperSetup.THROWING);
+    final boolean testThrows =
+        throwing.thrown().filter(t -> t instanceof IOException).isPresent();
+    if (throwing.completed() && !throwing.text().isEmpty()) {
+      throw new GradingException(
+          String.format("Did not throw, but yet obtained text: '%s'.", throwing.text()));
+    }
+    commentBuilder.append("\nThrows: ");
+    commentBuilder.append(describe(throwing, testThrows));
+    final boolean testClosesOwn = !throwing.timedOut() && throwing.nbLeftOpen() == 0;
+    commentBuilder.append("\nCloses own streams: ");
+    if (testClosesOwn) {
+      commentBuilder.append("Ok");
+    } else {
+      commentBuilder.append("KO");
     }
 
+    final ExtractionRun restored = he.get(StripperSetup.RESET);
+    final boolean testRestoredDefault =
+        restored.completed() && restored.text().equals("Hé ̸=\n");
+    commentBuilder.append("\nRestored default: ");
+    commentBuilder.append(describe(restored, testRestoredDefault));
+
+    final ExtractionRun explicit = he.get(StripperSetup.EXPLICIT);
+    final boolean testExplicitStripper =
+        explicit.completed() && explicit.text().equals("Hé ̸=\n");
+    commentBuilder.append("\nExplicit stripper: ");
+    commentBuilder.append(describe(explicit, testExplicitStripper));
+
+    final long nbAsReference = IntStream.range(0, generated.size())
+        .filter(i -> references.get(i).completed() && obtained.get(i).completed()
+            && obtained.get(i).text().equals(references.get(i).text()))
+        .count();
+    commentBuilder.append(String.format("\nOther documents extracted as the reference does: %s/%s",
+        nbAsReference, generated.size()));
+
     double fracPoints = 0d;
     if ((testSimple || testExplicitStripper) && testNoSpuriousClose) {
       fracPoints += 1d / 8d;
@@ -233,29 +195,20 @@ public class ExExtractorGrader {
     return mark;
   }
 
-  private PDFTextStripper throwingStripper() throws IOException {
-    final IOException ioException = new IOException("Ad-hoc exception");
-    return new PDFTextStripper() {
-      @Override
-      public String getText(PDDocument doc) throws IOException {
-        throw ioException;
-      }
-
-      @Override
-      public void writeText(PDDocument doc, Writer outputStream) throws IOException {
-        throw ioException;
-      }
-
-      @Override
-      public void showTextString(byte[] string) throws IOException {
-        throw ioException;
-      }
-
-      @Override
-      public void showTextStrings(COSArray array) throws IOException {
-        throw ioException;
-      }
-    };
+  private static String describe(ExtractionRun run, boolean ok) {
+    if (ok) {
+      return "Ok";
+    }
+    if (run.timedOut()) {
+      return "KO – timed out";
+    }
+    if (run.exceededAllocationBudget()) {
+      return String.format("KO – allocated %s MiB", run.allocatedBytes() / (1024 * 1024));
+    }
+    if (run.thrown().isPresent()) {
+      return "KO – thrown " + run.thrown().get().toString();
+    }
+    return String.format("KO – obtained '%s'", run.text());
   }
 
   private Optional<Class<?>> getNamedClass(String simpleName) {
@@ -372,7 +325,11 @@ public class ExExtractorGrader {
     return methodOpt;
   }
 
-  private Optional<SimpleExtractor> newInstance() {
+  /**
+   * @return the given number of distinct instances of the implementation, or an empty list if
+   *         there is none.
+   */
+  private ImmutableList<SimpleExtractor> newInstances(int count) {
     LOGGER.debug("Start new inst.");
     URL url;
     try {
@@ -403,7 +360,7 @@ public class ExExtractorGrader {
         }
       }
       if (name.equals("")) {
-        return Optional.empty();
+        return ImmutableList.of();
       }
       /**
        * Probably doesn’t work when loading a second class having the same name?
@@ -412,8 +369,11 @@ public class ExExtractorGrader {
           Class.forName(name, true, child).asSubclass(SimpleExtractor.class);
       LOGGER.debug("Class: {}.", classToLoad.getCanonicalName());
       final Constructor<? extends SimpleExtractor> constructor = classToLoad.getConstructor();
-      final SimpleExtractor created = constructor.newInstance();
-      return Optional.of(created);
+      final ImmutableList.Builder<SimpleExtractor> created = ImmutableList.builder();
+      for (int i = 0; i < count; ++i) {
+        created.add(constructor.newInstance());
+      }
+      return created.build();
     } catch (IOException | NoSuchMethodException | SecurityException | ClassNotFoundException
         | InstantiationException | IllegalAccessException | IllegalArgumentException
         | InvocationTargetException e) {
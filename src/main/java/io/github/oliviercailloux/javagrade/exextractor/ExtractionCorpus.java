@@ -0,0 +1,170 @@
+package io.github.oliviercailloux.javagrade.exextractor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Resources;
+import io.github.oliviercailloux.utils.Utils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PDF documents to extract text from: the ones shipped as resources of this package, and
+ * documents generated with PDFBox (empty, single line, several pages, long).
+ * <p>
+ * The generated documents are written once to a directory under the temporary directory, named
+ * after {@link #VERSION}, and read back from there by later runs; within a run, the corpus is
+ * shared.
+ * </p>
+ */
+public class ExtractionCorpus {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExtractionCorpus.class);
+
+  /**
+   * To be incremented when the generated documents change.
+   */
+  public static final int VERSION = 1;
+
+  private static final ImmutableList<String> RESOURCES = ImmutableList.of("White.pdf", "Hé.pdf");
+
+  private static ExtractionCorpus standard = null;
+
+  /**
+   * Returns the shared corpus, generating it if it is not cached yet.
+   */
+  public static synchronized ExtractionCorpus standard() throws IOException {
+    if (standard == null) {
+      standard = load(Utils.getTempDirectory().resolve("jgradlib-extraction-corpus-" + VERSION));
+    }
+    return standard;
+  }
+
+  /**
+   * Returns the corpus cached in the given directory, generating the missing part of it there.
+   */
+  public static ExtractionCorpus load(Path cache) throws IOException {
+    final ImmutableMap.Builder<String, ByteSource> builder = ImmutableMap.builder();
+    for (String resource : RESOURCES) {
+      builder.put(resource,
+          Resources.asByteSource(ExtractionCorpus.class.getResource(resource)));
+    }
+    final ImmutableMap<String, ImmutableList<ImmutableList<String>>> generated = generated();
+    if (!generated.keySet().stream().allMatch(n -> Files.isRegularFile(cache.resolve(n)))) {
+      LOGGER.info("Generating extraction corpus into {}.", cache);
+      write(cache, generated);
+    }
+    for (String name : generated.keySet()) {
+      builder.put(name, ByteSource.wrap(Files.readAllBytes(cache.resolve(name))));
+    }
+    return new ExtractionCorpus(builder.build());
+  }
+
+  /**
+   * @return by document name, the lines of each page.
+   */
+  private static ImmutableMap<String, ImmutableList<ImmutableList<String>>> generated() {
+    final ImmutableList<String> lines = IntStream.range(0, 40)
+        .mapToObj(i -> "Line " + i + " of a long page, with some words to extract.")
+        .collect(ImmutableList.toImmutableList());
+    return ImmutableMap.of("Empty page.pdf", ImmutableList.of(ImmutableList.of()), "One line.pdf",
+        ImmutableList.of(ImmutableList.of("Hello, world.")), "Two pages.pdf",
+        ImmutableList.of(ImmutableList.of("First page", "Second line"),
+            ImmutableList.of("Second page")),
+        "Long.pdf", ImmutableList.copyOf(IntStream.range(0, 50).mapToObj(i -> lines).iterator()));
+  }
+
+  /**
+   * Writes the documents to a fresh directory and then moves it to the cache, so that concurrent
+   * runs never see a partial corpus.
+   */
+  private static void write(Path cache,
+      ImmutableMap<String, ImmutableList<ImmutableList<String>>> documents) throws IOException {
+    final Path parent = cache.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    final Path work = Files.createTempDirectory(parent, cache.getFileName().toString());
+    for (String name : documents.keySet()) {
+      Files.write(work.resolve(name), generate(documents.get(name)));
+    }
+    try {
+      Files.move(work, cache, StandardCopyOption.ATOMIC_MOVE);
+    } catch (FileAlreadyExistsException | DirectoryNotEmptyException
+        | AtomicMoveNotSupportedException e) {
+      LOGGER.debug("Could not move {} to {}, moving its files.", work, cache, e);
+      Files.createDirectories(cache);
+      for (String name : documents.keySet()) {
+        Files.move(work.resolve(name), cache.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+      }
+      Files.delete(work);
+    }
+  }
+
+  private static byte[] generate(List<? extends List<String>> pages) throws IOException {
+    try (PDDocument document = new PDDocument()) {
+      for (List<String> lines : pages) {
+        final PDPage page = new PDPage();
+        document.addPage(page);
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+          content.beginText();
+          content.setFont(PDType1Font.HELVETICA, 12);
+          content.setLeading(14.5f);
+          content.newLineAtOffset(72, 720);
+          for (String line : lines) {
+            content.showText(line);
+            content.newLine();
+          }
+          content.endText();
+        }
+      }
+      final ByteArrayOutputStream output = new ByteArrayOutputStream();
+      document.save(output);
+      return output.toByteArray();
+    }
+  }
+
+  private final ImmutableMap<String, ByteSource> documents;
+
+  private ExtractionCorpus(ImmutableMap<String, ByteSource> documents) {
+    this.documents = checkNotNull(documents);
+  }
+
+  /**
+   * @return by name, the content of each document.
+   */
+  public ImmutableMap<String, ByteSource> getDocuments() {
+    return documents;
+  }
+
+  /**
+   * @return the content of the named document.
+   */
+  public ByteSource getDocument(String name) {
+    final ByteSource document = documents.get(name);
+    checkNotNull(document, name);
+    return document;
+  }
+
+  /**
+   * @return the names of the documents generated with PDFBox (thus excluding the resources).
+   */
+  public ImmutableList<String> getGeneratedNames() {
+    return documents.keySet().stream().filter(n -> !RESOURCES.contains(n))
+        .collect(ImmutableList.toImmutableList());
+  }
+}
@@ -0,0 +1,365 @@
+package io.github.oliviercailloux.javagrade.exextractor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteSource;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs text extractions in parallel, each one isolated, limited in time, and charged for the bytes
+ * it allocates.
+ * <p>
+ * Each run uses its own extractor and output, and reports what it obtained together with its own
+ * resource usage: the bytes allocated by the thread that ran it, and the documents it was seen to
+ * open (by the strippers this harness provides) and did not close. As nothing is measured
+ * process-wide, runs (and graders of several students) may proceed concurrently.
+ * </p>
+ * <p>
+ * While a run proceeds, the bytes allocated by its thread are polled, and the run is stopped as
+ * soon as they exceed an allocation budget, as when it exceeds the time limit. Thus, a runaway
+ * extraction cannot allocate much more than its budget. Stopping a run interrupts its thread; an
+ * extraction that ignores interruptions keeps running until the harness is closed.
+ * </p>
+ */
+public class ExtractionHarness implements AutoCloseable {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExtractionHarness.class);
+
+  /**
+   * The stripper given to the extractor before the run.
+   */
+  public static enum StripperSetup {
+    /**
+     * None: the extractor uses its default one.
+     */
+    DEFAULT,
+    /**
+     * A stripper that throws an {@link IOException} (with message <code>Ad-hoc exception</code>)
+     * when asked to extract text.
+     */
+    THROWING,
+    /**
+     * The throwing stripper, then {@code null}: the extractor should be back to its default one.
+     */
+    RESET,
+    /**
+     * A (working) stripper provided explicitly.
+     */
+    EXPLICIT;
+  }
+
+  /**
+   * The outcome of a run.
+   *
+   * @param text the text written to the output, possibly partial if the run failed
+   * @param thrown what the extraction threw, if anything (timeouts excluded)
+   * @param timedOut whether the run was stopped because it exceeded the time limit
+   * @param allocatedBytes the bytes allocated by the run, when it ended or was stopped
+   * @param exceededAllocationBudget whether the run allocated more than the budget (it is then
+   *        stopped, if still running)
+   * @param closedOutput whether the run closed the output it was given
+   * @param nbLeftOpen the number of documents given to the provided stripper and left open
+   */
+  public static record ExtractionRun(String document, String text, Optional<Throwable> thrown,
+      boolean timedOut, long allocatedBytes, boolean exceededAllocationBudget, boolean closedOutput,
+      int nbLeftOpen) {
+    public ExtractionRun {
+      checkNotNull(document);
+      checkNotNull(text);
+      checkNotNull(thrown);
+    }
+
+    /**
+     * @return {@code true} iff the run completed in time and within the allocation budget,
+     *         without throwing.
+     */
+    public boolean completed() {
+      return thrown.isEmpty() && !timedOut && !exceededAllocationBudget;
+    }
+  }
+
+  @FunctionalInterface
+  private static interface Extraction {
+    /**
+     * @param opened where to record the documents the provided strippers see
+     */
+    void extract(InputStream input, Writer output, Set<PDDocument> opened) throws IOException;
+  }
+
+  /**
+   * A stripper that records the documents it is asked to extract text from, and possibly refuses
+   * to do so.
+   */
+  private static class RecordingStripper extends PDFTextStripper {
+    private final Set<PDDocument> opened;
+    private final boolean throwing;
+
+    private RecordingStripper(Set<PDDocument> opened, boolean throwing) throws IOException {
+      this.opened = checkNotNull(opened);
+      this.throwing = throwing;
+    }
+
+    private void record(PDDocument document) throws IOException {
+      opened.add(document);
+      if (throwing) {
+        throw new IOException("Ad-hoc exception");
+      }
+    }
+
+    @Override
+    public String getText(PDDocument doc) throws IOException {
+      record(doc);
+      return super.getText(doc);
+    }
+
+    @Override
+    public void writeText(PDDocument doc, Writer outputStream) throws IOException {
+      record(doc);
+      super.writeText(doc, outputStream);
+    }
+
+    @Override
+    public void showTextString(byte[] string) throws IOException {
+      if (throwing) {
+        throw new IOException("Ad-hoc exception");
+      }
+      super.showTextString(string);
+    }
+
+    @Override
+    public void showTextStrings(COSArray array) throws IOException {
+      if (throwing) {
+        throw new IOException("Ad-hoc exception");
+      }
+      super.showTextStrings(array);
+    }
+  }
+
+  /**
+   * @param timeLimit the maximal duration of each run
+   * @param allocationBudget the number of bytes each run may allocate in total, beyond which it is
+   *        stopped and considered as failed
+   */
+  public static ExtractionHarness create(Duration timeLimit, long allocationBudget) {
+    return new ExtractionHarness(timeLimit, allocationBudget);
+  }
+
+  /**
+   * How often the runners check the time and the allocations of the extractions they wait for.
+   */
+  private static final Duration POLL_PERIOD = Duration.ofMillis(20);
+
+  /**
+   * How long closing waits for the extractions that it interrupts.
+   */
+  private static final Duration TERMINATION_GRACE = Duration.ofSeconds(5);
+
+  private static long getAllocatedBytes(long threadId) {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(threadId);
+  }
+
+  private final Duration timeLimit;
+  private final long allocationBudget;
+  /**
+   * Submitted runs wait for their extraction here.
+   */
+  private final ExecutorService runners;
+  /**
+   * Extractions run (and get interrupted) here.
+   */
+  private final ExecutorService extractors;
+  /**
+   * The threads running an extraction, for reporting those that outlive the harness.
+   */
+  private final Set<Thread> extracting;
+
+  private ExtractionHarness(Duration timeLimit, long allocationBudget) {
+    this.timeLimit = checkNotNull(timeLimit);
+    checkArgument(allocationBudget > 0);
+    this.allocationBudget = allocationBudget;
+    runners = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    extractors = Executors.newCachedThreadPool();
+    extracting = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * Submits a run of the given extractor, which must not be shared with other runs.
+   *
+   * @param content the document to extract text from, empty to give a {@code null} input
+   */
+  public Future<ExtractionRun> submit(String document, Optional<ByteSource> content,
+      SimpleExtractor extractor, StripperSetup setup) {
+    checkNotNull(extractor);
+    checkNotNull(setup);
+    return runners.submit(() -> run(document, content, (input, output, opened) -> {
+      switch (setup) {
+        case DEFAULT -> {
+          /* Nothing to set. */
+        }
+        case THROWING -> extractor.setStripper(new RecordingStripper(opened, true));
+        case RESET -> {
+          extractor.setStripper(new RecordingStripper(opened, true));
+          extractor.setStripper(null);
+        }
+        case EXPLICIT -> extractor.setStripper(new RecordingStripper(opened, false));
+        default -> throw new AssertionError(setup);
+      }
+      extractor.writeText(input, output);
+    }));
+  }
+
+  /**
+   * Submits a run of the reference extraction: a default {@link PDFTextStripper} applied to the
+   * whole document.
+   */
+  public Future<ExtractionRun> submitReference(String document, ByteSource content) {
+    return runners.submit(() -> run(document, Optional.of(content), (input, output, opened) -> {
+      try (PDDocument loaded = PDDocument.load(input)) {
+        new RecordingStripper(opened, false).writeText(loaded, output);
+      }
+    }));
+  }
+
+  private ExtractionRun run(String document, Optional<ByteSource> content,
+      Extraction extraction) {
+    checkNotNull(document);
+    checkNotNull(content);
+    final Set<PDDocument> opened = Collections.synchronizedSet(Sets.newIdentityHashSet());
+    final MyStringWriter output = new MyStringWriter();
+    /* The thread running the extraction, once started, and its allocations before starting. */
+    final CompletableFuture<Thread> started = new CompletableFuture<>();
+    final AtomicLong before = new AtomicLong();
+    final AtomicLong allocatedWhenEnded = new AtomicLong();
+    final Future<?> future = extractors.submit(() -> {
+      final Thread thread = Thread.currentThread();
+      extracting.add(thread);
+      try {
+        before.set(getAllocatedBytes(thread.getId()));
+        started.complete(thread);
+        try (InputStream input = content.isPresent() ? content.get().openStream() : null) {
+          extraction.extract(input, output, opened);
+        }
+        return null;
+      } finally {
+        allocatedWhenEnded.set(getAllocatedBytes(thread.getId()) - before.get());
+        extracting.remove(thread);
+      }
+    });
+
+    final long deadline = System.nanoTime() + timeLimit.toNanos();
+    Optional<Throwable> thrown = Optional.empty();
+    boolean timedOut = false;
+    boolean exceededBudget = false;
+    long allocated = 0L;
+    while (true) {
+      if (waitFor(future)) {
+        allocated = allocatedWhenEnded.get();
+        break;
+      }
+      final Thread thread = started.getNow(null);
+      if (thread != null) {
+        allocated = getAllocatedBytes(thread.getId()) - before.get();
+      }
+      /*
+       * Once ended, the thread may run another extraction, thus only the amount it recorded when
+       * ending is about this one.
+       */
+      if (future.isDone()) {
+        allocated = allocatedWhenEnded.get();
+        break;
+      }
+      if (allocated > allocationBudget) {
+        LOGGER.debug("Extraction of {} exceeded its allocation budget.", document);
+        exceededBudget = true;
+      } else if (System.nanoTime() - deadline >= 0) {
+        LOGGER.debug("Extraction of {} timed out.", document);
+        timedOut = true;
+      }
+      if (exceededBudget || timedOut) {
+        future.cancel(true);
+        break;
+      }
+    }
+    if (allocated > allocationBudget) {
+      /* Also when it allocated its excess since the last poll, and ended in the meantime. */
+      exceededBudget = true;
+    }
+    if (!future.isCancelled()) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        thrown = Optional.of(e.getCause());
+      }
+    }
+    final int nbLeftOpen;
+    synchronized (opened) {
+      nbLeftOpen = (int) opened.stream().filter(d -> !d.getDocument().isClosed()).count();
+    }
+    return new ExtractionRun(document, output.toString(), thrown, timedOut, allocated,
+        exceededBudget, output.hasBeenClosed(), nbLeftOpen);
+  }
+
+  /**
+   * Waits for the given extraction during at most one poll period.
+   *
+   * @return {@code true} iff it has ended
+   */
+  private static boolean waitFor(Future<?> future) {
+    try {
+      future.get(POLL_PERIOD.toNanos(), TimeUnit.NANOSECONDS);
+      return true;
+    } catch (ExecutionException e) {
+      return true;
+    } catch (TimeoutException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Interrupts the runs, then waits for the extractions for a bounded time, and logs those that
+   * are still running.
+   */
+  @Override
+  public void close() {
+    runners.shutdownNow();
+    extractors.shutdownNow();
+    final boolean terminated = Uninterruptibles.awaitTerminationUninterruptibly(extractors,
+        TERMINATION_GRACE.toNanos(), TimeUnit.NANOSECONDS);
+    if (!terminated) {
+      for (Thread thread : extracting) {
+        LOGGER.warn("Extraction thread {} survived closing, at: {}.", thread.getName(),
+            ImmutableList.copyOf(thread.getStackTrace()));
+      }
+    }
+  }
+}
@@ -8,7 +8,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MoreCollectors;
-import com.google.common.graph.Graphs;
+import io.github.oliviercailloux.git.CommitGraphIndex;
 import io.github.oliviercailloux.git.filter.GitHistorySimple;
 import io.github.oliviercailloux.gitjfs.GitPath;
 import io.github.oliviercailloux.gitjfs.GitPathRoot;
@@ -114,9 +114,8 @@ public class Branching implements GitFsGrader<IOException> {
     currentHistory = data;
     verify(!currentHistory.graph().nodes().isEmpty());
 
-    final ImmutableSet<GitPathRootShaCached> commitsOrdered = currentHistory.roots().stream()
-        .flatMap(r -> Graphs.reachableNodes(currentHistory.graph(), r).stream())
-        .collect(ImmutableSet.toImmutableSet());
+    final ImmutableSet<GitPathRootShaCached> commitsOrdered =
+        CommitGraphIndex.of(currentHistory).getReachableBreadthFirst(currentHistory.roots());
     final int nbCommits = commitsOrdered.size();
 
     final MarksTree anyCommitMark = Mark.binary(!commitsOrdered.isEmpty(), String.format(
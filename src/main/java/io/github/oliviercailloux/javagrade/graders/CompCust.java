@@ -2,8 +2,6 @@ package io.github.oliviercailloux.javagrade.graders;
 
 import static com.google.common.base.Verify.verify;
 
-import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.core.read.ListAppender;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -22,6 +20,7 @@ import io.github.oliviercailloux.grade.Mark;
 import io.github.oliviercailloux.grade.MarksTree;
 import io.github.oliviercailloux.grade.MavenCodeGrader;
 import io.github.oliviercailloux.grade.MavenCodeHelper.WarningsBehavior;
+import io.github.oliviercailloux.grade.utils.LogCapture;
 import io.github.oliviercailloux.jaris.exceptions.TryCatchAll;
 import io.github.oliviercailloux.jaris.exceptions.TryCatchAllVoid;
 import io.github.oliviercailloux.jaris.throwing.TSupplier;
@@ -236,20 +235,19 @@ public class CompCust implements CodeGrader<RuntimeException> {
     }
 
     {
-      final ch.qos.logback.classic.Logger rootLogger =
-          (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
-      final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
-      listAppender.start();
-      rootLogger.addAppender(listAppender);
-      final TryCatchAll<Object> comp =
-          instanciator.invokeStatic(CL_COMP, Object.class, "instance", ImmutableList.of())
-              .andApply(o -> o.orElseThrow());
-      comp.andApply(c -> Instanciator.invoke(c, Void.class, "addOperand", 1d));
-      comp.andApply(c -> Instanciator.invoke(c, Void.class, "addOperand", 2d));
-      final TryCatchAll<Double> obs =
-          comp.andApply(c -> Instanciator.invokeProducing(c, Double.class, "apply", "+").orThrow());
-      final List<ILoggingEvent> logsList = listAppender.list;
-      final MarksTree mapped = markG(obs, o -> !logsList.isEmpty());
+      final TryCatchAll<Double> obs;
+      final boolean logged;
+      try (LogCapture capture = LogCapture.capturing("io.github.oliviercailloux.exercices")) {
+        final TryCatchAll<Object> comp =
+            instanciator.invokeStatic(CL_COMP, Object.class, "instance", ImmutableList.of())
+                .andApply(o -> o.orElseThrow());
+        comp.andApply(c -> Instanciator.invoke(c, Void.class, "addOperand", 1d));
+        comp.andApply(c -> Instanciator.invoke(c, Void.class, "addOperand", 2d));
+        obs = comp
+            .andApply(c -> Instanciator.invokeProducing(c, Double.class, "apply", "+").orThrow());
+        logged = capture.getNbEvents() > 0;
+      }
+      final MarksTree mapped = markG(obs, o -> logged);
       builder.put(LOGS, mapped);
     }
 
@@ -9,12 +9,15 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import io.github.oliviercailloux.git.filter.GitHistorySimple;
+import io.github.oliviercailloux.gitjfs.GitFileSystem;
 import io.github.oliviercailloux.gitjfs.GitPath;
 import io.github.oliviercailloux.gitjfs.GitPathRoot;
 import io.github.oliviercailloux.gitjfs.GitPathRootShaCached;
+import io.github.oliviercailloux.grade.BestCandidateSearch;
 import io.github.oliviercailloux.grade.Criterion;
 import io.github.oliviercailloux.grade.CriterionGradeWeight;
 import io.github.oliviercailloux.grade.DeadlineGrader;
+import io.github.oliviercailloux.grade.GitFileSystemPool;
 import io.github.oliviercailloux.grade.GitGeneralGrader;
 import io.github.oliviercailloux.grade.GitGrader;
 import io.github.oliviercailloux.grade.GitWork;
@@ -35,6 +38,7 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +53,11 @@ public class Eclipse implements GitGrader {
   public static final ZonedDateTime DEADLINE =
       ZonedDateTime.parse("2021-01-14T23:00:00+01:00[Europe/Paris]");
 
+  /**
+   * The number of commits graded concurrently, when a {@link GitFileSystemPool} is current.
+   */
+  private static final int PARALLELISM = 4;
+
   private GitHistorySimple history;
 
   private GitHistorySimple authoredHistory;
@@ -84,6 +93,16 @@ public class Eclipse implements GitGrader {
     LOGGER.debug("Considering whole history {} and own history {}.", history.graph().nodes(),
         authoredHistory.graph().nodes());
 
+    final ImmutableList<GitPathRootShaCached> newestFirst =
+        GradeUtils.newestFirst(authoredHistory.graph().nodes());
+    /*
+     * The file system of the history is not safe to use concurrently, thus commits are graded
+     * concurrently only through file systems of their own.
+     */
+    final Optional<GitFileSystemPool> pool = GitFileSystemPool.current();
+    final BestCandidateSearch search = pool.isPresent()
+        ? BestCandidateSearch.withParallelism(PARALLELISM)
+        : BestCandidateSearch.sequential();
     final ImmutableSet.Builder<CriterionGradeWeight> gradeBuilder = ImmutableSet.builder();
     {
       final Mark hasCommit = Mark.binary(!authoredHistory.graph().nodes().isEmpty());
@@ -91,26 +110,40 @@ public class Eclipse implements GitGrader {
     }
     LOGGER.info("Grading compile.");
     gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Compile"),
-        GradeUtils.getBestGrade(authoredHistory.graph().nodes(), this::compileGrade, 1d), 2.5d));
+        GradeUtils.getBestGrade(newestFirst, pooled(pool, this::compileGrade), 1d, search), 2.5d));
     LOGGER.info("Grading warning.");
     gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Warning"),
-        GradeUtils.getBestGrade(authoredHistory.graph().nodes(), this::warningGrade, 1d), 2.5d));
+        GradeUtils.getBestGrade(newestFirst, pooled(pool, this::warningGrade), 1d, search), 2.5d));
     LOGGER.info("Grading helper.");
     gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("StrategyHelper → Helper"),
-        GradeUtils.getBestGrade(authoredHistory.graph().nodes(), this::helperGrade, 1d), 3.5d));
+        GradeUtils.getBestGrade(newestFirst, pooled(pool, this::helperGrade), 1d, search), 3.5d));
     LOGGER.info("Grading courses.");
     gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("courses.soc"),
-        GradeUtils.getBestGrade(authoredHistory.graph().nodes(), this::coursesGrade, 1d), 3.5d));
+        GradeUtils.getBestGrade(newestFirst, pooled(pool, this::coursesGrade), 1d, search), 3.5d));
     LOGGER.info("Grading number.");
     gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Number"),
-        GradeUtils.getBestGrade(authoredHistory.graph().nodes(), this::numberGrade, 1d), 3.5d));
+        GradeUtils.getBestGrade(newestFirst, pooled(pool, this::numberGrade), 1d, search), 3.5d));
     LOGGER.info("Grading formatting.");
-    gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Formatting"),
-        GradeUtils.getBestGrade(authoredHistory.graph().nodes(), this::formattingGrade, 1d), 3.5d));
+    gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Formatting"), GradeUtils
+        .getBestGrade(newestFirst, pooled(pool, this::formattingGrade), 1d, search), 3.5d));
 
     return WeightingGrade.from(gradeBuilder.build());
   }
 
+  /**
+   * Returns a grader that reads the given commit through a file system borrowed from the given
+   * pool, if any.
+   */
+  private static TFunction<Optional<GitPathRootShaCached>, IGrade, IOException> pooled(
+      Optional<GitFileSystemPool> pool,
+      TFunction<Optional<GitPathRootShaCached>, IGrade, IOException> grader) {
+    if (pool.isEmpty()) {
+      return grader;
+    }
+    return p -> p.isPresent() ? pool.get().apply(p.get(), c -> grader.apply(Optional.of(c)))
+        : grader.apply(p);
+  }
+
   void setHistory(GitHistorySimple history) {
     this.history = history;
     this.authoredHistory = history;
@@ -141,15 +174,32 @@ public class Eclipse implements GitGrader {
     // return compose(filesMatching, singletonAndMatch).test(p);
   }
 
+  /**
+   * @param p a commit of the history, possibly read by another file system than the one of the
+   *        history
+   */
   boolean singleChangeAbout(GitPathRootShaCached p, String file) throws IOException {
-    final Set<GitPathRootShaCached> predecessors = history.graph().predecessors(p);
-    return (predecessors.size() == 1)
-        && singleDiffAbout(Iterables.getOnlyElement(predecessors), p, file);
+    final ObjectId id = p.getCommit().id();
+    final Optional<GitPathRootShaCached> original = history.graph().nodes().stream()
+        .filter(n -> n.getCommit().id().equals(id)).findAny();
+    if (original.isEmpty()) {
+      return false;
+    }
+    final Set<GitPathRootShaCached> predecessors = history.graph().predecessors(original.get());
+    if (predecessors.size() != 1) {
+      return false;
+    }
+    final GitPathRootShaCached predecessor = Iterables.getOnlyElement(predecessors);
+    if (original.get().equals(p)) {
+      return singleDiffAbout(history.fs(), predecessor, p, file);
+    }
+    final GitFileSystem fs = p.getFileSystem();
+    return singleDiffAbout(fs, fs.getPathRoot(predecessor.getCommit().id()), p, file);
   }
 
-  private boolean singleDiffAbout(GitPathRoot predecessor, GitPathRoot p, String file)
-      throws IOException {
-    final ImmutableSet<DiffEntry> diff = history.fs().diff(predecessor, p);
+  private boolean singleDiffAbout(GitFileSystem fs, GitPathRoot predecessor, GitPathRoot p,
+      String file) throws IOException {
+    final ImmutableSet<DiffEntry> diff = fs.diff(predecessor, p);
     return diff.size() == 1 && diffIsAboutFile(Iterables.getOnlyElement(diff), file);
   }
 
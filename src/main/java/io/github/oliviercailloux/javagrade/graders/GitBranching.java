@@ -9,6 +9,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.graph.ImmutableGraph;
+import io.github.oliviercailloux.git.CommitGraphIndex;
 import io.github.oliviercailloux.git.filter.GitHistorySimple;
 import io.github.oliviercailloux.gitjfs.GitPathRootRef;
 import io.github.oliviercailloux.gitjfs.GitPathRootShaCached;
@@ -59,6 +60,7 @@ public class GitBranching implements GitGrader {
   public WeightingGrade grade(GitWork work) throws IOException {
     final GitHistorySimple history = work.getHistory();
     final ImmutableSet<GitPathRootRef> refs = history.fs().refs();
+    final CommitGraphIndex<GitPathRootShaCached> index = CommitGraphIndex.of(history);
 
     final ImmutableSet.Builder<CriterionGradeWeight> gradeBuilder = ImmutableSet.builder();
 
@@ -68,8 +70,7 @@ public class GitBranching implements GitGrader {
     }
 
     final Function<GitPathRootShaCached, Set<GitPathRootShaCached>> graphSiblings =
-        r -> getSingleParent(history, r).map(p -> history.graph().successors(p))
-            .orElse(ImmutableSet.of(r));
+        r -> getSingleParent(index, r).map(index::getChildren).orElse(ImmutableSet.of(r));
     final TFunction<GitPathRootShaCached, Set<GitPathRootShaCached>, IOException> siblings =
         r -> graphSiblings.apply(r);
     final TPredicate<GitPathRootShaCached, IOException> hasAFewSiblings =
@@ -113,7 +114,7 @@ public class GitBranching implements GitGrader {
       gradeBuilder.add(bGrade);
     }
     final TFunction<GitPathRootShaCached, Set<GitPathRootShaCached>, IOException> fatherSiblings =
-        r -> getSingleParent(history, r).map(graphSiblings).orElse(ImmutableSet.of());
+        r -> getSingleParent(index, r).map(graphSiblings).orElse(ImmutableSet.of());
     final TPredicate<GitPathRootShaCached, IOException> hasCTopo =
         compose(fatherSiblings, s -> 2 <= s.size() && s.size() <= 3);
     final TPredicate<GitPathRootShaCached, IOException> cBranch =
@@ -147,7 +148,7 @@ public class GitBranching implements GitGrader {
       final TPredicate<GitPathRootShaCached, IOException> isA = aBranch.or(hasAFewSiblings);
       final TPredicate<GitPathRootShaCached, IOException> isC = cBranch.or(hasCTopo);
       final TFunction<GitPathRootShaCached, ImmutableSet<GitPathRootShaCached>,
-          IOException> parents = r -> ImmutableSet.copyOf(graph.predecessors(r));
+          IOException> parents = index::getParents;
       final TPredicate<ImmutableSet<GitPathRootShaCached>, IOException> aAndC =
           s -> s.size() == 2 && (isA.test(s.asList().get(0)) && isC.test(s.asList().get(1)));
       final TPredicate<ImmutableSet<GitPathRootShaCached>, IOException> cAndA =
@@ -213,10 +214,9 @@ public class GitBranching implements GitGrader {
     return anyMatchPredicate;
   }
 
-  private Optional<GitPathRootShaCached> getSingleParent(GitHistorySimple history,
-      GitPathRootShaCached r) {
-    final Set<GitPathRootShaCached> parents =
-        history.graph().predecessors(r).stream().collect(ImmutableSet.toImmutableSet());
+  private Optional<GitPathRootShaCached> getSingleParent(
+      CommitGraphIndex<GitPathRootShaCached> index, GitPathRootShaCached r) {
+    final Set<GitPathRootShaCached> parents = index.getParents(r);
     if (parents.size() == 1) {
       return Optional.of(Iterables.getOnlyElement(parents));
     }
@@ -16,7 +16,7 @@ import io.github.oliviercailloux.grade.IGrade;
 import io.github.oliviercailloux.grade.RepositoryFetcher;
 import io.github.oliviercailloux.grade.WeightingGrade;
 import io.github.oliviercailloux.grade.old.Mark;
-import io.github.oliviercailloux.grade.utils.LogCaptor;
+import io.github.oliviercailloux.grade.utils.LogCapture;
 import io.github.oliviercailloux.jaris.exceptions.TryCatchAll;
 import io.github.oliviercailloux.javagrade.bytecode.Instanciator;
 import io.github.oliviercailloux.javagrade.utils.Summarizer;
@@ -84,7 +84,7 @@ public class WorkersGrader {
   public IGrade grade() {
     final ImmutableSet.Builder<CriterionGradeWeight> gradeBuilder = ImmutableSet.builder();
 
-    try (LogCaptor capt = LogCaptor.redirecting("io.github.oliviercailloux.workers")) {
+    try (LogCapture capt = LogCapture.redirecting("io.github.oliviercailloux.workers")) {
       LOGGER.info("Grading");
 
       gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Add"), add(), 4.5d));
@@ -214,10 +214,10 @@ public class WorkersGrader {
     return WeightingGrade.from(gradeBuilder.build());
   }
 
-  private IGrade log(LogCaptor logCaptor) {
-    final int before = logCaptor.getEvents().size();
+  private IGrade log(LogCapture capture) {
+    final long before = capture.getNbEvents();
     getWorkersWith(Person.named("just logging"));
-    final int after = logCaptor.getEvents().size();
+    final long after = capture.getNbEvents();
     return Mark.binary(after > before);
   }
 
@@ -1,23 +1,21 @@
 package io.github.oliviercailloux.javagrade.utils;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static io.github.oliviercailloux.jaris.exceptions.Unchecker.IO_UNCHECKER;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import io.github.oliviercailloux.git.common.GitUri;
-import io.github.oliviercailloux.git.factory.GitCloner;
+import io.github.oliviercailloux.git.RemoteRefsProbe;
+import io.github.oliviercailloux.git.RemoteRefsProbe.RemoteRefs;
 import io.github.oliviercailloux.git.github.model.GitHubToken;
 import io.github.oliviercailloux.git.github.model.RepositoryCoordinates;
 import io.github.oliviercailloux.git.github.model.RepositoryCoordinatesWithPrefix;
 import io.github.oliviercailloux.git.github.services.GitHubFetcherV3;
+import io.github.oliviercailloux.jaris.exceptions.Try;
 import io.github.oliviercailloux.jaris.exceptions.Unchecker;
-import io.github.oliviercailloux.utils.Utils;
-import java.nio.file.Path;
-import java.util.List;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.ListBranchCommand.ListMode;
-import org.eclipse.jgit.lib.Ref;
+import java.util.Optional;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,11 +33,13 @@ public class FindEnds {
     LOGGER.info("Ended: {}.", ended);
   }
 
-  private static final Path WORK_DIR = Utils.getTempDirectory();
   private final String prefix;
+  private final RemoteRefsProbe probe;
 
   private FindEnds(String prefix) {
     this.prefix = checkNotNull(prefix);
+    probe = RemoteRefsProbe.create().setCredentials(Optional.of(
+        new UsernamePasswordCredentialsProvider(GitHubToken.getRealInstance().getToken(), "")));
   }
 
   public ImmutableSet<RepositoryCoordinatesWithPrefix> getEnded() {
@@ -47,23 +47,24 @@ public class FindEnds {
     try (GitHubFetcherV3 fetcher = GitHubFetcherV3.using(GitHubToken.getRealInstance())) {
       repositories = fetcher.getRepositoriesWithPrefix("oliviercailloux-org", prefix);
     }
+    /* Lists the refs of all repositories concurrently; hasEnd then reads them from the cache. */
+    final ImmutableList<String> uris = repositories.stream().map(r -> r.asUri().toString())
+        .collect(ImmutableList.toImmutableList());
+    final ImmutableMap<String, Try<RemoteRefs, GitAPIException>> refs = probe.getRefs(uris);
+    LOGGER.debug("Refs: {}.", refs);
     final ImmutableSet<RepositoryCoordinatesWithPrefix> ended =
         repositories.stream().filter(this::hasEnd).collect(ImmutableSet.toImmutableSet());
     return ended;
   }
 
+  /**
+   * Lists the remote refs of the given repository (without cloning it) and checks for a branch
+   * named end, ignoring case (because sometimes students name it strangely).
+   */
   public boolean hasEnd(RepositoryCoordinates coord) {
-    final Path projectsBaseDir = WORK_DIR.resolve(prefix);
-    final Path projectDir = projectsBaseDir.resolve(coord.getRepositoryName());
-    /* False because sometimes the main branch has a strange name. */
-    GitCloner.create().download(GitUri.fromUri(coord.asUri()), projectDir).close();
-
-    try (Git git = IO_UNCHECKER.getUsing(() -> Git.open(projectDir.resolve(".git").toFile()))) {
-      final List<Ref> remoteRefs = Unchecker.wrappingWith(IllegalStateException::new)
-          .getUsing(() -> git.branchList().setListMode(ListMode.REMOTE).call());
-      LOGGER.info("Remote refs for {}: {}.", coord, remoteRefs);
-      return remoteRefs.stream()
-          .anyMatch(r -> r.getName().equalsIgnoreCase("refs/remotes/origin/end"));
-    }
+    final RemoteRefs refs = Unchecker.wrappingWith(IllegalStateException::new)
+        .getUsing(() -> probe.getRefs(coord.asUri().toString()));
+    LOGGER.info("Remote branches for {}: {}.", coord, refs.branches().keySet());
+    return refs.hasBranchIgnoringCase("end");
   }
 }
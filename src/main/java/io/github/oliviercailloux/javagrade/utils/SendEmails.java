@@ -20,6 +20,7 @@ import io.github.oliviercailloux.grade.comm.Email;
 import io.github.oliviercailloux.grade.comm.Emailer;
 import io.github.oliviercailloux.grade.comm.EmailerDauphineHelper;
 import io.github.oliviercailloux.grade.comm.GradesInEmails;
+import io.github.oliviercailloux.grade.comm.MailSender;
 import io.github.oliviercailloux.grade.comm.json.JsonStudents;
 import io.github.oliviercailloux.grade.format.HtmlGrades;
 import io.github.oliviercailloux.grade.format.json.JsonSimpleGrade;
@@ -40,6 +41,12 @@ public class SendEmails {
 
   private static final Path WORK_DIR = Path.of("");
 
+  /**
+   * Whether to send the emails; otherwise, they are only prepared, and the outbox is left
+   * untouched.
+   */
+  private static final boolean SEND = false;
+
   public static void main(String[] args) throws Exception {
     // final String prefix = Colors.PREFIX + " second";
     // final String prefix = CompCust.PREFIX;
@@ -149,8 +156,13 @@ public class SendEmails {
           first.map(Email::getDocument).map(XmlUtils::asString), first.map(Email::getTo));
       // LOGGER.info("Prepared {}.", effectiveEmails);
 
-      emailer.saveInto(folder);
-      // emailer.send(emails, EmailerDauphineHelper.FROM);
+      if (SEND) {
+        final MailSender sender = MailSender.using(Emailer.getOutlookSmtpSession(),
+            EmailerDauphineHelper.USERNAME_DAUPHINE, EmailerDauphineHelper.getDauphineToken(),
+            WORK_DIR.resolve("outbox"));
+        sender.saveInto(folder);
+        LOGGER.info("Sent: {}.", sender.send(emails, EmailerDauphineHelper.FROM));
+      }
     }
   }
 
@@ -1,12 +1,60 @@
 package io.github.oliviercailloux.javagrade.utils;
 
+import java.util.concurrent.Callable;
+
+/**
+ * Redirects the standard output and error streams while open.
+ */
 public interface StdOutErrLogger extends AutoCloseable {
+  /**
+   * Returns an instance that logs (at debug level) what is printed to the standard streams, by
+   * any thread not capturing its output.
+   */
   public static StdOutErrLogger redirect() {
     final StdOutErrLoggerImpl logger = new StdOutErrLoggerImpl();
     logger.start();
     return logger;
   }
 
+  /**
+   * Returns an instance that captures what the current thread, and the threads it creates from
+   * now on, print to the standard streams, until it is closed; without logging it.
+   *
+   * @param limit the maximal number of bytes kept per stream, further output being dropped
+   */
+  public static StdOutErrLogger capture(int limit) {
+    final StdOutErrLoggerImpl logger = new StdOutErrLoggerImpl(limit);
+    logger.start();
+    return logger;
+  }
+
+  /**
+   * Returns a task that runs the given one within this capture, whatever the thread that runs it
+   * (such as a thread of a pool created before the capture); or the given task, if not capturing.
+   */
+  public <T> Callable<T> wrap(Callable<T> task);
+
+  /**
+   * Returns a task that runs the given one within this capture, whatever the thread that runs it
+   * (such as a thread of a pool created before the capture); or the given task, if not capturing.
+   */
+  public Runnable wrap(Runnable task);
+
+  /**
+   * @return what has been captured from the standard output, empty if not capturing.
+   */
+  public String getOut();
+
+  /**
+   * @return what has been captured from the standard error stream, empty if not capturing.
+   */
+  public String getErr();
+
+  /**
+   * @return whether some output has been dropped for exceeding the limit.
+   */
+  public boolean isTruncated();
+
   @Override
   public void close();
 }
@@ -1,192 +1,308 @@
 package io.github.oliviercailloux.javagrade.utils;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
-import com.google.common.base.VerifyException;
-import com.google.common.collect.ImmutableList;
-import java.io.IOException;
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.Callable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.event.Level;
 
+/**
+ * Replaces {@link System#out} and {@link System#err} while at least one instance is started, and
+ * restores them when the last one closes.
+ * <p>
+ * The replacements route each write, in bulk, according to the thread that prints. If that thread
+ * (or the thread that created it) has started a capturing instance, the bytes are appended to the
+ * buffers of that instance, up to its limit. Otherwise, they are logged at debug level, one log
+ * entry per line, using a line buffer proper to the thread, so that lines printed concurrently by
+ * several threads do not get mixed; flushing logs the pending line of the flushing thread, and
+ * the last instance to close flushes before restoring the original streams.
+ * </p>
+ * <p>
+ * Threads inherit the capturing instance of the thread that creates them, at their creation: a
+ * pool created while capturing routes to that instance (until it closes, then logs), and a pool
+ * created beforehand does not capture, unless its tasks are wrapped with {@link #wrap(Callable)}.
+ * </p>
+ */
 class StdOutErrLoggerImpl implements StdOutErrLogger {
 
   @SuppressWarnings("unused")
   private static final Logger LOGGER = LoggerFactory.getLogger(StdOutErrLoggerImpl.class);
 
   /**
-   * Slightly improved from
-   * https://svn.apache.org/viewvc/logging/log4j/trunk/contribs/JimMoore/LoggingOutputStream.java?view=co,
-   * found thanks to https://stackoverflow.com/a/11187462 (I didn’t check the writing algorithm).
+   * A line longer than this (in bytes) is logged in several parts.
    */
-  private static class LoggingOutputStream extends OutputStream {
+  private static final int LINE_LIMIT = 8192;
 
-    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
-    private static final int DEFAULT_BUFFER_LENGTH = 2048;
-    private Logger delegate;
-    private Level level;
-    private byte[] buffer;
-
-    /**
-     * The number of valid bytes in the buffer. This value is always in the range <tt>0</tt> through
-     * <tt>buf.length</tt>; elements <tt>buf[0]</tt> through <tt>buf[count-1]</tt> contain valid
-     * byte data.
-     */
-    private int count;
-
-    /**
-     * Remembers the size of the buffer for speed.
-     */
-    private int bufferLength;
+  /**
+   * The capturing instance of the current thread, if any.
+   */
+  private static final InheritableThreadLocal<StdOutErrLoggerImpl> CAPTURING =
+      new InheritableThreadLocal<>();
 
-    private boolean hasBeenClosed = false;
+  private static final Object INSTALLATION_LOCK = new Object();
 
-    private LoggingOutputStream(Logger delegate, Level level) {
-      this.delegate = checkNotNull(delegate);
-      this.level = checkNotNull(level);
-      count = 0;
-      bufferLength = DEFAULT_BUFFER_LENGTH;
-      buffer = new byte[DEFAULT_BUFFER_LENGTH];
-      hasBeenClosed = false;
+  /**
+   * Guarded by {@link #INSTALLATION_LOCK}, as the following fields.
+   */
+  private static int nbStarted = 0;
+  private static PrintStream outOrig = null;
+  private static PrintStream errOrig = null;
+  private static PrintStream outReplacement = null;
+  private static PrintStream errReplacement = null;
+
+  private static class RoutingOutputStream extends OutputStream {
+    private final boolean isErr;
+    private final ThreadLocal<ByteArrayOutputStream> lines;
+
+    private RoutingOutputStream(boolean isErr) {
+      this.isErr = isErr;
+      lines = ThreadLocal.withInitial(ByteArrayOutputStream::new);
     }
 
     @Override
-    public void write(int b) throws IOException {
-      checkState(!hasBeenClosed);
+    public void write(int b) {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
 
-      /* don't log nulls */
-      if (b == 0) {
+    @Override
+    public void write(byte[] b, int off, int len) {
+      Objects.checkFromIndexSize(off, len, b.length);
+      final StdOutErrLoggerImpl capturing = CAPTURING.get();
+      if (capturing != null && !capturing.closed) {
+        (isErr ? capturing.err : capturing.out).append(b, off, len);
         return;
       }
 
-      /* would this be writing past the buffer? */
-      if (count == bufferLength) {
-        /* grow the buffer */
-        final int newBufLength = bufferLength + DEFAULT_BUFFER_LENGTH;
-        final byte[] newBuf = new byte[newBufLength];
-
-        System.arraycopy(buffer, 0, newBuf, 0, bufferLength);
-
-        buffer = newBuf;
-        bufferLength = newBufLength;
+      final ByteArrayOutputStream line = lines.get();
+      int start = off;
+      for (int i = off; i < off + len; ++i) {
+        if (b[i] == '\n' || b[i] == '\r' || b[i] == 0) {
+          line.write(b, start, i - start);
+          start = i + 1;
+          if (b[i] != 0) {
+            logLine();
+          }
+        } else if (line.size() + i - start >= LINE_LIMIT) {
+          line.write(b, start, i - start);
+          start = i;
+          logLine();
+        }
       }
-
-      buffer[count] = (byte) b;
-      count++;
+      line.write(b, start, off + len - start);
     }
 
+    /**
+     * Logs the pending line of the current thread, if any, though it is not terminated.
+     */
     @Override
     public void flush() {
-      checkState(!hasBeenClosed);
+      logLine();
+    }
 
-      if (count == 0) {
+    /**
+     * Logs the line of the current thread, unless it is empty (as between a carriage return and a
+     * line feed).
+     */
+    private void logLine() {
+      final ByteArrayOutputStream line = lines.get();
+      if (line.size() == 0) {
         return;
       }
+      final String content = line.toString(StandardCharsets.UTF_8);
+      line.reset();
+      LOGGER.debug(content);
+    }
+  }
 
-      /* don't print out blank lines; flushing from PrintStream puts out these */
-      if (count == LINE_SEPARATOR.length()) {
-        if (((char) buffer[0]) == LINE_SEPARATOR.charAt(0)
-            && ((count == 1) || /* <- Unix & Mac, -> Windows */
-                ((count == 2) && ((char) buffer[1]) == LINE_SEPARATOR.charAt(1)))) {
-          reset();
-          return;
-        }
-      }
-
-      final byte[] theBytes = new byte[count];
-
-      System.arraycopy(buffer, 0, theBytes, 0, count);
-
-      final String content = new String(theBytes);
-      switch (level) {
-        case ERROR:
-          delegate.error(content);
-          break;
-        case WARN:
-          delegate.warn(content);
-          break;
-        case INFO:
-          delegate.info(content);
-          break;
-        case DEBUG:
-          delegate.debug(content);
-          break;
-        case TRACE:
-          delegate.trace(content);
-          break;
-        default:
-          throw new VerifyException("Unknown level");
-      }
+  /**
+   * The bytes captured from one stream, up to a limit.
+   */
+  private static class BoundedBuffer {
+    private final int limit;
+    private final ByteArrayOutputStream kept;
+    private long nbDropped;
+
+    private BoundedBuffer(int limit) {
+      this.limit = limit;
+      kept = new ByteArrayOutputStream();
+      nbDropped = 0;
+    }
 
-      reset();
+    private synchronized void append(byte[] b, int off, int len) {
+      final int nbKept = Math.min(len, limit - kept.size());
+      kept.write(b, off, nbKept);
+      nbDropped += len - nbKept;
     }
 
-    private void reset() {
-      // not resetting the buffer -- assuming that if it grew that it
-      // will likely grow similarly again
-      count = 0;
+    private synchronized String getContent() {
+      return kept.toString(StandardCharsets.UTF_8);
     }
 
-    @Override
-    public void close() {
-      if (!hasBeenClosed) {
-        flush();
-        hasBeenClosed = true;
-      }
+    private synchronized long getNbDropped() {
+      return nbDropped;
     }
   }
 
-  private ImmutableList<StdOutErrLoggerImpl.LoggingOutputStream> loggingOutputStreamsToClose;
-  private ImmutableList<PrintStream> printStreamsToClose;
-  private PrintStream outOrig;
-
-  private PrintStream errOrig;
-  private boolean closed;
+  /**
+   * Must be called with {@link #INSTALLATION_LOCK} held.
+   */
+  private static void install() {
+    outOrig = System.out;
+    errOrig = System.err;
+    outReplacement = new PrintStream(new RoutingOutputStream(false), false, StandardCharsets.UTF_8);
+    errReplacement = new PrintStream(new RoutingOutputStream(true), false, StandardCharsets.UTF_8);
+    System.setOut(outReplacement);
+    System.setErr(errReplacement);
+  }
 
-  StdOutErrLoggerImpl() {
-    loggingOutputStreamsToClose = null;
-    printStreamsToClose = null;
+  /**
+   * Must be called with {@link #INSTALLATION_LOCK} held.
+   */
+  private static void uninstall() {
+    outReplacement.flush();
+    errReplacement.flush();
+    System.setOut(outOrig);
+    System.setErr(errOrig);
+    outReplacement.close();
+    errReplacement.close();
     outOrig = null;
     errOrig = null;
+    outReplacement = null;
+    errReplacement = null;
+  }
+
+  private final boolean capturing;
+  private final BoundedBuffer out;
+  private final BoundedBuffer err;
+  private StdOutErrLoggerImpl previous;
+  private boolean started;
+  private volatile boolean closed;
+
+  /**
+   * An instance that logs what is printed.
+   */
+  StdOutErrLoggerImpl() {
+    capturing = false;
+    out = new BoundedBuffer(0);
+    err = new BoundedBuffer(0);
+    previous = null;
+    started = false;
+    closed = false;
+  }
+
+  /**
+   * An instance that captures what the starting thread prints.
+   *
+   * @param limit the maximal number of bytes kept by stream
+   */
+  StdOutErrLoggerImpl(int limit) {
+    checkArgument(limit >= 0);
+    capturing = true;
+    out = new BoundedBuffer(limit);
+    err = new BoundedBuffer(limit);
+    previous = null;
+    started = false;
     closed = false;
   }
 
-  @SuppressWarnings("resource")
   void start() {
-    checkState(loggingOutputStreamsToClose == null);
+    checkState(!started);
+    started = true;
+    synchronized (INSTALLATION_LOCK) {
+      if (nbStarted == 0) {
+        install();
+      }
+      ++nbStarted;
+    }
+    if (capturing) {
+      previous = CAPTURING.get();
+      CAPTURING.set(this);
+    }
+  }
 
-    final StdOutErrLoggerImpl.LoggingOutputStream out =
-        new LoggingOutputStream(LOGGER, Level.DEBUG);
-    final StdOutErrLoggerImpl.LoggingOutputStream err =
-        new LoggingOutputStream(LOGGER, Level.DEBUG);
-    loggingOutputStreamsToClose = ImmutableList.of(out, err);
-    final PrintStream outPs = new PrintStream(out);
-    final PrintStream errPs = new PrintStream(err);
-    printStreamsToClose = ImmutableList.of(outPs, errPs);
+  @Override
+  public <T> Callable<T> wrap(Callable<T> task) {
+    checkNotNull(task);
+    if (!capturing) {
+      return task;
+    }
+    return () -> {
+      final StdOutErrLoggerImpl before = CAPTURING.get();
+      CAPTURING.set(this);
+      try {
+        return task.call();
+      } finally {
+        restore(before);
+      }
+    };
+  }
 
-    outOrig = System.out;
-    errOrig = System.err;
+  @Override
+  public Runnable wrap(Runnable task) {
+    checkNotNull(task);
+    if (!capturing) {
+      return task;
+    }
+    return () -> {
+      final StdOutErrLoggerImpl before = CAPTURING.get();
+      CAPTURING.set(this);
+      try {
+        task.run();
+      } finally {
+        restore(before);
+      }
+    };
+  }
 
-    System.setOut(outPs);
-    System.setErr(errPs);
+  private static void restore(StdOutErrLoggerImpl before) {
+    if (before == null) {
+      CAPTURING.remove();
+    } else {
+      CAPTURING.set(before);
+    }
+  }
+
+  @Override
+  public String getOut() {
+    return out.getContent();
+  }
+
+  @Override
+  public String getErr() {
+    return err.getContent();
+  }
+
+  @Override
+  public boolean isTruncated() {
+    return out.getNbDropped() > 0 || err.getNbDropped() > 0;
   }
 
   @Override
   public void close() {
-    if (!closed) {
-      System.setOut(outOrig);
-      System.setErr(errOrig);
-      closed = true;
+    checkState(started);
+    if (closed) {
+      return;
     }
-
-    for (PrintStream toClose : printStreamsToClose) {
-      toClose.close();
+    closed = true;
+    if (capturing && CAPTURING.get() == this) {
+      restore(previous);
     }
-    for (StdOutErrLoggerImpl.LoggingOutputStream toClose : loggingOutputStreamsToClose) {
-      toClose.close();
+    if (isTruncated()) {
+      LOGGER.debug("Dropped {} bytes of standard output and {} bytes of error output.",
+          out.getNbDropped(), err.getNbDropped());
+    }
+    synchronized (INSTALLATION_LOCK) {
+      --nbStarted;
+      if (nbStarted == 0) {
+        uninstall();
+      }
     }
   }
 }
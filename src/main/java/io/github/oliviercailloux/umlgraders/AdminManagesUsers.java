@@ -2,12 +2,10 @@ package io.github.oliviercailloux.umlgraders;
 
 import static com.google.common.base.Verify.verify;
 
-import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
-import com.google.common.graph.Graph;
 import io.github.oliviercailloux.grade.Criterion;
 import io.github.oliviercailloux.grade.CriterionGradeWeight;
 import io.github.oliviercailloux.grade.DeadlineGrader;
@@ -17,36 +15,23 @@ import io.github.oliviercailloux.grade.RepositoryFetcher;
 import io.github.oliviercailloux.grade.WeightingGrade;
 import io.github.oliviercailloux.grade.markers.Marks;
 import io.github.oliviercailloux.grade.old.Mark;
-import io.github.oliviercailloux.jaris.xml.DomHelper;
+import io.github.oliviercailloux.umlgraders.UmlModel.UmlElement;
+import io.github.oliviercailloux.utils.FileIndex;
 import io.github.oliviercailloux.utils.Utils;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.ZonedDateTime;
-import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 public class AdminManagesUsers {
-  private static final String XMI_NS = "http://www.omg.org/spec/XMI/20131001";
-
-  private static final String UML_NS = "http://www.eclipse.org/uml2/5.0.0/UML";
-
   @SuppressWarnings("unused")
   private static final Logger LOGGER = LoggerFactory.getLogger(AdminManagesUsers.class);
 
@@ -55,10 +40,6 @@ public class AdminManagesUsers {
   public static final ZonedDateTime DEADLINE =
       ZonedDateTime.parse("2021-01-25T14:11:00+01:00[Europe/Paris]");
 
-  private static DocumentBuilder builder;
-
-  private static final DomHelper domHelper = DomHelper.domHelper();
-
   public static void main(String[] args) throws Exception {
     final RepositoryFetcher fetcher = RepositoryFetcher.withPrefix(PREFIX);
     // .setRepositoriesFilter(r->r.getUsername().equals(""));
@@ -73,19 +54,18 @@ public class AdminManagesUsers {
   public static IGrade grade(Path work) throws IOException {
     final ImmutableSet.Builder<CriterionGradeWeight> gradeBuilder = ImmutableSet.builder();
 
-    final ImmutableSet<Path> umlPaths =
-        Utils.getPathsMatching(work, (Path p) -> String.valueOf(p.getFileName()).endsWith(".uml"));
+    final FileIndex files = FileIndex.of(work);
+    final ImmutableSet<Path> umlPaths = files.getPathsWhere(f -> f.name().endsWith(".uml"));
     if (umlPaths.isEmpty()) {
       return Mark.zero("No model file found.");
     }
 
     for (Path umlPath : umlPaths) {
-      Document uml;
       IGrade grade;
       try {
-        uml = toDocument(umlPath);
-        grade = grade(work, uml);
-      } catch (SAXException e) {
+        final UmlModel uml = UmlModel.read(umlPath);
+        grade = grade(files, uml);
+      } catch (XMLStreamException e) {
         grade = Mark.zero("Could not parse " + umlPath.toString() + ": " + e.getMessage());
       }
       gradeBuilder.add(CriterionGradeWeight
@@ -95,7 +75,7 @@ public class AdminManagesUsers {
     return WeightingGrade.from(gradeBuilder.build());
   }
 
-  private static IGrade grade(Path work, Document uml) throws IOException {
+  private static IGrade grade(FileIndex files, UmlModel uml) {
     final ImmutableSet.Builder<CriterionGradeWeight> gradeBuilder = ImmutableSet.builder();
     gradeBuilder.add(
         CriterionGradeWeight.from(Criterion.given("Required elements"), getRequired(uml), 15d));
@@ -104,44 +84,37 @@ public class AdminManagesUsers {
     gradeBuilder
         .add(CriterionGradeWeight.from(Criterion.given("Sorted out"), gradeSortedOut(uml), 1d));
     gradeBuilder
-        .add(CriterionGradeWeight.from(Criterion.given("Model only"), gradeModelOnly(work), 1.5d));
+        .add(CriterionGradeWeight.from(Criterion.given("Model only"), gradeModelOnly(files), 1.5d));
     return WeightingGrade.from(gradeBuilder.build());
   }
 
-  private static IGrade gradeModelOnly(Path work) throws IOException {
-    final ImmutableSet<Path> umlFiles =
-        Utils.getPathsMatching(work, p -> String.valueOf(p.getFileName()).endsWith(".uml"));
-    final ImmutableSet<Path> filesNotUml = Utils.getPathsMatching(work,
-        p -> Files.isRegularFile(p) && !p.getFileName().toString().endsWith(".uml"));
+  private static IGrade gradeModelOnly(FileIndex files) {
+    final ImmutableSet<Path> umlFiles = files.getPathsWhere(f -> f.name().endsWith(".uml"));
+    final ImmutableSet<Path> filesNotUml =
+        files.getPathsWhere(f -> f.isRegularFile() && !f.name().endsWith(".uml"));
     return Mark.binary(umlFiles.size() == 1 && filesNotUml.isEmpty());
   }
 
-  private static IGrade gradeSortedOut(Document uml) {
-    final ImmutableList<Node> children = DomHelper.toList(uml.getDocumentElement().getChildNodes());
-    final ImmutableList<Node> nonTextChildren = children.stream()
-        .filter(n -> n.getNodeType() != Node.TEXT_NODE).collect(ImmutableList.toImmutableList());
-    final boolean justOneSubject = nonTextChildren.size() == 1;
-
-    final ImmutableList<Element> pckgEls =
-        DomHelper.toElements(uml.getElementsByTagName("packagedElement"));
-    final ImmutableList<Element> ownedEls =
-        DomHelper.toElements(uml.getElementsByTagName("ownedUseCase"));
-    final ImmutableList<Element> nestedEls =
-        DomHelper.toElements(uml.getElementsByTagName("nestedClassifier"));
-    final ImmutableList<Element> mainElements =
+  private static IGrade gradeSortedOut(UmlModel uml) {
+    final boolean justOneSubject = uml.getNbRootNonTextChildren() == 1;
+
+    final ImmutableList<UmlElement> pckgEls = uml.getElementsByTag("packagedElement");
+    final ImmutableList<UmlElement> ownedEls = uml.getElementsByTag("ownedUseCase");
+    final ImmutableList<UmlElement> nestedEls = uml.getElementsByTag("nestedClassifier");
+    final ImmutableList<UmlElement> mainElements =
         Streams.concat(pckgEls.stream(), ownedEls.stream(), nestedEls.stream())
             .collect(ImmutableList.toImmutableList());
-    final ImmutableList<Element> useCases = getType(mainElements, "uml:UseCase");
+    final ImmutableList<UmlElement> useCases = getType(mainElements, "uml:UseCase");
     final boolean someUseCases = useCases.size() >= 1;
     return Mark.binary(justOneSubject && someUseCases);
   }
 
-  private static IGrade gradeSuperfluous(Document uml) {
+  private static IGrade gradeSuperfluous(UmlModel uml) {
     int expectedFoundNotRemoved = 0;
-    final ImmutableSet<Element> leaves = getLeaves(uml);
-    final Set<Element> remainingLeaves = new LinkedHashSet<>(leaves);
+    final ImmutableSet<UmlElement> leaves = getLeaves(uml);
+    final Set<UmlElement> remainingLeaves = new LinkedHashSet<>(leaves);
     {
-      final ImmutableList<Element> elements = getType(remainingLeaves, "uml:Actor");
+      final ImmutableList<UmlElement> elements = getType(remainingLeaves, "uml:Actor");
       final long nbFound = elements.size();
       if (nbFound >= 1) {
         remainingLeaves.removeAll(elements);
@@ -150,9 +123,9 @@ public class AdminManagesUsers {
       }
     }
     {
-      final ImmutableList<Element> elements = getType(remainingLeaves, "uml:UseCase");
+      final ImmutableList<UmlElement> elements = getType(remainingLeaves, "uml:UseCase");
       final long nbFound = elements.size();
-      LOGGER.debug("Found UseCases: {}.", toString(elements));
+      LOGGER.debug("Found UseCases: {}.", elements);
       if (nbFound >= 3) {
         remainingLeaves.removeAll(elements);
       } else {
@@ -160,7 +133,7 @@ public class AdminManagesUsers {
       }
     }
     {
-      final ImmutableList<Element> elements = getType(remainingLeaves, "uml:Generalization");
+      final ImmutableList<UmlElement> elements = getType(remainingLeaves, "uml:Generalization");
       final long nbFound = elements.size();
       if (nbFound >= 2) {
         remainingLeaves.removeAll(elements);
@@ -169,12 +142,12 @@ public class AdminManagesUsers {
       }
     }
     {
-      final ImmutableList<Element> elements =
+      final ImmutableList<UmlElement> elements =
           getType(remainingLeaves, "ecore:EStringToStringMapEntry");
       remainingLeaves.removeAll(elements);
     }
     {
-      final ImmutableList<Element> elements = getType(remainingLeaves, "uml:Property");
+      final ImmutableList<UmlElement> elements = getType(remainingLeaves, "uml:Property");
       final long nbFound = elements.size();
       if (nbFound >= 2) {
         remainingLeaves.removeAll(elements);
@@ -198,64 +171,55 @@ public class AdminManagesUsers {
     return superfluous;
   }
 
-  private static ImmutableSet<Element> getLeaves(Document uml) {
-    final Graph<Element> graph =
-        Utils.<Element, Element>asGraph(
-            (Element e) -> DomHelper.toList(e.getChildNodes()).stream()
-                .filter(n -> n.getNodeType() == Node.ELEMENT_NODE).map(n -> (Element) n)
-                .collect(ImmutableList.toImmutableList()),
-            ImmutableSet.of(uml.getDocumentElement()));
-    return graph.nodes().stream().filter(e -> graph.successors(e).isEmpty())
-        .collect(ImmutableSet.toImmutableSet());
+  private static ImmutableSet<UmlElement> getLeaves(UmlModel uml) {
+    return ImmutableSet.copyOf(uml.getLeaves());
   }
 
-  private static IGrade getRequired(Document uml) {
+  private static IGrade getRequired(UmlModel uml) {
     final ImmutableSet.Builder<CriterionGradeWeight> gradeBuilder = ImmutableSet.builder();
 
-    gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Model"),
-        Mark.binary(uml.getDocumentElement().getNamespaceURI().equals(UML_NS)), 1d));
+    gradeBuilder
+        .add(CriterionGradeWeight.from(Criterion.given("Model"), Mark.binary(uml.isUml()), 1d));
 
-    final ImmutableList<Element> pckgEls =
-        DomHelper.toElements(uml.getElementsByTagName("packagedElement"));
-    final ImmutableList<Element> ownedEls =
-        DomHelper.toElements(uml.getElementsByTagName("ownedUseCase"));
-    final ImmutableList<Element> nestedEls =
-        DomHelper.toElements(uml.getElementsByTagName("nestedClassifier"));
+    final ImmutableList<UmlElement> pckgEls = uml.getElementsByTag("packagedElement");
+    final ImmutableList<UmlElement> ownedEls = uml.getElementsByTag("ownedUseCase");
+    final ImmutableList<UmlElement> nestedEls = uml.getElementsByTag("nestedClassifier");
 
-    final Optional<Element> subject = pckgEls.stream()
-        .filter(e -> Marks.extendAll("System").matcher(e.getAttribute("name")).matches())
+    final Optional<UmlElement> subject = pckgEls.stream()
+        .filter(e -> Marks.extendAll("System").matcher(e.getName()).matches())
         .collect(Utils.singleOrEmpty());
     gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Subject name"),
         Mark.binary(subject.isPresent()), 1.5d));
 
-    final ImmutableList<Element> mainElements =
+    final ImmutableList<UmlElement> mainElements =
         Streams.concat(pckgEls.stream(), ownedEls.stream(), nestedEls.stream())
             .collect(ImmutableList.toImmutableList());
-    final ImmutableList<Element> useCaseEls = getType(mainElements, "uml:UseCase");
+    final ImmutableList<UmlElement> useCaseEls = getType(mainElements, "uml:UseCase");
 
-    final ImmutableSet<Element> manageUseCases = getUseCases(mainElements, "Manage\\h+user?s");
+    final ImmutableSet<UmlElement> manageUseCases = getUseCases(mainElements, "Manage\\h+user?s");
     final ImmutableSet<String> manageUseCaseIds =
-        manageUseCases.stream().map(AdminManagesUsers::getId).flatMap(Optional::stream)
+        manageUseCases.stream().map(UmlElement::getId).flatMap(Optional::stream)
             .collect(ImmutableSet.toImmutableSet());
     LOGGER.debug("Manage: {}.", manageUseCaseIds);
-    final Optional<Element> manageUseCase = manageUseCases.stream().collect(Utils.singleOrEmpty());
+    final Optional<UmlElement> manageUseCase =
+        manageUseCases.stream().collect(Utils.singleOrEmpty());
     gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Use case Manage"),
         gradeUseCases(manageUseCases), 2d));
 
-    final ImmutableSet<Element> createUseCases = getUseCases(mainElements, "Create\\h+user");
+    final ImmutableSet<UmlElement> createUseCases = getUseCases(mainElements, "Create\\h+user");
     gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Use case Create"),
         gradeUseCases(createUseCases), 2d));
 
-    final ImmutableSet<Element> deleteUseCases = getUseCases(mainElements, "Delete\\h+user");
+    final ImmutableSet<UmlElement> deleteUseCases = getUseCases(mainElements, "Delete\\h+user");
     gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Use case Delete"),
         gradeUseCases(deleteUseCases), 2d));
 
     {
-      final ImmutableSet<Element> childrenUseCases =
+      final ImmutableSet<UmlElement> childrenUseCases =
           Stream.concat(createUseCases.stream(), deleteUseCases.stream())
               .collect(ImmutableSet.toImmutableSet());
 
-      final ImmutableSet<Element> useCasesWithGeneralization = useCaseEls.stream()
+      final ImmutableSet<UmlElement> useCasesWithGeneralization = useCaseEls.stream()
           .filter(u -> getTargetOfUniqueGeneralization(u, useCaseEls).isPresent())
           .collect(ImmutableSet.toImmutableSet());
       final boolean createGeneralized = !createUseCases.isEmpty() && createUseCases.stream()
@@ -271,10 +235,10 @@ public class AdminManagesUsers {
       final CriterionGradeWeight number = CriterionGradeWeight.from(Criterion.given("Number"),
           WeightingGrade.from(ImmutableSet.of(nbOneOrTwo, nbTwo)), 1d);
 
-      final ImmutableSet<Element> targets = useCasesWithGeneralization.stream()
+      final ImmutableSet<UmlElement> targets = useCasesWithGeneralization.stream()
           .map(u -> getTargetOfUniqueGeneralization(u, useCaseEls)).map(Optional::get)
           .collect(ImmutableSet.toImmutableSet());
-      final Optional<Element> targetIfSingle = targets.stream().collect(Utils.singleOrEmpty());
+      final Optional<UmlElement> targetIfSingle = targets.stream().collect(Utils.singleOrEmpty());
       final boolean allTargetsManage =
           targetIfSingle.isPresent() && targetIfSingle.equals(manageUseCase);
       final CriterionGradeWeight idsOneOrTwo =
@@ -290,16 +254,15 @@ public class AdminManagesUsers {
       gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Generalization"),
           WeightingGrade.from(ImmutableSet.of(number, ids)), 3d));
     }
-    final Optional<Element> actor = Stream.concat(pckgEls.stream(), nestedEls.stream())
-        .filter(e -> e.getAttributeNS(XMI_NS, "type").equals("uml:Actor"))
-        .collect(Utils.singleOrEmpty());
-    final Optional<String> actorId = actor.flatMap(AdminManagesUsers::getId);
+    final Optional<UmlElement> actor = Stream.concat(pckgEls.stream(), nestedEls.stream())
+        .filter(e -> e.getType().equals("uml:Actor")).collect(Utils.singleOrEmpty());
+    final Optional<String> actorId = actor.flatMap(UmlElement::getId);
     {
       gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Actor"), gradeActor(actor), 1d));
     }
     {
-      final Optional<Element> association = Stream.concat(pckgEls.stream(), nestedEls.stream())
-          .filter(e -> e.getAttributeNS(XMI_NS, "type").equals("uml:Association"))
+      final Optional<UmlElement> association = Stream.concat(pckgEls.stream(), nestedEls.stream())
+          .filter(e -> e.getType().equals("uml:Association"))
           .collect(Utils.singleOrEmpty());
       gradeBuilder.add(CriterionGradeWeight.from(Criterion.given("Association"),
           gradeAssociation(association, actorId, manageUseCaseIds), 2.5d));
@@ -308,39 +271,31 @@ public class AdminManagesUsers {
     return WeightingGrade.from(gradeBuilder.build());
   }
 
-  static ImmutableSet<String> toString(Collection<? extends Node> elements) {
-    return elements.stream().map(domHelper::toString).collect(ImmutableSet.toImmutableSet());
-  }
-
-  static ImmutableSet<String> toNameAndId(Set<Element> elements) {
-    return elements.stream().map(e -> e.getAttribute("name") + " " + e.getAttributeNS(XMI_NS, "id"))
+  static ImmutableSet<String> toNameAndId(Set<UmlElement> elements) {
+    return elements.stream().map(e -> e.getName() + " " + e.getIdOrEmpty())
         .collect(ImmutableSet.toImmutableSet());
   }
 
-  private static IGrade gradeActor(Optional<Element> actor) {
+  private static IGrade gradeActor(Optional<UmlElement> actor) {
     final CriterionGradeWeight actorGrade =
         CriterionGradeWeight.from(Criterion.given("Actor"), Mark.binary(actor.isPresent()), 1d);
     final CriterionGradeWeight nameGrade =
         CriterionGradeWeight.from(Criterion.given("Name"), Mark.binary(Marks.extendAll("Admin")
-            .matcher(actor.map(e -> e.getAttribute("name")).orElse("")).matches()), 1d);
+            .matcher(actor.map(UmlElement::getName).orElse("")).matches()), 1d);
     return WeightingGrade.from(ImmutableSet.of(actorGrade, nameGrade));
   }
 
-  private static IGrade gradeAssociation(Optional<Element> association, Optional<String> actorId,
+  private static IGrade gradeAssociation(Optional<UmlElement> association, Optional<String> actorId,
       Set<String> manageUseCaseIds) {
     final CriterionGradeWeight associationGrade = CriterionGradeWeight
         .from(Criterion.given("Actor"), Mark.binary(association.isPresent()), 1d);
-    final ImmutableList<Element> ownedAttributes =
-        association.map(a -> DomHelper.toElements(a.getElementsByTagName("ownedAttribute")))
-            .orElse(ImmutableList.of());
-    final ImmutableList<Element> ownedEnds =
-        association.map(a -> DomHelper.toElements(a.getElementsByTagName("ownedEnd")))
-            .orElse(ImmutableList.of());
-    final ImmutableList<Element> owned =
-        ImmutableList.<Element>builder().addAll(ownedAttributes).addAll(ownedEnds).build();
-    final ImmutableList<Element> properties =
-        owned.stream().filter(a -> a.getAttributeNS(XMI_NS, "type").equals("uml:Property"))
-            .collect(ImmutableList.toImmutableList());
+    final ImmutableList<UmlElement> ownedAttributes =
+        association.map(a -> a.getDescendants("ownedAttribute")).orElse(ImmutableList.of());
+    final ImmutableList<UmlElement> ownedEnds =
+        association.map(a -> a.getDescendants("ownedEnd")).orElse(ImmutableList.of());
+    final ImmutableList<UmlElement> owned =
+        ImmutableList.<UmlElement>builder().addAll(ownedAttributes).addAll(ownedEnds).build();
+    final ImmutableList<UmlElement> properties = getType(owned, "uml:Property");
     final ImmutableList<String> targetIds = properties.stream().map(p -> p.getAttribute("type"))
         .collect(ImmutableList.toImmutableList());
     final boolean targetsAnActor = actorId.isPresent() && targetIds.contains(actorId.get());
@@ -354,23 +309,22 @@ public class AdminManagesUsers {
     return WeightingGrade.from(ImmutableSet.of(associationGrade, propertiesGrade));
   }
 
-  private static Optional<Element> getTargetOfUniqueGeneralization(Element useCaseEl,
-      List<Element> useCaseEls) {
-    final Optional<Element> generalizationEl =
-        DomHelper.toElements(useCaseEl.getElementsByTagName("generalization")).stream()
-            .collect(Utils.singleOrEmpty());
+  private static Optional<UmlElement> getTargetOfUniqueGeneralization(UmlElement useCaseEl,
+      List<UmlElement> useCaseEls) {
+    final Optional<UmlElement> generalizationEl =
+        useCaseEl.getDescendants("generalization").stream().collect(Utils.singleOrEmpty());
     final Optional<String> targetId = generalizationEl.map(g -> g.getAttribute("general"));
-    final Optional<Element> useCase = targetId.flatMap(g -> getElementById(useCaseEls, g));
+    final Optional<UmlElement> useCase = targetId.flatMap(g -> getElementById(useCaseEls, g));
     return useCase;
   }
 
-  private static Optional<Element> getElementById(List<Element> elements, String id) {
-    return elements.stream().filter(e -> e.getAttributeNS(XMI_NS, "id").equals(id))
+  private static Optional<UmlElement> getElementById(List<UmlElement> elements, String id) {
+    return elements.stream().filter(e -> e.getIdOrEmpty().equals(id))
         .collect(Utils.singleOrEmpty());
   }
 
-  private static WeightingGrade gradeUseCases(Set<Element> useCases) {
-    final Set<String> useCaseIds = useCases.stream().map(AdminManagesUsers::getId)
+  private static WeightingGrade gradeUseCases(Set<UmlElement> useCases) {
+    final Set<String> useCaseIds = useCases.stream().map(UmlElement::getId)
         .flatMap(Optional::stream).collect(ImmutableSet.toImmutableSet());
     final CriterionGradeWeight ucGrade = CriterionGradeWeight.from(Criterion.given("Exists"),
         Mark.binary(!useCases.isEmpty() && useCaseIds.size() == useCases.size()), 1d);
@@ -384,63 +338,16 @@ public class AdminManagesUsers {
     return WeightingGrade.from(ImmutableSet.of(ucGrade, nameGrade, subjectGrade));
   }
 
-  private static Optional<String> getId(Element element) {
-    return Optional.ofNullable(Strings.emptyToNull(element.getAttributeNS(XMI_NS, "id")));
-  }
-
-  private static ImmutableSet<Element> getUseCases(Iterable<Element> elements, String namePattern) {
-    final ImmutableList<Element> useCases = getType(elements, "uml:UseCase");
+  private static ImmutableSet<UmlElement> getUseCases(Iterable<UmlElement> elements,
+      String namePattern) {
+    final ImmutableList<UmlElement> useCases = getType(elements, "uml:UseCase");
     return useCases.stream()
-        .filter(e -> Marks.extendAll(namePattern).matcher(e.getAttribute("name")).matches())
+        .filter(e -> Marks.extendAll(namePattern).matcher(e.getName()).matches())
         .collect(ImmutableSet.toImmutableSet());
   }
 
-  private static ImmutableList<Element> getType(Iterable<Element> elements, String type) {
-    return Streams.stream(elements).filter(e -> e.getAttributeNS(XMI_NS, "type").equals(type))
+  private static ImmutableList<UmlElement> getType(Iterable<UmlElement> elements, String type) {
+    return Streams.stream(elements).filter(e -> e.getType().equals(type))
         .collect(ImmutableList.toImmutableList());
   }
-
-  private static void prepareBuilder() {
-    if (builder == null) {
-      final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-      factory.setNamespaceAware(true);
-      try {
-        builder = factory.newDocumentBuilder();
-      } catch (ParserConfigurationException e) {
-        throw new IllegalStateException(e);
-      }
-    }
-  }
-
-  public static Document toDocument(Path input) throws SAXException, IOException {
-    prepareBuilder();
-
-    final Document doc;
-    try (InputStream inputStream = Files.newInputStream(input)) {
-      final InputSource source = new InputSource(inputStream);
-      source.setSystemId(input.toUri().toString());
-      doc = builder.parse(source);
-    }
-
-    final Element docE = doc.getDocumentElement();
-    LOGGER.debug("Main tag name: {}.", docE.getTagName());
-
-    return doc;
-  }
-
-  public static Document asDocument(InputSource input) {
-    prepareBuilder();
-
-    final Document doc;
-    try {
-      doc = builder.parse(input);
-    } catch (SAXException | IOException e) {
-      throw new IllegalStateException(e);
-    }
-
-    final Element docE = doc.getDocumentElement();
-    LOGGER.debug("Main tag name: {}.", docE.getTagName());
-
-    return doc;
-  }
 }
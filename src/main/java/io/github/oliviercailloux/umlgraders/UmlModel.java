@@ -0,0 +1,364 @@
+package io.github.oliviercailloux.umlgraders;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Verify.verify;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import io.github.oliviercailloux.utils.Utils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The elements of a UML (XMI) model file that graders look at, read in one streaming pass.
+ * <p>
+ * Each element keeps its tag (qualified name, such as <code>packagedElement</code>), its XMI type
+ * and id, and its unqualified attributes among {@link #KEPT_ATTRIBUTES} (names and references to
+ * other elements); text and other attributes are dropped. Elements are numbered in document order,
+ * and each one knows where its subtree ends, so that its descendants are a contiguous range.
+ * Elements are indexed by tag, XMI type and XMI id.
+ * </p>
+ * <p>
+ * Instances are immutable, thus safe for use by multiple threads, and reading is thread-safe.
+ * </p>
+ */
+public class UmlModel {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(UmlModel.class);
+
+  public static final String XMI_NS = "http://www.omg.org/spec/XMI/20131001";
+
+  public static final String UML_NS = "http://www.eclipse.org/uml2/5.0.0/UML";
+
+  /**
+   * The unqualified attributes kept: the name and the attributes of UML elements that refer to
+   * other elements.
+   */
+  public static final ImmutableSet<String> KEPT_ATTRIBUTES =
+      ImmutableSet.of("name", "subject", "general", "type", "association", "memberEnd",
+          "useCase", "client", "supplier", "addition", "extendedCase", "source", "target");
+
+  /**
+   * Factories are not guaranteed to be thread-safe.
+   */
+  private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(() -> {
+    final XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  });
+
+  public static UmlModel read(Path input) throws IOException, XMLStreamException {
+    try (InputStream inputStream = Files.newInputStream(input)) {
+      return read(inputStream, input.toUri().toString());
+    }
+  }
+
+  /**
+   * @param systemId used to resolve relative URIs and in error messages
+   */
+  public static UmlModel read(InputStream input, String systemId) throws XMLStreamException {
+    final XMLStreamReader reader = FACTORY.get().createXMLStreamReader(systemId, input);
+    try {
+      return new Reader(reader).read();
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * An element of the model. Two elements are equal iff they are the same element of the same
+   * model.
+   */
+  public class UmlElement {
+    private final int index;
+    private final String tag;
+    private final String type;
+    private final String id;
+    private final ImmutableMap<String, String> attributes;
+
+    private UmlElement(int index, String tag, String type, String id,
+        ImmutableMap<String, String> attributes) {
+      this.index = index;
+      this.tag = checkNotNull(tag);
+      this.type = checkNotNull(type);
+      this.id = checkNotNull(id);
+      this.attributes = checkNotNull(attributes);
+    }
+
+    /**
+     * @return the qualified name of the element, such as <code>packagedElement</code>.
+     */
+    public String getTag() {
+      return tag;
+    }
+
+    /**
+     * @return the XMI type, such as <code>uml:UseCase</code>, or the empty string if none.
+     */
+    public String getType() {
+      return type;
+    }
+
+    /**
+     * @return the XMI id, if present and not empty.
+     */
+    public Optional<String> getId() {
+      return Optional.ofNullable(Strings.emptyToNull(id));
+    }
+
+    /**
+     * @return the XMI id, or the empty string if none.
+     */
+    public String getIdOrEmpty() {
+      return id;
+    }
+
+    /**
+     * @return the name, or the empty string if none.
+     */
+    public String getName() {
+      return getAttribute("name");
+    }
+
+    /**
+     * @param name among {@link UmlModel#KEPT_ATTRIBUTES}
+     * @return the value of the given unqualified attribute, or the empty string if none.
+     */
+    public String getAttribute(String name) {
+      return attributes.getOrDefault(name, "");
+    }
+
+    public boolean hasAttribute(String name) {
+      return attributes.containsKey(name);
+    }
+
+    public Optional<UmlElement> getParent() {
+      final int parent = parents[index];
+      return parent == -1 ? Optional.empty() : Optional.of(elements.get(parent));
+    }
+
+    public ImmutableList<UmlElement> getChildren() {
+      final ImmutableList.Builder<UmlElement> builder = ImmutableList.builder();
+      int child = index + 1;
+      while (child < ends[index]) {
+        builder.add(elements.get(child));
+        child = ends[child];
+      }
+      return builder.build();
+    }
+
+    public boolean isLeaf() {
+      return ends[index] == index + 1;
+    }
+
+    /**
+     * @return the descendants (excluding this element) having the given tag, in document order.
+     */
+    public ImmutableList<UmlElement> getDescendants(String tag) {
+      return elements.subList(index + 1, ends[index]).stream().filter(e -> e.tag.equals(tag))
+          .collect(ImmutableList.toImmutableList());
+    }
+
+    @Override
+    public String toString() {
+      return tag + (type.isEmpty() ? "" : " " + type) + (id.isEmpty() ? "" : " " + id)
+          + (hasAttribute("name") ? " " + getName() : "");
+    }
+  }
+
+  private static class Reader {
+    private final XMLStreamReader reader;
+    private final Interner<String> interner;
+    private final List<String> tags;
+    private final List<String> types;
+    private final List<String> ids;
+    private final List<ImmutableMap<String, String>> attributes;
+    private final List<Integer> parents;
+    private final List<Integer> ends;
+    private String rootNamespace;
+    private int nbRootChildren;
+
+    private Reader(XMLStreamReader reader) {
+      this.reader = checkNotNull(reader);
+      interner = Interners.newStrongInterner();
+      tags = new ArrayList<>();
+      types = new ArrayList<>();
+      ids = new ArrayList<>();
+      attributes = new ArrayList<>();
+      parents = new ArrayList<>();
+      ends = new ArrayList<>();
+      rootNamespace = "";
+      nbRootChildren = 0;
+    }
+
+    private UmlModel read() throws XMLStreamException {
+      final Deque<Integer> open = new ArrayDeque<>();
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        switch (event) {
+          case XMLStreamConstants.START_ELEMENT:
+            if (open.size() == 1) {
+              ++nbRootChildren;
+            }
+            final int index = tags.size();
+            if (index == 0) {
+              rootNamespace = Strings.nullToEmpty(reader.getNamespaceURI());
+            }
+            startElement(open.isEmpty() ? -1 : open.peek());
+            open.push(index);
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            ends.set(open.pop(), tags.size());
+            break;
+          case XMLStreamConstants.COMMENT:
+          case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.ENTITY_REFERENCE:
+            if (open.size() == 1) {
+              ++nbRootChildren;
+            }
+            break;
+          default:
+            break;
+        }
+      }
+      verify(open.isEmpty());
+      return new UmlModel(this);
+    }
+
+    private void startElement(int parent) {
+      final String prefix = reader.getPrefix();
+      final String localName = reader.getLocalName();
+      tags.add(interner
+          .intern(Strings.isNullOrEmpty(prefix) ? localName : prefix + ":" + localName));
+      String type = "";
+      String id = "";
+      final ImmutableMap.Builder<String, String> kept = ImmutableMap.builder();
+      for (int i = 0; i < reader.getAttributeCount(); ++i) {
+        final String namespace = Strings.nullToEmpty(reader.getAttributeNamespace(i));
+        final String name = reader.getAttributeLocalName(i);
+        if (namespace.equals(XMI_NS) && name.equals("type")) {
+          type = interner.intern(reader.getAttributeValue(i));
+        } else if (namespace.equals(XMI_NS) && name.equals("id")) {
+          id = reader.getAttributeValue(i);
+        } else if (namespace.isEmpty() && KEPT_ATTRIBUTES.contains(name)) {
+          kept.put(name, reader.getAttributeValue(i));
+        }
+      }
+      types.add(type);
+      ids.add(id);
+      attributes.add(kept.buildKeepingLast());
+      parents.add(parent);
+      ends.add(-1);
+    }
+  }
+
+  private final String rootNamespace;
+  private final int nbRootChildren;
+  private final int[] parents;
+  /**
+   * By element, the index following its last descendant.
+   */
+  private final int[] ends;
+  private final ImmutableList<UmlElement> elements;
+  private final ImmutableListMultimap<String, UmlElement> byTag;
+  private final ImmutableListMultimap<String, UmlElement> byType;
+  private final ImmutableListMultimap<String, UmlElement> byId;
+
+  private UmlModel(Reader read) {
+    rootNamespace = read.rootNamespace;
+    nbRootChildren = read.nbRootChildren;
+    final int n = read.tags.size();
+    parents = read.parents.stream().mapToInt(Integer::intValue).toArray();
+    ends = read.ends.stream().mapToInt(Integer::intValue).toArray();
+    elements = IntStream.range(0, n)
+        .mapToObj(i -> new UmlElement(i, read.tags.get(i), read.types.get(i), read.ids.get(i),
+            read.attributes.get(i)))
+        .collect(ImmutableList.toImmutableList());
+    byTag = elements.stream()
+        .collect(ImmutableListMultimap.toImmutableListMultimap(UmlElement::getTag, e -> e));
+    byType = elements.stream().filter(e -> !e.getType().isEmpty())
+        .collect(ImmutableListMultimap.toImmutableListMultimap(UmlElement::getType, e -> e));
+    byId = elements.stream().filter(e -> e.getId().isPresent())
+        .collect(ImmutableListMultimap.toImmutableListMultimap(UmlElement::getIdOrEmpty, e -> e));
+  }
+
+  /**
+   * @return the namespace of the root element, or the empty string if none.
+   */
+  public String getRootNamespace() {
+    return rootNamespace;
+  }
+
+  public boolean isUml() {
+    return rootNamespace.equals(UML_NS);
+  }
+
+  public UmlElement getRoot() {
+    return elements.get(0);
+  }
+
+  /**
+   * @return the number of child nodes of the root element that are not text (elements, comments,
+   *         processing instructions…).
+   */
+  public int getNbRootNonTextChildren() {
+    return nbRootChildren;
+  }
+
+  /**
+   * @return all elements, including the root, in document order.
+   */
+  public ImmutableList<UmlElement> getElements() {
+    return elements;
+  }
+
+  /**
+   * @return the elements having the given tag, in document order.
+   */
+  public ImmutableList<UmlElement> getElementsByTag(String tag) {
+    return byTag.get(tag);
+  }
+
+  /**
+   * @return the elements having the given XMI type, in document order.
+   */
+  public ImmutableList<UmlElement> getElementsByType(String type) {
+    return byType.get(type);
+  }
+
+  /**
+   * @return the element having the given XMI id, if exactly one has it.
+   */
+  public Optional<UmlElement> getElementById(String id) {
+    return byId.get(id).stream().collect(Utils.singleOrEmpty());
+  }
+
+  /**
+   * @return the elements having no child element, in document order.
+   */
+  public ImmutableList<UmlElement> getLeaves() {
+    return elements.stream().filter(UmlElement::isLeaf).collect(ImmutableList.toImmutableList());
+  }
+}
@@ -0,0 +1,317 @@
+package io.github.oliviercailloux.utils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import io.github.oliviercailloux.gitjfs.GitPath;
+import io.github.oliviercailloux.jaris.throwing.TPredicate;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The paths found under a root (including the root), with their names, extensions and sizes,
+ * walked once and then queried from memory.
+ * <p>
+ * The walk visits the paths in the same order as {@link Files#find} (depth first, each directory
+ * before its content), without following links. On the default file system (and other file
+ * systems that are not Git file systems), sub-directories are listed in parallel. Git file systems
+ * read objects through a reader that is not meant to be shared among threads, thus, are walked by
+ * a single thread.
+ * </p>
+ * <p>
+ * {@link #of(Path)} shares indices within a {@link #share() scope}, so that the criteria of a
+ * grading run walk each tree once. Within a scope, an index of a Git path is rebuilt when the
+ * commit its root designates has changed (as when a branch moved); an index of any other path is
+ * kept until {@link #invalidate(Path)} or the end of the scope.
+ * </p>
+ */
+public class FileIndex {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileIndex.class);
+
+  /**
+   * A path found by the walk.
+   *
+   * @param relative the path relative to the root, as a string with slash separators; empty for
+   *        the root
+   * @param name the file name, empty for a root of a file system
+   * @param extension the part of the name following its last dot (excluding a leading dot), or the
+   *        empty string if none
+   * @param size the size of the file, in bytes (meaningful for regular files only)
+   */
+  public static record FileEntry(Path path, String relative, String name, String extension,
+      long size, boolean isDirectory, boolean isRegularFile) {
+    public FileEntry {
+      checkNotNull(path);
+      checkNotNull(relative);
+      checkNotNull(name);
+      checkNotNull(extension);
+    }
+  }
+
+  /**
+   * Shares indices among the code run by the thread that opened it (and the threads that this code
+   * creates), until closed.
+   */
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final InheritableThreadLocal<Map<Path, FileIndex>> SHARED =
+      new InheritableThreadLocal<>();
+
+  /**
+   * Returns a fresh index of the given root.
+   */
+  public static FileIndex create(Path root) throws IOException {
+    return new FileIndex(root, getVersion(root), walk(root));
+  }
+
+  /**
+   * Starts sharing indices, typically for the grading of one student, until the returned scope is
+   * closed, at which point the indices shared previously (if any) are restored.
+   */
+  public static Scope share() {
+    final Map<Path, FileIndex> previous = SHARED.get();
+    SHARED.set(new ConcurrentHashMap<>());
+    return () -> {
+      if (previous == null) {
+        SHARED.remove();
+      } else {
+        SHARED.set(previous);
+      }
+    };
+  }
+
+  /**
+   * Returns the index of the given root shared in the current scope, built if unknown or if it
+   * designates a Git commit different from the one indexed; or a fresh index, if no scope is open.
+   */
+  public static FileIndex of(Path root) throws IOException {
+    final Map<Path, FileIndex> shared = SHARED.get();
+    if (shared == null) {
+      return create(root);
+    }
+    final FileIndex known = shared.get(root);
+    final Optional<ObjectId> version = getVersion(root);
+    if (known != null && known.version.equals(version)) {
+      return known;
+    }
+    final FileIndex index = new FileIndex(root, version, walk(root));
+    shared.put(root, index);
+    return index;
+  }
+
+  /**
+   * Forgets the index of the given root shared in the current scope, if any.
+   */
+  public static void invalidate(Path root) {
+    final Map<Path, FileIndex> shared = SHARED.get();
+    if (shared != null) {
+      shared.remove(root);
+    }
+  }
+
+  /**
+   * @return the commit designated by the root of the given path, if it is a Git path.
+   */
+  private static Optional<ObjectId> getVersion(Path root) throws IOException {
+    if (!(root instanceof GitPath)) {
+      return Optional.empty();
+    }
+    final GitPath absolute = (GitPath) root.toAbsolutePath();
+    return Optional.of(absolute.getRoot().toSha().getCommit().id());
+  }
+
+  private static ImmutableList<FileEntry> walk(Path root) throws IOException {
+    final BasicFileAttributes rootAttributes =
+        Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    final FileEntry rootEntry = toEntry(root, root, rootAttributes);
+    if (!rootAttributes.isDirectory()) {
+      return ImmutableList.of(rootEntry);
+    }
+    final boolean parallel = !(root instanceof GitPath);
+    final DirectoryWalk walk = new DirectoryWalk(root, root, parallel);
+    final ImmutableList.Builder<FileEntry> builder = ImmutableList.builder();
+    builder.add(rootEntry);
+    try {
+      builder.addAll(parallel ? ForkJoinPool.commonPool().invoke(walk) : walk.compute());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return builder.build();
+  }
+
+  private static FileEntry toEntry(Path root, Path path, BasicFileAttributes attributes) {
+    final String relative = root.relativize(path).toString().replace('\\', '/');
+    final Path fileName = path.getFileName();
+    final String name = fileName == null ? "" : fileName.toString();
+    final int dot = name.lastIndexOf('.');
+    final String extension = dot <= 0 ? "" : name.substring(dot + 1);
+    return new FileEntry(path, relative, name, extension, attributes.size(),
+        attributes.isDirectory(), attributes.isRegularFile());
+  }
+
+  /**
+   * Lists the content of a directory, recursively, in depth-first order.
+   */
+  @SuppressWarnings("serial")
+  private static class DirectoryWalk extends RecursiveTask<List<FileEntry>> {
+    private final Path root;
+    private final Path directory;
+    private final boolean parallel;
+
+    private DirectoryWalk(Path root, Path directory, boolean parallel) {
+      this.root = checkNotNull(root);
+      this.directory = checkNotNull(directory);
+      this.parallel = parallel;
+    }
+
+    @Override
+    protected List<FileEntry> compute() {
+      final List<FileEntry> children = new ArrayList<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+        for (Path child : stream) {
+          children.add(toEntry(root, child,
+              Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)));
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      final List<DirectoryWalk> subWalks = new ArrayList<>();
+      for (FileEntry child : children) {
+        if (child.isDirectory()) {
+          final DirectoryWalk subWalk = new DirectoryWalk(root, child.path(), parallel);
+          if (parallel) {
+            subWalk.fork();
+          }
+          subWalks.add(subWalk);
+        }
+      }
+
+      final List<FileEntry> entries = new ArrayList<>();
+      int nextSubWalk = 0;
+      for (FileEntry child : children) {
+        entries.add(child);
+        if (child.isDirectory()) {
+          final DirectoryWalk subWalk = subWalks.get(nextSubWalk++);
+          entries.addAll(parallel ? subWalk.join() : subWalk.compute());
+        }
+      }
+      return entries;
+    }
+  }
+
+  private final Path root;
+  private final Optional<ObjectId> version;
+  private final ImmutableList<FileEntry> entries;
+  private final ImmutableListMultimap<String, FileEntry> byName;
+  private final ImmutableListMultimap<String, FileEntry> byExtension;
+
+  private FileIndex(Path root, Optional<ObjectId> version, ImmutableList<FileEntry> entries) {
+    this.root = checkNotNull(root);
+    this.version = checkNotNull(version);
+    this.entries = checkNotNull(entries);
+    byName = entries.stream()
+        .collect(ImmutableListMultimap.toImmutableListMultimap(FileEntry::name, e -> e));
+    byExtension = entries.stream().filter(FileEntry::isRegularFile)
+        .collect(ImmutableListMultimap.toImmutableListMultimap(FileEntry::extension, e -> e));
+    LOGGER.debug("Indexed {} paths under {}.", entries.size(), root);
+  }
+
+  public Path getRoot() {
+    return root;
+  }
+
+  /**
+   * @return the paths found, starting with the root, in the order of {@link Files#find}.
+   */
+  public ImmutableList<FileEntry> getEntries() {
+    return entries;
+  }
+
+  public ImmutableSet<Path> getPaths() {
+    return toPaths(entries);
+  }
+
+  public ImmutableSet<Path> getRegularFiles() {
+    return getPathsWhere(FileEntry::isRegularFile);
+  }
+
+  /**
+   * Returns the paths matching the given predicate, as {@link Utils#getPathsMatching} does, without
+   * walking the tree again (though the predicate may access it).
+   */
+  public <X extends Exception> ImmutableSet<Path>
+      getPathsMatching(TPredicate<? super Path, X> predicate) throws X {
+    final ImmutableSet.Builder<Path> builder = ImmutableSet.builder();
+    for (FileEntry entry : entries) {
+      if (predicate.test(entry.path())) {
+        builder.add(entry.path());
+      }
+    }
+    return builder.build();
+  }
+
+  public ImmutableSet<Path> getPathsWhere(Predicate<FileEntry> predicate) {
+    return toPaths(entries.stream().filter(predicate).collect(ImmutableList.toImmutableList()));
+  }
+
+  /**
+   * @param name for example, <code>pom.xml</code>
+   */
+  public ImmutableSet<Path> getPathsNamed(String name) {
+    return toPaths(byName.get(name));
+  }
+
+  /**
+   * @param extension without the dot, for example, <code>java</code>
+   * @return the regular files having the given extension.
+   */
+  public ImmutableSet<Path> getFilesWithExtension(String extension) {
+    return toPaths(byExtension.get(extension));
+  }
+
+  /**
+   * @param glob a glob pattern (as in {@link java.nio.file.FileSystem#getPathMatcher}) matched
+   *        against paths relative to the root, with slash separators, for example,
+   *        <code>src/main/java/**.java</code>
+   */
+  public ImmutableSet<Path> getPathsMatchingGlob(String glob) {
+    final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    return getPathsWhere(e -> matcher.matches(Path.of(e.relative())));
+  }
+
+  /**
+   * @return the given path and the paths under it, if it is among the ones found.
+   */
+  public ImmutableSet<Path> getPathsUnder(Path start) {
+    return getPathsWhere(e -> e.path().startsWith(start));
+  }
+
+  private static ImmutableSet<Path> toPaths(List<FileEntry> entries) {
+    return entries.stream().map(FileEntry::path).collect(ImmutableSet.toImmutableSet());
+  }
+}
@@ -3,7 +3,6 @@ package io.github.oliviercailloux.utils;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Verify.verify;
-import static io.github.oliviercailloux.jaris.exceptions.Unchecker.IO_UNCHECKER;
 
 import com.google.common.base.Strings;
 import com.google.common.base.Verify;
@@ -23,7 +22,6 @@ import io.github.oliviercailloux.jaris.throwing.TComparator;
 import io.github.oliviercailloux.jaris.throwing.TPredicate;
 import java.io.FilePermission;
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.file.CopyOption;
 import java.nio.file.FileVisitResult;
@@ -49,10 +47,8 @@ import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.function.Predicate;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -229,15 +225,17 @@ public class Utils {
         .filter(t -> comparator.compare(t, max) == 0).collect(ImmutableSet.toImmutableSet());
   }
 
+  /**
+   * Walks the tree (in parallel when possible), unless its index is shared in the current
+   * {@link FileIndex#share() scope}. To query the same tree several times, use
+   * {@link FileIndex#of(Path)}.
+   *
+   * @return the paths under the given root (including it) matching the given predicate, in the
+   *         order of {@link Files#find}.
+   */
   public static ImmutableSet<Path> getPathsMatching(Path root,
       TPredicate<? super Path, IOException> predicate) throws IOException {
-    final Predicate<? super Path> wrapped = IO_UNCHECKER.wrapPredicate(predicate);
-    try (
-        Stream<Path> foundStream = Files.find(root, Integer.MAX_VALUE, (p, a) -> wrapped.test(p))) {
-      return foundStream.collect(ImmutableSet.toImmutableSet());
-    } catch (UncheckedIOException e) {
-      throw e.getCause();
-    }
+    return FileIndex.of(root).getPathsMatching(predicate);
   }
 
   /**
@@ -0,0 +1,253 @@
+package io.github.oliviercailloux.xml;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes an XHTML document incrementally to a character stream, without building it in memory.
+ * <p>
+ * The markup produced is identical to the one that {@link XmlUtils#asString(org.w3c.dom.Document)}
+ * produces from the equivalent {@link HtmlDocument}, including the pretty-printing rules of the JDK
+ * serializer: an element containing only text is written on a single line, an element containing
+ * other elements has each of its children (including runs of text) on its own indented line, and
+ * blank text nodes are dropped.
+ * </p>
+ * <p>
+ * Instances are not thread-safe; use one instance per document.
+ * </p>
+ */
+public class HtmlWriter {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(HtmlWriter.class);
+
+  private static final String XHTML_NAME_SPACE = "http://www.w3.org/1999/xhtml";
+
+  private static final CharMatcher XML_WHITESPACE = CharMatcher.anyOf(" \t\n\r");
+
+  private static final String INDENT = "    ";
+
+  private static class OpenElement {
+    private final String localName;
+    private boolean startTagOpen;
+    private boolean hasElementChildren;
+    private final StringBuilder pendingText;
+
+    public OpenElement(String localName) {
+      this.localName = localName;
+      startTagOpen = true;
+      hasElementChildren = false;
+      pendingText = new StringBuilder();
+    }
+  }
+
+  public static HtmlWriter writingTo(Writer destination) {
+    return new HtmlWriter(destination);
+  }
+
+  private final Writer destination;
+  private final Deque<OpenElement> openElements;
+  private boolean started;
+
+  private HtmlWriter(Writer destination) {
+    this.destination = checkNotNull(destination);
+    openElements = new ArrayDeque<>();
+    started = false;
+  }
+
+  /**
+   * Writes the prolog, the head, and opens the body of the document.
+   */
+  public void startDocument(String title) throws IOException {
+    checkNotNull(title);
+    checkState(!started);
+    started = true;
+    destination.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    startElement("html",
+        ImmutableMap.of("xmlns", XHTML_NAME_SPACE, "lang", "en", "xmlns:xsi",
+            "http://www.w3.org/2001/XMLSchema-instance", "xsi:schemaLocation",
+            XHTML_NAME_SPACE + " " + "http://www.w3.org/2002/08/xhtml/xhtml1-strict.xsd"));
+    startElement("head");
+    startElement("meta",
+        ImmutableMap.of("content", "text/html; charset=utf-8", "http-equiv", "Content-type"));
+    endElement();
+    writeElement("title", title);
+    endElement();
+    startElement("body");
+  }
+
+  /**
+   * Closes the body and the document, and flushes the destination (without closing it).
+   */
+  public void endDocument() throws IOException {
+    checkState(started);
+    checkState(openElements.size() == 2, "Some elements are still open.");
+    endElement();
+    endElement();
+    destination.write("\n");
+    destination.flush();
+  }
+
+  public void startElement(String localName) throws IOException {
+    startElement(localName, ImmutableMap.of());
+  }
+
+  private void startElement(String localName, ImmutableMap<String, String> attributes)
+      throws IOException {
+    checkNotNull(localName);
+    checkState(started);
+    final OpenElement parent = openElements.peek();
+    if (parent != null) {
+      closeStartTag(parent);
+      writeTextOnOwnLine(parent);
+      parent.hasElementChildren = true;
+      destination.write("\n");
+      destination.write(Strings.repeat(INDENT, openElements.size()));
+    } else {
+      checkState(attributes.containsKey("xmlns"), "Document already ended.");
+    }
+    destination.write("<");
+    destination.write(localName);
+    for (String name : attributes.keySet()) {
+      destination.write(" ");
+      destination.write(name);
+      destination.write("=\"");
+      destination.write(escapeAttribute(attributes.get(name)));
+      destination.write("\"");
+    }
+    openElements.push(new OpenElement(localName));
+  }
+
+  public void endElement() throws IOException {
+    checkState(!openElements.isEmpty());
+    final OpenElement element = openElements.peek();
+    if (element.hasElementChildren) {
+      writeTextOnOwnLine(element);
+      openElements.pop();
+      destination.write("\n");
+      destination.write(Strings.repeat(INDENT, openElements.size()));
+      destination.write("</");
+      destination.write(element.localName);
+      destination.write(">");
+    } else {
+      openElements.pop();
+      if (element.pendingText.length() == 0) {
+        destination.write("/>");
+      } else {
+        destination.write(">");
+        destination.write(escapeText(element.pendingText));
+        destination.write("</");
+        destination.write(element.localName);
+        destination.write(">");
+      }
+    }
+  }
+
+  /**
+   * Appends the given text to the content of the current element. Consecutive calls are merged,
+   * as adjacent text nodes would be, except that blank data is dropped, as the serializer drops
+   * blank text nodes.
+   */
+  public void writeText(String data) {
+    checkNotNull(data);
+    checkState(!openElements.isEmpty());
+    if (!isBlank(data)) {
+      openElements.peek().pendingText.append(data);
+    }
+  }
+
+  public void writeElement(String localName, String content) throws IOException {
+    startElement(localName);
+    writeText(content);
+    endElement();
+  }
+
+  public void writeAnchor(URI href, String text) throws IOException {
+    startElement("a", ImmutableMap.of("href", href.toString()));
+    writeText(text);
+    endElement();
+  }
+
+  public void writeParagraph(String content) throws IOException {
+    writeElement("p", content);
+  }
+
+  public void writeTitle1(String content) throws IOException {
+    writeElement("h1", content);
+  }
+
+  public void writeTitle2(String content) throws IOException {
+    writeElement("h2", content);
+  }
+
+  private void closeStartTag(OpenElement element) throws IOException {
+    if (element.startTagOpen) {
+      destination.write(">");
+      element.startTagOpen = false;
+    }
+  }
+
+  private void writeTextOnOwnLine(OpenElement element) throws IOException {
+    final StringBuilder text = element.pendingText;
+    if (text.length() != 0) {
+      destination.write("\n");
+      destination.write(Strings.repeat(INDENT, openElements.size()));
+      destination.write(escapeText(text));
+    }
+    text.setLength(0);
+  }
+
+  private static boolean isBlank(CharSequence text) {
+    return XML_WHITESPACE.matchesAllOf(text);
+  }
+
+  private static String escapeText(CharSequence text) {
+    final StringBuilder escaped = new StringBuilder(text.length());
+    text.codePoints().forEach(c -> {
+      switch (c) {
+        case '&' -> escaped.append("&amp;");
+        case '<' -> escaped.append("&lt;");
+        case '>' -> escaped.append("&gt;");
+        case '\t', '\n' -> escaped.appendCodePoint(c);
+        default -> {
+          if (c < 0x20 || (0x7F <= c && c <= 0x9F) || Character.isSupplementaryCodePoint(c)) {
+            escaped.append("&#").append(c).append(';');
+          } else {
+            escaped.appendCodePoint(c);
+          }
+        }
+      }
+    });
+    return escaped.toString();
+  }
+
+  private static String escapeAttribute(String value) {
+    final StringBuilder escaped = new StringBuilder(value.length());
+    value.codePoints().forEach(c -> {
+      switch (c) {
+        case '&' -> escaped.append("&amp;");
+        case '<' -> escaped.append("&lt;");
+        case '>' -> escaped.append("&gt;");
+        case '"' -> escaped.append("&quot;");
+        default -> {
+          if (c < 0x20 || Character.isSupplementaryCodePoint(c)) {
+            escaped.append("&#").append(c).append(';');
+          } else {
+            escaped.appendCodePoint(c);
+          }
+        }
+      }
+    });
+    return escaped.toString();
+  }
+}
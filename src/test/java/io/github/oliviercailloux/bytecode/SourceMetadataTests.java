@@ -0,0 +1,67 @@
+package io.github.oliviercailloux.bytecode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
+import io.github.oliviercailloux.javagrade.bytecode.SourceMetadata;
+import org.junit.jupiter.api.Test;
+
+public class SourceMetadataTests {
+  @Test
+  void testParse() throws Exception {
+    final String source = """
+        /* Licensed under MIT; package not.this; */
+        // import not.this.Either;
+        package my . pkg;
+
+        import java.util.List;
+        import static org.junit.jupiter.api.Assertions.*;
+        import java.util.function.*;
+
+        @SuppressWarnings("unused")
+        @org.junit.jupiter.api.Tag(value = Ploum.class)
+        public sealed interface Ploum permits Plim {
+          @Override
+          String toString();
+
+          class Inner {
+            @SuppressWarnings ("class Fake {}")
+            void m() {
+              char c = '{';
+              String s = "@Deprecated } \\" class Fake";
+              String b = \"""
+                  @Deprecated } class Fake
+                  \""";
+            }
+          }
+        }
+
+        record Plim(@Deprecated int x) implements Ploum {}
+
+        @interface Marker {}
+
+        enum Color { RED, GREEN; class NotTop {} }
+        """;
+    final SourceMetadata metadata = SourceMetadata.parse(source);
+    assertEquals("my.pkg", metadata.getPackageName());
+    assertEquals(ImmutableList.of("Ploum", "Plim", "Marker", "Color"),
+        metadata.getTopLevelTypes());
+    assertEquals(ImmutableSet.of("java.util.List", "java.util.function.*"), metadata.getImports());
+    assertEquals(ImmutableSet.of("org.junit.jupiter.api.Assertions.*"),
+        metadata.getStaticImports());
+    assertEquals(2, metadata.getNbAnnotations("SuppressWarnings"));
+    assertEquals(1, metadata.getNbAnnotations("Tag"));
+    assertEquals(1, metadata.getNbAnnotations("Override"));
+    assertEquals(1, metadata.getNbAnnotations("Deprecated"));
+    assertEquals(0, metadata.getNbAnnotations("interface"));
+  }
+
+  @Test
+  void testEmpty() throws Exception {
+    final SourceMetadata metadata = SourceMetadata.parse("// nothing\n/* unterminated");
+    assertEquals(SourceMetadata.given("", ImmutableList.of(), ImmutableSet.of(), ImmutableSet.of(),
+        ImmutableMultiset.of()), metadata);
+  }
+}
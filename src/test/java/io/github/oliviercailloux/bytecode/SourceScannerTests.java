@@ -1,7 +1,9 @@
 package io.github.oliviercailloux.bytecode;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.jimfs.Jimfs;
 import io.github.oliviercailloux.javagrade.bytecode.SourceScanner;
 import java.nio.file.FileSystem;
@@ -24,6 +26,28 @@ public class SourceScannerTests {
       final Path plom = fs.getPath("Plom.java");
       Files.writeString(plom, "public class Plom {}");
       assertEquals("", SourceScanner.asSourceClass(plom).getPackageName());
+
+      final Path licensed = fs.getPath("Licensed.java");
+      Files.writeString(licensed,
+          "/*\n * Licensed under the MIT license.\n */\n// A comment\npackage my.pkg;\n"
+              + "public class Licensed {}");
+      assertEquals("my.pkg", SourceScanner.asSourceClass(licensed).getPackageName());
+    }
+  }
+
+  @Test
+  void testSharedMetadata() throws Exception {
+    try (FileSystem fs = Jimfs.newFileSystem()) {
+      final String content = "package p;\n@SuppressWarnings(\"all\")\nclass A {}\n"
+          + "// @SuppressWarnings\n";
+      final Path first = fs.getPath("A.java");
+      Files.writeString(first, content);
+      final Path copy = Files.createDirectories(fs.getPath("copy")).resolve("A.java");
+      Files.writeString(copy, content);
+      assertSame(SourceScanner.getMetadata(first), SourceScanner.getMetadata(copy));
+      assertEquals(ImmutableList.of("A"), SourceScanner.getMetadata(first).getTopLevelTypes());
+      assertEquals(2, SourceScanner.countSuppressWarnings(ImmutableList.of(first, copy)));
+      assertEquals("p.A", SourceScanner.asSourceClass(copy).getFullClassName());
     }
   }
 }
@@ -0,0 +1,127 @@
+package io.github.oliviercailloux.git;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.Graphs;
+import com.google.common.graph.ImmutableGraph;
+import com.google.common.graph.MutableGraph;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class CommitGraphIndexTests {
+  /**
+   * Nodes 0 to nb - 1, each having, among the previous ones, one parent or (sometimes) two, or
+   * (rarely) none.
+   */
+  private static ImmutableGraph<Integer> randomDag(Random random, int nb) {
+    final ImmutableGraph.Builder<Integer> builder = GraphBuilder.directed().immutable();
+    for (int i = 0; i < nb; ++i) {
+      builder.addNode(i);
+      if (i > 0 && random.nextInt(20) != 0) {
+        builder.putEdge(random.nextInt(i), i);
+        if (i > 1 && random.nextInt(4) == 0) {
+          builder.putEdge(random.nextInt(i), i);
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  private static ImmutableSet<Integer> mergeBases(ImmutableGraph<Integer> graph, int first,
+      int second) {
+    final Set<Integer> common = Sets.intersection(
+        Graphs.reachableNodes(Graphs.transpose(graph), first),
+        Graphs.reachableNodes(Graphs.transpose(graph), second));
+    return common.stream()
+        .filter(c -> common.stream().noneMatch(
+            o -> !o.equals(c) && Graphs.reachableNodes(graph, c).contains(o)))
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  @Test
+  void testSmall() throws Exception {
+    /* 0 → 1 → 2 → 4, 1 → 3 → 4, 3 → 5. */
+    final ImmutableGraph<Integer> graph =
+        GraphBuilder.directed().<Integer>immutable().putEdge(0, 1).putEdge(1, 2).putEdge(1, 3)
+            .putEdge(2, 4).putEdge(3, 4).putEdge(3, 5).build();
+    final CommitGraphIndex<Integer> index = CommitGraphIndex.given(graph);
+
+    assertEquals(ImmutableSet.of(0, 1, 2, 3, 4, 5), ImmutableSet.copyOf(index.getNodes()));
+    assertEquals(ImmutableSet.of(2, 3), index.getParents(4));
+    assertEquals(ImmutableSet.of(4, 5), index.getChildren(3));
+    assertEquals(1, index.getGeneration(0));
+    assertEquals(4, index.getGeneration(4));
+    assertTrue(index.isAncestor(1, 5));
+    assertTrue(index.isAncestor(5, 5));
+    assertFalse(index.isAncestor(2, 5));
+    assertFalse(index.isAncestor(5, 1));
+    assertEquals(ImmutableSet.of(0, 1, 3, 5), index.getAncestors(5));
+    assertEquals(ImmutableSet.of(3, 4, 5), index.getDescendants(3));
+    assertEquals(ImmutableSet.of(2, 3, 4, 5), index.getReachable(ImmutableSet.of(2, 3)));
+    assertEquals(ImmutableSet.of(1), index.getMergeBases(2, 5));
+    assertEquals(ImmutableSet.of(3), index.getMergeBases(4, 5));
+    assertEquals(ImmutableSet.of(3), index.getMergeBases(3, 4));
+  }
+
+  @Test
+  void testCrissCross() throws Exception {
+    /* Two merge bases: 1 and 2 are both parents of 3 and of 4. */
+    final ImmutableGraph<Integer> graph = GraphBuilder.directed().<Integer>immutable()
+        .putEdge(0, 1).putEdge(0, 2).putEdge(1, 3).putEdge(2, 3).putEdge(1, 4).putEdge(2, 4)
+        .build();
+    final CommitGraphIndex<Integer> index = CommitGraphIndex.given(graph);
+    assertEquals(ImmutableSet.of(1, 2), index.getMergeBases(3, 4));
+  }
+
+  @Test
+  void testUnrelated() throws Exception {
+    final ImmutableGraph<Integer> graph =
+        GraphBuilder.directed().<Integer>immutable().putEdge(0, 1).putEdge(2, 3).build();
+    final CommitGraphIndex<Integer> index = CommitGraphIndex.given(graph);
+    assertEquals(ImmutableSet.of(), index.getMergeBases(1, 3));
+    assertFalse(index.isAncestor(0, 3));
+  }
+
+  @Test
+  void testCycle() throws Exception {
+    final MutableGraph<Integer> graph = GraphBuilder.directed().allowsSelfLoops(false).build();
+    graph.putEdge(0, 1);
+    graph.putEdge(1, 2);
+    graph.putEdge(2, 0);
+    assertThrows(IllegalArgumentException.class, () -> CommitGraphIndex.given(graph));
+  }
+
+  @Test
+  void testRandomAgainstGraphs() throws Exception {
+    final Random random = new Random(0L);
+    for (int round = 0; round < 20; ++round) {
+      final ImmutableGraph<Integer> graph = randomDag(random, 60);
+      final CommitGraphIndex<Integer> index = CommitGraphIndex.given(graph);
+      for (int i = 0; i < 60; ++i) {
+        assertEquals(Graphs.reachableNodes(graph, i), index.getDescendants(i));
+        assertEquals(Graphs.reachableNodes(Graphs.transpose(graph), i), index.getAncestors(i));
+      }
+      for (int q = 0; q < 100; ++q) {
+        final int first = random.nextInt(60);
+        final int second = random.nextInt(60);
+        assertEquals(Graphs.reachableNodes(graph, first).contains(second),
+            index.isAncestor(first, second));
+        assertEquals(mergeBases(graph, first, second), index.getMergeBases(first, second));
+      }
+      final ImmutableList<Integer> starts = ImmutableList.of(random.nextInt(60),
+          random.nextInt(60), random.nextInt(60));
+      final ImmutableList<Integer> expected = starts.stream()
+          .flatMap(s -> Graphs.reachableNodes(graph, s).stream()).distinct()
+          .collect(ImmutableList.toImmutableList());
+      assertEquals(expected, index.getReachableBreadthFirst(starts).asList());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package io.github.oliviercailloux.git;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.ImmutableGraph;
+import com.google.common.graph.MutableGraph;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+
+public class CompactGitHubHistoryTests {
+  private static ObjectId oid(int i) {
+    return ObjectId.fromString(String.format("%040x", i));
+  }
+
+  @Test
+  void testPatch() throws Exception {
+    final ObjectId root = oid(1);
+    final ObjectId middle = oid(2);
+    final ObjectId tip = oid(3);
+    final ObjectId unknown = oid(4);
+    final MutableGraph<ObjectId> graph = GraphBuilder.directed().build();
+    graph.putEdge(root, middle);
+    graph.putEdge(middle, tip);
+    graph.putEdge(middle, unknown);
+    final Instant t1 = Instant.parse("2020-01-01T00:00:00Z");
+    final Instant t2 = Instant.parse("2020-01-02T00:00:00Z");
+    final Instant t3 = Instant.parse("2020-01-03T00:00:00Z");
+    final ImmutableMap<ObjectId, Instant> dates =
+        ImmutableMap.of(root, t1, middle, t1, tip, t1, unknown, t1);
+    /* The middle commit is reportedly pushed after its child: lowered to the date of its child. */
+    final ImmutableMap<ObjectId, Instant> pushDates =
+        ImmutableMap.of(root, t1, middle, t3, tip, t2);
+
+    final CompactGitHubHistory history =
+        CompactGitHubHistory.create(graph, dates, dates, pushDates);
+    assertEquals(ImmutableMap.of(root, t1, middle, t2, tip, t2, unknown, t2),
+        history.getConsistentPushDates());
+    assertEquals(t2, history.getConsistentPushDate(unknown));
+    assertEquals(Optional.empty(), history.getPushDate(unknown));
+    assertEquals(pushDates, history.getPushDates());
+    final ImmutableGraph.Builder<ObjectId> expectedPatch = GraphBuilder.directed().immutable();
+    expectedPatch.putEdge(middle, tip);
+    assertEquals(expectedPatch.build(), history.getPatchedPushCommits());
+    assertEquals(ImmutableGraph.copyOf(graph), history.getGraph());
+  }
+
+  @Test
+  void testSameAsGitHubHistory() throws Exception {
+    final Random random = new Random(0);
+    for (int t = 0; t < 200; ++t) {
+      final int n = 1 + random.nextInt(60);
+      final MutableGraph<ObjectId> graph = GraphBuilder.directed().build();
+      final List<ObjectId> oids = new ArrayList<>();
+      final Map<ObjectId, Instant> dates = new HashMap<>();
+      final Map<ObjectId, Instant> pushDates = new HashMap<>();
+      for (int i = 0; i < n; ++i) {
+        final ObjectId oid = oid(t * 1000 + i);
+        oids.add(oid);
+        graph.addNode(oid);
+        dates.put(oid, Instant.ofEpochSecond(random.nextInt(1000)));
+        if (random.nextInt(3) != 0) {
+          /* Few distinct values, to exercise ties. */
+          pushDates.put(oid, Instant.ofEpochSecond(1_600_000_000L + random.nextInt(8)));
+        }
+      }
+      for (int j = 1; j < n; ++j) {
+        for (int k = 0; k <= random.nextInt(2); ++k) {
+          graph.putEdge(oids.get(random.nextInt(j)), oids.get(j));
+        }
+      }
+      final GitHubHistory expected = GitHubHistory.create(graph, dates, dates, pushDates);
+      final CompactGitHubHistory history =
+          CompactGitHubHistory.create(graph, dates, dates, pushDates);
+      assertEquals(expected.getConsistentPushDates(), history.getConsistentPushDates());
+      assertEquals(expected.getPatchedPushCommits().edges(),
+          history.getPatchedPushCommits().edges());
+      assertEquals(expected.getPushDates(), history.getPushDates());
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package io.github.oliviercailloux.git;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.MoreFiles;
+import io.github.oliviercailloux.git.RemoteRefsProbe.RemoteRefs;
+import io.github.oliviercailloux.jaris.exceptions.Try;
+import io.github.oliviercailloux.utils.Utils;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+
+public class RemoteRefsProbeTests {
+  @Test
+  void testProbe() throws Exception {
+    final Path dir = Utils.getTempUniqueDirectory("probe");
+    try {
+      final Path ended = dir.resolve("ended");
+      final Path notEnded = dir.resolve("not-ended");
+      final RevCommit first;
+      final RevCommit second;
+      final PersonIdent me = new PersonIdent("Me", "email");
+      try (Git git = Git.init().setDirectory(ended.toFile()).setInitialBranch("main").call()) {
+        first = git.commit().setAuthor(me).setCommitter(me).setMessage("First").call();
+        git.tag().setName("v1").setAnnotated(true).setMessage("Version 1").call();
+        second = git.commit().setAuthor(me).setCommitter(me).setMessage("Second").call();
+        git.branchCreate().setName("End").setStartPoint(first).call();
+      }
+      try (Git git = Git.init().setDirectory(notEnded.toFile()).setInitialBranch("main").call()) {
+        git.commit().setAuthor(me).setCommitter(me).setMessage("Only").call();
+      }
+
+      final RemoteRefsProbe probe = RemoteRefsProbe.create().setParallelism(2);
+      final String endedUri = ended.toUri().toString();
+      final String notEndedUri = notEnded.toUri().toString();
+      final String missingUri = dir.resolve("missing").toUri().toString();
+      final ImmutableMap<String, Try<RemoteRefs, GitAPIException>> results =
+          probe.getRefs(ImmutableList.of(endedUri, notEndedUri, missingUri, endedUri));
+      assertEquals(ImmutableList.of(endedUri, notEndedUri, missingUri),
+          results.keySet().asList());
+      assertFalse(results.get(missingUri).isSuccess());
+
+      final RemoteRefs endedRefs = results.get(endedUri).orThrow();
+      assertEquals(ImmutableMap.of("main", second.getId(), "End", first.getId()),
+          endedRefs.branches());
+      assertEquals(Optional.of(first.getId()), endedRefs.getTagTip("v1"));
+      assertFalse(endedRefs.hasBranch("end"));
+      assertTrue(endedRefs.hasBranchIgnoringCase("end"));
+      assertFalse(results.get(notEndedUri).orThrow().hasBranchIgnoringCase("end"));
+
+      MoreFiles.deleteRecursively(ended);
+      assertEquals(endedRefs, probe.getRefs(endedUri));
+      probe.invalidate(endedUri);
+      assertFalse(probe.getRefs(ImmutableList.of(endedUri)).get(endedUri).isSuccess());
+    } finally {
+      MoreFiles.deleteRecursively(dir);
+    }
+  }
+}
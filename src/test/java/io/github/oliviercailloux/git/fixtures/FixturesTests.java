@@ -0,0 +1,107 @@
+package io.github.oliviercailloux.git.fixtures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.oliviercailloux.git.factory.GitCloner;
+import io.github.oliviercailloux.git.github.model.RepositoryCoordinates;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Response;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+
+class FixturesTests {
+  /**
+   * An origin that answers with the request method, path and body, and a header.
+   */
+  private static HttpServer startOrigin() throws Exception {
+    final HttpServer origin =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    origin.createContext("/", exchange -> {
+      final String body = new String(exchange.getRequestBody().readAllBytes(),
+          StandardCharsets.UTF_8);
+      final byte[] answer = (exchange.getRequestMethod() + " " + exchange.getRequestURI() + " "
+          + body).getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("X-RateLimit-Remaining", "42");
+      exchange.sendResponseHeaders(200, answer.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(answer);
+      }
+    });
+    origin.start();
+    return origin;
+  }
+
+  @Test
+  void testHttp() throws Exception {
+    final Path directory = Files.createTempDirectory("fixtures");
+    final HttpServer origin = startOrigin();
+    final String base = "http://" + origin.getAddress().getAddress().getHostAddress() + ":"
+        + origin.getAddress().getPort();
+    try (Fixtures recording = Fixtures.recordingTo(directory)) {
+      final Client client = ClientBuilder.newClient();
+      recording.configure(client);
+      assertEquals("GET /repos?page=2 ",
+          client.target(base + "/repos?page=2").request().get(String.class));
+      assertEquals("POST /graphql {\"query\":1}", client.target(base + "/graphql").request()
+          .post(Entity.text("{\"query\":1}"), String.class));
+      client.close();
+    } finally {
+      origin.stop(0);
+    }
+
+    try (Fixtures replaying = Fixtures.replayingFrom(directory)) {
+      final Client client = ClientBuilder.newClient();
+      replaying.configure(client);
+      try (Response response = client.target(base + "/repos?page=2").request().get()) {
+        assertEquals("42", response.getHeaderString("X-RateLimit-Remaining"));
+        assertEquals("GET /repos?page=2 ", response.readEntity(String.class));
+      }
+      assertEquals("POST /graphql {\"query\":1}", client.target(base + "/graphql").request()
+          .post(Entity.text("{\"query\":1}"), String.class));
+      assertThrows(NotFoundException.class, () -> client.target(base + "/graphql").request()
+          .post(Entity.text("{\"query\":2}"), String.class));
+      client.close();
+    }
+  }
+
+  @Test
+  void testInputsAndRepositories() throws Exception {
+    final Path directory = Files.createTempDirectory("fixtures");
+    final Path work = Files.createTempDirectory("work");
+    final Path usernames = Files.writeString(work.resolve("usernames.json"), "[]");
+    final RepositoryCoordinates coordinates = RepositoryCoordinates.from("owner", "repo");
+    final ObjectId commitId;
+    try (Git git = Git.init().setDirectory(work.resolve("repo").toFile()).call()) {
+      final RevCommit commit = git.commit().setMessage("First").setAllowEmpty(true)
+          .setSign(false).call();
+      commitId = commit.getId();
+      try (Fixtures recording = Fixtures.recordingTo(directory)) {
+        assertEquals("[]", recording.readInput(usernames));
+        recording.recordRepository(coordinates, git.getRepository());
+      }
+    }
+    Files.delete(usernames);
+
+    try (Fixtures replaying = Fixtures.replayingFrom(directory)) {
+      assertEquals("[]", replaying.readInput(usernames));
+      try (Repository clone =
+          GitCloner.create().download(replaying.getRemote(coordinates), work.resolve("clone"))) {
+        assertEquals(commitId, clone.resolve("HEAD"));
+      }
+    }
+  }
+}
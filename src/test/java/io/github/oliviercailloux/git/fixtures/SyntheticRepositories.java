@@ -0,0 +1,620 @@
+package io.github.oliviercailloux.git.fixtures;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Verify.verify;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.ImmutableGraph;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import io.github.oliviercailloux.email.EmailAddress;
+import io.github.oliviercailloux.git.github.model.GitHubToken;
+import io.github.oliviercailloux.git.github.model.GitHubUsername;
+import io.github.oliviercailloux.git.github.model.RepositoryCoordinatesWithPrefix;
+import io.github.oliviercailloux.git.github.services.GitHubFetcherQL;
+import io.github.oliviercailloux.grade.RepositoryFetcher;
+import io.github.oliviercailloux.grade.comm.json.JsonStudents;
+import io.github.oliviercailloux.grade.comm.json.JsonStudents.JsonStudentEntry;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates {@link Fixtures fixtures} for an arbitrary number of students, each owning a
+ * repository in which a sample project evolves from its empty implementation towards its full one
+ * (or, for some students, its bad one), with mutations along the way.
+ * <p>
+ * Each repository has the given number of commits, on a main branch and on the given number of
+ * other branches, of which the given number get merged back. Students work in sessions of a few
+ * commits, mostly in the evening and increasingly often as the deadline approaches (some finish
+ * after it); each session is pushed at its end, or sometimes with the next one, and starts after
+ * the previous one ended. Commits sometimes add a data file of the given size.
+ * </p>
+ * <p>
+ * Besides the bare repositories and <code>usernames.json</code>, the fixtures include the GitHub
+ * responses that the fetchers obtain about these repositories (searching them by prefix and
+ * querying their push dates), recorded by running the fetchers against a synthetic GitHub. The
+ * generation is deterministic, given the seed.
+ * </p>
+ */
+public class SyntheticRepositories {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(SyntheticRepositories.class);
+
+  private static final ZoneId ZONE = ZoneId.of("Europe/Paris");
+
+  public static enum Sample {
+    CHESS("chess/chess empty impl", "chess/chess full impl", "chess/chess bad impl"),
+    SCORE("score/empty impl", "score/full impl", "score/bad impl");
+
+    private final String empty;
+    private final String full;
+    private final String bad;
+
+    private Sample(String empty, String full, String bad) {
+      this.empty = empty;
+      this.full = full;
+      this.bad = bad;
+    }
+  }
+
+  /**
+   * A generated repository.
+   *
+   * @param graph the commits, each one pointing to its children
+   * @param pushDates the date each commit was pushed at
+   */
+  public static record GeneratedRepository(RepositoryCoordinatesWithPrefix coordinates,
+      ImmutableGraph<ObjectId> graph, ImmutableMap<ObjectId, Instant> pushDates) {
+    public GeneratedRepository {
+      checkNotNull(coordinates);
+      checkNotNull(graph);
+      checkNotNull(pushDates);
+    }
+  }
+
+  private static record SyntheticCommit(ObjectId id, ImmutableList<ObjectId> parents,
+      Instant authored, Instant committed, Instant pushed) {
+  }
+
+  /**
+   * The history of a repository, as the synthetic GitHub knows it.
+   *
+   * @param commits in creation order, thus each one after its parents
+   * @param heads the tip of each branch, by name
+   */
+  private static record SyntheticHistory(ImmutableList<SyntheticCommit> commits,
+      ImmutableMap<String, ObjectId> heads) {
+  }
+
+  /**
+   * Answers the searches for repositories and the push dates queries, aborting any other request
+   * with a 404 status.
+   */
+  private static class SyntheticGitHub implements ClientRequestFilter {
+    private final String org;
+    private final Map<String, SyntheticHistory> histories;
+
+    private SyntheticGitHub(String org, Map<String, SyntheticHistory> histories) {
+      this.org = checkNotNull(org);
+      this.histories = checkNotNull(histories);
+    }
+
+    @Override
+    public void filter(ClientRequestContext request) {
+      final String path = request.getUri().getPath();
+      final JsonObject answer;
+      if (path.equals("/search/repositories")) {
+        final JsonArrayBuilder items = Json.createArrayBuilder();
+        histories.keySet().forEach(n -> items.add(Json.createObjectBuilder().add("name", n)
+            .add("owner", Json.createObjectBuilder().add("login", org))));
+        answer = Json.createObjectBuilder().add("total_count", histories.size())
+            .add("incomplete_results", false).add("items", items).build();
+      } else if (path.equals("/graphql")
+          && ((JsonObject) request.getEntity()).getString("query").contains("pushedDates(")) {
+        final String name = ((JsonObject) request.getEntity()).getJsonObject("variables")
+            .getString("repositoryName");
+        answer = Json.createObjectBuilder().add("data",
+            Json.createObjectBuilder().add("repository", asPushedDates(histories.get(name))))
+            .build();
+      } else {
+        request.abortWith(Response.status(Response.Status.NOT_FOUND).build());
+        return;
+      }
+      request.abortWith(Response.ok(answer.toString(), MediaType.APPLICATION_JSON_TYPE).build());
+    }
+
+    private static JsonObject asPushedDates(SyntheticHistory history) {
+      final Map<ObjectId, SyntheticCommit> byId = new LinkedHashMap<>();
+      final Map<ObjectId, Integer> indices = new LinkedHashMap<>();
+      for (SyntheticCommit commit : history.commits()) {
+        indices.put(commit.id(), byId.size());
+        byId.put(commit.id(), commit);
+      }
+      final JsonArrayBuilder heads = Json.createArrayBuilder();
+      for (String name : history.heads().keySet()) {
+        final ObjectId tip = history.heads().get(name);
+        final Set<ObjectId> reachable = new HashSet<>();
+        final Deque<ObjectId> toVisit = new ArrayDeque<>(ImmutableSet.of(tip));
+        while (!toVisit.isEmpty()) {
+          final ObjectId id = toVisit.pop();
+          if (reachable.add(id)) {
+            toVisit.addAll(byId.get(id).parents());
+          }
+        }
+        /* Latest first, as GitHub does; thus starting with the tip. */
+        final List<ObjectId> ordered = new ArrayList<>(reachable);
+        ordered.sort((i1, i2) -> Integer.compare(indices.get(i2), indices.get(i1)));
+        final JsonArrayBuilder nodes = Json.createArrayBuilder();
+        for (ObjectId id : ordered) {
+          final SyntheticCommit commit = byId.get(id);
+          final JsonArrayBuilder parents = Json.createArrayBuilder();
+          commit.parents()
+              .forEach(p -> parents.add(Json.createObjectBuilder().add("oid", p.getName())));
+          nodes.add(Json.createObjectBuilder().add("oid", id.getName())
+              .add("parents",
+                  Json.createObjectBuilder().add("totalCount", commit.parents().size())
+                      .add("nodes", parents))
+              .add("authoredDate", commit.authored().toString())
+              .add("committedDate", commit.committed().toString())
+              .add("pushedDate", commit.pushed().toString()));
+        }
+        final JsonObject historyJson = Json.createObjectBuilder().add("totalCount", ordered.size())
+            .add("pageInfo",
+                Json.createObjectBuilder().add("hasNextPage", false).add("endCursor", "end"))
+            .add("nodes", nodes).build();
+        heads.add(Json.createObjectBuilder().add("name", name).add("prefix", "refs/heads/")
+            .add("target", Json.createObjectBuilder().add("oid", tip.getName())
+                .add("history", historyJson)));
+      }
+      final JsonObject noPage = Json.createObjectBuilder().add("hasNextPage", false).build();
+      return Json.createObjectBuilder()
+          .add("heads", Json.createObjectBuilder().add("pageInfo", noPage).add("nodes", heads))
+          .add("tags",
+              Json.createObjectBuilder().add("pageInfo", noPage).add("nodes",
+                  JsonValue.EMPTY_JSON_ARRAY))
+          .build();
+    }
+  }
+
+  public static SyntheticRepositories given(String prefix, int nbStudents) {
+    return new SyntheticRepositories(prefix, nbStudents);
+  }
+
+  private static ImmutableMap<String, String> readSample(String directory) {
+    final Path root;
+    try {
+      root = Path.of(SyntheticRepositories.class
+          .getResource("/io/github/oliviercailloux/javagrade/ex/" + directory).toURI());
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException(e);
+    }
+    final ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+    try (Stream<Path> files = Files.walk(root)) {
+      files.filter(Files::isRegularFile).sorted().forEach(f -> builder.put(
+          root.relativize(f).toString().replace('\\', '/'), readString(f)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return builder.build();
+  }
+
+  private static String readString(Path file) {
+    try {
+      return Files.readString(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private final String prefix;
+  private final int nbStudents;
+  private Sample sample;
+  private int nbCommits;
+  private int nbBranches;
+  private int nbMerges;
+  private int dataFileSize;
+  private ZonedDateTime deadline;
+  private long seed;
+
+  private SyntheticRepositories(String prefix, int nbStudents) {
+    this.prefix = checkNotNull(prefix);
+    checkArgument(nbStudents >= 0);
+    this.nbStudents = nbStudents;
+    sample = Sample.CHESS;
+    nbCommits = 20;
+    nbBranches = 1;
+    nbMerges = 1;
+    dataFileSize = 0;
+    deadline = ZonedDateTime.of(2023, 1, 15, 23, 59, 0, 0, ZONE);
+    seed = 0L;
+  }
+
+  public SyntheticRepositories setSample(Sample sample) {
+    this.sample = checkNotNull(sample);
+    return this;
+  }
+
+  /**
+   * Sets the number of commits of each repository, the initial one and merges included; and the
+   * number of branches besides the main one, the first ones of which get merged back into the main
+   * one.
+   */
+  public SyntheticRepositories setShape(int nbCommits, int nbBranches, int nbMerges) {
+    checkArgument(nbBranches >= 0);
+    checkArgument(0 <= nbMerges && nbMerges <= nbBranches);
+    checkArgument(nbCommits >= 1 + nbBranches + nbMerges);
+    this.nbCommits = nbCommits;
+    this.nbBranches = nbBranches;
+    this.nbMerges = nbMerges;
+    return this;
+  }
+
+  /**
+   * @param dataFileSize the size, in bytes, of the data files that some commits add; zero for none
+   */
+  public SyntheticRepositories setDataFileSize(int dataFileSize) {
+    checkArgument(dataFileSize >= 0);
+    this.dataFileSize = dataFileSize;
+    return this;
+  }
+
+  public SyntheticRepositories setDeadline(ZonedDateTime deadline) {
+    this.deadline = checkNotNull(deadline);
+    return this;
+  }
+
+  public SyntheticRepositories setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * Writes the fixtures to the given directory, to be {@link Fixtures#replayingFrom(Path)
+   * replayed}.
+   */
+  public ImmutableList<GeneratedRepository> generate(Path directory) throws IOException {
+    final ImmutableMap<String, String> empty = readSample(sample.empty);
+    final ImmutableMap<String, String> full = readSample(sample.full);
+    final ImmutableMap<String, String> bad = readSample(sample.bad);
+    /* Filled before the fetchers query the synthetic GitHub. */
+    final Map<String, SyntheticHistory> histories = new LinkedHashMap<>();
+    final ImmutableList.Builder<GeneratedRepository> generated = ImmutableList.builder();
+    final Set<JsonStudentEntry> students = new LinkedHashSet<>();
+
+    final Fixtures previous = Fixtures.current();
+    try (Fixtures fixtures = Fixtures.recordingTo(directory,
+        new SyntheticGitHub(RepositoryFetcher.DEFAULT_ORG, histories))) {
+      for (int s = 0; s < nbStudents; ++s) {
+        final Random random = new Random(seed * 7919L + s);
+        final GitHubUsername username = GitHubUsername.given("student" + s);
+        final RepositoryCoordinatesWithPrefix coordinates = RepositoryCoordinatesWithPrefix
+            .from(RepositoryFetcher.DEFAULT_ORG, prefix, username.getUsername());
+        final Map<String, String> target = random.nextInt(4) == 0 ? bad : full;
+        final SyntheticHistory history =
+            write(fixtures.getRecordedRepository(coordinates), random, empty, target);
+        histories.put(coordinates.getRepositoryName(), history);
+        generated.add(asGenerated(coordinates, history));
+        students.add(JsonStudentEntry.given(username,
+            EmailAddress.given("first" + s + ".last" + s + "@example.com")));
+      }
+      final Path usernames = fixtures.getRecordedInput("usernames.json");
+      Files.createDirectories(usernames.getParent());
+      Files.writeString(usernames, JsonStudents.toJson(students));
+
+      Fixtures.setCurrent(fixtures);
+      final int nbFound = RepositoryFetcher.withPrefix(prefix).fetch().size();
+      verify(nbFound == nbStudents);
+      try (GitHubFetcherQL fetcher = GitHubFetcherQL.using(GitHubToken.getRealInstance())) {
+        for (GeneratedRepository repository : generated.build()) {
+          fetcher.getReversedGitHubHistory(repository.coordinates());
+        }
+      }
+    } finally {
+      Fixtures.setCurrent(previous);
+    }
+    return generated.build();
+  }
+
+  private static GeneratedRepository asGenerated(RepositoryCoordinatesWithPrefix coordinates,
+      SyntheticHistory history) {
+    final ImmutableGraph.Builder<ObjectId> graph = GraphBuilder.directed().immutable();
+    final ImmutableMap.Builder<ObjectId, Instant> pushDates = ImmutableMap.builder();
+    for (SyntheticCommit commit : history.commits()) {
+      graph.addNode(commit.id());
+      commit.parents().forEach(p -> graph.putEdge(p, commit.id()));
+      pushDates.put(commit.id(), commit.pushed());
+    }
+    return new GeneratedRepository(coordinates, graph.build(), pushDates.build());
+  }
+
+  /**
+   * Returns the author dates of the commits, in order, grouped in sessions, as planned: sessions
+   * may overlap here, and get shifted when writing.
+   */
+  private ImmutableList<ImmutableList<Instant>> getSessions(Random random) {
+    final int nbSessions = Math.max(1, (nbCommits + 2) / 5);
+    final boolean late = random.nextInt(10) == 0;
+    final List<Instant> starts = new ArrayList<>();
+    for (int i = 0; i < nbSessions; ++i) {
+      /* Denser near the deadline. */
+      final double fraction = 1d - Math.pow(random.nextDouble(), 2d);
+      final ZonedDateTime day =
+          deadline.minusDays(14).plusHours(Math.round(fraction * 14 * 24)).withHour(0);
+      starts.add(day.plusHours(18).plusMinutes(random.nextInt(300)).toInstant());
+    }
+    if (late) {
+      starts.set(0, deadline.plusMinutes(10 + random.nextInt(2 * 24 * 60)).toInstant());
+    }
+    Collections.sort(starts);
+
+    final ImmutableList.Builder<ImmutableList<Instant>> sessions = ImmutableList.builder();
+    int remaining = nbCommits;
+    for (int i = 0; i < nbSessions; ++i) {
+      final int maxSize = remaining - (nbSessions - 1 - i);
+      final int size = i == nbSessions - 1 ? remaining
+          : Math.min(maxSize, 1 + random.nextInt(2 * nbCommits / nbSessions));
+      final ImmutableList.Builder<Instant> session = ImmutableList.builder();
+      Instant date = starts.get(i);
+      for (int j = 0; j < size; ++j) {
+        date = date.plus(Duration.ofMinutes(2 + random.nextInt(40)));
+        session.add(date);
+      }
+      sessions.add(session.build());
+      remaining -= size;
+    }
+    verify(remaining == 0);
+    return sessions.build();
+  }
+
+  /**
+   * Writes a repository, sessions after sessions, and returns its history.
+   */
+  private SyntheticHistory write(Path gitDir, Random random, Map<String, String> start,
+      Map<String, String> target) throws IOException {
+    final ImmutableList<ImmutableList<Instant>> sessions = getSessions(random);
+
+    /* The event of each commit after the first one: a plain commit, or a branch start or merge. */
+    final List<Integer> events = new ArrayList<>();
+    for (int b = 0; b < nbBranches; ++b) {
+      events.add(b + 1);
+    }
+    for (int b = 0; b < nbMerges; ++b) {
+      events.add(-(b + 1));
+    }
+    while (events.size() < nbCommits - 1) {
+      events.add(0);
+    }
+    Collections.shuffle(events, random);
+    for (int b = 1; b <= nbMerges; ++b) {
+      final int startIndex = events.indexOf(b);
+      final int mergeIndex = events.indexOf(-b);
+      if (mergeIndex < startIndex) {
+        Collections.swap(events, startIndex, mergeIndex);
+      }
+    }
+
+    if (Files.exists(gitDir)) {
+      MoreFiles.deleteRecursively(gitDir, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+    Files.createDirectories(gitDir.getParent());
+    final ImmutableList.Builder<SyntheticCommit> commits = ImmutableList.builder();
+    final Map<String, ObjectId> tips = new LinkedHashMap<>();
+    try (Repository repository = FileRepositoryBuilder.create(gitDir.toFile());
+        ObjectInserter inserter = repository.newObjectInserter()) {
+      repository.create(true);
+      final Map<String, TreeMap<String, String>> contents = new LinkedHashMap<>();
+      final Set<String> open = new HashSet<>();
+      int index = 0;
+      final List<ObjectId> unpushed = new ArrayList<>();
+      final Map<ObjectId, SyntheticCommit> unpushedCommits = new LinkedHashMap<>();
+      /* The last commit or push date so far. */
+      Instant latestEvent = Instant.MIN;
+      Instant latestPush = Instant.MIN;
+      for (int s = 0; s < sessions.size(); ++s) {
+        final ImmutableList<Instant> planned = sessions.get(s);
+        /*
+         * A session starts after the previous one ended, thus, the push dates do not decrease
+         * along the parent edges.
+         */
+        final Duration shift = planned.get(0).isAfter(latestEvent) ? Duration.ZERO
+            : Duration.between(planned.get(0), latestEvent)
+                .plus(Duration.ofMinutes(2 + random.nextInt(40)));
+        for (Instant plannedAuthored : planned) {
+          final Instant authored = plannedAuthored.plus(shift);
+          final int event = index == 0 ? 0 : events.get(index - 1);
+          final String branch;
+          final ImmutableList<ObjectId> parents;
+          final TreeMap<String, String> content;
+          if (index == 0) {
+            branch = "main";
+            parents = ImmutableList.of();
+            content = new TreeMap<>(start);
+          } else if (event > 0) {
+            branch = "branch" + event;
+            open.add(branch);
+            parents = ImmutableList.of(tips.get("main"));
+            content = new TreeMap<>(contents.get("main"));
+            evolve(content, target, random, index);
+          } else if (event < 0) {
+            final String merged = "branch" + (-event);
+            open.remove(merged);
+            branch = "main";
+            parents = ImmutableList.of(tips.get("main"), tips.get(merged));
+            content = new TreeMap<>(contents.get("main"));
+            content.putAll(contents.get(merged));
+          } else {
+            final List<String> candidates = new ArrayList<>(open);
+            Collections.sort(candidates);
+            branch = !candidates.isEmpty() && random.nextInt(10) < 3
+                ? candidates.get(random.nextInt(candidates.size()))
+                : "main";
+            parents = ImmutableList.of(tips.get(branch));
+            content = new TreeMap<>(contents.get(branch));
+            evolve(content, target, random, index);
+          }
+          final Instant committed = random.nextInt(15) == 0
+              ? authored.plus(Duration.ofMinutes(1 + random.nextInt(120)))
+              : authored;
+          latestEvent = committed.isAfter(latestEvent) ? committed : latestEvent;
+          final ObjectId id =
+              insertCommit(inserter, content, parents, authored, committed, index);
+          tips.put(branch, id);
+          contents.put(branch, content);
+          unpushed.add(id);
+          unpushedCommits.put(id,
+              new SyntheticCommit(id, parents, authored, committed, Instant.EPOCH));
+          ++index;
+        }
+        final boolean last = s == sessions.size() - 1;
+        if (last || random.nextInt(4) != 0) {
+          final Instant latest = unpushedCommits.values().stream().map(SyntheticCommit::committed)
+              .max(Instant::compareTo).orElseThrow();
+          final Instant pushed = latest.plusSeconds(10 + random.nextInt(30 * 60));
+          verify(pushed.isAfter(latestPush));
+          latestPush = pushed;
+          latestEvent = pushed;
+          for (ObjectId id : unpushed) {
+            final SyntheticCommit c = unpushedCommits.get(id);
+            commits.add(new SyntheticCommit(id, c.parents(), c.authored(), c.committed(), pushed));
+          }
+          unpushed.clear();
+          unpushedCommits.clear();
+        }
+      }
+      inserter.flush();
+      for (String branch : tips.keySet()) {
+        final RefUpdate update = repository.updateRef(Constants.R_HEADS + branch);
+        update.setNewObjectId(tips.get(branch));
+        verify(update.forceUpdate() != RefUpdate.Result.LOCK_FAILURE);
+      }
+      repository.updateRef(Constants.HEAD).link(Constants.R_HEADS + "main");
+    }
+    return new SyntheticHistory(commits.build(), ImmutableMap.copyOf(tips));
+  }
+
+  /**
+   * Changes the content, by bringing a file to its target version, or mutating a source file, or
+   * adding a data file.
+   */
+  private void evolve(TreeMap<String, String> content, Map<String, String> target, Random random,
+      int index) {
+    if (dataFileSize > 0 && random.nextInt(10) == 0) {
+      final StringBuilder data = new StringBuilder(dataFileSize);
+      while (data.length() < dataFileSize) {
+        data.append(data.length() % 80 == 79 ? '\n' : (char) ('a' + random.nextInt(26)));
+      }
+      content.put("data/data" + index + ".txt", data.toString());
+      return;
+    }
+    final List<String> behind = target.keySet().stream()
+        .filter(p -> !target.get(p).equals(content.get(p))).sorted().toList();
+    if (!behind.isEmpty() && random.nextBoolean()) {
+      final String path = behind.get(random.nextInt(behind.size()));
+      content.put(path, target.get(path));
+      return;
+    }
+    final List<String> sources =
+        content.keySet().stream().filter(p -> p.endsWith(".java")).toList();
+    final String path = sources.get(random.nextInt(sources.size()));
+    content.put(path, mutate(content.get(path), random, index));
+  }
+
+  private static String mutate(String source, Random random, int index) {
+    final List<String> lines = new ArrayList<>(source.lines().toList());
+    switch (random.nextInt(4)) {
+      case 0 -> {
+        if (source.contains(" < ")) {
+          return source.replaceFirst(" < ", " <= ");
+        }
+      }
+      case 1 -> {
+        final int line = random.nextInt(lines.size());
+        final String replaced = lines.get(line).replaceFirst("\\b1\\b", "2");
+        if (!replaced.equals(lines.get(line))) {
+          lines.set(line, replaced);
+          return String.join("\n", lines) + "\n";
+        }
+      }
+      case 2 -> {
+        final int line = random.nextInt(lines.size());
+        if (lines.get(line).trim().endsWith(";")) {
+          lines.remove(line);
+          return String.join("\n", lines) + "\n";
+        }
+      }
+      default -> {
+        /* Falls back to a comment, below. */
+      }
+    }
+    lines.add("// Revision " + index + ".");
+    return String.join("\n", lines) + "\n";
+  }
+
+  private static ObjectId insertCommit(ObjectInserter inserter, Map<String, String> content,
+      List<ObjectId> parents, Instant authored, Instant committed, int index) throws IOException {
+    final DirCache dirCache = DirCache.newInCore();
+    final DirCacheBuilder builder = dirCache.builder();
+    for (String path : content.keySet()) {
+      final DirCacheEntry entry = new DirCacheEntry(path);
+      entry.setFileMode(FileMode.REGULAR_FILE);
+      entry.setObjectId(inserter.insert(Constants.OBJ_BLOB,
+          content.get(path).getBytes(StandardCharsets.UTF_8)));
+      builder.add(entry);
+    }
+    builder.finish();
+    final CommitBuilder commit = new CommitBuilder();
+    commit.setTreeId(dirCache.writeTree(inserter));
+    commit.setParentIds(parents);
+    commit.setAuthor(new PersonIdent("Student", "student@example.com", authored, ZONE));
+    commit.setCommitter(new PersonIdent("Student", "student@example.com", committed, ZONE));
+    commit.setMessage("Commit " + index + "\n");
+    return inserter.insert(commit);
+  }
+}
@@ -0,0 +1,63 @@
+package io.github.oliviercailloux.git.fixtures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.EndpointPair;
+import io.github.oliviercailloux.git.GitHubHistory;
+import io.github.oliviercailloux.git.factory.GitCloner;
+import io.github.oliviercailloux.git.fixtures.SyntheticRepositories.GeneratedRepository;
+import io.github.oliviercailloux.git.github.model.GitHubToken;
+import io.github.oliviercailloux.git.github.model.RepositoryCoordinatesWithPrefix;
+import io.github.oliviercailloux.git.github.services.GitHubFetcherQL;
+import io.github.oliviercailloux.grade.RepositoryFetcher;
+import java.nio.file.Path;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SyntheticRepositoriesTests {
+  @Test
+  void testGenerateAndReplay(@TempDir Path directory, @TempDir Path work) throws Exception {
+    final ImmutableList<GeneratedRepository> generated = SyntheticRepositories
+        .given("synth", 3).setShape(12, 2, 1).setDataFileSize(1000).generate(directory);
+    assertEquals(3, generated.size());
+    for (GeneratedRepository repository : generated) {
+      assertEquals(12, repository.graph().nodes().size());
+      assertEquals(1, repository.graph().nodes().stream()
+          .filter(c -> repository.graph().inDegree(c) == 2).count());
+      for (EndpointPair<ObjectId> edge : repository.graph().edges()) {
+        assertFalse(repository.pushDates().get(edge.target())
+            .isBefore(repository.pushDates().get(edge.source())));
+      }
+    }
+
+    final Fixtures previous = Fixtures.current();
+    try (Fixtures replaying = Fixtures.replayingFrom(directory)) {
+      Fixtures.setCurrent(replaying);
+      final ImmutableSet<RepositoryCoordinatesWithPrefix> found =
+          RepositoryFetcher.withPrefix("synth").fetch();
+      assertEquals(3, found.size());
+      assertTrue(replaying.readInput(Path.of("usernames.json")).contains("student2"));
+      try (GitHubFetcherQL fetcher = GitHubFetcherQL.using(GitHubToken.getRealInstance())) {
+        for (GeneratedRepository repository : generated) {
+          final GitHubHistory history =
+              fetcher.getReversedGitHubHistory(repository.coordinates());
+          assertEquals(repository.graph(), history.getGraph());
+          assertEquals(repository.pushDates(), history.getPushDates());
+          try (Repository clone = GitCloner.create().download(
+              replaying.getRemote(repository.coordinates()),
+              work.resolve(repository.coordinates().getRepositoryName()))) {
+            assertTrue(repository.graph().nodes().contains(clone.resolve("HEAD")));
+          }
+        }
+      }
+    } finally {
+      Fixtures.setCurrent(previous);
+    }
+  }
+}
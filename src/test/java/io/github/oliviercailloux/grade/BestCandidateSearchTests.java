@@ -0,0 +1,76 @@
+package io.github.oliviercailloux.grade;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import io.github.oliviercailloux.jaris.throwing.TFunction;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BestCandidateSearchTests {
+  private static TFunction<Integer, Double, IOException> slowly(ImmutableList<Double> scores,
+      AtomicInteger nbScored) {
+    return i -> {
+      nbScored.incrementAndGet();
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      final double score = scores.get(i);
+      if (score < 0d) {
+        throw new IOException("Candidate " + i);
+      }
+      return score;
+    };
+  }
+
+  @Test
+  void testTies() throws Exception {
+    final ImmutableList<Double> scores = ImmutableList.of(0.5d, 0.8d, 0.3d, 0.8d, 0.8d, 0.1d);
+    final ImmutableList<Integer> candidates = ImmutableList.of(0, 1, 2, 3, 4, 5);
+    for (int parallelism = 1; parallelism <= 8; ++parallelism) {
+      final AtomicInteger nbScored = new AtomicInteger();
+      final Optional<Integer> best = BestCandidateSearch.withParallelism(parallelism)
+          .getMaximizing(candidates, slowly(scores, nbScored), 1d);
+      assertEquals(Optional.of(1), best);
+      assertEquals(6, nbScored.get());
+    }
+    assertEquals(Optional.of(4), BestCandidateSearch.withParallelism(3)
+        .getMaximizing(candidates.reverse(), slowly(scores, new AtomicInteger()), 1d));
+    assertEquals(Optional.empty(), BestCandidateSearch.withParallelism(3)
+        .getMaximizing(ImmutableList.of(), slowly(scores, new AtomicInteger()), 1d));
+  }
+
+  @Test
+  void testStopsEarly() throws Exception {
+    final ImmutableList.Builder<Double> scoresBuilder = ImmutableList.builder();
+    scoresBuilder.add(0.2d, 0.4d, 1d, 1d);
+    for (int i = 4; i < 40; ++i) {
+      scoresBuilder.add(i % 2 == 0 ? 1d : -1d);
+    }
+    final ImmutableList<Double> scores = scoresBuilder.build();
+    final ImmutableList<Integer> candidates =
+        ImmutableList.copyOf(IntStream.range(0, 40).boxed().iterator());
+    final AtomicInteger nbScored = new AtomicInteger();
+    assertEquals(Optional.of(2), BestCandidateSearch.withParallelism(4)
+        .getMaximizing(candidates, slowly(scores, nbScored), 1d));
+    assertTrue(nbScored.get() < 12, "Scored: " + nbScored.get());
+  }
+
+  @Test
+  void testFailures() throws Exception {
+    final ImmutableList<Double> scores = ImmutableList.of(0.5d, -1d, 1d, -1d);
+    final ImmutableList<Integer> candidates = ImmutableList.of(0, 1, 2, 3);
+    final IOException thrown = assertThrows(IOException.class, () -> BestCandidateSearch
+        .withParallelism(4).getMaximizing(candidates, slowly(scores, new AtomicInteger()), 1d));
+    assertEquals("Candidate 1", thrown.getMessage());
+    assertEquals(Optional.of(2), BestCandidateSearch.withParallelism(4).getMaximizing(
+        ImmutableList.of(0, 2, 3, 1), slowly(scores, new AtomicInteger()), 1d));
+  }
+}
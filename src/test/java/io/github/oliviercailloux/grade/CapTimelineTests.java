@@ -0,0 +1,99 @@
+package io.github.oliviercailloux.grade;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
+import com.google.common.graph.Graph;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import io.github.oliviercailloux.git.factory.JGit;
+import io.github.oliviercailloux.git.filter.GitHistorySimple;
+import io.github.oliviercailloux.gitjfs.GitFileSystem;
+import io.github.oliviercailloux.gitjfs.GitFileSystemProvider;
+import io.github.oliviercailloux.grade.CapTimeline.Capped;
+import io.github.oliviercailloux.jaris.graphs.GraphUtils;
+import io.github.oliviercailloux.utils.Utils;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Test;
+
+public class CapTimelineTests {
+  private static ImmutableSet<ObjectId> ids(GitHistorySimple history) {
+    return history.graph().nodes().stream().map(n -> n.getCommit().id())
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  private static ImmutableSet<ObjectId> leaves(GitHistorySimple history) {
+    return history.leaves().stream().map(n -> n.getCommit().id())
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  @Test
+  void testIncremental() throws Exception {
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path c1 = Files.createDirectories(jimFs.getPath("c1/"));
+      final Path c2 = Files.createDirectories(jimFs.getPath("c2/"));
+      final Path c3 = Files.createDirectories(jimFs.getPath("c3/"));
+      final Path links = Files.createDirectories(jimFs.getPath("links/"));
+      Files.writeString(c1.resolve("afile.txt"), "one");
+      Files.writeString(c2.resolve("afile.txt"), "two");
+      Files.writeString(c3.resolve("afile.txt"), "three");
+      final Path origin = Files.createDirectories(links.resolve(Constants.R_REMOTES + "origin/"));
+      Files.createSymbolicLink(origin.resolve("main"), c3);
+
+      try (
+          Repository repository = JGit.createRepository(new PersonIdent("Me", "email"),
+              Utils.asGraph(ImmutableList.of(c1, c2, c3)), links);
+          GitFileSystem gitFs =
+              GitFileSystemProvider.instance().newFileSystemFromRepository(repository)) {
+        final Graph<ObjectId> graph = GraphUtils.transform(gitFs.graph(), p -> p.getCommit().id());
+        final ObjectId o1 = graph.nodes().stream().filter(n -> graph.predecessors(n).isEmpty())
+            .collect(Iterables::getOnlyElement);
+        final ObjectId o2 = Iterables.getOnlyElement(graph.successors(o1));
+        final ObjectId o3 = Iterables.getOnlyElement(graph.successors(o2));
+        final Instant t1 = Instant.parse("2020-01-01T00:00:00Z");
+        final Instant t2 = Instant.parse("2020-01-02T00:00:00Z");
+        final GitHistorySimple history =
+            GitHistorySimple.create(gitFs, ImmutableMap.of(o1, t1, o2, t1, o3, t2));
+
+        final CapTimeline timeline = CapTimeline.given(history);
+        assertEquals(ImmutableSortedSet.of(t1, t2), timeline.getTimestamps());
+
+        final ImmutableList<Capped> cappeds =
+            timeline.cap(ImmutableSortedSet.of(Instant.MIN, t1, t2));
+        assertEquals(ImmutableList.of(), cappeds.get(0).getVisible());
+        assertEquals(Optional.empty(), cappeds.get(0).getCappedAt());
+        assertEquals(ImmutableSet.of(o1, o2), ImmutableSet.copyOf(cappeds.get(1).getVisible()));
+        assertEquals(ImmutableSet.of(o2), cappeds.get(1).getMaximal());
+        assertEquals(Optional.of(t1), cappeds.get(1).getCappedAt());
+        assertEquals(ImmutableSet.of(o3), cappeds.get(2).getMaximal());
+
+        for (Capped capped : cappeds.subList(1, 3)) {
+          final GitHistorySimple expected = history.filtered(i -> !i.isAfter(capped.getCap()));
+          assertEquals(ids(expected), ids(capped.asHistory()));
+          assertEquals(leaves(expected), leaves(capped.asHistory()));
+          assertEquals(leaves(expected), capped.getMaximal());
+        }
+
+        /* Going backwards restarts from scratch. */
+        assertEquals(ImmutableSet.of(o2), timeline.cap(t1).getMaximal());
+
+        final ImmutableList<Capped> byTime = ByTimeGrader.getCapped(history, t1, Instant.MAX);
+        assertEquals(ImmutableList.of(ImmutableSet.of(o1, o2), ImmutableSet.of(o1, o2, o3)),
+            byTime.stream().map(Capped::asHistory).map(CapTimelineTests::ids)
+                .collect(ImmutableList.toImmutableList()));
+      }
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package io.github.oliviercailloux.grade;
+
+import static io.github.oliviercailloux.grade.CriterionTestsHelper.c3;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.github.oliviercailloux.git.github.model.GitHubUsername;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+public class ExamBuilderTests {
+  @Test
+  void testFreezeEqualsExam() throws Exception {
+    final Exam expected = ExamTestsHelper.get3Plus2();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final ExamBuilder builder = ExamBuilder.using(expected.aggregator(), executor);
+      builder.putAll(expected.grades());
+      assertEquals(ImmutableMap.of(), builder.getErrors());
+      final Exam exam = builder.freeze();
+      assertEquals(expected, exam);
+      assertEquals(expected.getUsernames().asList(), exam.getUsernames().asList());
+      for (GitHubUsername username : expected.getUsernames()) {
+        assertEquals(expected.getGrade(username).mark(),
+            builder.getGrade(username).orElseThrow().mark());
+        assertSame(builder.getGrade(username).orElseThrow(), exam.getGrade(username));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testCollectsErrors() throws Exception {
+    final Exam valid = ExamTestsHelper.get3Plus2();
+    final GitHubUsername u3 = GitHubUsername.given("u3");
+    final GitHubUsername u4 = GitHubUsername.given("u4");
+    final ExamBuilder builder = ExamBuilder.using(valid.aggregator());
+    builder.put(u3, MarksTree.composite(ImmutableMap.of(c3, Mark.one())));
+    builder.putAll(valid.grades());
+    builder.put(u4, MarksTree.composite(ImmutableMap.of(c3, Mark.zero())));
+
+    assertEquals(ImmutableSet.of(u3, u4), builder.getErrors().keySet());
+    assertEquals(valid.getUsernames(), builder.getGrades().keySet());
+    assertTrue(builder.getGrade(u3).isEmpty());
+    assertEquals(valid, builder.getAccepted());
+    assertEquals(valid, builder.getAcceptedSoFar());
+    final AggregatorException thrown = assertThrows(AggregatorException.class, builder::freeze);
+    assertEquals(1, thrown.getSuppressed().length);
+    assertThrows(IllegalArgumentException.class, () -> builder.put(u3, Mark.one()));
+  }
+}
@@ -1,10 +1,12 @@
 package io.github.oliviercailloux.grade;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.graph.ImmutableGraph;
 import com.google.common.jimfs.Configuration;
@@ -13,15 +15,23 @@ import io.github.oliviercailloux.git.factory.JGit;
 import io.github.oliviercailloux.git.filter.GitHistory;
 import io.github.oliviercailloux.git.filter.GitHistorySimple;
 import io.github.oliviercailloux.git.filter.GitHistoryUtils;
+import io.github.oliviercailloux.git.fixtures.Fixtures;
+import io.github.oliviercailloux.git.fixtures.SyntheticRepositories;
 import io.github.oliviercailloux.gitjfs.GitFileSystem;
 import io.github.oliviercailloux.gitjfs.GitFileSystemProvider;
+import io.github.oliviercailloux.grade.format.json.JsonGrade;
 import io.github.oliviercailloux.javagrade.graders.Commit;
 import io.github.oliviercailloux.utils.Utils;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import java.io.StringReader;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZonedDateTime;
 import java.util.Map;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
@@ -31,6 +41,7 @@ import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -114,4 +125,35 @@ public class GitGeneralGraderTests {
     }
 
   }
+
+  @Test
+  void testReplayed(@TempDir Path fixtures, @TempDir Path work) throws Exception {
+    final ZonedDateTime deadline = ZonedDateTime.parse("2023-01-15T23:59:00+01:00[Europe/Paris]");
+    SyntheticRepositories.given("replayed-general", 2).setShape(8, 1, 1).setDeadline(deadline)
+        .generate(fixtures);
+
+    final Path out = work.resolve("grades.json");
+    final Fixtures previous = Fixtures.current();
+    try (Fixtures replaying = Fixtures.replayingFrom(fixtures)) {
+      Fixtures.setCurrent(replaying);
+      final GitGeneralGrader grader = GitGeneralGrader.using(
+          RepositoryFetcher.withPrefix("replayed-general"), DeadlineGrader.usingPathGrader(
+              p -> Mark.binary(Files.exists(p.resolve("pom.xml"))), deadline));
+      grader.setOut(out);
+      grader.grade();
+    } finally {
+      Fixtures.setCurrent(previous);
+    }
+
+    final JsonObject grades;
+    try (JsonReader reader = Json.createReader(new StringReader(Files.readString(out)))) {
+      grades = reader.readObject();
+    }
+    assertEquals(ImmutableSet.of("student0", "student1"), grades.keySet());
+    for (String student : grades.keySet()) {
+      final IGrade grade = JsonGrade.asGrade(grades.getJsonObject(student));
+      LOGGER.debug("Grade of {}: {}.", student, grade);
+      assertTrue(grade.getPoints() >= 0d && grade.getPoints() <= 1d);
+    }
+  }
 }
@@ -0,0 +1,167 @@
+package io.github.oliviercailloux.grade.comm;
+
+import static io.github.oliviercailloux.email.UncheckedMessagingException.MESSAGING_UNCHECKER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.github.oliviercailloux.grade.Grade;
+import io.github.oliviercailloux.grade.GradeTestsHelper;
+import io.github.oliviercailloux.grade.format.json.JsonSimpleGrade;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class EmailerBulkFetchTests {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(EmailerBulkFetchTests.class);
+
+  @RegisterExtension
+  static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.IMAP);
+
+  /**
+   * Enough to cover several chunks of each kind of message; the throughput is measured on more.
+   */
+  private static final int COUNT = 40;
+
+  private static final int THROUGHPUT_COUNT = 2000;
+
+  private static final String MIME_TYPE = "text/" + GradesInEmails.MIME_SUBTYPE;
+
+  /**
+   * Delivers the given number of messages: every other one with a grade attached, and among the
+   * others, half with the grade attached with a wrong MIME type, and half without attachment.
+   */
+  private static void deliver(GreenMailUser user, int count, String gradeContent)
+      throws Exception {
+    for (int i = 0; i < count; ++i) {
+      final String to = "s" + i + "@example.com";
+      final Instant sent = Instant.parse("2020-01-01T00:00:00Z").plusSeconds(i);
+      if (i % 2 == 0) {
+        user.deliver(MailIndexTests.getMessage(to, "Grade Java", sent, gradeContent));
+      } else if (i % 4 == 1) {
+        final MimeMessage message =
+            MailIndexTests.getMessage(to, "Grade Java", sent, gradeContent);
+        final MimeBodyPart textPart = new MimeBodyPart();
+        textPart.setText("<html/>", "UTF-8", "html");
+        final MimeBodyPart otherPart = new MimeBodyPart();
+        otherPart.setFileName(GradesInEmails.FILE_NAME);
+        otherPart.setDisposition(Part.ATTACHMENT);
+        otherPart.setText(gradeContent, "UTF-8", "plain");
+        message.setContent(new MimeMultipart(textPart, otherPart));
+        message.saveChanges();
+        user.deliver(message);
+      } else {
+        final MimeMessage plain = new MimeMessage((Session) null);
+        plain.setFrom(new InternetAddress("grader@example.com"));
+        plain.setRecipients(Message.RecipientType.TO,
+            new InternetAddress[] {new InternetAddress(to)});
+        plain.setSubject("Grade Java");
+        plain.setText("No attachment.");
+        plain.saveChanges();
+        user.deliver(plain);
+      }
+    }
+  }
+
+  private static ImmutableSet<Long> getUids(Emailer emailer) {
+    final Folder folder = emailer.getFolder("INBOX");
+    final UIDFolder uidFolder = (UIDFolder) folder;
+    final Message[] messages = MESSAGING_UNCHECKER.getUsing(() -> folder.getMessages());
+    emailer.fetchHeaders(folder, ImmutableSet.copyOf(messages));
+    return Arrays.stream(messages)
+        .map(m -> MESSAGING_UNCHECKER.getUsing(() -> uidFolder.getUID(m)))
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  @Test
+  void testFetchAttachments() throws Exception {
+    final GreenMailUser user = greenMail.setUser("grader@example.com", "grader", "secret");
+    final String gradeContent = JsonSimpleGrade.toJson(GradeTestsHelper.get3Plus2());
+    deliver(user, COUNT, gradeContent);
+    final Grade expected = JsonSimpleGrade.asGrade(gradeContent);
+
+    try (Emailer emailer = Emailer.instance()) {
+      emailer.connectToStore(MailIndexTests.getSession(greenMail), "grader", "secret");
+      final ImmutableSet<Long> uids = getUids(emailer);
+      assertEquals(COUNT, uids.size());
+
+      emailer.setBulkFetch(COUNT, 1);
+      final ImmutableMap<Long, Optional<String>> sequentialContents =
+          emailer.fetchAttachments("INBOX", uids, GradesInEmails.FILE_NAME, MIME_TYPE, c -> c,
+              MoreExecutors.directExecutor());
+
+      emailer.setBulkFetch(10, 4);
+      final ImmutableMap<Long, Optional<Grade>> grades =
+          emailer.fetchAttachments("INBOX", uids, GradesInEmails.FILE_NAME, MIME_TYPE,
+              JsonSimpleGrade::asGrade, ForkJoinPool.commonPool());
+
+      assertEquals(uids, grades.keySet());
+      assertEquals(COUNT / 2, grades.values().stream().filter(Optional::isPresent).count());
+      assertEquals(ImmutableSet.of(expected), grades.values().stream().flatMap(Optional::stream)
+          .collect(ImmutableSet.toImmutableSet()));
+      assertEquals(COUNT / 2,
+          sequentialContents.values().stream().filter(Optional::isPresent).count());
+      final long absent = 1_000_000L;
+      assertEquals(Optional.empty(), emailer.fetchAttachments("INBOX", ImmutableSet.of(absent),
+          GradesInEmails.FILE_NAME, MIME_TYPE, c -> c, MoreExecutors.directExecutor())
+          .get(absent));
+    }
+  }
+  @Test
+  @Tag("slow")
+  void testThroughput() throws Exception {
+    final GreenMailUser user = greenMail.setUser("grader@example.com", "grader", "secret");
+    final String gradeContent = JsonSimpleGrade.toJson(GradeTestsHelper.get3Plus2());
+    deliver(user, THROUGHPUT_COUNT, gradeContent);
+
+    try (Emailer emailer = Emailer.instance()) {
+      emailer.connectToStore(MailIndexTests.getSession(greenMail), "grader", "secret");
+      final ImmutableSet<Long> uids = getUids(emailer);
+      assertEquals(THROUGHPUT_COUNT, uids.size());
+
+      final Stopwatch sequential = Stopwatch.createStarted();
+      emailer.setBulkFetch(THROUGHPUT_COUNT, 1);
+      final ImmutableMap<Long, Optional<String>> sequentialContents =
+          emailer.fetchAttachments("INBOX", uids, GradesInEmails.FILE_NAME, MIME_TYPE, c -> c,
+              MoreExecutors.directExecutor());
+      sequential.stop();
+
+      final Stopwatch bulk = Stopwatch.createStarted();
+      emailer.setBulkFetch(100, 4);
+      final ImmutableMap<Long, Optional<Grade>> grades =
+          emailer.fetchAttachments("INBOX", uids, GradesInEmails.FILE_NAME, MIME_TYPE,
+              JsonSimpleGrade::asGrade, ForkJoinPool.commonPool());
+      bulk.stop();
+
+      assertEquals(THROUGHPUT_COUNT / 2,
+          sequentialContents.values().stream().filter(Optional::isPresent).count());
+      assertEquals(THROUGHPUT_COUNT / 2,
+          grades.values().stream().filter(Optional::isPresent).count());
+      LOGGER.info("Single connection: {} messages/s; chunked on 4 connections: {} messages/s.",
+          THROUGHPUT_COUNT * 1000L / Math.max(sequential.elapsed(TimeUnit.MILLISECONDS), 1),
+          THROUGHPUT_COUNT * 1000L / Math.max(bulk.elapsed(TimeUnit.MILLISECONDS), 1));
+    }
+  }
+}
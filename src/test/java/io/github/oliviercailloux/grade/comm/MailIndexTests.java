@@ -0,0 +1,142 @@
+package io.github.oliviercailloux.grade.comm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.github.oliviercailloux.email.EmailAddress;
+import io.github.oliviercailloux.grade.Grade;
+import io.github.oliviercailloux.grade.GradeTestsHelper;
+import io.github.oliviercailloux.grade.comm.MailIndex.IndexedMail;
+import io.github.oliviercailloux.grade.format.json.JsonSimpleGrade;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+public class MailIndexTests {
+  @RegisterExtension
+  static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.IMAP);
+
+  private static final String USERNAME = "grader";
+  private static final String PASSWORD = "secret";
+
+  static MimeMessage getMessage(String to, String subject, Instant sent,
+      String gradeContent) throws MessagingException {
+    final MimeMessage message = new MimeMessage((Session) null);
+    message.setFrom(new InternetAddress("grader@example.com"));
+    message.setRecipients(Message.RecipientType.TO,
+        new InternetAddress[] {new InternetAddress(to)});
+    message.setSubject(subject, "UTF-8");
+    message.setSentDate(Date.from(sent));
+    final MimeBodyPart textPart = new MimeBodyPart();
+    textPart.setText("<html/>", "UTF-8", "html");
+    final MimeBodyPart filePart = new MimeBodyPart();
+    filePart.setFileName(GradesInEmails.FILE_NAME);
+    filePart.setDisposition(Part.ATTACHMENT);
+    filePart.setText(gradeContent, "UTF-8", GradesInEmails.MIME_SUBTYPE);
+    message.setContent(new MimeMultipart(textPart, filePart));
+    message.saveChanges();
+    return message;
+  }
+
+  static Session getSession(GreenMailExtension greenMail) {
+    final Properties props = new Properties();
+    props.setProperty("mail.store.protocol", "imap");
+    props.setProperty("mail.host", "localhost");
+    props.setProperty("mail.imap.port", String.valueOf(greenMail.getImap().getPort()));
+    return Session.getInstance(props);
+  }
+
+  @Test
+  void testSyncIncrementally() throws Exception {
+    final GreenMailUser user = greenMail.setUser("grader@example.com", USERNAME, PASSWORD);
+    final String gradeContent = JsonSimpleGrade.toJson(GradeTestsHelper.get3Plus2());
+    user.deliver(getMessage("s1@example.com", "Grade Java", Instant.parse("2020-01-01T00:00:00Z"),
+        gradeContent));
+    user.deliver(getMessage("s2@example.com", "Other", Instant.parse("2020-01-02T00:00:00Z"),
+        gradeContent));
+
+    final MailIndex index = MailIndex.empty();
+    try (Emailer emailer = Emailer.instance()) {
+      emailer.connectToStore(getSession(greenMail), USERNAME, PASSWORD);
+      final Folder folder = emailer.getFolder("INBOX");
+      final ImmutableList<IndexedMail> first = index.sync(emailer, folder);
+      assertEquals(2, first.size());
+      assertEquals(ImmutableSet.of("s1@example.com"), first.get(0).getTo());
+      assertEquals(gradeContent, first.get(0).getGradeContent().orElseThrow());
+      assertTrue(first.get(0).isSentBy(EmailAddress.given("Grader@example.com")));
+      assertFalse(first.get(1).getGradeContent().isPresent());
+      assertEquals(first.get(1).getUid(), index.getLastUid());
+
+      assertEquals(ImmutableList.of(), index.sync(emailer, folder));
+    }
+
+    user.deliver(getMessage("s1@example.com", "Grade Java", Instant.parse("2020-01-03T00:00:00Z"),
+        gradeContent));
+    try (Emailer emailer = Emailer.instance()) {
+      emailer.connectToStore(getSession(greenMail), USERNAME, PASSWORD);
+      final ImmutableList<IndexedMail> second = index.sync(emailer, emailer.getFolder("INBOX"));
+      assertEquals(1, second.size());
+      assertEquals(Instant.parse("2020-01-03T00:00:00Z"), second.get(0).getSent());
+      assertEquals(3, index.getMails().size());
+    }
+
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path file = jimFs.getPath("index.json");
+      assertEquals(ImmutableList.of(), MailIndex.readFrom(file).getMails());
+      index.writeTo(file);
+      final MailIndex read = MailIndex.readFrom(file);
+      assertEquals(index.getUidValidity(), read.getUidValidity());
+      assertEquals(index.getLastUid(), read.getLastUid());
+      assertEquals(index.getMails(), read.getMails());
+    }
+  }
+
+  @Test
+  void testLastGradesFromIndex() throws Exception {
+    final GreenMailUser user = greenMail.setUser("grader@example.com", USERNAME, PASSWORD);
+    final Grade grade = GradeTestsHelper.get3Plus2();
+    final String gradeContent = JsonSimpleGrade.toJson(grade);
+    user.deliver(getMessage("s1@example.com", "Grade Java", Instant.parse("2020-01-01T00:00:00Z"),
+        "{}"));
+    user.deliver(getMessage("s1@example.com", "Grade Java", Instant.parse("2020-01-02T00:00:00Z"),
+        gradeContent));
+    user.deliver(getMessage("s2@example.com", "Grade Java", Instant.parse("2020-01-02T00:00:00Z"),
+        gradeContent));
+    user.deliver(getMessage("s3@example.com", "Grade Projet Java",
+        Instant.parse("2020-01-02T00:00:00Z"), gradeContent));
+
+    try (GradesInEmails gradesInEmails = GradesInEmails.newInstance()) {
+      gradesInEmails.getEmailer().connectToStore(getSession(greenMail), USERNAME, PASSWORD);
+      gradesInEmails.setFolder(gradesInEmails.getEmailer().getFolder("INBOX"));
+      gradesInEmails.setIndex(MailIndex.empty());
+      gradesInEmails.filterRecipients(ImmutableSet.of(EmailAddress.given("s1@example.com"),
+          EmailAddress.given("s3@example.com")));
+      final Grade expected = JsonSimpleGrade.asGrade(gradeContent);
+      assertEquals(ImmutableMap.of(EmailAddress.given("s1@example.com"), expected),
+          gradesInEmails.getLastGrades("Java"));
+      assertEquals(4, gradesInEmails.getIndex().orElseThrow().getMails().size());
+    }
+  }
+}
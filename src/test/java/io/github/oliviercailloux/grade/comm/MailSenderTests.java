@@ -0,0 +1,139 @@
+package io.github.oliviercailloux.grade.comm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.common.math.Stats;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.github.oliviercailloux.email.EmailAddressAndPersonal;
+import io.github.oliviercailloux.grade.GradeTestsHelper;
+import io.github.oliviercailloux.grade.comm.MailSender.SendReport;
+import jakarta.mail.Session;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MailSenderTests {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(MailSenderTests.class);
+
+  @RegisterExtension
+  static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+  private static final EmailAddressAndPersonal FROM =
+      EmailAddressAndPersonal.given("grader@example.com", "Grader");
+
+  private static Session getSession() {
+    final Properties props = new Properties();
+    props.setProperty("mail.transport.protocol", "smtp");
+    props.setProperty("mail.smtp.host", "localhost");
+    props.setProperty("mail.smtp.port", String.valueOf(greenMail.getSmtp().getPort()));
+    props.setProperty("mail.smtp.auth", "true");
+    return Session.getInstance(props);
+  }
+
+  private static ImmutableSet<Email> getEmails(int count) {
+    return getEmails(count, Stats.of(10d));
+  }
+
+  private static ImmutableSet<Email> getEmails(int count, Stats stats) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> GradesInEmails.asEmail(
+            EmailAddressAndPersonal.given("s" + i + "@example.com", "Student " + i), "Java",
+            GradeTestsHelper.get3Plus2(), stats, ImmutableMap.of()))
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  @Test
+  void testSendConcurrently() throws Exception {
+    greenMail.setUser("grader@example.com", "grader", "secret");
+    final ImmutableSet<Email> emails = getEmails(50);
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path outbox = jimFs.getPath("outbox");
+      final MailSender sender = MailSender.using(getSession(), "grader", "secret", outbox);
+      sender.setConcurrency(4);
+      final SendReport report = sender.send(emails, FROM);
+      LOGGER.info("Report: {}.", report);
+      assertEquals(50, report.getSent().size());
+      assertEquals(ImmutableMap.of(), report.getFailed());
+      assertTrue(report.getLatencies().isPresent());
+      assertEquals(50, greenMail.getReceivedMessages().length);
+      assertEquals(ImmutableSet.of(), sender.getPending());
+      assertEquals(50, sender.getSent().size());
+
+      final SendReport again = sender.send(emails, FROM);
+      assertEquals(0, again.getSent().size());
+      assertEquals(50, greenMail.getReceivedMessages().length);
+    }
+  }
+
+  @Test
+  void testReplacePending() throws Exception {
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path outbox = jimFs.getPath("outbox");
+      final MailSender sender = MailSender.using(getSession(), "grader", "secret", outbox);
+      final ImmutableSet<String> first = sender.enqueue(getEmails(3), FROM);
+      assertEquals(first, sender.getPending());
+
+      final ImmutableSet<String> second = sender.enqueue(getEmails(2, Stats.of(12d)), FROM);
+      assertEquals(2, second.size());
+      assertTrue(Sets.intersection(first, second).isEmpty());
+      assertEquals(3, sender.getPending().size());
+      assertTrue(sender.getPending().containsAll(second));
+    }
+  }
+
+  @Test
+  void testUnreadable() throws Exception {
+    greenMail.setUser("grader@example.com", "grader", "secret");
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path outbox = jimFs.getPath("outbox");
+      final MailSender sender = MailSender.using(getSession(), "grader", "secret", outbox);
+      sender.enqueue(getEmails(3), FROM);
+      Files.createDirectory(outbox.resolve("pending").resolve("unreadable.eml"));
+      final SendReport report = sender.sendPending();
+      assertEquals(3, report.getSent().size());
+      assertEquals(ImmutableSet.of("unreadable"), report.getFailed().keySet());
+      assertEquals(3, greenMail.getReceivedMessages().length);
+      assertEquals(ImmutableSet.of("unreadable"), sender.getPending());
+    }
+  }
+
+  @Test
+  void testResumeAfterFailure() throws Exception {
+    greenMail.setUser("grader@example.com", "grader", "secret");
+    final ImmutableSet<Email> emails = getEmails(5);
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path outbox = jimFs.getPath("outbox");
+      greenMail.stop();
+      final MailSender failing = MailSender.using(getSession(), "grader", "secret", outbox);
+      failing.setRetries(2, Duration.ofMillis(10));
+      final SendReport failed = failing.send(emails, FROM);
+      assertEquals(0, failed.getSent().size());
+      assertEquals(5, failed.getFailed().size());
+      assertEquals(5, failing.getPending().size());
+
+      greenMail.start();
+      greenMail.setUser("grader@example.com", "grader", "secret");
+      final MailSender resuming = MailSender.using(getSession(), "grader", "secret", outbox);
+      assertEquals(ImmutableSet.of(), resuming.enqueue(emails, FROM));
+      final SendReport resumed = resuming.sendPending();
+      assertEquals(5, resumed.getSent().size());
+      assertEquals(5, greenMail.getReceivedMessages().length);
+      assertEquals(ImmutableSet.of(), resuming.getPending());
+    }
+  }
+}
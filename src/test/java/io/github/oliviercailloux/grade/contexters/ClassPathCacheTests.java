@@ -0,0 +1,91 @@
+package io.github.oliviercailloux.grade.contexters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class ClassPathCacheTests {
+  private static String pom(String groupId, String dependencies) {
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+        + "  <modelVersion>4.0.0</modelVersion>\n" + "  <groupId>" + groupId + "</groupId>\n"
+        + "  <artifactId>project</artifactId>\n" + "  <version>1.0</version>\n"
+        + "  <dependencies>" + dependencies + "</dependencies>\n" + "</project>\n";
+  }
+
+  private static final String GUAVA = "<dependency><groupId>com.google.guava</groupId>"
+      + "<artifactId>guava</artifactId><version>33.0.0-jre</version></dependency>";
+  private static final String GUAVA_EXPLICIT = "<dependency>\n  <!-- Explicit defaults. -->\n"
+      + "  <version>33.0.0-jre</version><artifactId>guava</artifactId>\n"
+      + "  <groupId>com.google.guava</groupId><scope>compile</scope><type>jar</type>\n"
+      + "</dependency>";
+  private static final String JUNIT = "<dependency><groupId>org.junit.jupiter</groupId>"
+      + "<artifactId>junit-jupiter-engine</artifactId><version>5.10.0</version>"
+      + "<scope>test</scope></dependency>";
+
+  @Test
+  void testKeys() throws Exception {
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path first = jimFs.getPath("first.xml");
+      final Path second = jimFs.getPath("second.xml");
+      final Path reordered = jimFs.getPath("reordered.xml");
+      final Path broken = jimFs.getPath("broken.xml");
+      Files.writeString(first, pom("io.github.one", GUAVA + JUNIT));
+      Files.writeString(second, pom("io.github.two", GUAVA_EXPLICIT + JUNIT));
+      Files.writeString(reordered, pom("io.github.one", JUNIT + GUAVA));
+      Files.writeString(broken, "<project><dependencies>");
+
+      final Optional<String> key = ClassPathCache.getKey(first);
+      assertTrue(key.isPresent());
+      assertEquals(key, ClassPathCache.getKey(second));
+      assertNotEquals(key, ClassPathCache.getKey(reordered));
+      assertEquals(Optional.empty(), ClassPathCache.getKey(broken));
+    }
+  }
+
+  @Test
+  void testUnshared() throws Exception {
+    final String local = "<dependency><groupId>local</groupId><artifactId>lib</artifactId>"
+        + "<version>1.0</version><scope>system</scope>"
+        + "<systemPath>${project.basedir}/lib/lib.jar</systemPath></dependency>";
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path system = jimFs.getPath("system.xml");
+      final Path doctype = jimFs.getPath("doctype.xml");
+      Files.writeString(system, pom("io.github.one", GUAVA + local));
+      Files.writeString(doctype,
+          pom("io.github.one", GUAVA).replace("<project ",
+              "<!DOCTYPE project [<!ENTITY ext SYSTEM \"file:///etc/hostname\">]>\n<project "));
+
+      assertEquals(Optional.empty(), ClassPathCache.getKey(system));
+      assertEquals(Optional.empty(), ClassPathCache.getKey(doctype));
+    }
+  }
+
+  @Test
+  void testStored() throws Exception {
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path jar = jimFs.getPath("repository/guava.jar");
+      Files.createDirectories(jar.getParent());
+      Files.writeString(jar, "");
+      final Path cacheDirectory = jimFs.getPath("cache");
+
+      ClassPathCache.storedIn(cacheDirectory).put("key", ImmutableList.of(jar.toAbsolutePath()));
+      final ClassPathCache cache = ClassPathCache.storedIn(cacheDirectory);
+      assertEquals(Optional.of(ImmutableList.of(jar.toAbsolutePath())), cache.get("key"));
+      assertEquals(Optional.empty(), cache.get("other"));
+
+      Files.delete(jar);
+      assertEquals(Optional.empty(), cache.get("key"));
+      assertEquals(Optional.empty(), ClassPathCache.inMemory().get("key"));
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package io.github.oliviercailloux.grade.contexters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import io.github.oliviercailloux.grade.contexters.EmbeddedBuild.Result;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class EmbeddedBuildTests {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedBuildTests.class);
+
+  private static final String POM = "<project><modelVersion>4.0.0</modelVersion>"
+      + "<groupId>io.github.student</groupId><artifactId>project</artifactId>"
+      + "<version>1.0</version><properties><maven.compiler.release>17</maven.compiler.release>"
+      + "</properties>%s</project>";
+
+  private static Path getJar(Class<?> type) throws Exception {
+    return Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  private static Path createProject(String mainSource) throws Exception {
+    final Path root = Files.createTempDirectory("project");
+    Files.writeString(root.resolve("pom.xml"), String.format(POM, ""));
+    final Path main = root.resolve("src/main/java/io/github/student/Adder.java");
+    Files.createDirectories(main.getParent());
+    Files.writeString(main, mainSource);
+    final Path test = root.resolve("src/test/java/io/github/student/AdderTests.java");
+    Files.createDirectories(test.getParent());
+    Files.writeString(test, "package io.github.student;\n"
+        + "import static org.junit.jupiter.api.Assertions.assertEquals;\n"
+        + "import org.junit.jupiter.api.Test;\n" + "public class AdderTests {\n"
+        + "  @Test void testAdd() { assertEquals(3, Adder.add(1, 2)); }\n"
+        + "  @Test void testAddNegative() { assertEquals(-3, Adder.add(-1, -2)); }\n" + "}\n");
+    return root;
+  }
+
+  @Test
+  void testSimplicity() throws Exception {
+    final Path root = Files.createTempDirectory("project");
+    try {
+      final Path pom = root.resolve("pom.xml");
+      Files.writeString(pom, String.format(POM, ""));
+      assertTrue(EmbeddedBuild.given(pom).isPresent());
+      Files.writeString(pom, String.format(POM, "<build><plugins><plugin>"
+          + "<artifactId>exec-maven-plugin</artifactId></plugin></plugins></build>"));
+      assertEquals(Optional.empty(), EmbeddedBuild.given(pom));
+      Files.writeString(pom, String.format(POM, "<modules><module>sub</module></modules>"));
+      assertEquals(Optional.empty(), EmbeddedBuild.given(pom));
+    } finally {
+      MoreFiles.deleteRecursively(root, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  @Test
+  void testCompileAndTest() throws Exception {
+    final ImmutableList<Path> classPath =
+        ImmutableList.of(getJar(Test.class), getJar(org.opentest4j.AssertionFailedError.class),
+            getJar(org.apiguardian.api.API.class));
+
+    final Path failing = createProject("package io.github.student;\n" + "public class Adder {\n"
+        + "  public static int add(int a, int b) { return a + Math.abs(b); }\n" + "}\n");
+    try {
+      final EmbeddedBuild build = EmbeddedBuild.given(failing.resolve("pom.xml")).orElseThrow();
+      final Result result = build.test(classPath);
+      LOGGER.info("Output: {}.", result.output());
+      assertFalse(result.success());
+      assertTrue(result.output().contains("Tests run: 2, Failures: 1, Errors: 0"), result.output());
+      assertTrue(Files.exists(failing.resolve("target/classes/io/github/student/Adder.class")));
+    } finally {
+      MoreFiles.deleteRecursively(failing, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    final Path passing = createProject("package io.github.student;\n"
+        + "public class Adder { public static int add(int a, int b) { return a + b; } }\n");
+    try {
+      final Result result =
+          EmbeddedBuild.given(passing.resolve("pom.xml")).orElseThrow().test(classPath);
+      assertTrue(result.success(), result.output());
+      assertTrue(result.output().contains("Tests run: 2, Failures: 0"), result.output());
+    } finally {
+      MoreFiles.deleteRecursively(passing, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    final Path broken = createProject("package io.github.student;\n"
+        + "public class Adder { public static int add(int a, int b) { return \"\"; } }\n");
+    try {
+      final Result result =
+          EmbeddedBuild.given(broken.resolve("pom.xml")).orElseThrow().compile(classPath);
+      assertFalse(result.success());
+      assertTrue(result.output().contains("Adder.java:[2,"), result.output());
+    } finally {
+      MoreFiles.deleteRecursively(broken, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package io.github.oliviercailloux.grade.contexters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import io.github.oliviercailloux.grade.contexters.ProcessRunner.Limit;
+import io.github.oliviercailloux.grade.contexters.ProcessRunner.ProcessOutput;
+import java.io.File;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+public class ProcessRunnerTests {
+  @SuppressWarnings("unused")
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProcessRunnerTests.class);
+
+  private static final File HERE = new File(".");
+
+  private static ImmutableList<String> sh(String command) {
+    return ImmutableList.of("sh", "-c", command);
+  }
+
+  @Test
+  void testLargeOutputs() throws Exception {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final ProcessOutput output = ProcessRunner.run(HERE,
+        sh("head -c 5000000 /dev/zero | tr '\\0' a; head -c 3000000 /dev/zero | tr '\\0' b >&2"));
+    LOGGER.info("Ran in {}.", stopwatch);
+    assertEquals(0, output.getExitCode());
+    assertEquals(Optional.empty(), output.getExceededLimit());
+    assertEquals(5_000_000, output.getOutput().length());
+    assertEquals(3_000_000, output.getError().length());
+    assertFalse(output.isOutputTruncated());
+    assertTrue(stopwatch.elapsed().compareTo(Duration.ofSeconds(10)) < 0);
+  }
+
+  @Test
+  void testCapped() throws Exception {
+    final ProcessOutput output = ProcessRunner.newInstance().setOutputCap(1000).execute(HERE,
+        sh("head -c 4000000 /dev/zero | tr '\\0' a; echo err >&2"));
+    assertEquals(0, output.getExitCode());
+    assertTrue(output.isOutputTruncated());
+    assertEquals("a".repeat(1000) + "[... truncated 3999000 characters]", output.getOutput());
+    assertFalse(output.isErrorTruncated());
+    assertEquals("err\n", output.getError());
+  }
+
+  @Test
+  void testLines() throws Exception {
+    final AtomicLong count = new AtomicLong();
+    final AtomicLong sum = new AtomicLong();
+    final ProcessOutput output = ProcessRunner.newInstance().setOutputCap(100)
+        .setOutputListener(l -> {
+          count.incrementAndGet();
+          sum.addAndGet(Long.parseLong(l));
+        }).execute(HERE, sh("seq 1 300000"));
+    assertEquals(0, output.getExitCode());
+    assertTrue(output.isOutputTruncated());
+    assertEquals(300_000, count.get());
+    assertEquals(300_000L * 300_001L / 2L, sum.get());
+  }
+
+  @Test
+  void testWallClockKillsTree() throws Exception {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final ProcessOutput output =
+        ProcessRunner.newInstance().setTimeout(Duration.ofMillis(500)).execute(HERE,
+            sh("sleep 30 & echo $!; yes | head -c 2000000 >/dev/null; wait"));
+    assertTrue(stopwatch.elapsed().compareTo(Duration.ofSeconds(10)) < 0);
+    assertEquals(Optional.of(Limit.WALL_CLOCK), output.getExceededLimit());
+    final long child = Long.parseLong(output.getOutput().strip());
+    ProcessHandle.of(child).ifPresent(h -> h.onExit().orTimeout(5, TimeUnit.SECONDS).join());
+  }
+
+  @Test
+  void testCpuTime() throws Exception {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final ProcessOutput output = ProcessRunner.newInstance()
+        .setCpuTimeLimit(Optional.of(Duration.ofMillis(300))).execute(HERE,
+            sh("while :; do :; done"));
+    assertTrue(stopwatch.elapsed().compareTo(Duration.ofSeconds(10)) < 0);
+    assertEquals(Optional.of(Limit.CPU_TIME), output.getExceededLimit());
+  }
+}
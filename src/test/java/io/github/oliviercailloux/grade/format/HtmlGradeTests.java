@@ -4,10 +4,22 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.common.math.Stats;
+import io.github.oliviercailloux.git.github.model.GitHubUsername;
+import io.github.oliviercailloux.grade.Exam;
+import io.github.oliviercailloux.grade.ExamTestsHelper;
 import io.github.oliviercailloux.grade.Grade;
 import io.github.oliviercailloux.grade.GradeTestsHelper;
 import io.github.oliviercailloux.xml.XmlUtils;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,4 +40,66 @@ class HtmlGradeTests {
         Resources.toString(getClass().getResource("3Plus2.html"), StandardCharsets.UTF_8);
     assertEquals(expected, written);
   }
+
+  @Test
+  void test3Plus2Streamed() throws Exception {
+    final Grade grade = GradeTestsHelper.get3Plus2();
+    final StringWriter written = new StringWriter();
+    HtmlGrades.writeHtml(ImmutableMap.of("g1", grade), "Ze grades", 20d, written);
+
+    final String expected =
+        Resources.toString(getClass().getResource("3Plus2.html"), StandardCharsets.UTF_8);
+    assertEquals(expected, written.toString());
+  }
+
+  @Test
+  void testExamStreamedEqualsDom() throws Exception {
+    final Exam exam = ExamTestsHelper.get3Plus2();
+    final ImmutableMap<String, Grade> grades = exam.getUsernames().stream()
+        .collect(ImmutableMap.toImmutableMap(GitHubUsername::getUsername, exam::getGrade));
+
+    final String expected = XmlUtils.asString(HtmlGrades.asHtml(grades, "Ze & <grades>", 17d));
+    final StringWriter written = new StringWriter();
+    HtmlGrades.writeHtml(grades, "Ze & <grades>", 17d, written);
+    assertEquals(expected, written.toString());
+  }
+
+  @Test
+  void testDocWithStatsStreamedEqualsDom() throws Exception {
+    final HtmlGrades htmler = HtmlGrades.newInstance();
+    htmler.setTitle("Ze grade");
+    htmler.setStats(Stats.of(0.3d, 0.5d, 0.9d));
+    htmler.setQuantiles(ImmutableMap.of(1, 0.3d, 2, 0.5d, 3, 0.9d));
+    final Grade grade = GradeTestsHelper.get3Plus2();
+
+    final String expected = XmlUtils.asString(htmler.asHtmlDoc(grade));
+    final StringWriter written = new StringWriter();
+    htmler.writeHtmlDoc(grade, written);
+    assertEquals(expected, written.toString());
+  }
+
+  @Test
+  void testWritePages() throws Exception {
+    final Exam exam = ExamTestsHelper.get3Plus2();
+    final HtmlGrades htmler = HtmlGrades.newInstance();
+    htmler.setTitle("Ze grades");
+
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try (FileSystem jimFs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path folder = jimFs.getPath("/pages/");
+      Files.createDirectory(folder);
+      htmler.writePages(exam, folder, executor);
+
+      for (GitHubUsername username : exam.getUsernames()) {
+        assertEquals(XmlUtils.asString(htmler.asHtmlDoc(exam.getGrade(username))),
+            Files.readString(folder.resolve(username.getUsername() + ".html")));
+      }
+      final ImmutableMap<String, Grade> grades = exam.getUsernames().stream()
+          .collect(ImmutableMap.toImmutableMap(GitHubUsername::getUsername, exam::getGrade));
+      assertEquals(XmlUtils.asString(HtmlGrades.asHtml(grades, "Ze grades", 20d)),
+          Files.readString(folder.resolve("index.html")));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }
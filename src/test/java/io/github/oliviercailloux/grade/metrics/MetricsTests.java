@@ -0,0 +1,84 @@
+package io.github.oliviercailloux.grade.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.github.oliviercailloux.grade.metrics.Metrics.CacheStats;
+import jakarta.json.JsonObject;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+public class MetricsTests {
+  @Test
+  void testDisabled() throws Exception {
+    final Metrics metrics = Metrics.disabled();
+    try (Metrics.Scope scope = metrics.forStudent("s");
+        Metrics.Timer timer = metrics.time(Stage.GRADING)) {
+      metrics.increment("c");
+      metrics.recordHit("h");
+    }
+    assertFalse(metrics.isEnabled());
+    assertEquals(0L, metrics.getStageHistograms().get(Stage.GRADING).getCount());
+    assertTrue(metrics.getStudentDurations().isEmpty());
+    assertEquals(ImmutableMap.of(), metrics.getCounters());
+    assertEquals(ImmutableMap.of(), metrics.getCacheStats());
+  }
+
+  @Test
+  void testRecords() throws Exception {
+    final Metrics metrics = Metrics.create();
+    try (Metrics.Scope scope = metrics.forStudent("s1")) {
+      try (Metrics.Timer timer = metrics.time(Stage.COMPILATION)) {
+        Thread.sleep(5);
+      }
+      try (Metrics.Scope inner = metrics.forStudent("s2");
+          Metrics.Timer timer = metrics.time(Stage.COMPILATION)) {
+        Thread.sleep(5);
+      }
+      try (Metrics.Timer timer = metrics.time(Stage.GRADING)) {
+        metrics.increment("students");
+      }
+    }
+    try (Metrics.Timer timer = metrics.time(Stage.OUTPUT)) {
+      metrics.recordHit("class path");
+      metrics.recordHit("class path");
+      metrics.recordHit("class path");
+      metrics.recordMiss("class path");
+    }
+
+    assertEquals(2L, metrics.getStageHistograms().get(Stage.COMPILATION).getCount());
+    assertEquals(1L, metrics.getStageHistograms().get(Stage.OUTPUT).getCount());
+    assertEquals(ImmutableSet.of("s1", "s2"), metrics.getStudentDurations().rowKeySet());
+    assertEquals(ImmutableSet.of(Stage.COMPILATION, Stage.GRADING),
+        metrics.getStudentDurations().row("s1").keySet());
+    assertTrue(metrics.getStudentDurations().get("s2", Stage.COMPILATION)
+        .compareTo(Duration.ofMillis(5)) >= 0);
+    assertEquals(ImmutableMap.of("students", 1L), metrics.getCounters());
+    assertEquals(ImmutableMap.of("class path", new CacheStats(3L, 1L)), metrics.getCacheStats());
+    assertEquals(0.75d, metrics.getCacheStats().get("class path").hitRate());
+
+    final JsonObject json = MetricsReport.toJson(metrics);
+    assertEquals(ImmutableSet.of("COMPILATION", "GRADING", "OUTPUT"),
+        json.getJsonObject("stages").keySet());
+    assertEquals(3, MetricsReport.toCsv(metrics).lines().count());
+  }
+
+  @Test
+  void testHistogram() throws Exception {
+    final Histogram histogram = Histogram.create();
+    assertEquals(0L, histogram.getQuantile(0.5d));
+    for (long i = 1; i <= 1000; ++i) {
+      histogram.record(i);
+    }
+    assertEquals(1000L, histogram.getCount());
+    assertEquals(500500L, histogram.getSum());
+    assertEquals(1L, histogram.getMin());
+    assertEquals(1000L, histogram.getMax());
+    assertEquals(511L, histogram.getQuantile(0.5d));
+    assertEquals(1000L, histogram.getQuantile(0.99d));
+    assertEquals(1L, histogram.getQuantile(0d));
+  }
+}
@@ -0,0 +1,54 @@
+package io.github.oliviercailloux.grade.old;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.github.oliviercailloux.grade.Criterion;
+import io.github.oliviercailloux.grade.IGrade.CriteriaPath;
+import org.junit.jupiter.api.Test;
+
+public class GradeStructureTests {
+  @Test
+  void testNavigation() throws Exception {
+    final GradeStructure structure =
+        GradeStructure.from(ImmutableSet.of("c2/sub2", "c1", "c2/sub1/leaf"));
+    assertEquals(ImmutableSet.of(CriteriaPath.from("c2/sub2"), CriteriaPath.from("c1"),
+        CriteriaPath.from("c2/sub1/leaf")), structure.getLeaves());
+    assertEquals(ImmutableList.of(Criterion.given("c1"), Criterion.given("c2")),
+        structure.getSuccessorCriteria(CriteriaPath.ROOT).asList());
+    assertEquals(ImmutableSet.of(CriteriaPath.from("c2/sub2"), CriteriaPath.from("c2/sub1")),
+        structure.getSiblingsIfTail(CriteriaPath.from("c2/sub1")));
+    assertEquals(ImmutableSet.of(CriteriaPath.from("c2/sub2"), CriteriaPath.from("c2/sub1")),
+        structure.getSiblingsIfTail(CriteriaPath.from("c2/absent")));
+    assertThrows(IllegalArgumentException.class,
+        () -> structure.getSuccessorPaths(CriteriaPath.from("absent")));
+  }
+
+  @Test
+  void testStructure() throws Exception {
+    final GradeStructure structure =
+        GradeStructure.from(ImmutableSet.of("c2/sub2", "c1", "c2/sub1/leaf"));
+    final GradeStructure sub = structure.getStructure(Criterion.given("c2"));
+    assertEquals(GradeStructure.from(ImmutableSet.of("sub1/leaf", "sub2")), sub);
+    assertEquals(ImmutableList.of(Criterion.given("sub2"), Criterion.given("sub1")),
+        sub.getSuccessorCriteria(CriteriaPath.ROOT).asList());
+    assertSame(sub, structure.getStructure(Criterion.given("c2")));
+    assertEquals(GradeStructure.given(ImmutableSet.of()),
+        structure.getStructure(CriteriaPath.from("c2/absent")));
+  }
+
+  @Test
+  void testEquals() throws Exception {
+    final GradeStructure structure = GradeStructure.from(ImmutableSet.of("c1", "c2/sub"));
+    final GradeStructure reordered = GradeStructure.from(ImmutableSet.of("c2/sub", "c1"));
+    assertEquals(structure, reordered);
+    assertEquals(structure.hashCode(), reordered.hashCode());
+    assertNotEquals(structure, GradeStructure.from(ImmutableSet.of("c1", "c2")));
+    assertEquals(GradeStructure.from(ImmutableSet.of("c1", "c2/sub", "c3")), GradeStructure
+        .merge(ImmutableSet.of(structure, reordered, GradeStructure.from(ImmutableSet.of("c3")))));
+  }
+}
@@ -1,9 +1,13 @@
 package io.github.oliviercailloux.grade.utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import io.github.oliviercailloux.grade.Criterion;
 import io.github.oliviercailloux.grade.IGrade;
 import io.github.oliviercailloux.grade.IGrade.CriteriaPath;
 import io.github.oliviercailloux.grade.WeightingGrade;
@@ -13,10 +17,43 @@ import io.github.oliviercailloux.grade.old.GradeStructure;
 import io.github.oliviercailloux.grade.old.Mark;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 public class CompressorTests {
+  private static final ImmutableList<String> NAMES = ImmutableList.of("a", "b", "c", "d", "e");
+
+  private static WeightedGrade getRandomGrade(Random random, int depth) {
+    if (depth == 0 || random.nextInt(4) == 0) {
+      return WeightedGrade.given(Mark.given(random.nextInt(11) / 10d, "m" + random.nextInt(3)),
+          1 + random.nextInt(3));
+    }
+    final List<String> names = new ArrayList<>(NAMES);
+    Collections.shuffle(names, random);
+    final ImmutableMap.Builder<Criterion, WeightedGrade> builder = ImmutableMap.builder();
+    for (String name : names.subList(0, 1 + random.nextInt(names.size()))) {
+      builder.put(Criterion.given(name), getRandomGrade(random, depth - 1));
+    }
+    return WeightedGrade.given(builder.build());
+  }
+
+  private static GradeStructure getRandomModel(Random random) {
+    final ImmutableSet.Builder<String> paths = ImmutableSet.builder();
+    final int nbPaths = 1 + random.nextInt(4);
+    for (int i = 0; i < nbPaths; ++i) {
+      final int length = 1 + random.nextInt(3);
+      paths.add(IntStream.range(0, length).mapToObj(j -> NAMES.get(random.nextInt(NAMES.size())))
+          .collect(Collectors.joining("/")));
+    }
+    return GradeStructure.from(paths.build());
+  }
+
   @Test
   void testCompress() throws Exception {
     final WeightingGrade deflatedGrade = (WeightingGrade) JsonGrade
@@ -41,6 +78,52 @@ public class CompressorTests {
     assertEquals(expected, obtained);
   }
 
+  @Test
+  void testCompressReusingModel() throws Exception {
+    final GradeStructure model = GradeStructure.from(ImmutableSet.of("c1", "c2/sub"));
+    final WeightedGrade one = WeightedGrade.given(Mark.one(), 1d);
+    final WeightedGrade zero = WeightedGrade.given(Mark.zero(), 3d);
+    final IGrade first = WeightingGrade.from(ImmutableMap.of(CriteriaPath.from("c1"), one,
+        CriteriaPath.from("c2/Spurious/sub"), one));
+    final IGrade second = WeightingGrade.from(ImmutableMap.of(CriteriaPath.from("c1/a"), one,
+        CriteriaPath.from("c1/b"), zero, CriteriaPath.from("c2/sub"), one));
+    final IGrade expectedFirst = Compressor.compress(first, model);
+    final IGrade expectedSecond =
+        Compressor.compress(second, GradeStructure.from(ImmutableSet.of("c1", "c2/sub")));
+    assertEquals(expectedSecond, Compressor.compress(second, model));
+    assertEquals(expectedFirst, Compressor.compress(first, model));
+    assertEquals(0.25d, expectedSecond.getSubGrades().get(Criterion.given("c1")).getPoints(),
+        1e-6d);
+  }
+
+  @Test
+  void testSameAsReference() throws Exception {
+    final Random random = new Random(28);
+    int nbCompressed = 0;
+    int nbLarge = 0;
+    for (int i = 0; i < 300; ++i) {
+      final IGrade grade = getRandomGrade(random, 6).getGrade();
+      if (grade.getSubGrades().isEmpty()) {
+        continue;
+      }
+      final GradeStructure model = getRandomModel(random);
+      final IGrade expected;
+      try {
+        expected = CompressorReference.compress(grade, model);
+      } catch (RuntimeException e) {
+        assertThrows(e.getClass(), () -> Compressor.compress(grade, model));
+        continue;
+      }
+      assertEquals(expected, Compressor.compress(grade, model), () -> grade + " with " + model);
+      ++nbCompressed;
+      if (grade.toTree().getLeaves().size() >= 100) {
+        ++nbLarge;
+      }
+    }
+    assertTrue(nbCompressed >= 50, String.valueOf(nbCompressed));
+    assertTrue(nbLarge >= 20, String.valueOf(nbLarge));
+  }
+
   @Test
   @Disabled
   void testCompressTwoTwo() throws Exception {
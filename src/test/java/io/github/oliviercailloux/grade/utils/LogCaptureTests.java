@@ -0,0 +1,110 @@
+package io.github.oliviercailloux.grade.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.qos.logback.classic.Level;
+import com.google.common.collect.ImmutableList;
+import io.github.oliviercailloux.grade.utils.LogCapture.LogEvent;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class LogCaptureTests {
+  private static final Logger CAPTURED = LoggerFactory.getLogger("jgradlib.captured.child");
+  private static final Logger OTHER = LoggerFactory.getLogger("jgradlib.other");
+
+  @Test
+  void testCapture() throws Exception {
+    final IllegalStateException exc = new IllegalStateException("thrown");
+    try (LogCapture capture = LogCapture.capturing("jgradlib.captured")) {
+      CAPTURED.trace("Hello {}.", "world");
+      OTHER.info("Not captured.");
+      CAPTURED.warn("Failed.", exc);
+      final ImmutableList<LogEvent> events = capture.getEvents();
+      assertEquals(2, events.size());
+      assertEquals("Hello world.", events.get(0).message());
+      assertEquals(Level.TRACE, events.get(0).level());
+      assertEquals("jgradlib.captured.child", events.get(0).loggerName());
+      assertEquals(exc, events.get(1).throwable().orElseThrow());
+      assertEquals(1, capture.count(e -> e.level().equals(Level.WARN)));
+    }
+  }
+
+  @Test
+  void testBounded() throws Exception {
+    try (LogCapture capture = LogCapture.capturing("jgradlib", Level.INFO, 3)) {
+      for (int i = 0; i < 10; ++i) {
+        CAPTURED.info("Event {}.", i);
+        CAPTURED.debug("Ignored {}.", i);
+      }
+      assertEquals(10, capture.getNbEvents());
+      assertEquals(7, capture.getNbDropped());
+      assertEquals(ImmutableList.of("Event 7.", "Event 8.", "Event 9."),
+          capture.getEvents().stream().map(LogEvent::message)
+              .collect(ImmutableList.toImmutableList()));
+    }
+  }
+
+  @Test
+  void testNested() throws Exception {
+    try (LogCapture outer = LogCapture.capturing("jgradlib")) {
+      try (LogCapture inner = LogCapture.redirecting("jgradlib")) {
+        CAPTURED.info("Inner.");
+        assertEquals(1, inner.getNbEvents());
+      }
+      CAPTURED.info("Outer.");
+      assertEquals(ImmutableList.of("Outer."), outer.getEvents().stream().map(LogEvent::message)
+          .collect(ImmutableList.toImmutableList()));
+    }
+    CAPTURED.info("After.");
+  }
+
+  @Test
+  void testConcurrentCaptures() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final ImmutableList.Builder<Future<LogCapture>> builder = ImmutableList.builder();
+      for (int i = 0; i < 8; ++i) {
+        final int index = i;
+        builder.add(executor.submit(() -> {
+          /* Its thread exists before the capture, thus does not inherit it. */
+          final ExecutorService pool = Executors.newSingleThreadExecutor();
+          pool.submit(() -> {
+          }).get();
+          try (LogCapture capture = LogCapture.capturing("jgradlib")) {
+            final Thread child = new Thread(() -> CAPTURED.info("Child of {}.", index));
+            child.start();
+            child.join();
+            pool.submit(() -> CAPTURED.info("Unwrapped by {}.", index)).get();
+            pool.submit(capture.wrap(() -> CAPTURED.info("Pooled by {}.", index))).get();
+            for (int j = 0; j < 100; ++j) {
+              CAPTURED.info("Capture {}.", index);
+            }
+            return capture;
+          } finally {
+            pool.shutdown();
+          }
+        }));
+      }
+      final ImmutableList<Future<LogCapture>> futures = builder.build();
+      for (int i = 0; i < futures.size(); ++i) {
+        final String suffix = " " + i + ".";
+        final LogCapture capture = futures.get(i).get();
+        assertEquals(102, capture.getNbEvents());
+        assertEquals(102, capture.count(e -> e.message().endsWith(suffix)));
+        assertTrue(capture.anyMatch(e -> e.message().startsWith("Child")));
+        assertTrue(capture.anyMatch(e -> e.message().startsWith("Pooled")));
+        assertFalse(capture.anyMatch(e -> e.message().startsWith("Unwrapped")));
+        CAPTURED.info("Closed.");
+        assertFalse(capture.anyMatch(e -> e.message().equals("Closed.")));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package io.github.oliviercailloux.javagrade.exextractor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
+import io.github.oliviercailloux.javagrade.exextractor.ExtractionHarness.ExtractionRun;
+import io.github.oliviercailloux.javagrade.exextractor.ExtractionHarness.StripperSetup;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+class ExtractionHarnessTests {
+  private static class Extractor implements SimpleExtractor {
+    private PDFTextStripper stripper;
+    private final boolean closing;
+    private final Duration delay;
+
+    Extractor(boolean closing, Duration delay) {
+      stripper = null;
+      this.closing = closing;
+      this.delay = delay;
+    }
+
+    @Override
+    public void setStripper(PDFTextStripper stripper) {
+      this.stripper = stripper;
+    }
+
+    @Override
+    public void writeTextFromDocument(PDDocument document, Writer output) throws IOException {
+      (stripper == null ? new PDFTextStripper() : stripper).writeText(document, output);
+    }
+
+    @Override
+    public void writeText(InputStream input, Writer output) throws IOException {
+      if (input == null) {
+        return;
+      }
+      try {
+        Thread.sleep(delay.toMillis());
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      final PDDocument document = PDDocument.load(input);
+      try {
+        writeTextFromDocument(document, output);
+      } finally {
+        if (closing) {
+          document.close();
+        }
+      }
+    }
+
+    @Override
+    public void writeAllText(Collection<Path> inputPaths, Writer output) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<String> getAllText(Collection<Path> inputPaths) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test
+  void testRuns() throws Exception {
+    final ExtractionCorpus corpus =
+        ExtractionCorpus.load(Files.createTempDirectory("corpus").resolve("cache"));
+    assertEquals(ImmutableList.of("Empty page.pdf", "One line.pdf", "Two pages.pdf", "Long.pdf"),
+        corpus.getGeneratedNames());
+    final Optional<ByteSource> oneLine = Optional.of(corpus.getDocument("One line.pdf"));
+
+    try (ExtractionHarness harness =
+        ExtractionHarness.create(Duration.ofSeconds(2), 1024L * 1024 * 1024)) {
+      final Future<ExtractionRun> reference =
+          harness.submitReference("One line.pdf", oneLine.get());
+      final Future<ExtractionRun> closing = harness.submit("One line.pdf", oneLine,
+          new Extractor(true, Duration.ZERO), StripperSetup.EXPLICIT);
+      final Future<ExtractionRun> leaking = harness.submit("One line.pdf", oneLine,
+          new Extractor(false, Duration.ZERO), StripperSetup.THROWING);
+      final Future<ExtractionRun> slow = harness.submit("One line.pdf", oneLine,
+          new Extractor(true, Duration.ofMinutes(1)), StripperSetup.DEFAULT);
+      final Future<ExtractionRun> nullInput = harness.submit("null", Optional.empty(),
+          new Extractor(true, Duration.ofMinutes(1)), StripperSetup.DEFAULT);
+
+      assertEquals("Hello, world.\n", reference.get().text());
+      assertTrue(reference.get().allocatedBytes() > 0);
+      assertEquals(reference.get().text(), closing.get().text());
+      assertTrue(closing.get().completed());
+      assertEquals(0, closing.get().nbLeftOpen());
+      assertFalse(closing.get().closedOutput());
+
+      assertEquals("Ad-hoc exception", leaking.get().thrown().orElseThrow().getMessage());
+      assertEquals(1, leaking.get().nbLeftOpen());
+
+      assertTrue(slow.get().timedOut());
+      assertEquals("", slow.get().text());
+
+      assertTrue(nullInput.get().completed());
+      assertEquals("", nullInput.get().text());
+    }
+  }
+
+  @Test
+  void testStopsRunaway() throws Exception {
+    final Extractor runaway = new Extractor(true, Duration.ZERO) {
+      @Override
+      public void writeText(InputStream input, Writer output) throws IOException {
+        final List<byte[]> retained = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+          retained.add(new byte[1024 * 1024]);
+          if (retained.size() >= 16) {
+            retained.clear();
+          }
+        }
+      }
+    };
+    try (ExtractionHarness harness =
+        ExtractionHarness.create(Duration.ofMinutes(10), 256L * 1024 * 1024)) {
+      final Stopwatch stopwatch = Stopwatch.createStarted();
+      final ExtractionRun run =
+          harness.submit("null", Optional.empty(), runaway, StripperSetup.DEFAULT).get();
+      assertTrue(stopwatch.elapsed().compareTo(Duration.ofMinutes(1)) < 0);
+      assertTrue(run.exceededAllocationBudget());
+      assertFalse(run.timedOut());
+      assertTrue(run.allocatedBytes() > 256L * 1024 * 1024);
+    }
+  }
+
+  @Test
+  void testAllocationBudget() throws Exception {
+    final ExtractionCorpus corpus =
+        ExtractionCorpus.load(Files.createTempDirectory("corpus").resolve("cache"));
+    try (ExtractionHarness harness = ExtractionHarness.create(Duration.ofSeconds(20), 1)) {
+      final ExtractionRun run =
+          harness.submitReference("Long.pdf", corpus.getDocument("Long.pdf")).get();
+      assertTrue(run.exceededAllocationBudget());
+      assertFalse(run.completed());
+    }
+  }
+}
@@ -2,6 +2,7 @@ package io.github.oliviercailloux.javagrade.graders;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -17,20 +18,25 @@ import io.github.oliviercailloux.gitjfs.GitFileSystemProvider;
 import io.github.oliviercailloux.gitjfs.GitPathRoot;
 import io.github.oliviercailloux.gitjfs.GitPathRootSha;
 import io.github.oliviercailloux.gitjfs.GitPathRootShaCached;
+import io.github.oliviercailloux.grade.GitFileSystemPool;
 import io.github.oliviercailloux.grade.GitWork;
 import io.github.oliviercailloux.grade.IGrade;
 import io.github.oliviercailloux.grade.format.json.JsonGrade;
 import io.github.oliviercailloux.jaris.graphs.GraphUtils;
 import io.github.oliviercailloux.utils.Utils;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Set;
+import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +59,50 @@ public class EclipseTests {
     }
   }
 
+  @Test
+  void testConcurrently(@TempDir Path dir) throws Exception {
+    final Path work = dir.resolve("work");
+    try (Git git = Git.init().setDirectory(work.toFile()).call()) {
+      final Path src = Files.createDirectories(work.resolve("src"));
+      commit(git, src.resolve("QuestioningConstraint.java"), "class QC {\n}\n");
+      commit(git, src.resolve("QuestioningConstraint.java"),
+          "class QC {\n  Object k() {\n    return kind;\n  }\n}\n");
+      commit(git, src.resolve("ConstraintsOnWeights.java"),
+          "class CW {\n  void b() {\n    builder = mp;\n  }\n}\n");
+      commit(git, src.resolve("courses.soc"), "8\n1 2 3\n");
+      commit(git, src.resolve("PreferenceInformation.java"),
+          "class PI {\n  void c() {\n    checkState(c == null);\n    verify(v != null);\n  }\n}\n");
+
+      final FileRepository repository = (FileRepository) git.getRepository();
+      try (GitFileSystem gitFs =
+          GitFileSystemProvider.instance().newFileSystemFromRepository(repository)) {
+        final ImmutableSet<ObjectId> ids = gitFs.graph().nodes().stream()
+            .map(r -> r.getCommit().id()).collect(ImmutableSet.toImmutableSet());
+        final GitHistorySimple history =
+            GitHistorySimple.create(gitFs, Maps.asMap(ids, o -> Commit.DEADLINE.toInstant()));
+        final GitWork student = GitWork.given(GitHubUsername.given("student"), history);
+
+        final IGrade sequential = new Eclipse().grade(student);
+        final IGrade concurrent;
+        try (GitFileSystemPool pool = GitFileSystemPool.share(repository)) {
+          concurrent = new Eclipse().grade(student);
+        }
+        LOGGER.debug("Grade: {}.", JsonGrade.asJson(concurrent));
+        assertTrue(sequential.getPoints() > 0.5d, String.valueOf(sequential.getPoints()));
+        assertEquals(JsonGrade.asJson(sequential).toString(),
+            JsonGrade.asJson(concurrent).toString());
+        assertTrue(GitFileSystemPool.current().isEmpty());
+      }
+    }
+  }
+
+  private static void commit(Git git, Path file, String content) throws Exception {
+    Files.writeString(file, content);
+    git.add().addFilepattern(".").call();
+    git.commit().setMessage("Change " + file.getFileName()).setAuthor("Student", "s@example.com")
+        .setCommitter("Student", "s@example.com").setSign(false).call();
+  }
+
   @Test
   void testNothing() throws Exception {
     try (
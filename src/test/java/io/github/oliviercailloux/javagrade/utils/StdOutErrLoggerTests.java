@@ -1,5 +1,21 @@
 package io.github.oliviercailloux.javagrade.utils;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.qos.logback.classic.Level;
+import com.google.common.collect.ImmutableList;
+import io.github.oliviercailloux.grade.utils.LogCapture;
+import io.github.oliviercailloux.grade.utils.LogCapture.LogEvent;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
 public class StdOutErrLoggerTests {
   public static void main(String[] args) {
     System.out.println("Hello not redirected");
@@ -8,4 +24,96 @@ public class StdOutErrLoggerTests {
     }
     System.out.println("Bye bye not redirected");
   }
+
+  @Test
+  void testCapture() throws Exception {
+    final PrintStream original = System.out;
+    final StdOutErrLogger logger = StdOutErrLogger.redirect();
+    try (StdOutErrLogger captured = StdOutErrLogger.capture(1000)) {
+      System.out.println("Hello");
+      System.out.print('c');
+      System.err.print("Oops");
+      final Thread child = new Thread(() -> System.out.println(" from a child"));
+      child.start();
+      child.join();
+      assertEquals("Hello\nc from a child\n".replace("\n", System.lineSeparator()),
+          captured.getOut());
+      assertEquals("Oops", captured.getErr());
+      assertFalse(captured.isTruncated());
+    }
+    assertEquals("", logger.getOut());
+    logger.close();
+    assertSame(original, System.out);
+  }
+
+  @Test
+  void testTruncated() throws Exception {
+    try (StdOutErrLogger captured = StdOutErrLogger.capture(10)) {
+      for (int i = 0; i < 1000; ++i) {
+        System.out.print(i % 10);
+      }
+      assertEquals("0123456789", captured.getOut());
+      assertTrue(captured.isTruncated());
+    }
+  }
+
+  @Test
+  void testConcurrentCaptures() throws Exception {
+    final int nbThreads = 8;
+    final ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+    final CountDownLatch ready = new CountDownLatch(nbThreads);
+    try {
+      final ImmutableList.Builder<Future<String>> futures = ImmutableList.builder();
+      for (int t = 0; t < nbThreads; ++t) {
+        final String name = "Student " + t;
+        futures.add(executor.submit(() -> {
+          try (StdOutErrLogger captured = StdOutErrLogger.capture(1_000_000)) {
+            ready.countDown();
+            ready.await();
+            for (int i = 0; i < 1000; ++i) {
+              System.out.println(name);
+            }
+            return captured.getOut();
+          }
+        }));
+      }
+      final ImmutableList<Future<String>> built = futures.build();
+      for (int t = 0; t < nbThreads; ++t) {
+        assertEquals(("Student " + t + System.lineSeparator()).repeat(1000), built.get(t).get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testWrap() throws Exception {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(() -> {
+      }).get();
+      try (StdOutErrLogger captured = StdOutErrLogger.capture(1000)) {
+        executor.submit(() -> System.out.print("not captured")).get();
+        executor.submit(captured.wrap(() -> System.out.print("captured"))).get();
+        assertEquals("captured", captured.getOut());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testFlush() throws Exception {
+    try (LogCapture logs =
+        LogCapture.capturing(StdOutErrLoggerImpl.class.getName(), Level.DEBUG, 100)) {
+      try (StdOutErrLogger logger = StdOutErrLogger.redirect()) {
+        System.out.print("Prompt: ");
+        System.out.flush();
+        System.out.print("unterminated");
+      }
+      final ImmutableList<String> messages =
+          logs.getEvents().stream().map(LogEvent::message).collect(ImmutableList.toImmutableList());
+      assertEquals(ImmutableList.of("Prompt: ", "unterminated"), messages);
+    }
+  }
 }
@@ -0,0 +1,157 @@
+package io.github.oliviercailloux.umlgraders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.github.oliviercailloux.umlgraders.UmlModel.UmlElement;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+class UmlModelTests {
+  @Test
+  void testPerfect() throws Exception {
+    final Path uml = Path.of(getClass().getResource("Admin/Perfect.uml").toURI());
+    final UmlModel model = UmlModel.read(uml);
+
+    assertTrue(model.isUml());
+    assertEquals("uml:Model", model.getRoot().getTag());
+    assertEquals(1, model.getNbRootNonTextChildren());
+    assertEquals(13, model.getElements().size());
+    assertEquals(7, model.getLeaves().size());
+
+    final UmlElement subject = model.getElementsByTag("packagedElement").get(0);
+    assertEquals("System", subject.getName());
+    assertEquals(Optional.of(model.getRoot()), subject.getParent());
+    assertEquals(5, subject.getChildren().size());
+
+    final ImmutableList<UmlElement> useCases = model.getElementsByType("uml:UseCase");
+    assertEquals(ImmutableList.of("Manage users", "Create user", "Delete user"),
+        useCases.stream().map(UmlElement::getName).collect(ImmutableList.toImmutableList()));
+    final UmlElement create = useCases.get(1);
+    assertTrue(create.hasAttribute("subject"));
+    final UmlElement generalization = create.getDescendants("generalization").get(0);
+    assertEquals(Optional.of(useCases.get(0)),
+        model.getElementById(generalization.getAttribute("general")));
+
+    final UmlElement association = model.getElementsByType("uml:Association").get(0);
+    assertEquals(2, association.getDescendants("ownedEnd").size());
+    assertEquals(Optional.empty(), model.getElementById("unknown"));
+  }
+
+  @Test
+  void testNotUml() throws Exception {
+    final String xml = "<root><!-- comment --><a name=\"x\" other=\"y\"/><b/></root>";
+    final UmlModel model = UmlModel.read(
+        new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "memory:root.xml");
+    assertFalse(model.isUml());
+    assertEquals(3, model.getNbRootNonTextChildren());
+    final UmlElement a = model.getElementsByTag("a").get(0);
+    assertEquals("x", a.getName());
+    assertFalse(a.hasAttribute("other"));
+    assertEquals("", a.getType());
+    assertEquals(Optional.empty(), a.getId());
+  }
+
+  @Test
+  void testMalformed() throws Exception {
+    final byte[] xml = "<root><a></root>".getBytes(StandardCharsets.UTF_8);
+    assertThrows(XMLStreamException.class,
+        () -> UmlModel.read(new ByteArrayInputStream(xml), "memory:bad.xml"));
+  }
+
+  private static ImmutableList<Element> getDomElements(Path uml) throws Exception {
+    final DocumentBuilderFactory factory = DocumentBuilderFactory.newDefaultInstance();
+    factory.setNamespaceAware(true);
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    final Document document = factory.newDocumentBuilder().parse(uml.toFile());
+    final NodeList nodes = document.getElementsByTagName("*");
+    final ImmutableList.Builder<Element> elements = ImmutableList.builder();
+    for (int i = 0; i < nodes.getLength(); ++i) {
+      elements.add((Element) nodes.item(i));
+    }
+    return elements.build();
+  }
+
+  private static ImmutableMap<String, String> getKeptAttributes(Element element) {
+    final NamedNodeMap attributes = element.getAttributes();
+    final ImmutableMap.Builder<String, String> kept = ImmutableMap.builder();
+    for (int i = 0; i < attributes.getLength(); ++i) {
+      final Attr attribute = (Attr) attributes.item(i);
+      if (attribute.getNamespaceURI() == null
+          && UmlModel.KEPT_ATTRIBUTES.contains(attribute.getLocalName())) {
+        kept.put(attribute.getLocalName(), attribute.getValue());
+      }
+    }
+    return kept.build();
+  }
+
+  /**
+   * Reads every model under test resources both with a DOM parser and as a {@link UmlModel}, and
+   * checks that they see the same elements.
+   */
+  @Test
+  void testSameAsDom() throws Exception {
+    final Path resources = Path.of(getClass().getResource("Admin").toURI()).getParent();
+    final ImmutableList<Path> umls;
+    try (Stream<Path> found = Files.walk(resources)) {
+      umls = found.filter(p -> p.getFileName().toString().endsWith(".uml"))
+          .collect(ImmutableList.toImmutableList());
+    }
+    assertFalse(umls.isEmpty());
+
+    for (Path uml : umls) {
+      final ImmutableList<Element> domElements = getDomElements(uml);
+      final UmlModel model = UmlModel.read(uml);
+      final ImmutableList<UmlElement> elements = model.getElements();
+      assertEquals(domElements.size(), elements.size(), uml.toString());
+
+      final Element domRoot = domElements.get(0);
+      assertEquals(Strings.nullToEmpty(domRoot.getNamespaceURI()), model.getRootNamespace());
+      final NodeList rootChildren = domRoot.getChildNodes();
+      int nbNonText = 0;
+      for (int i = 0; i < rootChildren.getLength(); ++i) {
+        if (rootChildren.item(i).getNodeType() != Node.TEXT_NODE) {
+          ++nbNonText;
+        }
+      }
+      assertEquals(nbNonText, model.getNbRootNonTextChildren(), uml.toString());
+
+      for (int i = 0; i < elements.size(); ++i) {
+        final Element domElement = domElements.get(i);
+        final UmlElement element = elements.get(i);
+        assertEquals(domElement.getTagName(), element.getTag());
+        assertEquals(domElement.getAttributeNS(UmlModel.XMI_NS, "type"), element.getType());
+        assertEquals(domElement.getAttributeNS(UmlModel.XMI_NS, "id"), element.getIdOrEmpty());
+        final ImmutableMap<String, String> kept = getKeptAttributes(domElement);
+        for (String name : UmlModel.KEPT_ATTRIBUTES) {
+          assertEquals(kept.containsKey(name), element.hasAttribute(name), element + " " + name);
+          assertEquals(kept.getOrDefault(name, ""), element.getAttribute(name));
+        }
+        final Node domParent = domElement.getParentNode();
+        final Optional<UmlElement> expectedParent = domParent instanceof Element parent
+            ? Optional.of(elements.get(domElements.indexOf(parent)))
+            : Optional.empty();
+        assertEquals(expectedParent, element.getParent());
+        assertEquals(domElement.getElementsByTagName("*").getLength() == 0, element.isLeaf());
+      }
+    }
+  }
+}
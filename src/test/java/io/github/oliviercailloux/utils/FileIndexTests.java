@@ -0,0 +1,111 @@
+package io.github.oliviercailloux.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import io.github.oliviercailloux.utils.FileIndex.FileEntry;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class FileIndexTests {
+  private static void populate(Path root) throws Exception {
+    Files.createDirectories(root.resolve("src/main/java/pkg"));
+    Files.createDirectories(root.resolve("src/test/java/pkg"));
+    Files.createDirectories(root.resolve("empty"));
+    Files.writeString(root.resolve("pom.xml"), "<project/>");
+    Files.writeString(root.resolve(".gitignore"), "target/");
+    Files.writeString(root.resolve("src/main/java/pkg/Main.java"), "class Main {}");
+    Files.writeString(root.resolve("src/main/java/pkg/Other.java"), "class Other {}");
+    Files.writeString(root.resolve("src/test/java/pkg/MainTests.java"), "class MainTests {}");
+    Files.writeString(root.resolve("src/test/java/pkg/data.txt"), "data");
+  }
+
+  @Test
+  void testQueries() throws Exception {
+    try (FileSystem fs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path root = fs.getPath("/work");
+      populate(root);
+      final FileIndex index = FileIndex.create(root);
+
+      final ImmutableSet<Path> found;
+      try (Stream<Path> stream = Files.find(root, Integer.MAX_VALUE, (p, a) -> true)) {
+        found = stream.collect(ImmutableSet.toImmutableSet());
+      }
+      assertEquals(ImmutableList.copyOf(found), index.getPaths().asList());
+      assertEquals(Utils.getPathsMatching(root, p -> p.toString().contains("pkg")),
+          index.getPathsMatching(p -> p.toString().contains("pkg")));
+
+      assertEquals(ImmutableSet.of(root.resolve("src/main/java/pkg/Main.java"),
+          root.resolve("src/main/java/pkg/Other.java"),
+          root.resolve("src/test/java/pkg/MainTests.java")), index.getFilesWithExtension("java"));
+      assertEquals(ImmutableSet.of(root.resolve("pom.xml")), index.getPathsNamed("pom.xml"));
+      assertEquals(ImmutableSet.of(root.resolve("src/test/java/pkg/MainTests.java")),
+          index.getPathsMatchingGlob("src/test/**.java"));
+      assertEquals(ImmutableSet.of(root.resolve("src/main/java/pkg/Main.java"),
+          root.resolve("src/main/java/pkg/Other.java")),
+          index.getPathsUnder(root.resolve("src/main")).stream().filter(Files::isRegularFile)
+              .collect(ImmutableSet.toImmutableSet()));
+      assertEquals(6, index.getRegularFiles().size());
+
+      final FileEntry gitignore = index.getEntries().stream()
+          .filter(e -> e.name().equals(".gitignore")).findFirst().orElseThrow();
+      assertEquals("", gitignore.extension());
+      assertEquals(".gitignore", gitignore.relative());
+      assertEquals(7L, gitignore.size());
+      final FileEntry main = index.getEntries().stream().filter(e -> e.name().equals("Main.java"))
+          .findFirst().orElseThrow();
+      assertEquals("src/main/java/pkg/Main.java", main.relative());
+      assertEquals("java", main.extension());
+      assertEquals("", index.getEntries().get(0).relative());
+    }
+  }
+
+  @Test
+  void testSingleFile() throws Exception {
+    try (FileSystem fs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path file = fs.getPath("/model.uml");
+      Files.writeString(file, "<uml/>");
+      final FileIndex index = FileIndex.create(file);
+      assertEquals(ImmutableSet.of(file), index.getPaths());
+      assertEquals(ImmutableSet.of(file), index.getFilesWithExtension("uml"));
+    }
+  }
+
+  @Test
+  void testMissing() throws Exception {
+    try (FileSystem fs = Jimfs.newFileSystem(Configuration.unix())) {
+      assertThrows(NoSuchFileException.class, () -> FileIndex.create(fs.getPath("/nothing")));
+    }
+  }
+
+  @Test
+  void testShared() throws Exception {
+    try (FileSystem fs = Jimfs.newFileSystem(Configuration.unix())) {
+      final Path root = fs.getPath("/work");
+      populate(root);
+      final FileIndex updated;
+      try (FileIndex.Scope scope = FileIndex.share()) {
+        final FileIndex index = FileIndex.of(root);
+        assertSame(index, FileIndex.of(root));
+
+        Files.writeString(root.resolve("new.txt"), "new");
+        assertSame(index, FileIndex.of(root));
+        FileIndex.invalidate(root);
+        updated = FileIndex.of(root);
+        assertNotSame(index, updated);
+        assertEquals(index.getPaths().size() + 1, updated.getPaths().size());
+      }
+      assertNotSame(updated, FileIndex.of(root));
+    }
+  }
+}